@@ -17,6 +17,11 @@ let testSession = null;
 let examQuestions = [];
 let currentQuestionIndex = 0;
 let answersMap = {}; // questionId -> answer response
+let activePolls = {}; // questionId -> setInterval id của câu đang chờ kết quả
+
+// Luồng sự kiện trạng thái chấm điểm (SSE)
+let answerEvents = null;
+let answerEventsConnected = false;
 
 // Recording
 let mediaRecorder = null;
@@ -26,6 +31,9 @@ let recordingInterval = null;
 let recordingSeconds = 0;
 let currentAudioBlob = null;
 
+// Ghi âm trực tiếp qua WebSocket: server chuyển giọng nói từng đoạn trong lúc học sinh đang nói
+let liveAnswer = null;
+
 // ==================== SCREEN NAVIGATION ====================
 function goToScreen(screenId) {
     document.querySelectorAll('.screen').forEach(s => s.classList.remove('active'));
@@ -81,7 +89,14 @@ function apiPostMultipart(path, formData) {
         method: 'POST',
         body: formData
     }).then(function(res) {
-        if (!res.ok) return res.text().then(function(t) { throw new Error(t || 'API Error: ' + res.status); });
+        if (!res.ok) return res.text().then(function(t) {
+            var err = new Error(t || 'API Error: ' + res.status);
+            err.status = res.status;
+            // Server quá tải (429) hoặc AI tạm ngưng (503): số giây nên chờ trước khi gửi lại
+            var retryAfter = parseInt(res.headers.get('Retry-After'), 10);
+            err.retryAfter = isNaN(retryAfter) ? null : retryAfter;
+            throw err;
+        });
         return res.json();
     });
 }
@@ -198,6 +213,7 @@ function startExam(event) {
     apiPost('/test-sessions', body)
         .then(function(session) {
             testSession = session;
+            openAnswerEvents();
             return apiGet('/exams/' + selectedExam.id + '/questions');
         })
         .then(function(questions) {
@@ -287,7 +303,7 @@ function renderQuestion() {
     var answer = answersMap[q.questionId];
     if (answer && answer.answeredAt && (answer.processingStatus === 'COMPLETED' || answer.processingStatus === 'FAILED')) {
         showFeedback(answer);
-    } else if (answer && answer.answeredAt && (answer.processingStatus === 'TRANSCRIBING' || answer.processingStatus === 'SCORING')) {
+    } else if (answer && answer.answeredAt && (answer.processingStatus === 'PENDING' || answer.processingStatus === 'TRANSCRIBING' || answer.processingStatus === 'SCORING')) {
         // Still processing - show submitting UI and resume polling
         document.getElementById('recording-section').classList.add('hidden');
         document.getElementById('submitting-section').classList.remove('hidden');
@@ -322,6 +338,7 @@ function goToQuestion(index) {
     if (mediaRecorder && mediaRecorder.state === 'recording') {
         stopRecording();
     }
+    discardLiveAnswer();
 
     currentQuestionIndex = index;
     renderQuestion();
@@ -385,6 +402,7 @@ function startRecording() {
         .then(function(stream) {
             recordingStream = stream;
             audioChunks = [];
+            startLiveAnswer(stream);
 
             // Use a supported mime type
             var options = {};
@@ -459,6 +477,7 @@ function stopRecording() {
     if (mediaRecorder && mediaRecorder.state === 'recording') {
         mediaRecorder.stop();
     }
+    stopLiveAnswer();
 
     clearInterval(recordingInterval);
 
@@ -477,11 +496,125 @@ function updateRecordingTimer() {
 }
 
 function reRecord() {
+    discardLiveAnswer();
     currentAudioBlob = null;
     document.getElementById('audio-playback').classList.add('hidden');
     document.getElementById('recording-status').textContent = 'Nhấn vào micro để ghi âm lại';
 }
 
+// ==================== LIVE STREAMING ====================
+// Song song với MediaRecorder: gửi PCM 16-bit mono qua WebSocket để server chuyển giọng nói từng đoạn trong lúc ghi.
+// Khi nộp, nếu luồng còn tốt thì chỉ gửi lệnh "submit" (không tải file); nếu không thì nộp file WAV như cũ.
+function startLiveAnswer(stream) {
+    discardLiveAnswer();
+    var q = examQuestions[currentQuestionIndex];
+    var AudioCtx = window.AudioContext || window.webkitAudioContext;
+    if (!q || !testSession || !window.WebSocket || !AudioCtx) return;
+
+    var ctx;
+    try {
+        ctx = new AudioCtx({ sampleRate: 16000 });
+    } catch (e) {
+        ctx = new AudioCtx();
+    }
+    var url = API_BASE.replace(/^http/, 'ws') + '/ws/test-sessions/' + testSession.id +
+        '/questions/' + q.questionId + '/live?sampleRate=' + ctx.sampleRate;
+    var live = { ws: new WebSocket(url), ctx: ctx, questionId: q.questionId, ready: false, failed: false, pending: [], onResult: null };
+    live.ws.binaryType = 'arraybuffer';
+
+    live.ws.onmessage = function(event) {
+        var msg = JSON.parse(event.data);
+        if (msg.type === 'ready') {
+            live.ready = true;
+            // Âm thanh ghi được trước khi server sẵn sàng
+            live.pending.forEach(function(chunk) { live.ws.send(chunk); });
+            live.pending = [];
+        } else if (msg.type === 'submitted' || msg.type === 'error') {
+            live.failed = msg.type === 'error';
+            live.done = true;
+            if (live.onResult) live.onResult(msg);
+        }
+    };
+    live.ws.onerror = function() { live.failed = true; };
+    live.ws.onclose = function() {
+        if (!live.done) {
+            live.failed = true;
+            live.done = true;
+            if (live.onResult) live.onResult({ type: 'error' });
+        }
+    };
+
+    // ScriptProcessorNode: đủ cho một luồng mono và chạy trên mọi trình duyệt đang hỗ trợ MediaRecorder
+    var source = ctx.createMediaStreamSource(stream);
+    var processor = ctx.createScriptProcessor(4096, 1, 1);
+    processor.onaudioprocess = function(event) {
+        if (live.failed || live.stopped) return;
+        var input = event.inputBuffer.getChannelData(0);
+        var pcm = new Int16Array(input.length);
+        for (var i = 0; i < input.length; i++) {
+            var sample = Math.max(-1, Math.min(1, input[i]));
+            pcm[i] = sample < 0 ? sample * 0x8000 : sample * 0x7FFF;
+        }
+        if (live.ready && live.ws.readyState === WebSocket.OPEN) {
+            live.ws.send(pcm.buffer);
+        } else {
+            live.pending.push(pcm.buffer);
+        }
+    };
+    source.connect(processor);
+    processor.connect(ctx.destination);
+    live.source = source;
+    live.processor = processor;
+    liveAnswer = live;
+}
+
+function stopLiveAnswer() {
+    var live = liveAnswer;
+    if (!live || live.stopped) return;
+    live.stopped = true;
+    live.processor.disconnect();
+    live.source.disconnect();
+    live.ctx.close();
+    if (!live.ready) {
+        // Server chưa sẵn sàng trong suốt lúc ghi: nộp file như cũ
+        live.failed = true;
+    } else if (live.ws.readyState === WebSocket.OPEN) {
+        live.ws.send(JSON.stringify({ type: 'stop' }));
+    }
+}
+
+function discardLiveAnswer() {
+    var live = liveAnswer;
+    if (!live) return;
+    liveAnswer = null;
+    stopLiveAnswer();
+    live.onResult = null;
+    if (live.ws.readyState === WebSocket.OPEN || live.ws.readyState === WebSocket.CONNECTING) {
+        // Đóng kết nối khi chưa nộp: server bỏ bản ghi
+        live.ws.close();
+    }
+}
+
+// Nộp qua luồng trực tiếp nếu được; trả về false để người gọi nộp file WAV
+function submitLiveAnswer(q, onSubmitted, onFailed) {
+    var live = liveAnswer;
+    if (!live || live.questionId !== q.questionId || live.failed || !live.ready || live.ws.readyState !== WebSocket.OPEN) {
+        discardLiveAnswer();
+        return false;
+    }
+    liveAnswer = null;
+    live.onResult = function(msg) {
+        live.onResult = null;
+        if (msg.type === 'submitted') {
+            onSubmitted(msg.answer);
+        } else {
+            onFailed();
+        }
+    };
+    live.ws.send(JSON.stringify({ type: 'submit' }));
+    return true;
+}
+
 // ==================== WAV CONVERSION ====================
 function convertToWav(blob) {
     return new Promise(function(resolve, reject) {
@@ -589,37 +722,64 @@ function submitCurrentAnswer() {
     var formData = new FormData();
     formData.append('questionId', q.questionId);
     formData.append('audio', currentAudioBlob, 'recording.wav');
+    var streamed = submitLiveAnswer(q,
+        function(answer) { handleSubmittedAnswer(q, answer); },
+        // Luồng lỗi hoặc bị từ chối: nộp file như bình thường (có tự thử lại khi quá tải)
+        function() { sendAnswer(q, formData, 0); });
+    if (!streamed) {
+        sendAnswer(q, formData, 0);
+    }
+}
 
+// Server từ chối khi quá tải (429/503): chờ theo Retry-After cộng độ trễ ngẫu nhiên rồi tự gửi lại,
+// tối đa SUBMIT_MAX_RETRIES lần, để nhiều thí sinh không cùng gửi lại một lúc
+var SUBMIT_MAX_RETRIES = 5;
+
+function sendAnswer(q, formData, retries) {
     apiPostMultipart('/test-sessions/' + testSession.id + '/submit-answer', formData)
         .then(function(answer) {
-            // Server now returns immediately with TRANSCRIBING status
-            // Store the answer reference (will be updated by polling)
-            if (answer.processingStatus === 'COMPLETED') {
-                answersMap[q.questionId] = answer;
-                updateProgress();
-                renderQuestionNav();
-                showFeedback(answer);
-                showToast('Chấm điểm thành công!', 'success');
-            } else if (answer.processingStatus === 'FAILED') {
-                answersMap[q.questionId] = answer;
-                updateProgress();
-                renderQuestionNav();
-                showFeedback(answer);
-                showToast('AI không thể chấm điểm câu này.', 'warning');
-            } else {
-                // TRANSCRIBING / SCORING / PENDING - poll for result
-                showToast('Đã nộp câu trả lời. AI đang xử lý...', 'info');
-                pollAnswerResult(answer.id, q.questionId);
-            }
+            handleSubmittedAnswer(q, answer);
         })
         .catch(function(err) {
+            if ((err.status === 429 || err.status === 503) && retries < SUBMIT_MAX_RETRIES) {
+                var baseSeconds = err.retryAfter || Math.pow(2, retries);
+                var delayMs = baseSeconds * 1000 + Math.floor(Math.random() * baseSeconds * 500);
+                var detailEl = document.querySelector('.submitting-detail');
+                if (detailEl) detailEl.textContent = 'Hệ thống đang bận, tự động gửi lại sau ' + Math.ceil(delayMs / 1000) + ' giây...';
+                showToast('Hệ thống đang bận. Câu trả lời sẽ được gửi lại tự động.', 'info');
+                setTimeout(function() { sendAnswer(q, formData, retries + 1); }, delayMs);
+                return;
+            }
             console.error(err);
             showToast('Lỗi khi nộp câu trả lời. Vui lòng thử lại.', 'error');
             showRecordingUI();
         });
 }
 
+function handleSubmittedAnswer(q, answer) {
+    // Server returns 202 immediately with PENDING status (scoring runs in background)
+    // Store the answer reference (will be updated by polling)
+    if (answer.processingStatus === 'COMPLETED') {
+        answersMap[q.questionId] = answer;
+        updateProgress();
+        renderQuestionNav();
+        showFeedback(answer);
+        showToast('Chấm điểm thành công!', 'success');
+    } else if (answer.processingStatus === 'FAILED') {
+        answersMap[q.questionId] = answer;
+        updateProgress();
+        renderQuestionNav();
+        showFeedback(answer);
+        showToast('AI không thể chấm điểm câu này.', 'warning');
+    } else {
+        // TRANSCRIBING / SCORING / PENDING - poll for result
+        showToast('Đã nộp câu trả lời. AI đang xử lý...', 'info');
+        pollAnswerResult(answer.id, q.questionId);
+    }
+}
+
 function pollAnswerResult(answerId, questionId) {
+    stopPolling(questionId);
     var attempts = 0;
     var maxAttempts = 120; // 120 * 3s = 6 minutes max
 
@@ -639,46 +799,89 @@ function pollAnswerResult(answerId, questionId) {
         if (detailEl) detailEl.textContent = statusMessages[msgIdx];
 
         if (attempts > maxAttempts) {
-            clearInterval(poll);
+            stopPolling(questionId);
             showToast('Quá thời gian chờ xử lý. Bạn có thể thử lại sau.', 'warning');
             showRecordingUI();
             return;
         }
 
+        // Đang nhận sự kiện SSE: chỉ hỏi lại server mỗi 15 giây để phòng trường hợp lỡ sự kiện
+        if (answerEventsConnected && attempts % 5 !== 0) return;
+
         apiGet('/test-sessions/' + testSession.id + '/answers')
             .then(function(answers) {
-                var answer = null;
                 for (var i = 0; i < answers.length; i++) {
                     if (answers[i].questionId === questionId) {
-                        answer = answers[i];
+                        handleAnswerUpdate(answers[i]);
                         break;
                     }
                 }
-                if (answer && answer.processingStatus === 'COMPLETED') {
-                    clearInterval(poll);
-                    answersMap[questionId] = answer;
-                    updateProgress();
-                    renderQuestionNav();
-                    // Only show feedback if still on the same question
-                    if (examQuestions[currentQuestionIndex] && examQuestions[currentQuestionIndex].questionId === questionId) {
-                        showFeedback(answer);
-                    }
-                    showToast('Chấm điểm thành công!', 'success');
-                } else if (answer && answer.processingStatus === 'FAILED') {
-                    clearInterval(poll);
-                    answersMap[questionId] = answer;
-                    updateProgress();
-                    renderQuestionNav();
-                    if (examQuestions[currentQuestionIndex] && examQuestions[currentQuestionIndex].questionId === questionId) {
-                        showFeedback(answer);
-                    }
-                    showToast('AI không thể chấm điểm câu này. Bạn có thể ghi âm lại.', 'warning');
-                }
             })
             .catch(function() {
                 // Ignore polling errors
             });
     }, 3000);
+    activePolls[questionId] = poll;
+}
+
+function stopPolling(questionId) {
+    if (activePolls[questionId]) {
+        clearInterval(activePolls[questionId]);
+        delete activePolls[questionId];
+    }
+}
+
+// Cập nhật từ SSE hoặc polling: chỉ xử lý câu hỏi đang chờ kết quả và đã có kết quả cuối
+function handleAnswerUpdate(answer) {
+    var questionId = answer.questionId;
+    if (!activePolls[questionId]) return;
+    if (answer.processingStatus !== 'COMPLETED' && answer.processingStatus !== 'FAILED') return;
+
+    stopPolling(questionId);
+    answersMap[questionId] = answer;
+    updateProgress();
+    renderQuestionNav();
+    // Only show feedback if still on the same question
+    if (examQuestions[currentQuestionIndex] && examQuestions[currentQuestionIndex].questionId === questionId) {
+        showFeedback(answer);
+    }
+    if (answer.processingStatus === 'COMPLETED') {
+        showToast('Chấm điểm thành công!', 'success');
+    } else {
+        showToast('AI không thể chấm điểm câu này. Bạn có thể ghi âm lại.', 'warning');
+    }
+}
+
+// ==================== ANSWER EVENTS (SSE) ====================
+// Một kết nối cho cả phiên thi; trình duyệt tự kết nối lại kèm Last-Event-ID.
+// Server từ chối (quá nhiều kết nối) hoặc trình duyệt không hỗ trợ thì polling ở trên vẫn chạy như cũ.
+function openAnswerEvents() {
+    if (!window.EventSource || !testSession || answerEvents) return;
+    var source = new EventSource(API_BASE + '/test-sessions/' + testSession.id + '/events');
+    source.onopen = function() {
+        answerEventsConnected = true;
+    };
+    source.addEventListener('snapshot', function(e) {
+        JSON.parse(e.data).forEach(handleAnswerUpdate);
+    });
+    source.addEventListener('answer', function(e) {
+        handleAnswerUpdate(JSON.parse(e.data));
+    });
+    source.onerror = function() {
+        answerEventsConnected = false;
+        if (source.readyState === EventSource.CLOSED && answerEvents === source) {
+            answerEvents = null;
+        }
+    };
+    answerEvents = source;
+}
+
+function closeAnswerEvents() {
+    if (answerEvents) {
+        answerEvents.close();
+        answerEvents = null;
+    }
+    answerEventsConnected = false;
 }
 
 // ==================== FINISH EXAM ====================
@@ -721,6 +924,7 @@ function finishExam() {
 }
 
 function showResults(report) {
+    closeAnswerEvents();
     document.getElementById('results-student-info').textContent =
         (report.studentName || '') + (report.studentOrganization ? ' - ' + report.studentOrganization : '') +
         ' | ' + (report.examName || '');
@@ -738,6 +942,7 @@ function showResults(report) {
 }
 
 function showResultsFromLocal() {
+    closeAnswerEvents();
     var studentName = document.getElementById('student-name').value.trim();
     var org = document.getElementById('student-org').value.trim();
 
@@ -830,6 +1035,8 @@ function renderResultsList(answers) {
 
 // ==================== RESET ====================
 function resetAll() {
+    closeAnswerEvents();
+    Object.keys(activePolls).forEach(stopPolling);
     selectedExam = null;
     testSession = null;
     examQuestions = [];
@@ -845,6 +1052,7 @@ function resetAll() {
     if (mediaRecorder && mediaRecorder.state === 'recording') {
         mediaRecorder.stop();
     }
+    discardLiveAnswer();
     if (recordingStream) {
         recordingStream.getTracks().forEach(function(t) { t.stop(); });
     }
@@ -20,6 +20,7 @@ CREATE TABLE questions (
     id BIGINT PRIMARY KEY AUTO_INCREMENT,
     content TEXT NOT NULL,
     level ENUM('EASY', 'HARD') DEFAULT 'EASY',
+    sample_answers_version INT NOT NULL DEFAULT 0,
     created_by BIGINT,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
@@ -83,6 +84,7 @@ CREATE TABLE test_sessions (
     status ENUM('IN_PROGRESS', 'COMPLETED', 'CANCELLED') DEFAULT 'IN_PROGRESS',
     started_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     completed_at TIMESTAMP NULL,
+    state_version BIGINT NOT NULL DEFAULT 0 COMMENT 'Incremented on every session/answer change (ETag of public reads)',
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     FOREIGN KEY (exam_id) REFERENCES exams(id),
@@ -99,8 +101,10 @@ CREATE TABLE test_answers (
     question_id BIGINT NOT NULL,
     audio_url VARCHAR(500),
     transcribed_text TEXT,
+    transcribed_audio_url VARCHAR(500),
     score DECIMAL(5,2) DEFAULT 0.00,
     feedback TEXT,
+    provisional_score DECIMAL(5,2),
     processing_status ENUM('PENDING', 'TRANSCRIBING', 'SCORING', 'COMPLETED', 'FAILED') DEFAULT 'PENDING',
     answered_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
@@ -112,6 +116,68 @@ CREATE TABLE test_answers (
     INDEX idx_processing_status (processing_status)
 );
 
+-- Hàng đợi công việc chấm điểm (bền vững qua các lần khởi động lại)
+CREATE TABLE answer_processing_jobs (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    test_answer_id BIGINT NOT NULL,
+    status ENUM('QUEUED', 'RUNNING', 'COMPLETED', 'FAILED', 'CANCELLED') NOT NULL DEFAULT 'QUEUED',
+    attempts INT NOT NULL DEFAULT 0,
+    priority INT NOT NULL DEFAULT 0,
+    reprocessing_run_id BIGINT,
+    audio_duration_ms BIGINT,
+    schedule_key BIGINT,
+    tenant_key VARCHAR(255),
+    locked_by VARCHAR(100),
+    available_at TIMESTAMP NULL,
+    started_at TIMESTAMP NULL,
+    heartbeat_at TIMESTAMP NULL,
+    finished_at TIMESTAMP NULL,
+    last_error TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (test_answer_id) REFERENCES test_answers(id) ON DELETE CASCADE,
+    INDEX idx_job_test_answer_id (test_answer_id),
+    INDEX idx_job_status (status),
+    INDEX idx_job_reprocessing_run_id (reprocessing_run_id),
+    INDEX idx_job_status_schedule_key (status, schedule_key),
+    INDEX idx_job_status_tenant_key (status, tenant_key)
+);
+
+-- Các lượt xử lý lại hàng loạt câu trả lời (con trỏ last_answer_id để tiếp tục sau khi dừng)
+CREATE TABLE reprocessing_runs (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    exam_id BIGINT,
+    question_id BIGINT,
+    statuses VARCHAR(100),
+    from_date TIMESTAMP NULL,
+    to_date TIMESTAMP NULL,
+    scoring_only BOOLEAN NOT NULL DEFAULT FALSE,
+    chunk_size INT NOT NULL,
+    status ENUM('RUNNING', 'PAUSED', 'COMPLETED', 'CANCELLED') NOT NULL DEFAULT 'RUNNING',
+    total_answers INT NOT NULL DEFAULT 0,
+    enqueued_answers INT NOT NULL DEFAULT 0,
+    last_answer_id BIGINT NOT NULL DEFAULT 0,
+    requested_by VARCHAR(100),
+    started_at TIMESTAMP NULL,
+    finished_at TIMESTAMP NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    INDEX idx_reprocessing_run_status (status)
+);
+
+-- Cache chuyển giọng nói theo SHA-256 của file âm thanh
+CREATE TABLE transcription_cache (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    audio_hash CHAR(64) NOT NULL UNIQUE,
+    transcribed_text TEXT NOT NULL,
+    audio_size_bytes BIGINT,
+    hit_count INT NOT NULL DEFAULT 0,
+    last_hit_at TIMESTAMP NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    INDEX idx_transcription_last_hit_at (last_hit_at)
+);
+
 -- Nhật ký xử lý AI
 CREATE TABLE ai_processing_logs (
     id BIGINT PRIMARY KEY AUTO_INCREMENT,
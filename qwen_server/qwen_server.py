@@ -90,6 +90,10 @@ model = AutoModelForCausalLM.from_pretrained(
     local_files_only=True
 )
 device = "cuda" if torch.cuda.is_available() else "cpu"
+# Pad bên trái để có thể sinh nhiều prompt cùng lúc (batched generation cho /score-batch)
+tokenizer.padding_side = "left"
+if tokenizer.pad_token is None:
+    tokenizer.pad_token = tokenizer.eos_token
 if device == "cpu":
     model = model.to(device)
 
@@ -445,6 +449,119 @@ def extract_json_from_text(text):
     # Hoàn toàn không parse được → trả None để dùng fallback
     return None
 
+# ========== CÁC BƯỚC CHẤM ĐIỂM DÙNG CHUNG CHO /score VÀ /score-batch ==========
+
+def build_scoring_prompt(question, transcribed_text, sample_answers):
+    """Tạo prompt chấm điểm (đã áp dụng chat template) cho một câu trả lời."""
+    # Prompt ngắn gọn — giảm input tokens để tăng tốc
+    system_prompt = """Giáo viên tiếng Anh thân thiện. Chấm điểm KHOAN DUNG cho người mới học.
+Khen trước, gợi ý sau. Feedback bằng tiếng Việt.
+Điểm: cố gắng=4-5, đúng ý=6-7, tốt=7-9, không liên quan<3.
+Chỉ trả về JSON: {"score": <0-10>, "feedback": "<tiếng Việt>"}"""
+
+    # Tạo phần mẫu tham khảo — ngắn gọn
+    sample_text = ""
+    if sample_answers:
+        sample_text = "\nMẫu tham khảo:\n"
+        for i, s in enumerate(sample_answers[:3], 1):  # Giới hạn 3 mẫu
+            content = s.get('content', '')[:150]  # Giới hạn độ dài
+            score = s.get('score', 'N/A')
+            sample_text += f"- Mẫu {i} ({score} điểm): {content}\n"
+
+    user_message = f"""Q: {question}
+{sample_text}
+A: {transcribed_text}
+Chấm điểm JSON:"""
+
+    messages = [
+        {"role": "system", "content": system_prompt},
+        {"role": "user", "content": user_message}
+    ]
+
+    return tokenizer.apply_chat_template(
+        messages,
+        tokenize=False,
+        add_generation_prompt=True
+    )
+
+
+def generate_scoring_responses(prompts):
+    """Sinh output cho nhiều prompt trong MỘT lần model.generate (prompt được pad bên trái)."""
+    model_inputs = tokenizer(prompts, return_tensors="pt", padding=True).to(device)
+    with torch.no_grad():  # Tắt gradient tracking → nhanh hơn + ít VRAM hơn
+        generated_ids = model.generate(
+            model_inputs.input_ids,
+            attention_mask=model_inputs.attention_mask,
+            max_new_tokens=200,   # JSON ngắn, không cần 1024 tokens
+            do_sample=False,
+            repetition_penalty=1.1,
+            # Dừng sớm khi gặp dấu đóng JSON
+            eos_token_id=tokenizer.eos_token_id,
+            pad_token_id=tokenizer.pad_token_id,
+        )
+    generated_ids = [
+        output_ids[len(input_ids):]
+        for input_ids, output_ids in zip(model_inputs.input_ids, generated_ids)
+    ]
+    return tokenizer.batch_decode(generated_ids, skip_special_tokens=True)
+
+
+def parse_model_response(response_text):
+    """Trích xuất (model_score, model_feedback) từ output của model, (None, None) nếu không parse được."""
+    parsed = extract_json_from_text(response_text)
+    if parsed and 'score' in parsed:
+        model_score = float(parsed['score'])
+        model_score = max(0.0, min(10.0, model_score))
+        model_feedback = parsed.get('feedback', '')
+        logger.info(f"Model score: {model_score}, feedback: {model_feedback[:80]}")
+        return model_score, model_feedback
+    logger.warning(f"Failed to parse model output: {response_text[:200]}")
+    return None, None
+
+
+def build_scoring_result(transcribed_text, sample_answers, algo_score, match_info, model_score, model_feedback):
+    """Kết hợp điểm thuật toán và điểm model (hybrid), chọn feedback tiếng Việt."""
+    # ===== BƯỚC 3: Kết hợp điểm (hybrid) =====
+    if model_score is not None:
+        # Cả hai điểm đều có → kết hợp có trọng số
+        final_score = round(algo_score * ALGO_WEIGHT + model_score * MODEL_WEIGHT, 1)
+
+        # Kiểm tra chênh lệch quá lớn → ưu tiên thuật toán (model có thể sai)
+        if abs(model_score - algo_score) > 4.0:
+            logger.warning(f"Large score difference: algo={algo_score}, model={model_score}")
+            # Nếu chênh quá nhiều, tăng trọng số thuật toán
+            final_score = round(algo_score * 0.6 + model_score * 0.4, 1)
+    else:
+        # Model fail → chỉ dùng điểm thuật toán
+        final_score = algo_score
+
+    final_score = max(0.0, min(10.0, final_score))
+
+    # ===== BƯỚC 4: Chọn feedback tốt nhất bằng tiếng Việt =====
+    # Ưu tiên feedback từ model nếu có và hợp lệ
+    feedback = None
+    if model_feedback and len(model_feedback) > 10:
+        # Kiểm tra xem feedback có vẻ là tiếng Việt không (có ký tự Unicode tiếng Việt)
+        vn_chars = re.findall(r'[àáạảãăắằặẳẵâấầậẩẫèéẹẻẽêếềệểễìíịỉĩòóọỏõôốồộổỗơớờợởỡùúụủũưứừựửữỳýỵỷỹđ]',
+                              model_feedback.lower())
+        if len(vn_chars) >= 2 or len(model_feedback) > 30:
+            feedback = model_feedback
+
+    if not feedback:
+        # Model không cho feedback tiếng Việt → tự sinh
+        feedback = generate_vietnamese_feedback(
+            transcribed_text, sample_answers, final_score, match_info
+        )
+
+    result = {
+        'score': final_score,
+        'feedback': feedback,
+        'algo_score': algo_score,
+        'model_score': model_score
+    }
+    return result
+
+
 """
 Endpoint kiểm tra trạng thái server
 
@@ -527,108 +644,16 @@ def score_answer():
         model_feedback = None
 
         try:
-            # Prompt ngắn gọn — giảm input tokens để tăng tốc
-            system_prompt = """Giáo viên tiếng Anh thân thiện. Chấm điểm KHOAN DUNG cho người mới học.
-Khen trước, gợi ý sau. Feedback bằng tiếng Việt.
-Điểm: cố gắng=4-5, đúng ý=6-7, tốt=7-9, không liên quan<3.
-Chỉ trả về JSON: {"score": <0-10>, "feedback": "<tiếng Việt>"}""" 
-
-            # Tạo phần mẫu tham khảo — ngắn gọn
-            sample_text = ""
-            if sample_answers:
-                sample_text = "\nMẫu tham khảo:\n"
-                for i, s in enumerate(sample_answers[:3], 1):  # Giới hạn 3 mẫu
-                    content = s.get('content', '')[:150]  # Giới hạn độ dài
-                    score = s.get('score', 'N/A')
-                    sample_text += f"- Mẫu {i} ({score} điểm): {content}\n"
-
-            user_message = f"""Q: {question}
-{sample_text}
-A: {transcribed_text}
-Chấm điểm JSON:"""
-
-            messages = [
-                {"role": "system", "content": system_prompt},
-                {"role": "user", "content": user_message}
-            ]
-
-            text = tokenizer.apply_chat_template(
-                messages,
-                tokenize=False,
-                add_generation_prompt=True
-            )
-            model_inputs = tokenizer([text], return_tensors="pt").to(device)
-
+            prompt = build_scoring_prompt(question, transcribed_text, sample_answers)
             t_model = time.time()
-            with torch.no_grad():  # Tắt gradient tracking → nhanh hơn + ít VRAM hơn
-                generated_ids = model.generate(
-                    model_inputs.input_ids,
-                    max_new_tokens=200,   # JSON ngắn, không cần 1024 tokens
-                    do_sample=False,
-                    repetition_penalty=1.1,
-                    # Dừng sớm khi gặp dấu đóng JSON
-                    eos_token_id=tokenizer.eos_token_id,
-                )
-            model_time = time.time() - t_model
-
-            generated_ids = [
-                output_ids[len(input_ids):]
-                for input_ids, output_ids in zip(model_inputs.input_ids, generated_ids)
-            ]
-            response_text = tokenizer.batch_decode(generated_ids, skip_special_tokens=True)[0]
-            logger.info(f"Model output ({model_time:.2f}s, {len(generated_ids[0])} tokens): {response_text[:200]}")
-
-            # Trích xuất kết quả
-            parsed = extract_json_from_text(response_text)
-            if parsed and 'score' in parsed:
-                model_score = float(parsed['score'])
-                model_score = max(0.0, min(10.0, model_score))
-                model_feedback = parsed.get('feedback', '')
-                logger.info(f"Model score: {model_score}, feedback: {model_feedback[:80]}")
-            else:
-                logger.warning(f"Failed to parse model output: {response_text[:200]}")
-
+            response_text = generate_scoring_responses([prompt])[0]
+            logger.info(f"Model output ({time.time() - t_model:.2f}s): {response_text[:200]}")
+            model_score, model_feedback = parse_model_response(response_text)
         except Exception as e:
             logger.error(f"Model scoring failed: {str(e)}")
 
-        # ===== BƯỚC 3: Kết hợp điểm (hybrid) =====
-        if model_score is not None:
-            # Cả hai điểm đều có → kết hợp có trọng số
-            final_score = round(algo_score * ALGO_WEIGHT + model_score * MODEL_WEIGHT, 1)
-
-            # Kiểm tra chênh lệch quá lớn → ưu tiên thuật toán (model có thể sai)
-            if abs(model_score - algo_score) > 4.0:
-                logger.warning(f"Large score difference: algo={algo_score}, model={model_score}")
-                # Nếu chênh quá nhiều, tăng trọng số thuật toán
-                final_score = round(algo_score * 0.6 + model_score * 0.4, 1)
-        else:
-            # Model fail → chỉ dùng điểm thuật toán
-            final_score = algo_score
-
-        final_score = max(0.0, min(10.0, final_score))
-
-        # ===== BƯỚC 4: Chọn feedback tốt nhất bằng tiếng Việt =====
-        # Ưu tiên feedback từ model nếu có và hợp lệ
-        feedback = None
-        if model_feedback and len(model_feedback) > 10:
-            # Kiểm tra xem feedback có vẻ là tiếng Việt không (có ký tự Unicode tiếng Việt)
-            vn_chars = re.findall(r'[àáạảãăắằặẳẵâấầậẩẫèéẹẻẽêếềệểễìíịỉĩòóọỏõôốồộổỗơớờợởỡùúụủũưứừựửữỳýỵỷỹđ]',
-                                  model_feedback.lower())
-            if len(vn_chars) >= 2 or len(model_feedback) > 30:
-                feedback = model_feedback
-
-        if not feedback:
-            # Model không cho feedback tiếng Việt → tự sinh
-            feedback = generate_vietnamese_feedback(
-                transcribed_text, sample_answers, final_score, match_info
-            )
-
-        result = {
-            'score': final_score,
-            'feedback': feedback,
-            'algo_score': algo_score,
-            'model_score': model_score
-        }
+        result = build_scoring_result(transcribed_text, sample_answers, algo_score, match_info, model_score, model_feedback)
+        final_score = result['score']
 
         total_time = time.time() - t_start
         logger.info(f"Final: score={final_score}, algo={algo_score}, model={model_score} | Total: {total_time:.2f}s")
@@ -663,6 +688,75 @@ Chấm điểm JSON:"""
                 'feedback': 'Lỗi trong quá trình chấm điểm. Vui lòng thử lại.'
             }), 500
 
+"""
+Chấm điểm NHIỀU câu trả lời trong một request (micro-batch từ backend).
+Các câu chưa có trong cache được sinh cùng lúc trong một lần model.generate → throughput cao hơn
+nhiều so với gọi /score lần lượt. Kết quả trả về theo đúng thứ tự items.
+
+Request JSON:
+{
+    "items": [
+        {"question": "...", "transcribedText": "...", "sample_answers": [{"content": "...", "score": 10}]},
+        ...
+    ]
+}
+
+Response JSON:
+{
+    "results": [
+        {"score": 8.5, "feedback": "...", "algo_score": 7.2, "model_score": 9.0},
+        {"error": "No transcribedText provided"},
+        ...
+    ]
+}
+"""
+@app.route('/score-batch', methods=['POST'])
+def score_batch():
+    data = request.get_json()
+    if not data or not isinstance(data.get('items'), list):
+        return jsonify({'error': 'No items provided'}), 400
+
+    items = data['items']
+    t_start = time.time()
+    results = [None] * len(items)
+    pending = []  # (index, question, transcribed_text, sample_answers, algo_score, match_info)
+
+    for i, item in enumerate(items):
+        question = item.get('question', '')
+        transcribed_text = item.get('transcribedText', '')
+        sample_answers = item.get('sample_answers', [])
+        if not transcribed_text:
+            results[i] = {'error': 'No transcribedText provided'}
+            continue
+        cached = scoring_cache.get(question, transcribed_text, sample_answers)
+        if cached:
+            results[i] = cached
+            continue
+        algo_score, match_info = compute_algorithmic_score(transcribed_text, sample_answers)
+        pending.append((i, question, transcribed_text, sample_answers, algo_score, match_info))
+
+    if pending:
+        response_texts = [None] * len(pending)
+        try:
+            prompts = [build_scoring_prompt(q, t, sa) for _, q, t, sa, _, _ in pending]
+            t_model = time.time()
+            response_texts = generate_scoring_responses(prompts)
+            logger.info(f"Batched model generation: {len(prompts)} items in {time.time() - t_model:.2f}s")
+        except Exception as e:
+            # Model lỗi → vẫn trả điểm thuật toán cho từng câu
+            logger.error(f"Batched model scoring failed: {str(e)}")
+
+        for (i, question, transcribed_text, sample_answers, algo_score, match_info), response_text in zip(pending, response_texts):
+            model_score, model_feedback = (None, None)
+            if response_text is not None:
+                model_score, model_feedback = parse_model_response(response_text)
+            result = build_scoring_result(transcribed_text, sample_answers, algo_score, match_info, model_score, model_feedback)
+            scoring_cache.put(question, transcribed_text, sample_answers, result)
+            results[i] = result
+
+    logger.info(f"Scored batch of {len(items)} ({len(pending)} uncached) in {time.time() - t_start:.2f}s")
+    return jsonify({'results': results}), 200
+
 """
 Trò chuyện với mô hình Qwen.
 
@@ -717,6 +811,7 @@ if __name__ == '__main__':
     print("Endpoints:")
     print("  - GET  /health")
     print("  - POST /score   (hybrid: algorithm + AI)")
+    print("  - POST /score-batch")
     print("  - POST /chat")
     print("=" * 60)
     # threaded=True cho phép xử lý nhiều request đồng thời
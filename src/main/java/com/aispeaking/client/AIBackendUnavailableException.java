@@ -0,0 +1,19 @@
+package com.aispeaking.client;
+
+import lombok.Getter;
+
+/**
+ * Circuit breaker của dịch vụ AI đang mở: request bị từ chối ngay, không gửi tới máy chủ.
+ * Công việc gặp lỗi này được hoãn lại (câu trả lời giữ PENDING) thay vì đánh dấu FAILED.
+ */
+@Getter
+public class AIBackendUnavailableException extends RuntimeException {
+    private final String serviceName;
+    private final long retryAfterMs;
+
+    public AIBackendUnavailableException(String serviceName, long retryAfterMs) {
+        super(serviceName + " is unavailable (circuit open), retry in " + retryAfterMs + "ms");
+        this.serviceName = serviceName;
+        this.retryAfterMs = retryAfterMs;
+    }
+}
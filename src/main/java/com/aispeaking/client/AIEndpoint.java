@@ -0,0 +1,113 @@
+package com.aispeaking.client;
+
+import lombok.Getter;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Một instance của dịch vụ AI (một URL trong ai.whisper.url / ai.qwen.url) cùng số liệu dùng để cân bằng tải:
+ * số request đang chạy, độ trễ trung bình trượt (EWMA), số lỗi liên tiếp và trạng thái bị loại.
+ */
+public class AIEndpoint {
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    @Getter
+    private final String url;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    // Double.doubleToLongBits của độ trễ EWMA (ms), 0 = chưa có mẫu
+    private final AtomicLong ewmaLatencyBits = new AtomicLong();
+    private volatile boolean ejected;
+    private volatile LocalDateTime ejectedAt;
+    private volatile LocalDateTime lastHealthCheckAt;
+    private volatile String lastHealthError;
+
+    public AIEndpoint(String url) {
+        this.url = url;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public double ewmaLatencyMs() {
+        return Double.longBitsToDouble(ewmaLatencyBits.get());
+    }
+
+    public boolean isEjected() {
+        return ejected;
+    }
+
+    void begin() {
+        inFlight.incrementAndGet();
+        requests.incrementAndGet();
+    }
+
+    /**
+     * Ghi nhận kết quả một request; trả về số lỗi liên tiếp hiện tại
+     */
+    int end(long latencyMs, boolean failed) {
+        inFlight.decrementAndGet();
+        if (!failed) {
+            ewmaLatencyBits.updateAndGet(bits -> {
+                double current = Double.longBitsToDouble(bits);
+                double next = current == 0 ? latencyMs : current + LATENCY_SMOOTHING * (latencyMs - current);
+                return Double.doubleToLongBits(next);
+            });
+            consecutiveFailures.set(0);
+            return 0;
+        }
+        failures.incrementAndGet();
+        return consecutiveFailures.incrementAndGet();
+    }
+
+    /**
+     * Request bị hủy (thua khi hedge): không tính vào độ trễ hay lỗi
+     */
+    void cancel() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Ghi nhận kết quả kiểm tra /health; trả về số lỗi liên tiếp hiện tại
+     */
+    int recordHealthCheck(boolean healthy, String error) {
+        lastHealthCheckAt = LocalDateTime.now();
+        lastHealthError = healthy ? null : error;
+        if (healthy) {
+            consecutiveFailures.set(0);
+            return 0;
+        }
+        return consecutiveFailures.incrementAndGet();
+    }
+
+    void eject() {
+        ejected = true;
+        ejectedAt = LocalDateTime.now();
+    }
+
+    void reinstate() {
+        ejected = false;
+        ejectedAt = null;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("url", url);
+        stats.put("inFlight", inFlight.get());
+        stats.put("ewmaLatencyMs", Math.round(ewmaLatencyMs() * 10) / 10.0);
+        stats.put("requests", requests.get());
+        stats.put("failures", failures.get());
+        stats.put("consecutiveFailures", consecutiveFailures.get());
+        stats.put("ejected", ejected);
+        stats.put("ejectedAt", ejectedAt);
+        stats.put("lastHealthCheckAt", lastHealthCheckAt);
+        stats.put("lastHealthError", lastHealthError);
+        return stats;
+    }
+}
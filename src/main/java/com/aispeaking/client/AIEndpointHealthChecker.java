@@ -0,0 +1,43 @@
+package com.aispeaking.client;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Định kỳ gọi GET /health trên mọi instance Whisper/Qwen.
+ * Instance lỗi liên tiếp bị loại khỏi việc chia tải; instance đã bị loại được nhận lại khi /health thành công.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AIEndpointHealthChecker {
+    private final WhisperClient whisperClient;
+    private final QwenClient qwenClient;
+
+    @Value("${ai.health-check.timeout-ms}")
+    private long timeoutMs;
+
+    @Scheduled(fixedDelayString = "${ai.health-check.interval-ms}")
+    public void checkEndpoints() {
+        for (AIServiceClient client : new AIServiceClient[]{whisperClient, qwenClient}) {
+            try {
+                client.checkHealth(Duration.ofMillis(timeoutMs));
+            } catch (Exception e) {
+                log.warn("{} health check failed: {}", client.getServiceName(), e.getMessage());
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("whisper", whisperClient.getEndpointPool().getStats());
+        stats.put("qwen", qwenClient.getEndpointPool().getStats());
+        return stats;
+    }
+}
@@ -0,0 +1,136 @@
+package com.aispeaking.client;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Danh sách instance của một dịch vụ AI và cách chọn instance cho mỗi request:
+ * LEAST_OUTSTANDING chọn instance có ít request đang chạy nhất (hòa thì chọn độ trễ EWMA thấp hơn),
+ * POWER_OF_TWO lấy ngẫu nhiên hai instance và chọn instance có (inFlight + 1) * độ trễ EWMA nhỏ hơn.
+ * Instance bị loại sau eject-after-failures lỗi liên tiếp (request hoặc /health) và chỉ được nhận lại
+ * khi /health trả lời thành công. Nếu mọi instance đều bị loại thì vẫn chia cho tất cả,
+ * để circuit breaker của dịch vụ quyết định việc hoãn công việc.
+ */
+@Slf4j
+public class AIEndpointPool {
+    public enum Strategy {
+        LEAST_OUTSTANDING,
+        POWER_OF_TWO
+    }
+
+    private final String serviceName;
+    @Getter
+    private final List<AIEndpoint> endpoints;
+    private final Strategy strategy;
+    private final int ejectAfterFailures;
+
+    public AIEndpointPool(String serviceName, List<String> urls, Strategy strategy, int ejectAfterFailures) {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("No endpoint configured for " + serviceName);
+        }
+        this.serviceName = serviceName;
+        this.endpoints = urls.stream().map(AIEndpoint::new).toList();
+        this.strategy = strategy;
+        this.ejectAfterFailures = ejectAfterFailures;
+    }
+
+    /**
+     * Tách danh sách URL phân cách bởi dấu phẩy, bỏ khoảng trắng và dấu "/" ở cuối
+     */
+    public static List<String> parseUrls(String urls) {
+        return Arrays.stream(urls.split(","))
+                .map(String::strip)
+                .filter(url -> !url.isEmpty())
+                .map(url -> url.endsWith("/") ? url.substring(0, url.length() - 1) : url)
+                .toList();
+    }
+
+    public AIEndpoint select() {
+        List<AIEndpoint> candidates = endpoints.stream().filter(endpoint -> !endpoint.isEjected()).toList();
+        if (candidates.isEmpty()) {
+            candidates = endpoints;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        if (strategy == Strategy.POWER_OF_TWO) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(candidates.size());
+            int second = random.nextInt(candidates.size() - 1);
+            if (second >= first) {
+                second++;
+            }
+            AIEndpoint a = candidates.get(first);
+            AIEndpoint b = candidates.get(second);
+            return load(a) <= load(b) ? a : b;
+        }
+        AIEndpoint best = null;
+        for (AIEndpoint endpoint : candidates) {
+            if (best == null || endpoint.inFlight() < best.inFlight()
+                    || (endpoint.inFlight() == best.inFlight() && endpoint.ewmaLatencyMs() < best.ewmaLatencyMs())) {
+                best = endpoint;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Chọn instance chưa bị loại khác với exclude (ít request đang chạy nhất) để gửi hedge; null nếu không có
+     */
+    public AIEndpoint selectOther(AIEndpoint exclude) {
+        AIEndpoint best = null;
+        for (AIEndpoint endpoint : endpoints) {
+            if (endpoint != exclude && !endpoint.isEjected() && (best == null || endpoint.inFlight() < best.inFlight())) {
+                best = endpoint;
+            }
+        }
+        return best;
+    }
+
+    public void onRequestStart(AIEndpoint endpoint) {
+        endpoint.begin();
+    }
+
+    public void onRequestEnd(AIEndpoint endpoint, long latencyMs, boolean failed) {
+        int consecutive = endpoint.end(latencyMs, failed);
+        if (failed && consecutive >= ejectAfterFailures && !endpoint.isEjected()) {
+            endpoint.eject();
+            log.warn("{} endpoint {} ejected after {} consecutive failed requests", serviceName, endpoint.getUrl(), consecutive);
+        }
+    }
+
+    public void onRequestCancelled(AIEndpoint endpoint) {
+        endpoint.cancel();
+    }
+
+    public void onHealthCheck(AIEndpoint endpoint, boolean healthy, String error) {
+        int consecutive = endpoint.recordHealthCheck(healthy, error);
+        if (healthy && endpoint.isEjected()) {
+            endpoint.reinstate();
+            log.info("{} endpoint {} is healthy again, reinstated", serviceName, endpoint.getUrl());
+        } else if (!healthy && consecutive >= ejectAfterFailures && !endpoint.isEjected()) {
+            endpoint.eject();
+            log.warn("{} endpoint {} ejected after {} consecutive failures: {}", serviceName, endpoint.getUrl(), consecutive, error);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("service", serviceName);
+        stats.put("strategy", strategy.name());
+        stats.put("ejectAfterFailures", ejectAfterFailures);
+        stats.put("healthyEndpoints", endpoints.stream().filter(endpoint -> !endpoint.isEjected()).count());
+        stats.put("endpoints", endpoints.stream().map(AIEndpoint::getStats).toList());
+        return stats;
+    }
+
+    private static double load(AIEndpoint endpoint) {
+        // Chưa có mẫu độ trễ thì coi như 1ms để instance mới vẫn được thử
+        return (endpoint.inFlight() + 1) * Math.max(1.0, endpoint.ewmaLatencyMs());
+    }
+}
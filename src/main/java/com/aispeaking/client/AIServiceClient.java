@@ -0,0 +1,292 @@
+package com.aispeaking.client;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Client dùng chung cho các dịch vụ AI cục bộ.
+ * Mỗi dịch vụ có một WebClient singleton với connection pool riêng (xem AIClientConfig),
+ * nên kết nối được tái sử dụng giữa các lần gọi thay vì tạo mới mỗi request.
+ * Mọi request đi qua circuit breaker và bộ giới hạn đồng thời thích ứng (AIMD) của dịch vụ đó,
+ * rồi được gửi tới một instance do AIEndpointPool chọn (khi cấu hình nhiều URL),
+ * với thử lại có backoff (RetryPolicy) và request dự phòng khi chậm (HedgingPolicy).
+ * requestSize (byte âm thanh với Whisper, số câu trả lời với Qwen) chọn nhóm độ trễ dùng để quyết định hedge.
+ */
+@Slf4j
+public abstract class AIServiceClient {
+    @Getter
+    private final String serviceName;
+    @Getter
+    private final AIEndpointPool endpointPool;
+    private final WebClient webClient;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final CircuitBreaker circuitBreaker;
+    private final RetryPolicy retryPolicy;
+    private final HedgingPolicy hedgingPolicy;
+
+    protected AIServiceClient(String serviceName, AIEndpointPool endpointPool, WebClient webClient, AdaptiveConcurrencyLimiter limiter,
+                              CircuitBreaker circuitBreaker, RetryPolicy retryPolicy, HedgingPolicy hedgingPolicy) {
+        this.serviceName = serviceName;
+        this.endpointPool = endpointPool;
+        this.webClient = webClient;
+        this.limiter = limiter;
+        this.circuitBreaker = circuitBreaker;
+        this.retryPolicy = retryPolicy;
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    /**
+     * Gửi POST và chặn cho đến khi có phản hồi (timeout do HttpClient của pool đảm nhiệm).
+     * Lỗi tạm thời (lỗi kết nối/timeout, 5xx) được thử lại theo RetryPolicy.
+     * Ném AIBackendUnavailableException ngay nếu breaker đang mở (không thử lại).
+     */
+    protected String post(String uri, MediaType contentType, BodyInserter<?, ? super ClientHttpRequest> body, long requestSize) {
+        int sizeClass = HedgingPolicy.sizeClassOf(requestSize);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return attempt(uri, contentType, body, sizeClass);
+            } catch (AIServiceException e) {
+                if (!retryPolicy.isRetryable(e) || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                if (attempt >= retryPolicy.getMaxAttempts()) {
+                    retryPolicy.onExhausted();
+                    throw e;
+                }
+                long backoffMs = retryPolicy.backoffMs(attempt);
+                retryPolicy.onRetry();
+                log.warn("{} request {} failed ({}), retry {}/{} in {}ms", serviceName, uri, e.getMessage(),
+                        attempt, retryPolicy.getMaxAttempts() - 1, backoffMs);
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Một lần gọi qua breaker và limiter. Nếu bật hedging và request chính chạy quá phân vị độ trễ của nhóm kích thước,
+     * một request dự phòng được gửi tới instance khác; lần gọi chỉ tính là một kết quả cho breaker/limiter.
+     */
+    private String attempt(String uri, MediaType contentType, BodyInserter<?, ? super ClientHttpRequest> body, int sizeClass) {
+        circuitBreaker.acquirePermission();
+        try {
+            limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            circuitBreaker.releasePermission();
+            throw new AIServiceException(serviceName, "Interrupted while waiting for a " + serviceName + " slot", e);
+        }
+        long start = System.currentTimeMillis();
+        boolean overloaded = false;
+        try {
+            String response = execute(uri, contentType, body, sizeClass);
+            circuitBreaker.onSuccess();
+            return response;
+        } catch (AIServiceException e) {
+            // Lỗi 4xx là lỗi của request, không phải dấu hiệu máy chủ quá tải
+            overloaded = e.getStatusCode() == 0 || e.getStatusCode() >= 500;
+            if (overloaded) {
+                if (circuitBreaker.onFailure()) {
+                    // Request làm breaker mở cũng được hoãn như các request bị từ chối sau đó
+                    AIBackendUnavailableException unavailable = new AIBackendUnavailableException(serviceName, circuitBreaker.remainingOpenMs());
+                    unavailable.initCause(e);
+                    throw unavailable;
+                }
+            } else {
+                circuitBreaker.onSuccess();
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            // Lỗi ngoài dự kiến (không phải phản hồi của dịch vụ): trả permit để breaker HALF_OPEN không bị kẹt
+            circuitBreaker.releasePermission();
+            throw e;
+        } finally {
+            limiter.release(System.currentTimeMillis() - start, overloaded);
+        }
+    }
+
+    private String execute(String uri, MediaType contentType, BodyInserter<?, ? super ClientHttpRequest> body, int sizeClass) {
+        AIEndpoint primaryEndpoint = endpointPool.select();
+        long hedgeDelayMs = hedgingPolicy.onRequest(sizeClass);
+        Call primary = send(primaryEndpoint, uri, contentType, body, sizeClass);
+        if (hedgeDelayMs < 0) {
+            return await(primary.future());
+        }
+        try {
+            return primary.future().get(hedgeDelayMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Request chính chậm hơn phân vị độ trễ: thử hedge
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            primary.future().cancel(false);
+            throw new AIServiceException(serviceName, "Interrupted while waiting for " + serviceName, e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+        AIEndpoint hedgeEndpoint = endpointPool.selectOther(primaryEndpoint);
+        if (hedgeEndpoint == null) {
+            return await(primary.future());
+        }
+        // Hedge cũng chiếm một chỗ trong limiter; đã đầy thì không hedge (không chờ, không vượt giới hạn)
+        if (!limiter.tryAcquire()) {
+            hedgingPolicy.onLimiterRejected();
+            return await(primary.future());
+        }
+        if (!hedgingPolicy.tryAcquire()) {
+            limiter.release();
+            return await(primary.future());
+        }
+        log.debug("{} request {} to {} exceeded {}ms, hedging to {}", serviceName, uri, primaryEndpoint.getUrl(), hedgeDelayMs, hedgeEndpoint.getUrl());
+        Call hedge = send(hedgeEndpoint, uri, contentType, body, sizeClass);
+        hedge.future().whenComplete((response, error) -> limiter.release());
+        // Kết quả thành công đầu tiên thắng; chỉ báo lỗi khi cả hai đều lỗi
+        CompletableFuture<String> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(2);
+        AtomicBoolean decided = new AtomicBoolean();
+        for (Call call : List.of(primary, hedge)) {
+            call.future().whenComplete((response, error) -> {
+                if (error == null) {
+                    // Ghi nhận hedge thắng trước khi trả kết quả, để caller đọc thống kê thấy ngay
+                    if (decided.compareAndSet(false, true)) {
+                        if (call == hedge) {
+                            hedgingPolicy.onHedgeWon();
+                        }
+                        winner.complete(response);
+                    }
+                } else if (pending.decrementAndGet() == 0) {
+                    winner.completeExceptionally(error);
+                }
+            });
+        }
+        try {
+            return await(winner);
+        } finally {
+            // Hủy request thua: Reactor Netty đóng kết nối đang chờ phản hồi
+            primary.future().cancel(false);
+            hedge.future().cancel(false);
+        }
+    }
+
+    private record Call(AIEndpoint endpoint, CompletableFuture<String> future) {
+    }
+
+    private Call send(AIEndpoint endpoint, String uri, MediaType contentType, BodyInserter<?, ? super ClientHttpRequest> body, int sizeClass) {
+        endpointPool.onRequestStart(endpoint);
+        long start = System.currentTimeMillis();
+        CompletableFuture<String> future = webClient.post()
+                .uri(endpoint.getUrl() + uri)
+                .contentType(contentType)
+                .body(body)
+                .retrieve()
+                .onStatus(
+                    status -> status.isError(),
+                    clientResponse -> clientResponse.bodyToMono(String.class)
+                        .defaultIfEmpty("")
+                        .map(errorBody -> {
+                            String range = clientResponse.statusCode().is4xxClientError() ? "4xx" : "5xx";
+                            log.error("{} API returned {} error. Status: {}, Body: {}", serviceName, range, clientResponse.statusCode(), errorBody);
+                            return new AIServiceException(serviceName, clientResponse.statusCode().value(), serviceName + " API error (" + range + "): " + errorBody);
+                        })
+                )
+                .bodyToMono(String.class)
+                .onErrorMap(e -> !(e instanceof AIServiceException),
+                        e -> new AIServiceException(serviceName, serviceName + " request failed: " + e.getMessage(), e))
+                .toFuture();
+        future.whenComplete((response, error) -> {
+            long latency = System.currentTimeMillis() - start;
+            if (error instanceof CancellationException) {
+                endpointPool.onRequestCancelled(endpoint);
+                return;
+            }
+            boolean failed = error instanceof AIServiceException e && (e.getStatusCode() == 0 || e.getStatusCode() >= 500);
+            endpointPool.onRequestEnd(endpoint, latency, failed);
+            if (error == null) {
+                hedgingPolicy.recordLatency(sizeClass, latency);
+            }
+        });
+        return new Call(endpoint, future);
+    }
+
+    private String await(CompletableFuture<String> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+            throw new AIServiceException(serviceName, "Interrupted while waiting for " + serviceName, e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private AIServiceException unwrap(ExecutionException e) {
+        if (e.getCause() instanceof AIServiceException serviceException) {
+            return serviceException;
+        }
+        return new AIServiceException(serviceName, serviceName + " request failed: " + e.getCause().getMessage(), e.getCause());
+    }
+
+    /**
+     * Danh sách URL của các instance, phân cách bởi dấu phẩy
+     */
+    public String getBaseUrl() {
+        return endpointPool.getEndpoints().stream().map(AIEndpoint::getUrl).collect(Collectors.joining(","));
+    }
+
+    /**
+     * Gọi GET /health trên mọi instance song song và cập nhật trạng thái loại/nhận lại của từng instance.
+     * Không đi qua breaker và limiter: kiểm tra sức khỏe phải chạy được cả khi dịch vụ đang bị ngắt.
+     */
+    public void checkHealth(Duration timeout) {
+        Flux.fromIterable(endpointPool.getEndpoints())
+                .flatMap(endpoint -> webClient.get()
+                        .uri(endpoint.getUrl() + "/health")
+                        .retrieve()
+                        .toBodilessEntity()
+                        .timeout(timeout)
+                        .then(Mono.fromRunnable(() -> endpointPool.onHealthCheck(endpoint, true, null)))
+                        .onErrorResume(e -> Mono.fromRunnable(() -> endpointPool.onHealthCheck(endpoint, false, e.getMessage()))))
+                .then()
+                .block();
+    }
+
+    public Map<String, Object> getResilienceStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("service", serviceName);
+        stats.put("limiter", limiter.getStats());
+        stats.put("circuitBreaker", circuitBreaker.getStats());
+        stats.put("healthyEndpoints", endpointPool.getStats().get("healthyEndpoints"));
+        stats.put("retry", retryPolicy.getStats());
+        stats.put("hedging", hedgingPolicy.getStats());
+        return stats;
+    }
+
+    /**
+     * Thời gian (ms) cho đến khi breaker cho phép gọi lại dịch vụ, 0 nếu đang đóng
+     */
+    public long remainingOpenMs() {
+        return circuitBreaker.remainingOpenMs();
+    }
+}
@@ -0,0 +1,25 @@
+package com.aispeaking.client;
+
+import lombok.Getter;
+
+/**
+ * Lỗi khi gọi dịch vụ AI (Whisper/Qwen): phản hồi HTTP lỗi hoặc lỗi kết nối/timeout.
+ * statusCode = 0 nghĩa là không nhận được phản hồi HTTP.
+ */
+@Getter
+public class AIServiceException extends RuntimeException {
+    private final String serviceName;
+    private final int statusCode;
+
+    public AIServiceException(String serviceName, int statusCode, String message) {
+        super(message);
+        this.serviceName = serviceName;
+        this.statusCode = statusCode;
+    }
+
+    public AIServiceException(String serviceName, String message, Throwable cause) {
+        super(message, cause);
+        this.serviceName = serviceName;
+        this.statusCode = 0;
+    }
+}
@@ -0,0 +1,126 @@
+package com.aispeaking.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Giới hạn số request đồng thời tới một dịch vụ AI theo thuật toán AIMD:
+ * - request thành công và nhanh hơn ngưỡng latency: tăng giới hạn thêm 1/limit (tăng khoảng 1 sau mỗi "vòng")
+ * - request lỗi/timeout hoặc chậm hơn ngưỡng: nhân giới hạn với backoff-ratio
+ * Request vượt giới hạn phải chờ thay vì dồn thêm tải lên máy chủ đã bão hòa.
+ */
+public class AdaptiveConcurrencyLimiter {
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdMs;
+    private final double backoffRatio;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+    private final AtomicLong increases = new AtomicLong();
+    private final AtomicLong decreases = new AtomicLong();
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private long lastLatencyMs;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long latencyThresholdMs, double backoffRatio) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdMs = latencyThresholdMs;
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Chờ cho đến khi số request đang chạy nhỏ hơn giới hạn hiện tại
+     */
+    public void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            waiting++;
+            try {
+                while (inFlight >= (int) limit) {
+                    permitReleased.await();
+                }
+            } finally {
+                waiting--;
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lấy permit nếu còn chỗ ngay lúc này (không chờ); dùng cho request dự phòng (hedge)
+     */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (inFlight >= (int) limit) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Trả permit lấy bằng tryAcquire mà không điều chỉnh giới hạn (request dự phòng thắng hoặc bị hủy
+     * không phản ánh tải của máy chủ; lần gọi đã được tính qua permit của request chính)
+     */
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Trả permit và điều chỉnh giới hạn theo kết quả của request
+     */
+    public void release(long latencyMs, boolean overloaded) {
+        lock.lock();
+        try {
+            inFlight--;
+            lastLatencyMs = latencyMs;
+            if (overloaded || latencyMs > latencyThresholdMs) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                decreases.incrementAndGet();
+            } else if (limit < maxLimit) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+                increases.incrementAndGet();
+            }
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        lock.lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("limit", (int) limit);
+            stats.put("inFlight", inFlight);
+            stats.put("waiting", waiting);
+            stats.put("minLimit", minLimit);
+            stats.put("maxLimit", maxLimit);
+            stats.put("latencyThresholdMs", latencyThresholdMs);
+            stats.put("lastLatencyMs", lastLatencyMs);
+            stats.put("increases", increases.get());
+            stats.put("decreases", decreases.get());
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.aispeaking.client;
+
+import lombok.extern.slf4j.Slf4j;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Circuit breaker cho một dịch vụ AI.
+ * CLOSED: cho qua mọi request; sau failure-threshold lỗi liên tiếp thì chuyển OPEN.
+ * OPEN: từ chối ngay trong open-duration-ms; hết thời gian thì chuyển HALF_OPEN.
+ * HALF_OPEN: chỉ cho một request thử; thành công → CLOSED, lỗi → OPEN.
+ */
+@Slf4j
+public class CircuitBreaker {
+    private static final int MAX_TRANSITIONS = 20;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openDurationMs;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<Map<String, Object>> transitions = new ArrayDeque<>();
+    private final AtomicLong rejected = new AtomicLong();
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(String name, int failureThreshold, long openDurationMs) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDurationMs;
+    }
+
+    /**
+     * Kiểm tra request có được phép đi qua không; nếu không thì ném AIBackendUnavailableException
+     */
+    public void acquirePermission() {
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                long remaining = openedAt + openDurationMs - System.currentTimeMillis();
+                if (remaining > 0) {
+                    rejected.incrementAndGet();
+                    throw new AIBackendUnavailableException(name, remaining);
+                }
+                transitionTo(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (trialInFlight) {
+                    rejected.incrementAndGet();
+                    throw new AIBackendUnavailableException(name, openDurationMs);
+                }
+                trialInFlight = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Trả lại permit khi request không được gửi đi (không tính là thành công hay lỗi)
+     */
+    public void releasePermission() {
+        lock.lock();
+        try {
+            trialInFlight = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onSuccess() {
+        lock.lock();
+        try {
+            consecutiveFailures = 0;
+            trialInFlight = false;
+            if (state != State.CLOSED) {
+                transitionTo(State.CLOSED);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ghi nhận một lỗi; trả về true nếu breaker đang mở sau lỗi này
+     */
+    public boolean onFailure() {
+        lock.lock();
+        try {
+            consecutiveFailures++;
+            trialInFlight = false;
+            if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+                openedAt = System.currentTimeMillis();
+                transitionTo(State.OPEN);
+            }
+            return state == State.OPEN;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Thời gian (ms) còn lại trước khi breaker cho request thử, 0 nếu đang cho qua
+     */
+    public long remainingOpenMs() {
+        lock.lock();
+        try {
+            return state == State.OPEN ? Math.max(0, openedAt + openDurationMs - System.currentTimeMillis()) : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void transitionTo(State next) {
+        log.warn("Circuit breaker '{}' {} -> {} (consecutive failures: {})", name, state, next, consecutiveFailures);
+        Map<String, Object> transition = new LinkedHashMap<>();
+        transition.put("from", state.name());
+        transition.put("to", next.name());
+        transition.put("at", LocalDateTime.now());
+        transitions.addLast(transition);
+        if (transitions.size() > MAX_TRANSITIONS) {
+            transitions.removeFirst();
+        }
+        state = next;
+    }
+
+    public Map<String, Object> getStats() {
+        lock.lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("state", state.name());
+            stats.put("consecutiveFailures", consecutiveFailures);
+            stats.put("failureThreshold", failureThreshold);
+            stats.put("openDurationMs", openDurationMs);
+            stats.put("rejected", rejected.get());
+            stats.put("recentTransitions", new ArrayList<>(transitions));
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.aispeaking.client;
+
+import org.springframework.stereotype.Component;
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thu thập chỉ số connection pool của Reactor Netty (không cần Micrometer).
+ * Reactor Netty gọi registerMetrics khi tạo pool cho từng địa chỉ máy chủ.
+ */
+@Component
+public class ConnectionPoolMetricsRegistry implements ConnectionProvider.MeterRegistrar {
+    private final Map<String, PoolEntry> pools = new ConcurrentHashMap<>();
+
+    private record PoolEntry(String poolName, SocketAddress remoteAddress, ConnectionPoolMetrics metrics) {
+    }
+
+    @Override
+    public void registerMetrics(String poolName, String id, SocketAddress remoteAddress, ConnectionPoolMetrics metrics) {
+        pools.put(poolName + "|" + id, new PoolEntry(poolName, remoteAddress, metrics));
+    }
+
+    @Override
+    public void deRegisterMetrics(String poolName, String id, SocketAddress remoteAddress) {
+        pools.remove(poolName + "|" + id);
+    }
+
+    /**
+     * Ảnh chụp chỉ số hiện tại của tất cả pool: active (đang dùng), idle, pending (đang chờ kết nối)
+     */
+    public List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (PoolEntry entry : pools.values()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("pool", entry.poolName());
+            stats.put("remoteAddress", String.valueOf(entry.remoteAddress()));
+            stats.put("active", entry.metrics().acquiredSize());
+            stats.put("idle", entry.metrics().idleSize());
+            stats.put("pending", entry.metrics().pendingAcquireSize());
+            stats.put("allocated", entry.metrics().allocatedSize());
+            stats.put("maxConnections", entry.metrics().maxAllocatedSize());
+            stats.put("maxPending", entry.metrics().maxPendingAcquireSize());
+            result.add(stats);
+        }
+        return result;
+    }
+}
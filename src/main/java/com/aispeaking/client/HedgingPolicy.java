@@ -0,0 +1,154 @@
+package com.aispeaking.client;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Gửi request dự phòng (hedge) tới instance khác khi request chính chạy quá phân vị độ trễ đã quan sát (mặc định p95);
+ * kết quả về trước được dùng, request còn lại bị hủy.
+ * Độ trễ được theo dõi riêng cho từng nhóm kích thước request (nhóm c gồm kích thước trong [4^c, 4^(c+1)),
+ * Whisper tính theo byte file âm thanh, Qwen theo số câu trả lời trong request), vì một file 2 phút luôn chậm hơn
+ * p95 chung của cả hệ thống mà không phải do instance chậm. Nhóm chưa đủ MIN_SAMPLES mẫu thì không hedge.
+ * Tải thêm bị giới hạn bởi ngân sách budget-percent: mỗi request chính tích lũy budget-percent/100 token,
+ * mỗi hedge tiêu 1 token (tối đa MAX_BURST token dồn lại), nên số hedge không vượt quá budget-percent% số request.
+ */
+public class HedgingPolicy {
+    private static final int WINDOW_SIZE = 256;
+    private static final int MIN_SAMPLES = 20;
+    private static final int RECOMPUTE_EVERY = 16;
+    private static final int SIZE_CLASSES = 16;
+    // Token tính theo phần nghìn để cộng dồn được tỷ lệ nhỏ bằng AtomicLong
+    private static final long TOKEN = 1000;
+    private static final long MAX_BURST = 10 * TOKEN;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayMs;
+    private final double budgetPercent;
+    private final long tokensPerRequest;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Tạo khi nhóm có mẫu đầu tiên
+    private final AtomicReferenceArray<LatencyWindow> windows = new AtomicReferenceArray<>(SIZE_CLASSES);
+
+    private final AtomicLong tokens = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedgesSent = new AtomicLong();
+    private final AtomicLong hedgesWon = new AtomicLong();
+    private final AtomicLong budgetRejected = new AtomicLong();
+    private final AtomicLong limiterRejected = new AtomicLong();
+
+    private static class LatencyWindow {
+        final long[] samples = new long[WINDOW_SIZE];
+        long sampleCount;
+        volatile long hedgeDelayMs = -1;
+    }
+
+    public HedgingPolicy(boolean enabled, double percentile, long minDelayMs, double budgetPercent) {
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelayMs = minDelayMs;
+        this.budgetPercent = budgetPercent;
+        this.tokensPerRequest = Math.round(budgetPercent / 100 * TOKEN);
+    }
+
+    /**
+     * Nhóm kích thước của một request: floor(log4(size)), tối đa SIZE_CLASSES - 1
+     */
+    static int sizeClassOf(long size) {
+        if (size <= 1) {
+            return 0;
+        }
+        return Math.min(SIZE_CLASSES - 1, (63 - Long.numberOfLeadingZeros(size)) / 2);
+    }
+
+    /**
+     * Ghi nhận một request chính; trả về thời gian chờ trước khi hedge, -1 nếu không hedge
+     * (đang tắt hoặc nhóm kích thước chưa đủ mẫu độ trễ)
+     */
+    long onRequest(int sizeClass) {
+        requests.incrementAndGet();
+        tokens.accumulateAndGet(tokensPerRequest, (current, add) -> Math.min(MAX_BURST, current + add));
+        LatencyWindow window = windows.get(sizeClass);
+        return enabled && window != null ? window.hedgeDelayMs : -1;
+    }
+
+    /**
+     * Lấy một token cho hedge; false nếu đã hết ngân sách
+     */
+    boolean tryAcquire() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < TOKEN) {
+                budgetRejected.incrementAndGet();
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - TOKEN));
+        hedgesSent.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Không hedge vì bộ giới hạn đồng thời của dịch vụ đã đầy
+     */
+    void onLimiterRejected() {
+        limiterRejected.incrementAndGet();
+    }
+
+    void onHedgeWon() {
+        hedgesWon.incrementAndGet();
+    }
+
+    /**
+     * Ghi nhận độ trễ của một request thành công; phân vị của nhóm được tính lại sau mỗi RECOMPUTE_EVERY mẫu
+     */
+    void recordLatency(int sizeClass, long latencyMs) {
+        lock.lock();
+        try {
+            LatencyWindow window = windows.get(sizeClass);
+            if (window == null) {
+                window = new LatencyWindow();
+                windows.set(sizeClass, window);
+            }
+            window.samples[(int) (window.sampleCount % WINDOW_SIZE)] = latencyMs;
+            window.sampleCount++;
+            if (window.sampleCount >= MIN_SAMPLES && (window.hedgeDelayMs < 0 || window.sampleCount % RECOMPUTE_EVERY == 0)) {
+                long[] sorted = Arrays.copyOf(window.samples, (int) Math.min(window.sampleCount, WINDOW_SIZE));
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(percentile * sorted.length) - 1;
+                window.hedgeDelayMs = Math.max(minDelayMs, sorted[Math.max(0, index)]);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long requestCount = requests.get();
+        // Khóa: kích thước nhỏ nhất của nhóm (4^c)
+        Map<String, Object> delays = new LinkedHashMap<>();
+        for (int c = 0; c < SIZE_CLASSES; c++) {
+            LatencyWindow window = windows.get(c);
+            if (window != null) {
+                delays.put(String.valueOf(1L << (2 * c)), window.hedgeDelayMs);
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("percentile", percentile);
+        stats.put("hedgeDelayMsBySize", delays);
+        stats.put("budgetPercent", budgetPercent);
+        stats.put("requests", requestCount);
+        stats.put("hedgesSent", hedgesSent.get());
+        stats.put("hedgesWon", hedgesWon.get());
+        stats.put("budgetRejected", budgetRejected.get());
+        stats.put("limiterRejected", limiterRejected.get());
+        stats.put("hedgeRatio", requestCount == 0 ? 0.0 : Math.round(hedgesSent.get() * 10000.0 / requestCount) / 10000.0);
+        return stats;
+    }
+}
@@ -0,0 +1,32 @@
+package com.aispeaking.client;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client cho Qwen server (chấm điểm câu trả lời)
+ */
+public class QwenClient extends AIServiceClient {
+    public QwenClient(AIEndpointPool endpointPool, WebClient webClient, AdaptiveConcurrencyLimiter limiter, CircuitBreaker circuitBreaker,
+                      RetryPolicy retryPolicy, HedgingPolicy hedgingPolicy) {
+        super("Qwen", endpointPool, webClient, limiter, circuitBreaker, retryPolicy, hedgingPolicy);
+    }
+
+    /**
+     * Gửi yêu cầu chấm điểm tới /score, trả về JSON thô của Qwen
+     */
+    public String score(Map<String, Object> request) {
+        return post("/score", MediaType.APPLICATION_JSON, BodyInserters.fromValue(request), 1);
+    }
+
+    /**
+     * Chấm điểm nhiều câu trả lời trong một request tới /score-batch.
+     * Trả về JSON thô dạng {"results": [...]} theo đúng thứ tự items
+     */
+    public String scoreBatch(List<Map<String, Object>> items) {
+        return post("/score-batch", MediaType.APPLICATION_JSON, BodyInserters.fromValue(Map.of("items", items)), items.size());
+    }
+}
@@ -0,0 +1,263 @@
+package com.aispeaking.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Gom các yêu cầu chấm điểm thành lô nhỏ trước khi gửi tới Qwen.
+ * Một lô được gửi khi đủ ai.qwen.batch.max-size yêu cầu hoặc sau ai.qwen.batch.linger-ms
+ * kể từ yêu cầu đầu tiên. Qwen sinh cả lô trong một lần generate nên throughput cao hơn nhiều.
+ * Nếu gọi /score-batch thất bại, từng yêu cầu trong lô được gửi lại qua /score.
+ * Bộ gom chỉ cắt lô mới khi có chỗ gửi (tối đa max-in-flight lô đang gửi): khi Qwen chậm, yêu cầu dồn lại
+ * trong hàng đợi chờ và lô kế tiếp đầy hơn, thay vì các lô đã cắt xếp hàng vô hạn sau executor.
+ * Lưu ý: để lô đầy, số worker chấm điểm (ai.qwen.concurrency) nên >= max-size.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class QwenScoringBatcher {
+    private final QwenClient qwenClient;
+    private final ObjectMapper objectMapper;
+
+    @Value("${ai.qwen.batch.enabled}")
+    private boolean enabled;
+
+    @Value("${ai.qwen.batch.max-size}")
+    private int maxBatchSize;
+
+    @Value("${ai.qwen.batch.linger-ms}")
+    private long lingerMs;
+
+    @Value("${ai.qwen.batch.max-in-flight}")
+    private int maxInFlight;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private final BlockingQueue<PendingScore> pending = new LinkedBlockingQueue<>();
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong itemsScored = new AtomicLong();
+    private final AtomicLong batchFallbacks = new AtomicLong();
+    private final AtomicLong totalBatchMs = new AtomicLong();
+    // batchSizeCounts[i] = số lô có kích thước i + 1
+    private AtomicLongArray batchSizeCounts;
+    private Semaphore senderSlots;
+    private ExecutorService senders;
+    // Chỉ dùng khi tắt gom lô: chạy lời gọi trực tiếp trên luồng riêng để áp timeoutMs
+    private ExecutorService directCalls;
+    private Thread collector;
+    private volatile boolean running;
+
+    private record PendingScore(Map<String, Object> request, CompletableFuture<String> result) {
+    }
+
+    @PostConstruct
+    void start() {
+        batchSizeCounts = new AtomicLongArray(Math.max(1, maxBatchSize));
+        if (!enabled) {
+            ThreadFactory directFactory = virtualThreads
+                    ? Thread.ofVirtual().name("qwen-direct-", 1).factory()
+                    : Thread.ofPlatform().name("qwen-direct-", 1).daemon(true).factory();
+            directCalls = Executors.newThreadPerTaskExecutor(directFactory);
+            return;
+        }
+        running = true;
+        // Số lô gửi đồng thời giới hạn bởi senderSlots (max-in-flight); sender là virtual thread khi bật chế độ virtual thread
+        ThreadFactory senderFactory = virtualThreads
+                ? Thread.ofVirtual().name("qwen-batch-sender-", 1).factory()
+                : Thread.ofPlatform().name("qwen-batch-sender-", 1).daemon(true).factory();
+        senderSlots = new Semaphore(maxInFlight);
+        senders = Executors.newFixedThreadPool(maxInFlight, senderFactory);
+        collector = new Thread(this::collectBatches, "qwen-batch-collector");
+        collector.setDaemon(true);
+        collector.start();
+        log.info("Qwen micro-batching enabled: max-size={}, linger={}ms, max-in-flight={}", maxBatchSize, lingerMs, maxInFlight);
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (collector != null) {
+            collector.interrupt();
+        }
+        if (senders != null) {
+            senders.shutdownNow();
+        }
+        if (directCalls != null) {
+            directCalls.shutdownNow();
+        }
+    }
+
+    /**
+     * Chấm điểm một câu trả lời, chặn cho đến khi lô chứa nó có kết quả.
+     * Trả về JSON thô của một kết quả (cùng định dạng với /score)
+     */
+    public String score(Map<String, Object> request) {
+        try {
+            return score(request, 0);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Như {@link #score(Map)} nhưng chỉ chờ tối đa timeoutMs (0 = không giới hạn).
+     * Quá hạn thì ném TimeoutException; yêu cầu vẫn có thể được gửi đi nhưng kết quả bị bỏ.
+     * Khi tắt gom lô, lời gọi trực tiếp chạy trên luồng riêng và bị ngắt (interrupt) khi quá hạn,
+     * nên request HTTP đang chờ cũng bị hủy
+     */
+    public String score(Map<String, Object> request, long timeoutMs) throws TimeoutException {
+        if (!enabled) {
+            if (timeoutMs <= 0) {
+                return qwenClient.score(request);
+            }
+            return await(directCalls.submit(() -> qwenClient.score(request)), timeoutMs);
+        }
+        PendingScore item = new PendingScore(request, new CompletableFuture<>());
+        pending.add(item);
+        return await(item.result(), timeoutMs);
+    }
+
+    private String await(Future<String> result, long timeoutMs) throws TimeoutException {
+        try {
+            return timeoutMs > 0 ? result.get(timeoutMs, TimeUnit.MILLISECONDS) : result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(true);
+            throw new RuntimeException("Interrupted while waiting for Qwen score", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            throw e;
+        }
+    }
+
+    private void collectBatches() {
+        while (running) {
+            try {
+                PendingScore first = pending.take();
+                // Chờ có chỗ gửi trước khi cắt lô; trong lúc chờ, yêu cầu mới tích lại trong pending
+                senderSlots.acquire();
+                List<PendingScore> batch = new ArrayList<>(maxBatchSize);
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingScore next = remaining > 0 ? pending.poll(remaining, TimeUnit.NANOSECONDS) : pending.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                senders.execute(() -> {
+                    try {
+                        sendBatch(batch);
+                    } finally {
+                        senderSlots.release();
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void sendBatch(List<PendingScore> batch) {
+        // Bỏ các yêu cầu người gọi đã hủy vì quá ngân sách độ trễ trong lúc lô chờ gửi
+        batch.removeIf(item -> item.result().isCancelled());
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        batchesSent.incrementAndGet();
+        itemsScored.addAndGet(batch.size());
+        batchSizeCounts.incrementAndGet(batch.size() - 1);
+        try {
+            if (batch.size() == 1) {
+                PendingScore only = batch.get(0);
+                only.result().complete(qwenClient.score(only.request()));
+            } else {
+                JsonNode results = objectMapper.readTree(qwenClient.scoreBatch(batch.stream().map(PendingScore::request).toList())).get("results");
+                if (results == null || !results.isArray() || results.size() != batch.size()) {
+                    throw new IllegalStateException("Qwen batch response does not match batch size " + batch.size());
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    JsonNode result = results.get(i);
+                    if (result.has("score") && !result.has("error")) {
+                        batch.get(i).result().complete(result.toString());
+                    } else {
+                        // Riêng phần tử lỗi thì gọi lại từng cái
+                        scoreIndividually(batch.get(i));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Qwen batch of {} failed, falling back to per-item scoring: {}", batch.size(), e.getMessage());
+            batchFallbacks.incrementAndGet();
+            batch.stream().filter(item -> !item.result().isDone()).forEach(this::scoreIndividually);
+        } finally {
+            totalBatchMs.addAndGet(System.currentTimeMillis() - start);
+        }
+    }
+
+    private void scoreIndividually(PendingScore item) {
+        try {
+            item.result().complete(qwenClient.score(item.request()));
+        } catch (Exception e) {
+            item.result().completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Chỉ số micro-batching: số lô, phân bố kích thước lô, số lần phải gọi lại từng phần tử
+     */
+    public Map<String, Object> getStats() {
+        long batches = batchesSent.get();
+        Map<String, Object> distribution = new LinkedHashMap<>();
+        for (int i = 0; i < batchSizeCounts.length(); i++) {
+            distribution.put(String.valueOf(i + 1), batchSizeCounts.get(i));
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("maxBatchSize", maxBatchSize);
+        stats.put("lingerMs", lingerMs);
+        stats.put("maxInFlight", maxInFlight);
+        stats.put("queued", pending.size());
+        stats.put("sendingBatches", senderSlots == null ? 0 : maxInFlight - senderSlots.availablePermits());
+        stats.put("batchesSent", batches);
+        stats.put("itemsScored", itemsScored.get());
+        stats.put("avgBatchSize", batches == 0 ? 0 : (double) itemsScored.get() / batches);
+        stats.put("avgBatchMs", batches == 0 ? 0 : totalBatchMs.get() / batches);
+        stats.put("batchFallbacks", batchFallbacks.get());
+        stats.put("batchSizeDistribution", distribution);
+        return stats;
+    }
+}
@@ -0,0 +1,60 @@
+package com.aispeaking.client;
+
+import lombok.Getter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thử lại request AI bị lỗi tạm thời (lỗi kết nối/timeout hoặc 5xx) với backoff lũy thừa có jitter đầy đủ:
+ * lần thử lại thứ n chờ ngẫu nhiên trong [0, min(max-backoff-ms, initial-backoff-ms * 2^(n-1))].
+ * Jitter tránh việc nhiều worker cùng gửi lại đồng loạt vào máy chủ vừa hồi phục.
+ */
+public class RetryPolicy {
+    @Getter
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+
+    public RetryPolicy(int maxAttempts, long initialBackoffMs, long maxBackoffMs) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    /**
+     * Chỉ lỗi không nhận được phản hồi hoặc lỗi phía máy chủ mới được thử lại; 4xx là lỗi của request
+     */
+    public boolean isRetryable(AIServiceException e) {
+        return e.getStatusCode() == 0 || e.getStatusCode() >= 500;
+    }
+
+    /**
+     * Thời gian chờ trước lần thử lại thứ retry (bắt đầu từ 1)
+     */
+    public long backoffMs(int retry) {
+        long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(retry - 1, 20));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    void onRetry() {
+        retries.incrementAndGet();
+    }
+
+    void onExhausted() {
+        exhausted.incrementAndGet();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxAttempts", maxAttempts);
+        stats.put("initialBackoffMs", initialBackoffMs);
+        stats.put("maxBackoffMs", maxBackoffMs);
+        stats.put("retries", retries.get());
+        stats.put("exhausted", exhausted.get());
+        return stats;
+    }
+}
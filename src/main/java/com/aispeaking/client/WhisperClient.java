@@ -0,0 +1,29 @@
+package com.aispeaking.client;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import java.io.File;
+
+/**
+ * Client cho Whisper server (chuyển giọng nói thành văn bản)
+ */
+public class WhisperClient extends AIServiceClient {
+    public WhisperClient(AIEndpointPool endpointPool, WebClient webClient, AdaptiveConcurrencyLimiter limiter, CircuitBreaker circuitBreaker,
+                         RetryPolicy retryPolicy, HedgingPolicy hedgingPolicy) {
+        super("Whisper", endpointPool, webClient, limiter, circuitBreaker, retryPolicy, hedgingPolicy);
+    }
+
+    /**
+     * Gửi file dạng multipart/form-data (part "audio"), đọc trực tiếp từ đĩa theo từng khối:
+     * không nạp cả file lên heap và không phải mã hóa base64 (+33% dung lượng).
+     * Trả về JSON thô của Whisper.
+     */
+    public String transcribe(File audioFile) {
+        MultipartBodyBuilder multipart = new MultipartBodyBuilder();
+        multipart.part("audio", new FileSystemResource(audioFile)).filename(audioFile.getName());
+        return post("/transcribe", MediaType.MULTIPART_FORM_DATA, BodyInserters.fromMultipartData(multipart.build()), audioFile.length());
+    }
+}
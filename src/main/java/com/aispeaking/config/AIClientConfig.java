@@ -0,0 +1,134 @@
+package com.aispeaking.config;
+
+import com.aispeaking.client.AIEndpointPool;
+import com.aispeaking.client.AdaptiveConcurrencyLimiter;
+import com.aispeaking.client.CircuitBreaker;
+import com.aispeaking.client.ConnectionPoolMetricsRegistry;
+import com.aispeaking.client.HedgingPolicy;
+import com.aispeaking.client.QwenClient;
+import com.aispeaking.client.RetryPolicy;
+import com.aispeaking.client.WhisperClient;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cấu hình client cho Whisper và Qwen.
+ * Mỗi dịch vụ có một ConnectionProvider riêng (đặt tên "whisper"/"qwen") để giới hạn số kết nối,
+ * hàng đợi chờ kết nối, thời gian idle/evict và timeout kết nối/đọc/phản hồi độc lập,
+ * cùng bộ giới hạn đồng thời AIMD (ai.*.limiter.*) và circuit breaker (ai.*.breaker.*) riêng.
+ * ai.*.url có thể chứa nhiều URL; request được chia giữa các instance theo ai.*.load-balancer.
+ * Lỗi tạm thời được thử lại theo ai.*.retry.*, request chậm được hedge tới instance khác theo ai.*.hedge.*.
+ * Các thuộc tính được đọc theo tiền tố ai.whisper.* và ai.qwen.*
+ */
+@Configuration
+@RequiredArgsConstructor
+public class AIClientConfig {
+    private final Environment env;
+    private final ConnectionPoolMetricsRegistry poolMetricsRegistry;
+
+    @Bean(destroyMethod = "dispose")
+    ConnectionProvider whisperConnectionProvider() {
+        return connectionProvider("whisper");
+    }
+
+    @Bean(destroyMethod = "dispose")
+    ConnectionProvider qwenConnectionProvider() {
+        return connectionProvider("qwen");
+    }
+
+    @Bean
+    WhisperClient whisperClient(WebClient.Builder webClientBuilder, ConnectionProvider whisperConnectionProvider) {
+        return new WhisperClient(endpointPool("whisper", "Whisper"), webClient("whisper", webClientBuilder, whisperConnectionProvider),
+                concurrencyLimiter("whisper"), circuitBreaker("whisper", "Whisper"), retryPolicy("whisper"), hedgingPolicy("whisper"));
+    }
+
+    @Bean
+    QwenClient qwenClient(WebClient.Builder webClientBuilder, ConnectionProvider qwenConnectionProvider) {
+        return new QwenClient(endpointPool("qwen", "Qwen"), webClient("qwen", webClientBuilder, qwenConnectionProvider),
+                concurrencyLimiter("qwen"), circuitBreaker("qwen", "Qwen"), retryPolicy("qwen"), hedgingPolicy("qwen"));
+    }
+
+    private AIEndpointPool endpointPool(String name, String serviceName) {
+        String prefix = "ai." + name + ".";
+        return new AIEndpointPool(serviceName,
+                AIEndpointPool.parseUrls(env.getRequiredProperty(prefix + "url")),
+                env.getProperty(prefix + "load-balancer", AIEndpointPool.Strategy.class, AIEndpointPool.Strategy.LEAST_OUTSTANDING),
+                env.getProperty(prefix + "eject-after-failures", Integer.class, 3));
+    }
+
+    private ConnectionProvider connectionProvider(String name) {
+        String prefix = "ai." + name + ".pool.";
+        return ConnectionProvider.builder(name)
+                .maxConnections(env.getProperty(prefix + "max-connections", Integer.class, 8))
+                .pendingAcquireMaxCount(env.getProperty(prefix + "pending-acquire-max-count", Integer.class, 100))
+                .pendingAcquireTimeout(Duration.ofMillis(env.getProperty(prefix + "pending-acquire-timeout-ms", Long.class, 60000L)))
+                .maxIdleTime(Duration.ofMillis(env.getProperty(prefix + "max-idle-time-ms", Long.class, 30000L)))
+                .maxLifeTime(Duration.ofMillis(env.getProperty(prefix + "max-life-time-ms", Long.class, 600000L)))
+                .evictInBackground(Duration.ofMillis(env.getProperty(prefix + "evict-interval-ms", Long.class, 60000L)))
+                .metrics(true, () -> poolMetricsRegistry)
+                .build();
+    }
+
+    private AdaptiveConcurrencyLimiter concurrencyLimiter(String name) {
+        String prefix = "ai." + name + ".limiter.";
+        return new AdaptiveConcurrencyLimiter(
+                env.getProperty(prefix + "initial-limit", Integer.class, 4),
+                env.getProperty(prefix + "min-limit", Integer.class, 1),
+                env.getProperty(prefix + "max-limit", Integer.class, 16),
+                env.getProperty(prefix + "latency-threshold-ms", Long.class, 30000L),
+                env.getProperty(prefix + "backoff-ratio", Double.class, 0.7));
+    }
+
+    private CircuitBreaker circuitBreaker(String name, String serviceName) {
+        String prefix = "ai." + name + ".breaker.";
+        return new CircuitBreaker(serviceName,
+                env.getProperty(prefix + "failure-threshold", Integer.class, 5),
+                env.getProperty(prefix + "open-duration-ms", Long.class, 30000L));
+    }
+
+    private RetryPolicy retryPolicy(String name) {
+        String prefix = "ai." + name + ".retry.";
+        return new RetryPolicy(
+                env.getProperty(prefix + "max-attempts", Integer.class, 3),
+                env.getProperty(prefix + "initial-backoff-ms", Long.class, 200L),
+                env.getProperty(prefix + "max-backoff-ms", Long.class, 2000L));
+    }
+
+    private HedgingPolicy hedgingPolicy(String name) {
+        String prefix = "ai." + name + ".hedge.";
+        return new HedgingPolicy(
+                env.getProperty(prefix + "enabled", Boolean.class, true),
+                env.getProperty(prefix + "percentile", Double.class, 0.95),
+                env.getProperty(prefix + "min-delay-ms", Long.class, 1000L),
+                env.getProperty(prefix + "budget-percent", Double.class, 5.0));
+    }
+
+    private WebClient webClient(String name, WebClient.Builder webClientBuilder, ConnectionProvider provider) {
+        String prefix = "ai." + name + ".";
+        int connectTimeoutMs = env.getProperty(prefix + "connect-timeout-ms", Integer.class, 5000);
+        long readTimeoutMs = env.getProperty(prefix + "read-timeout-ms", Long.class, 120000L);
+        long responseTimeoutMs = env.getProperty(prefix + "response-timeout-ms", Long.class, 120000L);
+        boolean keepAlive = env.getProperty(prefix + "keep-alive", Boolean.class, true);
+        HttpClient httpClient = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .option(ChannelOption.SO_KEEPALIVE, keepAlive)
+                .keepAlive(keepAlive)
+                .responseTimeout(Duration.ofMillis(responseTimeoutMs))
+                .doOnConnected(connection -> connection.addHandlerLast(new ReadTimeoutHandler(readTimeoutMs, TimeUnit.MILLISECONDS)));
+        // clone(): WebClient.Builder là bean dùng chung, không được sửa trực tiếp.
+        // Không đặt baseUrl: mỗi request dùng URL tuyệt đối của instance được chọn
+        return webClientBuilder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
@@ -1,35 +1,15 @@
 package com.aispeaking.config;
 
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.scheduling.annotation.EnableAsync;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.reactive.function.client.WebClient;
-import java.util.concurrent.Executor;
 
 @Configuration
-@EnableAsync
+@EnableScheduling
 public class AppConfig {
-    @Value("${ai.whisper.url}")
-    private String whisperUrl;
-
-    @Value("${ai.qwen.url}")
-    private String qwenUrl;
-
     @Bean
     WebClient.Builder webClientBuilder() {
         return WebClient.builder();
     }
-
-    @Bean(name = "taskExecutor")
-    Executor taskExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(5);
-        executor.setMaxPoolSize(10);
-        executor.setQueueCapacity(100);
-        executor.setThreadNamePrefix("ai-async-");
-        executor.initialize();
-        return executor;
-    }
 }
\ No newline at end of file
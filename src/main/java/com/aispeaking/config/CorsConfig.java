@@ -20,6 +20,8 @@ public class CorsConfig {
                         .allowedOrigins(allowedOrigins)
                         .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                         .allowedHeaders("*")
+                        // Frontend đọc Retry-After khi bài nộp bị từ chối (429/503)
+                        .exposedHeaders("Retry-After")
                         .allowCredentials(true)
                         .maxAge(3600);
             }
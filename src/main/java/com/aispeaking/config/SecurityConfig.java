@@ -62,8 +62,10 @@ public class SecurityConfig {
                 .requestMatchers(HttpMethod.POST, "/test-sessions").permitAll() // Sinh viên bắt đầu kiểm tra
                 .requestMatchers(HttpMethod.GET, "/test-sessions/{id}").permitAll() // Sinh viên xem phiên của họ
                 .requestMatchers(HttpMethod.GET, "/test-sessions/{id}/answers").permitAll() // Sinh viên xem câu trả lời của họ
+                .requestMatchers(HttpMethod.GET, "/test-sessions/{id}/events").permitAll() // Sinh viên nhận trạng thái chấm điểm (SSE)
                 .requestMatchers(HttpMethod.POST, "/test-sessions/{id}/submit-answer").permitAll() // Sinh viên nộp câu trả lời
                 .requestMatchers(HttpMethod.POST, "/test-sessions/{id}/complete").permitAll() // Sinh viên hoàn thành kiểm tra
+                .requestMatchers(HttpMethod.GET, "/ws/test-sessions/{id}/questions/{questionId}/live").permitAll() // Sinh viên ghi âm trực tiếp (WebSocket)
                 // ============================================
                 // Quản lý Hệ thống - chỉ ADMIN
                 // ============================================
@@ -0,0 +1,64 @@
+package com.aispeaking.config;
+
+import com.aispeaking.controller.LiveAnswerEndpoint;
+import jakarta.servlet.ServletContext;
+import jakarta.websocket.DeploymentException;
+import jakarta.websocket.server.ServerContainer;
+import jakarta.websocket.server.ServerEndpointConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.ServletContextAware;
+import java.util.Arrays;
+
+/**
+ * Đăng ký endpoint WebSocket ghi âm trực tiếp với container Jakarta WebSocket của Tomcat nhúng
+ * (tomcat-embed-websocket đã có sẵn qua spring-boot-starter-web). Endpoint là bean Spring dùng chung
+ * cho mọi kết nối; chỉ nhận kết nối từ các origin trong cors.allowed.origins (hoặc không có Origin: client không phải trình duyệt).
+ */
+@Configuration
+@RequiredArgsConstructor
+@Slf4j
+public class WebSocketConfig implements ServletContextAware, SmartInitializingSingleton {
+    private final LiveAnswerEndpoint liveAnswerEndpoint;
+
+    @Value("${cors.allowed.origins}")
+    private String[] allowedOrigins;
+
+    private ServletContext servletContext;
+
+    @Override
+    public void setServletContext(ServletContext servletContext) {
+        this.servletContext = servletContext;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        ServerContainer container = servletContext == null ? null
+                : (ServerContainer) servletContext.getAttribute(ServerContainer.class.getName());
+        if (container == null) {
+            log.warn("No WebSocket container available, live answer streaming is disabled");
+            return;
+        }
+        ServerEndpointConfig endpointConfig = ServerEndpointConfig.Builder.create(LiveAnswerEndpoint.class, LiveAnswerEndpoint.PATH)
+                .configurator(new ServerEndpointConfig.Configurator() {
+                    @Override
+                    public <T> T getEndpointInstance(Class<T> endpointClass) {
+                        return endpointClass.cast(liveAnswerEndpoint);
+                    }
+
+                    @Override
+                    public boolean checkOrigin(String originHeaderValue) {
+                        return originHeaderValue == null || Arrays.asList(allowedOrigins).contains(originHeaderValue);
+                    }
+                })
+                .build();
+        try {
+            container.addEndpoint(endpointConfig);
+        } catch (DeploymentException e) {
+            throw new RuntimeException("Could not register WebSocket endpoint " + LiveAnswerEndpoint.PATH, e);
+        }
+    }
+}
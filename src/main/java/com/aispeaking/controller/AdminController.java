@@ -1,19 +1,42 @@
 package com.aispeaking.controller;
 
+import com.aispeaking.client.AIEndpointHealthChecker;
+import com.aispeaking.client.ConnectionPoolMetricsRegistry;
+import com.aispeaking.client.QwenClient;
+import com.aispeaking.client.QwenScoringBatcher;
+import com.aispeaking.client.WhisperClient;
+import com.aispeaking.dto.ReprocessRequest;
+import com.aispeaking.dto.TestAnswerResponse;
 import com.aispeaking.dto.TestSessionResponse;
 import com.aispeaking.entity.TestSession;
 import com.aispeaking.entity.enums.ExamStatus;
+import com.aispeaking.entity.enums.ReprocessingRunStatus;
 import com.aispeaking.entity.enums.TestSessionStatus;
 import com.aispeaking.repository.ExamRepository;
 import com.aispeaking.repository.TestSessionRepository;
+import com.aispeaking.service.AIProcessingLogWriter;
+import com.aispeaking.service.AIProcessingService;
+import com.aispeaking.service.AnswerEventBroadcaster;
+import com.aispeaking.service.AnswerJobService;
+import com.aispeaking.service.ReprocessingService;
+import com.aispeaking.service.SampleAnswerSnapshotService;
+import com.aispeaking.service.LiveTranscriptionService;
+import com.aispeaking.service.AudioNormalizationService;
+import com.aispeaking.service.VoiceActivityGate;
+import com.aispeaking.service.SubmissionAdmissionService;
+import com.aispeaking.service.TestSessionSnapshotService;
+import com.aispeaking.service.ScoringCacheService;
+import com.aispeaking.service.TranscriptionCacheService;
 import com.aispeaking.service.ExamService;
 import com.aispeaking.service.QuestionService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -25,6 +48,24 @@ public class AdminController {
     private final ExamService examService;
     private final TestSessionRepository testSessionRepository;
     private final ExamRepository examRepository;
+    private final WhisperClient whisperClient;
+    private final QwenClient qwenClient;
+    private final ConnectionPoolMetricsRegistry connectionPoolMetricsRegistry;
+    private final AIProcessingService aiProcessingService;
+    private final QwenScoringBatcher qwenScoringBatcher;
+    private final TranscriptionCacheService transcriptionCacheService;
+    private final ScoringCacheService scoringCacheService;
+    private final SampleAnswerSnapshotService sampleAnswerSnapshotService;
+    private final AIProcessingLogWriter aiProcessingLogWriter;
+    private final ReprocessingService reprocessingService;
+    private final AIEndpointHealthChecker aiEndpointHealthChecker;
+    private final AnswerJobService answerJobService;
+    private final SubmissionAdmissionService submissionAdmissionService;
+    private final AnswerEventBroadcaster answerEventBroadcaster;
+    private final TestSessionSnapshotService testSessionSnapshotService;
+    private final LiveTranscriptionService liveTranscriptionService;
+    private final AudioNormalizationService audioNormalizationService;
+    private final VoiceActivityGate voiceActivityGate;
 
     /**
      * Xóa hàng loạt câu hỏi
@@ -152,6 +193,7 @@ public class AdminController {
     public ResponseEntity<Void> cancelTestSession(@PathVariable Long id) {
         TestSession session = testSessionRepository.findById(id).orElseThrow(() -> new RuntimeException("Test session not found"));
         session.setStatus(TestSessionStatus.CANCELLED);
+        testSessionSnapshotService.bumpVersion(session);
         testSessionRepository.save(session);
         return ResponseEntity.ok().build();
     }
@@ -166,6 +208,7 @@ public class AdminController {
     public ResponseEntity<Void> deleteTestSession(@PathVariable Long id) {
         TestSession session = testSessionRepository.findById(id).orElseThrow(() -> new RuntimeException("Test session not found"));
         testSessionRepository.delete(session);
+        testSessionSnapshotService.invalidateAfterCommit(id);
         return ResponseEntity.noContent().build();
     }
 
@@ -205,7 +248,7 @@ public class AdminController {
      * {
      *   "maxFileSize": "50MB",
      *   "allowedAudioFormats": ["wav", "mp3", "m4a"],
-     *   "aiWhisperUrl": "http://localhost:5000",
+     *   "aiWhisperUrl": "http://localhost:5000,http://localhost:5002",
      *   "aiQwenUrl": "http://localhost:5001"
      * }
      */
@@ -214,8 +257,564 @@ public class AdminController {
         Map<String, Object> config = new HashMap<>();
         config.put("maxFileSize", "50MB");
         config.put("allowedAudioFormats", new String[]{"wav", "mp3", "m4a"});
-        config.put("aiWhisperUrl", "http://localhost:5000");
-        config.put("aiQwenUrl", "http://localhost:5001");
+        config.put("aiWhisperUrl", whisperClient.getBaseUrl());
+        config.put("aiQwenUrl", qwenClient.getBaseUrl());
         return ResponseEntity.ok(config);
     }
-}
\ No newline at end of file
+
+    /**
+     * Xem trạng thái connection pool tới Whisper/Qwen
+     * GET /admin/ai/connection-pools
+     * 
+     * Response JSON:
+     * [
+     *   {
+     *     "pool": "whisper",
+     *     "remoteAddress": "localhost/127.0.0.1:5000",
+     *     "active": 3,
+     *     "idle": 2,
+     *     "pending": 0,
+     *     "allocated": 5,
+     *     "maxConnections": 8,
+     *     "maxPending": 100
+     *   }
+     * ]
+     */
+    @GetMapping("/ai/connection-pools")
+    public ResponseEntity<List<Map<String, Object>>> getConnectionPools() {
+        return ResponseEntity.ok(connectionPoolMetricsRegistry.snapshot());
+    }
+
+    /**
+     * Xem trạng thái pipeline xử lý AI (từng công đoạn)
+     * GET /admin/ai/pipeline
+     * 
+     * Response JSON:
+     * [
+     *   {
+     *     "stage": "whisper",
+     *     "concurrency": 2,
+     *     "busyWorkers": 2,
+     *     "queueDepth": 5,
+     *     "queueCapacity": 20,
+     *     "processed": 120,
+     *     "failed": 0,
+     *     "avgProcessingMs": 3400,
+     *     "throughputPerMinute": 35
+     *   },
+     *   { "stage": "qwen", ... }
+     * ]
+     */
+    @GetMapping("/ai/pipeline")
+    public ResponseEntity<List<Map<String, Object>>> getPipelineStats() {
+        return ResponseEntity.ok(aiProcessingService.getPipelineStats());
+    }
+
+    /**
+     * Xem thống kê gom lô chấm điểm Qwen
+     * GET /admin/ai/qwen-batching
+     * 
+     * Response JSON:
+     * {
+     *   "enabled": true,
+     *   "maxBatchSize": 4,
+     *   "lingerMs": 20,
+     *   "maxInFlight": 2,
+     *   "queued": 0,
+     *   "batchesSent": 30,
+     *   "itemsScored": 100,
+     *   "avgBatchSize": 3.33,
+     *   "avgBatchMs": 2100,
+     *   "batchFallbacks": 0,
+     *   "batchSizeDistribution": {"1": 2, "2": 3, "3": 5, "4": 20}
+     * }
+     */
+    @GetMapping("/ai/qwen-batching")
+    public ResponseEntity<Map<String, Object>> getQwenBatchingStats() {
+        return ResponseEntity.ok(qwenScoringBatcher.getStats());
+    }
+
+    /**
+     * Xem trạng thái bộ giới hạn đồng thời (AIMD) và circuit breaker của từng dịch vụ AI
+     * GET /admin/ai/backends
+     * 
+     * Response JSON:
+     * [
+     *   {
+     *     "service": "Whisper",
+     *     "limiter": {"limit": 6, "inFlight": 4, "waiting": 2, "minLimit": 1, "maxLimit": 16,
+     *                 "latencyThresholdMs": 30000, "lastLatencyMs": 2400, "increases": 40, "decreases": 2},
+     *     "circuitBreaker": {"state": "CLOSED", "consecutiveFailures": 0, "failureThreshold": 5,
+     *                        "openDurationMs": 30000, "rejected": 12,
+     *                        "recentTransitions": [{"from": "CLOSED", "to": "OPEN", "at": "2026-01-15T10:00:00"}]},
+     *     "healthyEndpoints": 2,
+     *     "retry": {"maxAttempts": 3, "initialBackoffMs": 200, "maxBackoffMs": 2000, "retries": 14, "exhausted": 1},
+     *     "hedging": {"enabled": true, "percentile": 0.95, "hedgeDelayMs": 4200, "budgetPercent": 5.0, "requests": 2000,
+     *                 "hedgesSent": 61, "hedgesWon": 40, "budgetRejected": 3, "hedgeRatio": 0.0305}
+     *   },
+     *   { "service": "Qwen", ... }
+     * ]
+     */
+    @GetMapping("/ai/backends")
+    public ResponseEntity<List<Map<String, Object>>> getBackendResilienceStats() {
+        return ResponseEntity.ok(List.of(whisperClient.getResilienceStats(), qwenClient.getResilienceStats()));
+    }
+
+    /**
+     * Xem thống kê cache chuyển giọng nói (theo SHA-256 của file âm thanh)
+     * GET /admin/ai/transcription-cache
+     * 
+     * Response JSON:
+     * {
+     *   "cache": "transcription",
+     *   "evictionPolicy": "LRU",
+     *   "entries": 120,
+     *   "bytes": 96000,
+     *   "maxEntries": 10000,
+     *   "maxBytes": 33554432,
+     *   "hits": 15,
+     *   "misses": 130,
+     *   "hitRatio": 0.103,
+     *   "evictions": 0,
+     *   "enabled": true,
+     *   "persistentHits": 3,
+     *   "persistentEntries": 540
+     * }
+     */
+    @GetMapping("/ai/transcription-cache")
+    public ResponseEntity<Map<String, Object>> getTranscriptionCacheStats() {
+        return ResponseEntity.ok(transcriptionCacheService.getStats());
+    }
+
+    /**
+     * Xem thống kê cache kết quả chấm điểm
+     * GET /admin/ai/scoring-cache
+     * 
+     * Response JSON:
+     * {
+     *   "cache": "scoring",
+     *   "evictionPolicy": "LRU",
+     *   "entries": 80,
+     *   "bytes": 64000,
+     *   "maxEntries": 20000,
+     *   "maxBytes": 33554432,
+     *   "hits": 20,
+     *   "misses": 80,
+     *   "hitRatio": 0.2,
+     *   "evictions": 0,
+     *   "enabled": true
+     * }
+     */
+    @GetMapping("/ai/scoring-cache")
+    public ResponseEntity<Map<String, Object>> getScoringCacheStats() {
+        return ResponseEntity.ok(scoringCacheService.getStats());
+    }
+
+    /**
+     * Xem thống kê cache câu trả lời mẫu dùng khi chấm điểm
+     * GET /admin/ai/sample-answer-cache
+     * 
+     * Response JSON:
+     * {
+     *   "cache": "sample-answers",
+     *   "entries": 30,
+     *   "hits": 14970,
+     *   "misses": 30,
+     *   "hitRatio": 0.998,
+     *   "loads": 30,
+     *   "avgLoadMs": 2.4,
+     *   "maxLoadMs": 11.0,
+     *   "invalidations": 1
+     * }
+     */
+    @GetMapping("/ai/sample-answer-cache")
+    public ResponseEntity<Map<String, Object>> getSampleAnswerCacheStats() {
+        return ResponseEntity.ok(sampleAnswerSnapshotService.getStats());
+    }
+
+    /**
+     * Xem thống kê bộ chấm thuật toán (điểm tạm thời và số lần thay Qwen theo lý do)
+     * GET /admin/ai/algorithmic-scorer
+     * 
+     * Response JSON:
+     * {
+     *   "provisionalEnabled": true,
+     *   "fallbackEnabled": true,
+     *   "qwenLatencyBudgetMs": 60000,
+     *   "provisionalScores": 500,
+     *   "avgProvisionalScoreUs": 42.5,
+     *   "fallbacks": {"CIRCUIT_OPEN": 12, "LATENCY_BUDGET": 3}
+     * }
+     */
+    @GetMapping("/ai/algorithmic-scorer")
+    public ResponseEntity<Map<String, Object>> getAlgorithmicScorerStats() {
+        return ResponseEntity.ok(aiProcessingService.getAlgorithmicScorerStats());
+    }
+
+    /**
+     * Xem thống kê bộ ghi log AI bất đồng bộ
+     * GET /admin/ai/log-writer
+     * 
+     * Response JSON:
+     * {
+     *   "capacity": 10000,
+     *   "buffered": 3,
+     *   "overflowPolicy": "DROP",
+     *   "batchSize": 100,
+     *   "flushIntervalMs": 200,
+     *   "accepted": 1200,
+     *   "written": 1197,
+     *   "dropped": 0,
+     *   "failed": 0,
+     *   "truncated": 2,
+     *   "batches": 85,
+     *   "avgBatchSize": 14.1,
+     *   "maxBatchSize": 100,
+     *   "avgFlushMs": 4.2,
+     *   "maxFlushMs": 31
+     * }
+     */
+    @GetMapping("/ai/log-writer")
+    public ResponseEntity<Map<String, Object>> getLogWriterStats() {
+        return ResponseEntity.ok(aiProcessingLogWriter.getStats());
+    }
+
+    /**
+     * Xử lý lại hàng loạt câu trả lời (FAILED, bị kẹt, hoặc chấm lại sau khi sửa câu trả lời mẫu)
+     * POST /admin/reprocessing
+     * 
+     * Request JSON (mọi trường đều tùy chọn):
+     * {
+     *   "examId": 1,
+     *   "questionId": 5,
+     *   "statuses": ["FAILED", "TRANSCRIBING", "SCORING"],
+     *   "fromDate": "2026-01-01T00:00:00",
+     *   "toDate": "2026-01-31T23:59:59",
+     *   "scoringOnly": true,
+     *   "chunkSize": 200
+     * }
+     * 
+     * Response JSON (202 Accepted): tiến độ của lượt xử lý lại, giống GET /admin/reprocessing/{id}
+     */
+    @PostMapping("/reprocessing")
+    public ResponseEntity<Map<String, Object>> startReprocessing(@RequestBody ReprocessRequest request) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(reprocessingService.startRun(request));
+    }
+
+    /**
+     * Danh sách các lượt xử lý lại (mới nhất trước)
+     * GET /admin/reprocessing
+     */
+    @GetMapping("/reprocessing")
+    public ResponseEntity<List<Map<String, Object>>> getReprocessingRuns() {
+        return ResponseEntity.ok(reprocessingService.getAllProgress());
+    }
+
+    /**
+     * Tiến độ một lượt xử lý lại
+     * GET /admin/reprocessing/{id}
+     * 
+     * Response JSON:
+     * {
+     *   "id": 3,
+     *   "status": "RUNNING",
+     *   "filters": {"examId": 1, "questionId": null, "statuses": ["COMPLETED"], "fromDate": null, "toDate": null},
+     *   "scoringOnly": true,
+     *   "chunkSize": 200,
+     *   "totalAnswers": 50000,
+     *   "enqueued": 12400,
+     *   "inFlight": 50,
+     *   "completed": 12300,
+     *   "failed": 50,
+     *   "percent": 24.7,
+     *   "throughputPerMinute": 410.5,
+     *   "etaSeconds": 5515,
+     *   "requestedBy": "admin",
+     *   "startedAt": "2026-01-15T14:30:00",
+     *   "finishedAt": null
+     * }
+     */
+    @GetMapping("/reprocessing/{id}")
+    public ResponseEntity<Map<String, Object>> getReprocessingRun(@PathVariable Long id) {
+        return ResponseEntity.ok(reprocessingService.getProgress(id));
+    }
+
+    /**
+     * Tạm dừng / tiếp tục / hủy một lượt xử lý lại (công việc đã vào hàng đợi vẫn chạy tiếp)
+     * PUT /admin/reprocessing/{id}/pause
+     * PUT /admin/reprocessing/{id}/resume
+     * PUT /admin/reprocessing/{id}/cancel
+     */
+    @PutMapping("/reprocessing/{id}/pause")
+    public ResponseEntity<Map<String, Object>> pauseReprocessing(@PathVariable Long id) {
+        return ResponseEntity.ok(reprocessingService.changeStatus(id, ReprocessingRunStatus.PAUSED));
+    }
+
+    @PutMapping("/reprocessing/{id}/resume")
+    public ResponseEntity<Map<String, Object>> resumeReprocessing(@PathVariable Long id) {
+        return ResponseEntity.ok(reprocessingService.changeStatus(id, ReprocessingRunStatus.RUNNING));
+    }
+
+    @PutMapping("/reprocessing/{id}/cancel")
+    public ResponseEntity<Map<String, Object>> cancelReprocessing(@PathVariable Long id) {
+        return ResponseEntity.ok(reprocessingService.changeStatus(id, ReprocessingRunStatus.CANCELLED));
+    }
+
+    /**
+     * Xem các instance Whisper/Qwen: tải hiện tại, độ trễ EWMA, lỗi và trạng thái bị loại do /health
+     * GET /admin/ai/endpoints
+     * 
+     * Response JSON:
+     * {
+     *   "whisper": {
+     *     "service": "Whisper",
+     *     "strategy": "LEAST_OUTSTANDING",
+     *     "ejectAfterFailures": 3,
+     *     "healthyEndpoints": 1,
+     *     "endpoints": [
+     *       {"url": "http://gpu1:5000", "inFlight": 2, "ewmaLatencyMs": 2350.4, "requests": 820, "failures": 1,
+     *        "consecutiveFailures": 0, "ejected": false, "ejectedAt": null,
+     *        "lastHealthCheckAt": "2026-01-15T10:00:05", "lastHealthError": null},
+     *       {"url": "http://gpu2:5000", "inFlight": 0, "ewmaLatencyMs": 2600.0, "requests": 400, "failures": 7,
+     *        "consecutiveFailures": 5, "ejected": true, "ejectedAt": "2026-01-15T09:59:40",
+     *        "lastHealthCheckAt": "2026-01-15T10:00:05", "lastHealthError": "Connection refused"}
+     *     ]
+     *   },
+     *   "qwen": { ... }
+     * }
+     */
+    @GetMapping("/ai/endpoints")
+    public ResponseEntity<Map<String, Object>> getAIEndpoints() {
+        return ResponseEntity.ok(aiEndpointHealthChecker.getStats());
+    }
+
+    /**
+     * Chấm lại ngay một câu trả lời (nhóm ưu tiên INTERACTIVE_RETRY, đứng trước xử lý lại hàng loạt)
+     * POST /admin/test-answers/{id}/reprocess?scoringOnly=false
+     * 
+     * Response JSON (202 Accepted): câu trả lời với processingStatus = "PENDING"
+     */
+    @PostMapping("/test-answers/{id}/reprocess")
+    public ResponseEntity<TestAnswerResponse> reprocessTestAnswer(@PathVariable Long id,
+                                                                  @RequestParam(defaultValue = "false") boolean scoringOnly) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(reprocessingService.reprocessAnswer(id, scoringOnly));
+    }
+
+    /**
+     * Xem hàng đợi chấm điểm theo nhóm ưu tiên: số công việc đang chờ và thời gian chờ trước khi được nhận
+     * GET /admin/ai/scheduler
+     * 
+     * Response JSON:
+     * {
+     *   "msPerAudioSecond": 200,
+     *   "defaultAudioMs": 30000,
+     *   "interactiveRetryOffsetMs": 10000,
+     *   "classes": {
+     *     "LIVE": {"queued": 3, "claimed": 1520, "avgWaitMs": 640, "maxWaitMs": 9100, "lastWaitMs": 420},
+     *     "INTERACTIVE_RETRY": {"queued": 0, "claimed": 12, "avgWaitMs": 2100, "maxWaitMs": 10400, "lastWaitMs": 800},
+     *     "BULK": {"queued": 48, "claimed": 9800, "avgWaitMs": 35000, "maxWaitMs": 121000, "lastWaitMs": 30500}
+     *   }
+     * }
+     */
+    @GetMapping("/ai/scheduler")
+    public ResponseEntity<Map<String, Object>> getSchedulerStats() {
+        return ResponseEntity.ok(answerJobService.getSchedulerStats());
+    }
+
+    /**
+     * Xem việc chia sức chứa AI giữa các tenant (kỳ thi hoặc tổ chức): công việc đang chờ/chạy và tốc độ được phục vụ
+     * GET /admin/ai/tenants
+     * 
+     * Response JSON:
+     * {
+     *   "enabled": true,
+     *   "tenantKey": "EXAM",
+     *   "defaultWeight": 1.0,
+     *   "defaultMaxConcurrency": 0,
+     *   "tenants": {
+     *     "exam:12": {"weight": 1.0, "maxConcurrency": 0, "queued": 310, "running": 4, "claimed": 90,
+     *                 "claimsLastMinute": 24, "servedAudioSeconds": 5400},
+     *     "exam:15": {"weight": 2.0, "maxConcurrency": 0, "queued": 2, "running": 4, "claimed": 41,
+     *                 "claimsLastMinute": 22, "servedAudioSeconds": 2500}
+     *   }
+     * }
+     */
+    @GetMapping("/ai/tenants")
+    public ResponseEntity<Map<String, Object>> getTenantStats() {
+        return ResponseEntity.ok(answerJobService.getTenantStats());
+    }
+
+    /**
+     * Xem kiểm soát tiếp nhận bài nộp: công việc đang chờ/chạy, dung lượng audio đang lưu, tốc độ hoàn thành và số lần từ chối
+     * GET /admin/ai/admission
+     * 
+     * Response JSON:
+     * {
+     *   "enabled": true,
+     *   "outstandingJobs": 120,
+     *   "maxOutstandingJobs": 500,
+     *   "bufferedBytes": 3145728,
+     *   "maxBufferedBytes": 268435456,
+     *   "drainRatePerSecond": 1.85,
+     *   "admitted": 4200,
+     *   "rejectedOverloaded": 35,
+     *   "rejectedBuffer": 0,
+     *   "rejectedUnavailable": 4
+     * }
+     */
+    @GetMapping("/ai/admission")
+    public ResponseEntity<Map<String, Object>> getAdmissionStats() {
+        return ResponseEntity.ok(submissionAdmissionService.getStats());
+    }
+
+    /**
+     * Xem luồng sự kiện trạng thái câu trả lời (SSE) trên node này: số kết nối, số sự kiện đã gửi/gửi lại
+     * GET /admin/ai/events
+     * 
+     * Response JSON:
+     * {
+     *   "connections": 312,
+     *   "maxConnections": 2000,
+     *   "sessions": 305,
+     *   "eventsPublished": 18230,
+     *   "eventsReplayed": 41,
+     *   "snapshotsSent": 620,
+     *   "reconciledChanges": 12,
+     *   "rejectedConnections": 0
+     * }
+     */
+    @GetMapping("/ai/events")
+    public ResponseEntity<Map<String, Object>> getAnswerEventStats() {
+        return ResponseEntity.ok(answerEventBroadcaster.getStats());
+    }
+
+    /**
+     * Xem cache snapshot phiên thi dùng cho GET /test-sessions/{id} và /test-sessions/{id}/answers
+     * GET /admin/ai/session-cache
+     * 
+     * Response JSON:
+     * {
+     *   "cache": "test-session",
+     *   "evictionPolicy": "LRU",
+     *   "entries": 420,
+     *   "bytes": 5200000,
+     *   "maxEntries": 5000,
+     *   "maxBytes": 67108864,
+     *   "hits": 98000,
+     *   "misses": 900,
+     *   "hitRatio": 0.99,
+     *   "evictions": 0,
+     *   "enabled": true,
+     *   "maxStalenessMs": 1000,
+     *   "freshHits": 81000,
+     *   "revalidations": 17000,
+     *   "loads": 2400,
+     *   "invalidations": 6100
+     * }
+     */
+    @GetMapping("/ai/session-cache")
+    public ResponseEntity<Map<String, Object>> getSessionCacheStats() {
+        return ResponseEntity.ok(testSessionSnapshotService.getStats());
+    }
+
+    /**
+     * Xem thống kê ghi âm trực tiếp qua WebSocket và thời gian từ lúc nộp tới khi có điểm
+     * GET /admin/ai/live
+     * 
+     * Response JSON:
+     * {
+     *   "enabled": true,
+     *   "activeStreams": 12,
+     *   "maxStreams": 200,
+     *   "streamsOpened": 640,
+     *   "streamsRejected": 0,
+     *   "streamsSubmitted": 590,
+     *   "streamsDiscarded": 38,
+     *   "fallbacks": 3,
+     *   "segmentsTranscribed": 2150,
+     *   "silentSegments": 140,
+     *   "segmentFailures": 3,
+     *   "audioSecondsStreamed": 26400,
+     *   "avgPendingSegmentsAtStop": 1.02,
+     *   "avgStopToTranscriptMs": 1450,
+     *   "maxStopToTranscriptMs": 5200,
+     *   "timeToScore": {
+     *     "UPLOAD": {"scored": 210, "avgMs": 14800, "maxMs": 61000, "lastMs": 12100},
+     *     "STREAM": {"scored": 587, "avgMs": 3900, "maxMs": 21000, "lastMs": 3400}
+     *   }
+     * }
+     */
+    @GetMapping("/ai/live")
+    public ResponseEntity<Map<String, Object>> getLiveTranscriptionStats() {
+        return ResponseEntity.ok(liveTranscriptionService.getStats());
+    }
+
+    /**
+     * Xem thống kê chuyển giọng nói song song theo đoạn cho câu trả lời dài
+     * GET /admin/ai/chunking
+     * 
+     * Response JSON:
+     * {
+     *   "enabled": true,
+     *   "minDurationMs": 60000,
+     *   "chunkMs": 30000,
+     *   "overlapMs": 1000,
+     *   "maxFanOut": 4,
+     *   "chunkedTranscriptions": 85,
+     *   "chunksTranscribed": 310,
+     *   "avgChunksPerTranscription": 3.65,
+     *   "dedupedOverlapWords": 402
+     * }
+     */
+    @GetMapping("/ai/chunking")
+    public ResponseEntity<Map<String, Object>> getChunkingStats() {
+        return ResponseEntity.ok(aiProcessingService.getChunkingStats());
+    }
+
+    /**
+     * Xem thống kê chuẩn hóa file âm thanh tải lên (16 kHz mono 16-bit) và dung lượng tiết kiệm được
+     * GET /admin/ai/audio-normalization
+     * 
+     * Response JSON:
+     * {
+     *   "enabled": true,
+     *   "targetSampleRate": 16000,
+     *   "uploads": 820,
+     *   "normalized": 790,
+     *   "alreadyNormalized": 24,
+     *   "storedAsIs": 6,
+     *   "originalBytes": 1510000000,
+     *   "storedBytes": 512000000,
+     *   "savedBytes": 998000000,
+     *   "savedPercent": 66.1,
+     *   "avgNormalizeMs": 18.4,
+     *   "sourceFormats": {"pcm16/1ch/48000Hz": 702, "pcm16/1ch/44100Hz": 88, "pcm16/1ch/16000Hz": 24}
+     * }
+     */
+    @GetMapping("/ai/audio-normalization")
+    public ResponseEntity<Map<String, Object>> getAudioNormalizationStats() {
+        return ResponseEntity.ok(audioNormalizationService.getStats());
+    }
+
+    /**
+     * Xem thống kê kiểm tra giọng nói (VAD) trước Whisper theo kỳ thi: file bị loại, file được cắt khoảng lặng
+     * GET /admin/ai/vad
+     * 
+     * Response JSON:
+     * {
+     *   "enabled": true,
+     *   "thresholdDbfs": -40.0,
+     *   "minSpeechMs": 300,
+     *   "trimPaddingMs": 300,
+     *   "minTrimMs": 1000,
+     *   "total": {"checked": 820, "rejectedNoSpeech": 14, "rejectedCorrupt": 2, "trimmed": 610, "trimmedSeconds": 1830.4, "secondsSaved": 2090.1},
+     *   "exams": {
+     *     "1": {"checked": 500, "rejectedNoSpeech": 9, "rejectedCorrupt": 1, "trimmed": 380, "trimmedSeconds": 1120.0, "secondsSaved": 1290.6}
+     *   }
+     * }
+     */
+    @GetMapping("/ai/vad")
+    public ResponseEntity<Map<String, Object>> getVoiceActivityStats() {
+        return ResponseEntity.ok(voiceActivityGate.getStats());
+    }
+}
@@ -0,0 +1,181 @@
+package com.aispeaking.controller;
+
+import com.aispeaking.dto.TestAnswerResponse;
+import com.aispeaking.service.AdmissionRejectedException;
+import com.aispeaking.service.LiveTranscriptionService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.Session;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ghi âm trực tiếp một câu trả lời qua WebSocket (PUBLIC)
+ * WS /ws/test-sessions/{testSessionId}/questions/{questionId}/live?sampleRate=16000
+ *
+ * Client gửi:
+ * - binary: âm thanh PCM 16-bit mono little-endian ở sampleRate Hz, theo từng khối trong lúc ghi
+ * - {"type": "stop"}: dừng ghi âm (học sinh nghe lại trước khi nộp)
+ * - {"type": "submit"}: nộp câu trả lời (dừng ghi âm nếu chưa dừng)
+ * - {"type": "discard"}: bỏ bản ghi (ghi âm lại); đóng kết nối khi chưa nộp cũng bỏ bản ghi
+ *
+ * Server gửi (JSON):
+ * {"type": "ready", "testAnswerId": 12, "sampleRate": 16000}
+ * {"type": "segment", "index": 0, "startMs": 0, "endMs": 4180, "text": "My hometown is Ha Noi."}
+ * {"type": "submitted", "answer": { ...TestAnswerResponse... }}  rồi đóng kết nối
+ * {"type": "error", "status": 429, "retryAfter": 5, "message": "..."}  rồi đóng kết nối (client nộp file như bình thường)
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LiveAnswerEndpoint extends Endpoint {
+    public static final String PATH = "/ws/test-sessions/{testSessionId}/questions/{questionId}/live";
+    private static final String STREAM_PROPERTY = "liveAnswerStream";
+    private static final int DEFAULT_SAMPLE_RATE = 16000;
+
+    private final LiveTranscriptionService liveTranscriptionService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${ai.live.idle-timeout-ms}")
+    private long idleTimeoutMs;
+
+    @Value("${ai.live.max-message-bytes}")
+    private int maxMessageBytes;
+
+    @Override
+    public void onOpen(Session session, EndpointConfig config) {
+        MessageSender sender = new MessageSender(session);
+        session.setMaxIdleTimeout(idleTimeoutMs);
+        session.setMaxBinaryMessageBufferSize(maxMessageBytes);
+        LiveTranscriptionService.LiveAnswerStream stream;
+        try {
+            Long testSessionId = Long.valueOf(session.getPathParameters().get("testSessionId"));
+            Long questionId = Long.valueOf(session.getPathParameters().get("questionId"));
+            List<String> sampleRateParam = session.getRequestParameterMap().get("sampleRate");
+            int sampleRate = sampleRateParam == null || sampleRateParam.isEmpty() ? DEFAULT_SAMPLE_RATE : Integer.parseInt(sampleRateParam.get(0));
+            stream = liveTranscriptionService.open(testSessionId, questionId, sampleRate,
+                    (index, startMs, endMs, text) -> sender.send(message("segment", "index", index, "startMs", startMs, "endMs", endMs, "text", text)));
+        } catch (Exception e) {
+            sender.fail(e);
+            return;
+        }
+        session.getUserProperties().put(STREAM_PROPERTY, stream);
+        session.addMessageHandler(ByteBuffer.class, pcm -> {
+            try {
+                stream.write(pcm);
+            } catch (Exception e) {
+                stream.discard();
+                sender.fail(e);
+            }
+        });
+        session.addMessageHandler(String.class, text -> handleCommand(stream, sender, text));
+        sender.send(message("ready", "testAnswerId", stream.getTestAnswerId(), "sampleRate", stream.getSampleRate()));
+    }
+
+    @Override
+    public void onClose(Session session, CloseReason closeReason) {
+        Object stream = session.getUserProperties().remove(STREAM_PROPERTY);
+        if (stream instanceof LiveTranscriptionService.LiveAnswerStream liveStream) {
+            liveStream.discard();
+        }
+    }
+
+    @Override
+    public void onError(Session session, Throwable error) {
+        log.debug("Live answer WebSocket {} error: {}", session.getId(), error.getMessage());
+    }
+
+    private void handleCommand(LiveTranscriptionService.LiveAnswerStream stream, MessageSender sender, String text) {
+        try {
+            JsonNode command = objectMapper.readTree(text);
+            switch (command.path("type").asText()) {
+                case "stop" -> stream.stop();
+                case "submit" -> stream.submit().whenComplete((answer, error) -> {
+                    if (error != null) {
+                        sender.fail(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                    } else {
+                        sender.submitted(answer);
+                    }
+                });
+                case "discard" -> {
+                    stream.discard();
+                    sender.close(CloseReason.CloseCodes.NORMAL_CLOSURE, "discarded");
+                }
+                default -> log.debug("Ignoring unknown live answer command: {}", text);
+            }
+        } catch (Exception e) {
+            stream.discard();
+            sender.fail(e);
+        }
+    }
+
+    private static Map<String, Object> message(String type, Object... fields) {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("type", type);
+        for (int i = 0; i + 1 < fields.length; i += 2) {
+            message.put((String) fields[i], fields[i + 1]);
+        }
+        return message;
+    }
+
+    /**
+     * Gửi tin nhắn tới một kết nối; các đoạn được chuyển giọng nói trên luồng khác nên việc gửi phải tuần tự
+     */
+    private class MessageSender {
+        private final Session session;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        MessageSender(Session session) {
+            this.session = session;
+        }
+
+        void send(Map<String, Object> message) {
+            lock.lock();
+            try {
+                if (session.isOpen()) {
+                    session.getBasicRemote().sendText(objectMapper.writeValueAsString(message));
+                }
+            } catch (IOException e) {
+                log.debug("Could not send live answer message to {}: {}", session.getId(), e.getMessage());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void submitted(TestAnswerResponse answer) {
+            send(message("submitted", "answer", answer));
+            close(CloseReason.CloseCodes.NORMAL_CLOSURE, "submitted");
+        }
+
+        void fail(Throwable error) {
+            if (error instanceof AdmissionRejectedException rejected) {
+                send(message("error", "status", rejected.getStatus().value(), "retryAfter", rejected.getRetryAfterSeconds(),
+                        "message", rejected.getMessage()));
+            } else {
+                log.warn("Live answer stream {} failed: {}", session.getId(), error.getMessage());
+                send(message("error", "status", 400, "message", String.valueOf(error.getMessage())));
+            }
+            close(CloseReason.CloseCodes.NORMAL_CLOSURE, "error");
+        }
+
+        void close(CloseReason.CloseCode code, String reason) {
+            try {
+                session.close(new CloseReason(code, reason));
+            } catch (IOException e) {
+                log.debug("Could not close live answer WebSocket {}: {}", session.getId(), e.getMessage());
+            }
+        }
+    }
+}
@@ -85,7 +85,7 @@ public class ReportController {
      */
     @GetMapping("/test-session/{id}/detailed")
     public ResponseEntity<java.util.Map<String, Object>> getDetailedTestSessionReport(@PathVariable Long id) {
-        TestSession session = testSessionRepository.findById(id).orElseThrow(() -> new RuntimeException("Test session not found"));
+        TestSession session = testSessionRepository.findWithExamById(id).orElseThrow(() -> new RuntimeException("Test session not found"));
         List<TestAnswer> answers = testAnswerRepository.findByTestSessionId(id);
         java.util.Map<String, Object> report = new java.util.HashMap<>();
         // Thông tin phiên
@@ -2,15 +2,23 @@ package com.aispeaking.controller;
 
 import com.aispeaking.dto.*;
 import com.aispeaking.entity.enums.TestSessionStatus;
+import com.aispeaking.service.AdmissionRejectedException;
+import com.aispeaking.service.AnswerEventBroadcaster;
 import com.aispeaking.service.TestSessionService;
+import com.aispeaking.service.TestSessionSnapshotService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -21,6 +29,7 @@ import java.util.List;
 @CrossOrigin(origins = "${cors.allowed.origins}")
 public class TestSessionController {
     private final TestSessionService testSessionService;
+    private final AnswerEventBroadcaster answerEventBroadcaster;
 
     /**
      * Lấy tất cả phiên thi với phân trang
@@ -89,10 +98,16 @@ public class TestSessionController {
      * GET /test-sessions/{id}
      * 
      * Response JSON: Same as createTestSession
+     * Header ETag; gửi lại giá trị đó trong If-None-Match để nhận 304 Not Modified khi phiên chưa thay đổi
      */
     @GetMapping("/{id}")
     public ResponseEntity<TestSessionResponse> getTestSession(@PathVariable Long id) {
-        return ResponseEntity.ok(testSessionService.getTestSession(id));
+        TestSessionSnapshotService.SessionSnapshot snapshot = testSessionService.getSessionSnapshot(id);
+        // Spring trả 304 (không body) khi ETag khớp If-None-Match
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(snapshot.getSessionEtag())
+                .body(snapshot.getSession());
     }
 
     /**
@@ -113,10 +128,38 @@ public class TestSessionController {
      *     "answeredAt": "2026-01-15T14:35:00"
      *   }
      * ]
+     * Header ETag; gửi lại giá trị đó trong If-None-Match để nhận 304 Not Modified khi chưa có câu trả lời nào thay đổi
      */
     @GetMapping("/{id}/answers")
     public ResponseEntity<List<TestAnswerResponse>> getTestAnswers(@PathVariable Long id) {
-        return ResponseEntity.ok(testSessionService.getTestAnswers(id));
+        TestSessionSnapshotService.SessionSnapshot snapshot = testSessionService.getSessionSnapshot(id);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(snapshot.getAnswersEtag())
+                .body(snapshot.getAnswers());
+    }
+
+    /**
+     * Luồng sự kiện (Server-Sent Events) trạng thái xử lý câu trả lời trong phiên thi, thay cho việc hỏi lại /answers
+     * GET /test-sessions/{id}/events
+     * Header tùy chọn: Last-Event-ID (trình duyệt tự gửi khi kết nối lại) để nhận tiếp các sự kiện bị lỡ
+     * 
+     * Response: text/event-stream
+     * event: snapshot  (khi mới kết nối hoặc không nối tiếp được) - data: danh sách như getTestAnswers
+     * event: answer    (mỗi lần đổi trạng thái PENDING/TRANSCRIBING/SCORING/COMPLETED/FAILED) - data: một TestAnswerResponse
+     * 503 Service Unavailable + Retry-After khi node đã đạt giới hạn kết nối (client dùng polling)
+     */
+    @GetMapping(path = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamAnswerEvents(
+            @PathVariable Long id,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        try {
+            return ResponseEntity.ok(answerEventBroadcaster.subscribe(id, lastEventId));
+        } catch (AdmissionRejectedException e) {
+            return ResponseEntity.status(e.getStatus())
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .build();
+        }
     }
 
     /**
@@ -127,7 +170,11 @@ public class TestSessionController {
      * - questionId: Long (form field)
      * - audio: MultipartFile (audio file: wav, mp3, m4a)
      * 
-     * Response JSON: Single TestAnswerResponse (same as getTestAnswers item)
+     * Response: 202 Accepted - Single TestAnswerResponse (same as getTestAnswers item)
+     * với processingStatus = "PENDING". Kết quả chấm điểm được xử lý nền;
+     * client theo dõi qua GET /test-sessions/{id}/answers.
+     * 429 Too Many Requests (hàng đợi chấm điểm hoặc bộ đệm âm thanh đầy) / 503 Service Unavailable
+     * (dịch vụ chuyển giọng nói đang không khả dụng): body rỗng, header Retry-After (giây) cho biết khi nào nộp lại.
      */
     @PostMapping("/{id}/submit-answer")
     public ResponseEntity<TestAnswerResponse> submitAnswer(
@@ -136,7 +183,11 @@ public class TestSessionController {
             @RequestParam("audio") MultipartFile audioFile) {
         try {
             TestAnswerResponse testAnswer = testSessionService.submitAnswer(id, questionId, audioFile);
-            return ResponseEntity.ok(testAnswer);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(testAnswer);
+        } catch (AdmissionRejectedException e) {
+            return ResponseEntity.status(e.getStatus())
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .build();
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
@@ -0,0 +1,20 @@
+package com.aispeaking.dto;
+
+import com.aispeaking.entity.enums.ProcessingStatus;
+import lombok.Data;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO cho việc xử lý lại hàng loạt câu trả lời; mọi bộ lọc đều tùy chọn
+ */
+@Data
+public class ReprocessRequest {
+    private Long examId;
+    private Long questionId;
+    private List<ProcessingStatus> statuses;
+    private LocalDateTime fromDate;
+    private LocalDateTime toDate;
+    private Boolean scoringOnly;
+    private Integer chunkSize;
+}
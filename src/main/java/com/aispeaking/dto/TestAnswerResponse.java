@@ -25,6 +25,7 @@ public class TestAnswerResponse {
     private String transcribedText;
     private BigDecimal score;
     private String feedback;
+    private BigDecimal provisionalScore;
     private ProcessingStatus processingStatus;
     private LocalDateTime answeredAt;
     private LocalDateTime createdAt;
@@ -42,6 +43,7 @@ public class TestAnswerResponse {
                 .transcribedText(testAnswer.getTranscribedText())
                 .score(testAnswer.getScore())
                 .feedback(testAnswer.getFeedback())
+                .provisionalScore(testAnswer.getProvisionalScore())
                 .processingStatus(testAnswer.getProcessingStatus())
                 .answeredAt(testAnswer.getAnsweredAt())
                 .createdAt(testAnswer.getCreatedAt())
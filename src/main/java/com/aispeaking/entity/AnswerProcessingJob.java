@@ -0,0 +1,105 @@
+package com.aispeaking.entity;
+
+import com.aispeaking.entity.enums.AnswerJobStatus;
+import com.aispeaking.entity.enums.JobPriorityClass;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import java.time.LocalDateTime;
+
+/**
+ * Công việc chấm điểm bền vững cho một câu trả lời.
+ * Mỗi lần nộp bài tạo một bản ghi QUEUED; worker nhận (RUNNING) rồi kết thúc (COMPLETED/FAILED).
+ * Nộp lại trong lúc công việc đang chạy thì công việc đó bị hủy (CANCELLED).
+ * Các công việc RUNNING bị gián đoạn khi tiến trình dừng sẽ được đưa lại hàng đợi khi khởi động.
+ * Mọi thao tác kết thúc/trả lại công việc chỉ có hiệu lực nếu công việc vẫn RUNNING dưới đúng node và đúng lần nhận (attempts).
+ */
+@Entity
+@Table(name = "answer_processing_jobs", indexes = {
+    @Index(name = "idx_job_test_answer_id", columnList = "test_answer_id"),
+    @Index(name = "idx_job_status", columnList = "status"),
+    @Index(name = "idx_job_reprocessing_run_id", columnList = "reprocessing_run_id"),
+    @Index(name = "idx_job_status_schedule_key", columnList = "status, schedule_key"),
+    @Index(name = "idx_job_status_tenant_key", columnList = "status, tenant_key")
+})
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnswerProcessingJob extends BaseEntity {
+    // Số nhỏ hơn được nhận trước; công việc xử lý lại hàng loạt luôn nhường bài nộp trực tiếp
+    public static final int PRIORITY_LIVE = 0;
+    // Quản trị viên chấm lại một câu trả lời và đang chờ kết quả
+    public static final int PRIORITY_INTERACTIVE_RETRY = 50;
+    public static final int PRIORITY_BULK = 100;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "test_answer_id", nullable = false)
+    @JsonIgnore
+    private TestAnswer testAnswer;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private AnswerJobStatus status = AnswerJobStatus.QUEUED;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Integer priority = PRIORITY_LIVE;
+
+    // Lượt xử lý lại hàng loạt đã tạo công việc này (null với bài nộp trực tiếp)
+    @Column(name = "reprocessing_run_id")
+    private Long reprocessingRunId;
+
+    // Độ dài âm thanh đọc từ header WAV khi vào hàng đợi (null nếu không đọc được)
+    @Column(name = "audio_duration_ms")
+    private Long audioDurationMs;
+
+    // Thứ tự nhận việc (nhỏ hơn trước): thời điểm vào hàng đợi + độ lệch của nhóm ưu tiên + chi phí theo độ dài âm thanh
+    @Column(name = "schedule_key")
+    private Long scheduleKey;
+
+    // Tenant dùng để chia sức chứa công bằng: "exam:{id}" hoặc "org:{studentOrganization}" (xem TenantFairQueue)
+    @Column(name = "tenant_key")
+    private String tenantKey;
+
+    @Column(name = "locked_by", length = 100)
+    private String lockedBy;
+
+    // Không nhận công việc trước thời điểm này (hoãn khi dịch vụ AI tạm thời không khả dụng)
+    @Column(name = "available_at")
+    private LocalDateTime availableAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    // Node đang xử lý cập nhật định kỳ khi công việc còn nằm trong pipeline; quá ai.job.stale-after-ms không cập nhật thì bị coi là gián đoạn
+    @Column(name = "heartbeat_at")
+    private LocalDateTime heartbeatAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    /**
+     * Nhóm ưu tiên của một giá trị priority
+     */
+    public static JobPriorityClass priorityClassOf(int priority) {
+        if (priority <= PRIORITY_LIVE) {
+            return JobPriorityClass.LIVE;
+        }
+        return priority < PRIORITY_BULK ? JobPriorityClass.INTERACTIVE_RETRY : JobPriorityClass.BULK;
+    }
+}
@@ -7,6 +7,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -37,6 +38,11 @@ public class Question extends BaseEntity {
     @JsonIgnore
     private User createdBy;
 
+    // Tăng mỗi khi tập câu trả lời mẫu (hoặc nội dung câu hỏi) thay đổi; là một phần khóa cache chấm điểm
+    @ColumnDefault("0")
+    @Column(name = "sample_answers_version", nullable = false)
+    private Integer sampleAnswersVersion = 0;
+
     @OneToMany(mappedBy = "question", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonIgnore  // Bỏ qua hoàn toàn collection này để ngăn chặn các vấn đề về lazy loading
     private List<SampleAnswer> sampleAnswers = new ArrayList<>();
@@ -0,0 +1,73 @@
+package com.aispeaking.entity;
+
+import com.aispeaking.entity.enums.ReprocessingRunStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Một lượt xử lý lại hàng loạt câu trả lời (FAILED, bị kẹt hoặc chấm lại sau khi sửa câu trả lời mẫu).
+ * Câu trả lời được đưa vào hàng đợi theo từng đợt theo thứ tự id; lastAnswerId là con trỏ để tiếp tục
+ * sau khi tạm dừng hoặc khởi động lại.
+ */
+@Entity
+@Table(name = "reprocessing_runs", indexes = {
+    @Index(name = "idx_reprocessing_run_status", columnList = "status")
+})
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReprocessingRun extends BaseEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "exam_id")
+    private Long examId;
+
+    @Column(name = "question_id")
+    private Long questionId;
+
+    // Danh sách ProcessingStatus cách nhau bởi dấu phẩy; rỗng = mọi trạng thái
+    @Column(length = 100)
+    private String statuses;
+
+    @Column(name = "from_date")
+    private LocalDateTime fromDate;
+
+    @Column(name = "to_date")
+    private LocalDateTime toDate;
+
+    // true: giữ transcribedText và chỉ chấm điểm lại (không gọi Whisper)
+    @Column(name = "scoring_only", nullable = false)
+    private Boolean scoringOnly = false;
+
+    @Column(name = "chunk_size", nullable = false)
+    private Integer chunkSize;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private ReprocessingRunStatus status = ReprocessingRunStatus.RUNNING;
+
+    @Column(name = "total_answers", nullable = false)
+    private Integer totalAnswers = 0;
+
+    @Column(name = "enqueued_answers", nullable = false)
+    private Integer enqueuedAnswers = 0;
+
+    @Column(name = "last_answer_id", nullable = false)
+    private Long lastAnswerId = 0L;
+
+    @Column(name = "requested_by", length = 100)
+    private String requestedBy;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+}
@@ -41,12 +41,20 @@ public class TestAnswer extends BaseEntity {
     @Column(name = "transcribed_text", columnDefinition = "TEXT")
     private String transcribedText;
 
+    // audio_url của bản ghi âm đã sinh ra transcribed_text; văn bản chỉ được dùng lại khi trùng với audio_url hiện tại
+    @Column(name = "transcribed_audio_url", length = 500)
+    private String transcribedAudioUrl;
+
     @Column(precision = 5, scale = 2)
     private BigDecimal score = BigDecimal.ZERO;
 
     @Column(columnDefinition = "TEXT")
     private String feedback;
 
+    // Điểm thuật toán tính ngay sau khi có văn bản, hiển thị trong lúc chờ Qwen
+    @Column(name = "provisional_score", precision = 5, scale = 2)
+    private BigDecimal provisionalScore;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "processing_status", nullable = false, length = 20)
     private ProcessingStatus processingStatus = ProcessingStatus.PENDING;
@@ -7,6 +7,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -52,6 +53,11 @@ public class TestSession extends BaseEntity {
     @Column(name = "completed_at")
     private LocalDateTime completedAt;
 
+    // Tăng mỗi khi phiên hoặc một câu trả lời của phiên thay đổi; là ETag của các API đọc công khai
+    @ColumnDefault("0")
+    @Column(name = "state_version", nullable = false)
+    private Long stateVersion = 0L;
+
     @OneToMany(mappedBy = "testSession", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonIgnore
     private List<TestAnswer> testAnswers = new ArrayList<>();
@@ -0,0 +1,41 @@
+package com.aispeaking.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Kết quả chuyển giọng nói thành văn bản, định danh bằng SHA-256 của file âm thanh.
+ * Cùng một bản ghi âm (nộp lại, chấm lại) dùng lại văn bản này thay vì gọi lại Whisper.
+ */
+@Entity
+@Table(name = "transcription_cache", indexes = {
+    @Index(name = "idx_transcription_last_hit_at", columnList = "last_hit_at")
+})
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class TranscriptionCacheEntry extends BaseEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "audio_hash", nullable = false, unique = true, length = 64)
+    private String audioHash;
+
+    @Column(name = "transcribed_text", nullable = false, columnDefinition = "TEXT")
+    private String transcribedText;
+
+    @Column(name = "audio_size_bytes")
+    private Long audioSizeBytes;
+
+    @Column(name = "hit_count", nullable = false)
+    private Integer hitCount = 0;
+
+    @Column(name = "last_hit_at")
+    private LocalDateTime lastHitAt;
+}
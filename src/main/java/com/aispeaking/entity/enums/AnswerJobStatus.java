@@ -0,0 +1,10 @@
+package com.aispeaking.entity.enums;
+
+public enum AnswerJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    // Câu trả lời được nộp lại trong lúc công việc đang chạy; kết quả của công việc bị bỏ
+    CANCELLED
+}
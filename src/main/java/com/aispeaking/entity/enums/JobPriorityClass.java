@@ -0,0 +1,7 @@
+package com.aispeaking.entity.enums;
+
+public enum JobPriorityClass {
+    LIVE,
+    INTERACTIVE_RETRY,
+    BULK
+}
@@ -0,0 +1,8 @@
+package com.aispeaking.entity.enums;
+
+public enum ReprocessingRunStatus {
+    RUNNING,
+    PAUSED,
+    COMPLETED,
+    CANCELLED
+}
@@ -0,0 +1,178 @@
+package com.aispeaking.repository;
+
+import com.aispeaking.entity.AnswerProcessingJob;
+import com.aispeaking.entity.enums.AnswerJobStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface AnswerProcessingJobRepository extends JpaRepository<AnswerProcessingJob, Long> {
+    /**
+     * Các công việc QUEUED đã đến lượt xử lý (không bị hoãn) có độ ưu tiên trong [minPriority, maxPriority]
+     * và schedule_key nhỏ hơn scheduledBefore, theo schedule_key tăng dần.
+     * Mỗi dòng gồm [id, priority, createdAt, audioDurationMs, tenantKey]
+     */
+    @Query("""
+        SELECT j.id, j.priority, j.createdAt, j.audioDurationMs, j.tenantKey FROM AnswerProcessingJob j
+        WHERE j.status = com.aispeaking.entity.enums.AnswerJobStatus.QUEUED
+        AND (j.availableAt IS NULL OR j.availableAt <= :now)
+        AND j.priority BETWEEN :minPriority AND :maxPriority
+        AND (j.scheduleKey IS NULL OR j.scheduleKey < :scheduledBefore)
+        ORDER BY j.scheduleKey, j.id
+    """)
+    List<Object[]> findReady(@Param("now") LocalDateTime now, @Param("minPriority") int minPriority,
+                             @Param("maxPriority") int maxPriority, @Param("scheduledBefore") long scheduledBefore,
+                             Pageable pageable);
+
+    /**
+     * Như findReady nhưng chỉ lấy công việc của một tenant ("" = công việc chưa có tenant)
+     */
+    @Query("""
+        SELECT j.id, j.priority, j.createdAt, j.audioDurationMs, j.tenantKey FROM AnswerProcessingJob j
+        WHERE j.status = com.aispeaking.entity.enums.AnswerJobStatus.QUEUED
+        AND (j.availableAt IS NULL OR j.availableAt <= :now)
+        AND j.priority BETWEEN :minPriority AND :maxPriority
+        AND COALESCE(j.tenantKey, '') = :tenant
+        ORDER BY j.scheduleKey, j.id
+    """)
+    List<Object[]> findReadyForTenant(@Param("now") LocalDateTime now, @Param("minPriority") int minPriority,
+                                      @Param("maxPriority") int maxPriority, @Param("tenant") String tenant,
+                                      Pageable pageable);
+
+    /**
+     * Số công việc sẵn sàng theo tenant, mỗi dòng gồm [tenantKey, count]
+     */
+    @Query("""
+        SELECT j.tenantKey, COUNT(j) FROM AnswerProcessingJob j
+        WHERE j.status = com.aispeaking.entity.enums.AnswerJobStatus.QUEUED
+        AND (j.availableAt IS NULL OR j.availableAt <= :now)
+        AND j.priority BETWEEN :minPriority AND :maxPriority
+        GROUP BY j.tenantKey
+    """)
+    List<Object[]> countReadyByTenant(@Param("now") LocalDateTime now, @Param("minPriority") int minPriority,
+                                      @Param("maxPriority") int maxPriority);
+
+    @Query("SELECT j.tenantKey, COUNT(j) FROM AnswerProcessingJob j WHERE j.status = :status GROUP BY j.tenantKey")
+    List<Object[]> countByTenantForStatus(@Param("status") AnswerJobStatus status);
+
+    @Query("SELECT j.priority, COUNT(j) FROM AnswerProcessingJob j WHERE j.status = :status GROUP BY j.priority")
+    List<Object[]> countByPriorityForStatus(@Param("status") AnswerJobStatus status);
+
+    long countByPriorityAndStatusIn(Integer priority, Collection<AnswerJobStatus> statuses);
+
+    long countByStatusInAndPriorityLessThan(Collection<AnswerJobStatus> statuses, Integer priority);
+
+    @Query("SELECT j.status, COUNT(j) FROM AnswerProcessingJob j WHERE j.reprocessingRunId = :runId GROUP BY j.status")
+    List<Object[]> countByStatusForRun(@Param("runId") Long runId);
+
+    List<AnswerProcessingJob> findByTestAnswerIdAndStatus(Long testAnswerId, AnswerJobStatus status);
+
+    long countByStatus(AnswerJobStatus status);
+
+    /**
+     * Nhận công việc một cách nguyên tử: chỉ thành công nếu công việc vẫn còn QUEUED,
+     * nên nhiều node có thể cùng quét hàng đợi mà không xử lý trùng.
+     */
+    @Modifying
+    @Query("""
+        UPDATE AnswerProcessingJob j
+        SET j.status = com.aispeaking.entity.enums.AnswerJobStatus.RUNNING,
+            j.lockedBy = :nodeId,
+            j.startedAt = :now,
+            j.attempts = j.attempts + 1
+        WHERE j.id = :id AND j.status = com.aispeaking.entity.enums.AnswerJobStatus.QUEUED
+    """)
+    int claim(@Param("id") Long id, @Param("nodeId") String nodeId, @Param("now") LocalDateTime now);
+
+    /**
+     * Bắt đầu xử lý công việc đã nhận: ghi startedAt/heartbeatAt, chỉ thành công nếu công việc vẫn RUNNING dưới node này
+     */
+    @Modifying
+    @Query("""
+        UPDATE AnswerProcessingJob j
+        SET j.startedAt = :now, j.heartbeatAt = :now
+        WHERE j.id = :id AND j.status = com.aispeaking.entity.enums.AnswerJobStatus.RUNNING AND j.lockedBy = :nodeId
+    """)
+    int start(@Param("id") Long id, @Param("nodeId") String nodeId, @Param("now") LocalDateTime now);
+
+    /**
+     * Cập nhật heartbeat của một công việc và khóa dòng tới hết giao dịch; chỉ thành công nếu công việc
+     * vẫn RUNNING dưới node này ở lần nhận attempt (dùng trước khi lưu kết quả trung gian)
+     */
+    @Modifying
+    @Query("""
+        UPDATE AnswerProcessingJob j
+        SET j.heartbeatAt = :now
+        WHERE j.id = :id AND j.status = com.aispeaking.entity.enums.AnswerJobStatus.RUNNING
+        AND j.lockedBy = :nodeId AND j.attempts = :attempt
+    """)
+    int touch(@Param("id") Long id, @Param("nodeId") String nodeId, @Param("attempt") Integer attempt, @Param("now") LocalDateTime now);
+
+    /**
+     * Hủy các công việc đang chạy của câu trả lời (bài nộp đã bị thay bằng bài nộp mới)
+     */
+    @Modifying
+    @Query("""
+        UPDATE AnswerProcessingJob j
+        SET j.status = com.aispeaking.entity.enums.AnswerJobStatus.CANCELLED, j.finishedAt = :now, j.lastError = :reason
+        WHERE j.testAnswer.id = :testAnswerId AND j.status = com.aispeaking.entity.enums.AnswerJobStatus.RUNNING
+    """)
+    int cancelRunning(@Param("testAnswerId") Long testAnswerId, @Param("now") LocalDateTime now, @Param("reason") String reason);
+
+    /**
+     * Cập nhật heartbeat của các công việc node này vẫn đang giữ trong pipeline
+     */
+    @Modifying
+    @Query("""
+        UPDATE AnswerProcessingJob j
+        SET j.heartbeatAt = :now
+        WHERE j.id IN :ids AND j.status = com.aispeaking.entity.enums.AnswerJobStatus.RUNNING AND j.lockedBy = :nodeId
+    """)
+    int heartbeat(@Param("ids") Collection<Long> ids, @Param("nodeId") String nodeId, @Param("now") LocalDateTime now);
+
+    /**
+     * Kết thúc công việc (COMPLETED/FAILED); chỉ thành công nếu công việc vẫn RUNNING dưới node lockedBy
+     * và chưa bị nhận lại (attempts = attempt, bỏ qua nếu attempt null)
+     */
+    @Modifying
+    @Query("""
+        UPDATE AnswerProcessingJob j
+        SET j.status = :status, j.finishedAt = :now, j.lastError = :error
+        WHERE j.id = :id AND j.status = com.aispeaking.entity.enums.AnswerJobStatus.RUNNING
+        AND j.lockedBy = :lockedBy AND (:attempt IS NULL OR j.attempts = :attempt)
+    """)
+    int finish(@Param("id") Long id, @Param("lockedBy") String lockedBy, @Param("attempt") Integer attempt,
+               @Param("status") AnswerJobStatus status, @Param("now") LocalDateTime now, @Param("error") String error);
+
+    /**
+     * Trả công việc về QUEUED với cùng điều kiện như finish.
+     * availableAt/error null thì giữ nguyên giá trị cũ
+     */
+    @Modifying
+    @Query("""
+        UPDATE AnswerProcessingJob j
+        SET j.status = com.aispeaking.entity.enums.AnswerJobStatus.QUEUED, j.lockedBy = NULL,
+            j.availableAt = COALESCE(:availableAt, j.availableAt), j.lastError = COALESCE(:error, j.lastError)
+        WHERE j.id = :id AND j.status = com.aispeaking.entity.enums.AnswerJobStatus.RUNNING
+        AND j.lockedBy = :lockedBy AND (:attempt IS NULL OR j.attempts = :attempt)
+    """)
+    int requeue(@Param("id") Long id, @Param("lockedBy") String lockedBy, @Param("attempt") Integer attempt,
+                @Param("availableAt") LocalDateTime availableAt, @Param("error") String error);
+
+    /**
+     * Công việc RUNNING của nodeId, hoặc của bất kỳ node nào đã không cập nhật heartbeat (chưa bắt đầu: tính từ lúc nhận) trước staleBefore
+     */
+    @Query("""
+        SELECT j FROM AnswerProcessingJob j
+        WHERE j.status = com.aispeaking.entity.enums.AnswerJobStatus.RUNNING
+        AND (j.lockedBy = :nodeId OR COALESCE(j.heartbeatAt, j.startedAt) < :staleBefore)
+    """)
+    List<AnswerProcessingJob> findInterrupted(@Param("nodeId") String nodeId, @Param("staleBefore") LocalDateTime staleBefore);
+}
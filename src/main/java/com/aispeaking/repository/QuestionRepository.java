@@ -5,11 +5,13 @@ import com.aispeaking.entity.enums.QuestionLevel;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface QuestionRepository extends JpaRepository<Question, Long> {
@@ -40,4 +42,14 @@ public interface QuestionRepository extends JpaRepository<Question, Long> {
         @Param("level") QuestionLevel level,
         Pageable pageable
     );
-}
\ No newline at end of file
+
+    @Query("SELECT q.sampleAnswersVersion FROM Question q WHERE q.id = :id")
+    Optional<Integer> findSampleAnswersVersionById(@Param("id") Long id);
+
+    /**
+     * Tăng phiên bản tập câu trả lời mẫu một cách nguyên tử (vô hiệu hóa cache chấm điểm của câu hỏi)
+     */
+    @Modifying
+    @Query("UPDATE Question q SET q.sampleAnswersVersion = q.sampleAnswersVersion + 1 WHERE q.id = :id")
+    int incrementSampleAnswersVersion(@Param("id") Long id);
+}
@@ -0,0 +1,31 @@
+package com.aispeaking.repository;
+
+import com.aispeaking.entity.ReprocessingRun;
+import com.aispeaking.entity.enums.ReprocessingRunStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+
+@Repository
+public interface ReprocessingRunRepository extends JpaRepository<ReprocessingRun, Long> {
+    @Query("SELECT r.id FROM ReprocessingRun r WHERE r.status = :status ORDER BY r.id")
+    List<Long> findIdsByStatus(@Param("status") ReprocessingRunStatus status);
+
+    List<ReprocessingRun> findAllByOrderByIdDesc();
+
+    /**
+     * Dời con trỏ một cách nguyên tử: chỉ thành công nếu con trỏ chưa bị node khác dời,
+     * nên nhiều node cùng chạy lịch không đưa trùng một đợt vào hàng đợi.
+     */
+    @Modifying
+    @Query("""
+        UPDATE ReprocessingRun r
+        SET r.lastAnswerId = :newCursor, r.enqueuedAnswers = r.enqueuedAnswers + :count
+        WHERE r.id = :id AND r.lastAnswerId = :oldCursor
+        AND r.status = com.aispeaking.entity.enums.ReprocessingRunStatus.RUNNING
+    """)
+    int advanceCursor(@Param("id") Long id, @Param("oldCursor") Long oldCursor, @Param("newCursor") Long newCursor, @Param("count") int count);
+}
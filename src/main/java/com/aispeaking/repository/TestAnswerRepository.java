@@ -1,11 +1,75 @@
 package com.aispeaking.repository;
 
 import com.aispeaking.entity.TestAnswer;
+import com.aispeaking.entity.enums.ProcessingStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface TestAnswerRepository extends JpaRepository<TestAnswer, Long> {
+    @EntityGraph(attributePaths = "question")
     List<TestAnswer> findByTestSessionId(Long testSessionId);
+
+    @Query("SELECT ta.id FROM TestAnswer ta WHERE ta.testSession.id = :testSessionId AND ta.question.id = :questionId")
+    Optional<Long> findIdByTestSessionIdAndQuestionId(@Param("testSessionId") Long testSessionId, @Param("questionId") Long questionId);
+
+    @Query("SELECT ta FROM TestAnswer ta JOIN FETCH ta.question JOIN FETCH ta.testSession WHERE ta.id = :id")
+    Optional<TestAnswer> findWithQuestionById(@Param("id") Long id);
+
+    /**
+     * Trạng thái hiện tại của các câu trả lời trong những phiên cho trước, không nạp các cột TEXT:
+     * [id, testSessionId, processingStatus, updatedAt]
+     */
+    @Query("SELECT ta.id, ta.testSession.id, ta.processingStatus, ta.updatedAt FROM TestAnswer ta WHERE ta.testSession.id IN :testSessionIds")
+    List<Object[]> findStatusByTestSessionIds(@Param("testSessionIds") Collection<Long> testSessionIds);
+
+    /**
+     * Câu trả lời cần xử lý lại theo bộ lọc (tham số null = bỏ qua), theo id tăng dần sau con trỏ.
+     * Bỏ qua câu trả lời chưa có âm thanh hoặc đang có công việc QUEUED/RUNNING.
+     */
+    @Query("""
+        SELECT ta.id FROM TestAnswer ta
+        WHERE ta.id > :afterId
+        AND ta.processingStatus IN :statuses
+        AND ta.audioUrl IS NOT NULL
+        AND (:examId IS NULL OR ta.testSession.exam.id = :examId)
+        AND (:questionId IS NULL OR ta.question.id = :questionId)
+        AND (:fromDate IS NULL OR ta.answeredAt >= :fromDate)
+        AND (:toDate IS NULL OR ta.answeredAt <= :toDate)
+        AND NOT EXISTS (
+            SELECT 1 FROM AnswerProcessingJob j WHERE j.testAnswer = ta
+            AND j.status IN (com.aispeaking.entity.enums.AnswerJobStatus.QUEUED, com.aispeaking.entity.enums.AnswerJobStatus.RUNNING)
+        )
+        ORDER BY ta.id
+    """)
+    List<Long> findReprocessCandidateIds(@Param("afterId") Long afterId,
+                                         @Param("statuses") Collection<ProcessingStatus> statuses,
+                                         @Param("examId") Long examId,
+                                         @Param("questionId") Long questionId,
+                                         @Param("fromDate") LocalDateTime fromDate,
+                                         @Param("toDate") LocalDateTime toDate,
+                                         Pageable pageable);
+
+    @Query("""
+        SELECT COUNT(ta) FROM TestAnswer ta
+        WHERE ta.processingStatus IN :statuses
+        AND ta.audioUrl IS NOT NULL
+        AND (:examId IS NULL OR ta.testSession.exam.id = :examId)
+        AND (:questionId IS NULL OR ta.question.id = :questionId)
+        AND (:fromDate IS NULL OR ta.answeredAt >= :fromDate)
+        AND (:toDate IS NULL OR ta.answeredAt <= :toDate)
+    """)
+    long countReprocessCandidates(@Param("statuses") Collection<ProcessingStatus> statuses,
+                                  @Param("examId") Long examId,
+                                  @Param("questionId") Long questionId,
+                                  @Param("fromDate") LocalDateTime fromDate,
+                                  @Param("toDate") LocalDateTime toDate);
 }
\ No newline at end of file
@@ -4,18 +4,33 @@ import com.aispeaking.entity.TestSession;
 import com.aispeaking.entity.enums.TestSessionStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Optional;
 
 @Repository
 public interface TestSessionRepository extends JpaRepository<TestSession, Long> {
+    // Nạp sẵn exam để ánh xạ TestSessionResponse an toàn khi open-in-view tắt
+    @EntityGraph(attributePaths = "exam")
+    Page<TestSession> findAll(Pageable pageable);
+
+    @EntityGraph(attributePaths = "exam")
     Page<TestSession> findByExamId(Long examId, Pageable pageable);
+
+    @EntityGraph(attributePaths = "exam")
     Page<TestSession> findByStatus(TestSessionStatus status, Pageable pageable);
+
+    @EntityGraph(attributePaths = "exam")
+    @Query("SELECT t FROM TestSession t WHERE t.id = :id")
+    Optional<TestSession> findWithExamById(@Param("id") Long id);
     
+    @EntityGraph(attributePaths = "exam")
     @Query("SELECT t FROM TestSession t WHERE 1=1 " +
             "AND (:examId IS NULL OR t.exam.id = :examId) " +
             "AND (:studentName IS NULL OR LOWER(t.studentName) LIKE LOWER(CONCAT('%', :studentName, '%'))) " +
@@ -34,4 +49,14 @@ public interface TestSessionRepository extends JpaRepository<TestSession, Long>
         @Param("toDate") LocalDateTime toDate,
         Pageable pageable
     );
-}
\ No newline at end of file
+
+    @Query("SELECT t.stateVersion FROM TestSession t WHERE t.id = :id")
+    Optional<Long> findStateVersionById(@Param("id") Long id);
+
+    /**
+     * Tăng phiên bản trạng thái của phiên một cách nguyên tử (vô hiệu hóa snapshot/ETag của phiên)
+     */
+    @Modifying
+    @Query("UPDATE TestSession t SET t.stateVersion = t.stateVersion + 1 WHERE t.id = :id")
+    int incrementStateVersion(@Param("id") Long id);
+}
@@ -0,0 +1,28 @@
+package com.aispeaking.repository;
+
+import com.aispeaking.entity.TranscriptionCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface TranscriptionCacheRepository extends JpaRepository<TranscriptionCacheEntry, Long> {
+    Optional<TranscriptionCacheEntry> findByAudioHash(String audioHash);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE TranscriptionCacheEntry t SET t.hitCount = t.hitCount + 1, t.lastHitAt = :now WHERE t.audioHash = :audioHash")
+    int recordHit(@Param("audioHash") String audioHash, @Param("now") LocalDateTime now);
+
+    /**
+     * Xóa các bản ghi không được dùng lại kể từ {@code before}
+     */
+    @Modifying
+    @Query("DELETE FROM TranscriptionCacheEntry t WHERE COALESCE(t.lastHitAt, t.createdAt) < :before")
+    int deleteUnusedSince(@Param("before") LocalDateTime before);
+}
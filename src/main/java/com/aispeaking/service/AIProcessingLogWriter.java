@@ -0,0 +1,238 @@
+package com.aispeaking.service;
+
+import com.aispeaking.entity.enums.AIServiceType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ghi ai_processing_logs bất đồng bộ: pipeline chỉ đặt bản ghi vào bộ đệm có giới hạn,
+ * một luồng nền gom và INSERT theo lô JDBC (đủ batch-size hoặc sau flush-interval-ms).
+ * Khi bộ đệm đầy: DROP bỏ bản ghi ngay, BLOCK chờ tối đa block-timeout-ms rồi mới bỏ.
+ * Log chỉ phục vụ kiểm tra/thống kê nên mất bản ghi khi quá tải tốt hơn làm chậm việc chấm điểm.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AIProcessingLogWriter {
+    private static final String INSERT_SQL = "INSERT INTO ai_processing_logs "
+            + "(test_answer_id, service_type, request_data, response_data, processing_time_ms, error_message, created_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${ai.log-writer.capacity}")
+    private int capacity;
+
+    @Value("${ai.log-writer.batch-size}")
+    private int batchSize;
+
+    @Value("${ai.log-writer.flush-interval-ms}")
+    private long flushIntervalMs;
+
+    @Value("${ai.log-writer.overflow-policy}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${ai.log-writer.block-timeout-ms}")
+    private long blockTimeoutMs;
+
+    @Value("${ai.log-writer.max-payload-chars}")
+    private int maxPayloadChars;
+
+    private BlockingQueue<LogRecord> buffer;
+    private Thread writer;
+    private volatile boolean running;
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong truncated = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong totalFlushMs = new AtomicLong();
+    private final AtomicLong maxFlushMs = new AtomicLong();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+
+    public enum OverflowPolicy {
+        DROP,
+        BLOCK
+    }
+
+    private record LogRecord(Long testAnswerId, AIServiceType serviceType, String requestData, String responseData,
+                             Integer processingTimeMs, String errorMessage, LocalDateTime createdAt) {
+    }
+
+    @PostConstruct
+    void start() {
+        buffer = new ArrayBlockingQueue<>(capacity);
+        running = true;
+        writer = new Thread(this::runWriter, "ai-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("AI processing log writer started (capacity {}, batch size {}, flush interval {}ms, overflow {})",
+                capacity, batchSize, flushIntervalMs, overflowPolicy);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        // Ghi nốt những gì còn trong bộ đệm trước khi tắt
+        List<LogRecord> remaining = new ArrayList<>();
+        buffer.drainTo(remaining);
+        for (int from = 0; from < remaining.size(); from += batchSize) {
+            flush(remaining.subList(from, Math.min(remaining.size(), from + batchSize)));
+        }
+    }
+
+    /**
+     * Đưa một bản ghi vào bộ đệm. Trả về false nếu bản ghi bị bỏ vì bộ đệm đầy
+     */
+    public boolean append(Long testAnswerId, AIServiceType serviceType, String requestData, String responseData,
+                          Integer processingTimeMs, String errorMessage) {
+        LogRecord record = new LogRecord(testAnswerId, serviceType, truncate(requestData), truncate(responseData),
+                processingTimeMs, errorMessage, LocalDateTime.now());
+        boolean queued;
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                queued = buffer.offer(record, blockTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+        } else {
+            queued = buffer.offer(record);
+        }
+        if (queued) {
+            accepted.incrementAndGet();
+        } else if (dropped.incrementAndGet() % 100 == 1) {
+            log.warn("AI processing log buffer full ({} records), {} records dropped so far", capacity, dropped.get());
+        }
+        return queued;
+    }
+
+    public Map<String, Object> getStats() {
+        long batchCount = batches.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("capacity", capacity);
+        stats.put("buffered", buffer.size());
+        stats.put("overflowPolicy", overflowPolicy.name());
+        stats.put("batchSize", batchSize);
+        stats.put("flushIntervalMs", flushIntervalMs);
+        stats.put("accepted", accepted.get());
+        stats.put("written", written.get());
+        stats.put("dropped", dropped.get());
+        stats.put("failed", failed.get());
+        stats.put("truncated", truncated.get());
+        stats.put("batches", batchCount);
+        stats.put("avgBatchSize", batchCount == 0 ? 0.0 : (double) (written.get() + failed.get()) / batchCount);
+        stats.put("maxBatchSize", maxBatchSize.get());
+        stats.put("avgFlushMs", batchCount == 0 ? 0.0 : (double) totalFlushMs.get() / batchCount);
+        stats.put("maxFlushMs", maxFlushMs.get());
+        return stats;
+    }
+
+    private void runWriter() {
+        List<LogRecord> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                LogRecord first = buffer.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Chờ thêm tối đa flush-interval-ms để gom đủ lô
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    buffer.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    LogRecord next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                // Đang tắt: các bản ghi đã lấy ra được trả lại để stop() ghi nốt
+                batch.forEach(buffer::offer);
+                return;
+            } catch (Exception e) {
+                log.error("AI processing log writer error: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<LogRecord> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), this::bind);
+            written.addAndGet(batch.size());
+        } catch (Exception e) {
+            // Một bản ghi lỗi (ví dụ câu trả lời đã bị xóa) không được làm mất cả lô: ghi lại từng bản ghi
+            log.warn("Batch insert of {} AI processing logs failed, retrying row by row: {}", batch.size(), e.getMessage());
+            for (LogRecord record : batch) {
+                try {
+                    jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, record));
+                    written.incrementAndGet();
+                } catch (Exception rowError) {
+                    failed.incrementAndGet();
+                    log.warn("Dropping AI processing log for test answer {}: {}", record.testAnswerId(), rowError.getMessage());
+                }
+            }
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        batches.incrementAndGet();
+        totalFlushMs.addAndGet(elapsed);
+        maxFlushMs.accumulateAndGet(elapsed, Math::max);
+        maxBatchSize.accumulateAndGet(batch.size(), Math::max);
+        log.debug("Flushed {} AI processing logs in {}ms", batch.size(), elapsed);
+    }
+
+    private void bind(PreparedStatement ps, LogRecord record) throws SQLException {
+        ps.setLong(1, record.testAnswerId());
+        ps.setString(2, record.serviceType().name());
+        ps.setString(3, record.requestData());
+        ps.setString(4, record.responseData());
+        if (record.processingTimeMs() != null) {
+            ps.setInt(5, record.processingTimeMs());
+        } else {
+            ps.setNull(5, Types.INTEGER);
+        }
+        ps.setString(6, record.errorMessage());
+        ps.setTimestamp(7, Timestamp.valueOf(record.createdAt()));
+    }
+
+    private String truncate(String payload) {
+        if (payload == null || maxPayloadChars <= 0 || payload.length() <= maxPayloadChars) {
+            return payload;
+        }
+        truncated.incrementAndGet();
+        return payload.substring(0, maxPayloadChars) + "...[truncated " + (payload.length() - maxPayloadChars) + " chars]";
+    }
+}
@@ -1,142 +1,381 @@
 package com.aispeaking.service;
 
+import com.aispeaking.client.AIBackendUnavailableException;
+import com.aispeaking.client.AIServiceException;
+import com.aispeaking.client.QwenClient;
+import com.aispeaking.client.QwenScoringBatcher;
+import com.aispeaking.client.WhisperClient;
 import com.aispeaking.entity.*;
 import com.aispeaking.entity.enums.AIServiceType;
-import com.aispeaking.entity.enums.ProcessingStatus;
-import com.aispeaking.repository.AIProcessingLogRepository;
-import com.aispeaking.repository.SampleAnswerRepository;
-import com.aispeaking.repository.TestAnswerRepository;
+import com.aispeaking.util.WavChunker;
+import com.aispeaking.util.WavHeader;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.reactive.function.client.WebClient;
 import java.io.File;
 import java.math.BigDecimal;
 import java.nio.file.Files;
-import java.time.Duration;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AIProcessingService {
-    private final TestAnswerRepository testAnswerRepository;
-    private final AIProcessingLogRepository logRepository;
-    private final SampleAnswerRepository sampleAnswerRepository;
-    private final WebClient.Builder webClientBuilder;
+    // Số từ tối đa xét khi tìm phần lặp giữa hai đoạn liền kề (vùng chồng lấn chỉ khoảng 1 giây)
+    private static final int MAX_OVERLAP_WORDS = 20;
+
+    private final AnswerJobService answerJobService;
+    private final AIProcessingLogWriter aiProcessingLogWriter;
+    private final WhisperClient whisperClient;
+    private final QwenClient qwenClient;
+    private final QwenScoringBatcher qwenScoringBatcher;
+    private final TranscriptionCacheService transcriptionCacheService;
+    private final ScoringCacheService scoringCacheService;
+    private final SampleAnswerSnapshotService sampleAnswerSnapshotService;
+    private final AlgorithmicScorer algorithmicScorer;
+    private final VoiceActivityGate voiceActivityGate;
     private final ObjectMapper objectMapper;
 
-    @Value("${ai.whisper.url}")
-    private String whisperUrl;
+    @Value("${ai.whisper.concurrency}")
+    private int whisperConcurrency;
+
+    @Value("${ai.whisper.queue-capacity}")
+    private int whisperQueueCapacity;
+
+    @Value("${ai.qwen.concurrency}")
+    private int qwenConcurrency;
+
+    @Value("${ai.qwen.queue-capacity}")
+    private int qwenQueueCapacity;
+
+    @Value("${ai.qwen.latency-budget-ms}")
+    private long qwenLatencyBudgetMs;
+
+    @Value("${ai.algorithmic-scorer.provisional-enabled}")
+    private boolean provisionalScoreEnabled;
+
+    @Value("${ai.algorithmic-scorer.fallback-enabled}")
+    private boolean algorithmicFallbackEnabled;
+
+    @Value("${ai.whisper.chunking.enabled}")
+    private boolean chunkingEnabled;
+
+    @Value("${ai.whisper.chunking.min-duration-ms}")
+    private long chunkingMinDurationMs;
+
+    @Value("${ai.whisper.chunking.chunk-ms}")
+    private long chunkMs;
+
+    @Value("${ai.whisper.chunking.overlap-ms}")
+    private long chunkOverlapMs;
+
+    @Value("${ai.whisper.chunking.search-window-ms}")
+    private long chunkSearchWindowMs;
+
+    @Value("${ai.whisper.chunking.max-fan-out}")
+    private int chunkMaxFanOut;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private final AtomicLong provisionalScores = new AtomicLong();
+    private final AtomicLong provisionalScoreNanos = new AtomicLong();
+    private final Map<String, AtomicLong> algorithmicFallbacks = new ConcurrentHashMap<>();
+    private final AtomicLong chunkedTranscriptions = new AtomicLong();
+    private final AtomicLong transcribedChunks = new AtomicLong();
+    private final AtomicLong dedupedWords = new AtomicLong();
 
-    @Value("${ai.qwen.url}")
-    private String qwenUrl;
+    // Công việc đã nhận vào pipeline và chưa kết thúc (được cập nhật heartbeat định kỳ)
+    private final Set<Long> inFlightJobs = ConcurrentHashMap.newKeySet();
+    private PipelineStage<Long> transcriptionStage;
+    private PipelineStage<ScoringTask> scoringStage;
+    // Chuyển giọng nói các đoạn của câu trả lời dài: mỗi worker Whisper dùng tối đa max-fan-out luồng
+    private ExecutorService chunkTranscribers;
 
-    @Value("${ai.request.timeout}")
-    private long timeout;
+    /**
+     * Câu trả lời đã chuyển giọng nói xong, chờ công đoạn chấm điểm
+     */
+    private record ScoringTask(AnswerWorkItem item, String transcribedText) {
+    }
 
     /**
-     * Xử lý câu trả lời bài kiểm tra bất đồng bộ (xử lý nền)
-     * Lưu vào cơ sở dữ liệu sau khi xử lý hoàn tất
+     * Pipeline hai công đoạn, mỗi công đoạn có hàng đợi và số worker riêng:
+     *   transcription (ai.whisper.concurrency): startJob -> Whisper -> markTranscribed
+     *   scoring (ai.qwen.concurrency): Qwen -> completeJob
+     * Không công đoạn nào giữ giao dịch hay kết nối DB khi chờ dịch vụ AI.
      */
-    @Async
-    @Transactional
-    public void processTestAnswer(TestAnswer testAnswer) {
-        // Xử lý đồng bộ (cập nhật đối tượng)
-        processTestAnswerSync(testAnswer);
-        // Lưu vào cơ sở dữ liệu (ngữ cảnh bất đồng bộ, giao dịch riêng biệt)
-        testAnswerRepository.save(testAnswer);
-        log.info("Async processing completed and saved for test answer {}", testAnswer.getId());
+    @PostConstruct
+    void startPipeline() {
+        scoringStage = new PipelineStage<>("qwen", qwenConcurrency, qwenQueueCapacity, virtualThreads, this::runScoringStage);
+        transcriptionStage = new PipelineStage<>("whisper", whisperConcurrency, whisperQueueCapacity, virtualThreads, this::runTranscriptionStage);
+        ThreadFactory chunkFactory = virtualThreads
+                ? Thread.ofVirtual().name("whisper-chunk-", 1).factory()
+                : Thread.ofPlatform().name("whisper-chunk-", 1).daemon(true).factory();
+        chunkTranscribers = Executors.newFixedThreadPool(Math.max(1, whisperConcurrency * Math.max(1, chunkMaxFanOut)), chunkFactory);
+        scoringStage.start();
+        transcriptionStage.start();
+    }
+
+    @PreDestroy
+    void stopPipeline() {
+        // Công việc còn trong hàng đợi vẫn ở trạng thái RUNNING trong DB và sẽ được khôi phục khi khởi động lại
+        transcriptionStage.stop();
+        scoringStage.stop();
+        chunkTranscribers.shutdownNow();
     }
 
     /**
-     * Xử lý câu trả lời bài kiểm tra đồng bộ (chặn cho đến khi hoàn thành)
-     * QUAN TRỌNG: Phương thức này KHÔNG lưu vào cơ sở dữ liệu. Nó chỉ cập nhật đối tượng TestAnswer.
-     * Người gọi có trách nhiệm lưu vào cơ sở dữ liệu sau khi phương thức này hoàn thành.
-     * Điều này đảm bảo giao dịch nguyên tử - chỉ lưu một lần sau khi tất cả quá trình xử lý hoàn tất.
+     * Đưa một công việc đã claim vào công đoạn chuyển giọng nói.
+     * Trả về false nếu hàng đợi đã đầy (người gọi cần trả công việc về hàng đợi DB).
      */
-    public void processTestAnswerSync(TestAnswer testAnswer) {
-        log.info("Starting AI processing for test answer {}", testAnswer.getId());
+    public boolean submit(Long jobId) {
+        inFlightJobs.add(jobId);
+        if (transcriptionStage.offer(jobId)) {
+            return true;
+        }
+        inFlightJobs.remove(jobId);
+        return false;
+    }
+
+    /**
+     * ID các công việc đang nằm trong pipeline của node này
+     */
+    public List<Long> inFlightJobIds() {
+        return List.copyOf(inFlightJobs);
+    }
+
+    /**
+     * Số công việc có thể nhận thêm ngay lúc này
+     */
+    public int availableCapacity() {
+        return transcriptionStage.remainingCapacity();
+    }
+
+    public List<Map<String, Object>> getPipelineStats() {
+        return List.of(transcriptionStage.getStats(), scoringStage.getStats());
+    }
+
+    public Map<String, Object> getAlgorithmicScorerStats() {
+        long count = provisionalScores.get();
+        Map<String, Object> fallbacks = new LinkedHashMap<>();
+        algorithmicFallbacks.forEach((reason, counter) -> fallbacks.put(reason, counter.get()));
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("provisionalEnabled", provisionalScoreEnabled);
+        stats.put("fallbackEnabled", algorithmicFallbackEnabled);
+        stats.put("qwenLatencyBudgetMs", qwenLatencyBudgetMs);
+        stats.put("provisionalScores", count);
+        stats.put("avgProvisionalScoreUs", count == 0 ? 0.0 : provisionalScoreNanos.get() / 1000.0 / count);
+        stats.put("fallbacks", fallbacks);
+        return stats;
+    }
+
+    public Map<String, Object> getChunkingStats() {
+        long chunked = chunkedTranscriptions.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", chunkingEnabled);
+        stats.put("minDurationMs", chunkingMinDurationMs);
+        stats.put("chunkMs", chunkMs);
+        stats.put("overlapMs", chunkOverlapMs);
+        stats.put("maxFanOut", chunkMaxFanOut);
+        stats.put("chunkedTranscriptions", chunked);
+        stats.put("chunksTranscribed", transcribedChunks.get());
+        stats.put("avgChunksPerTranscription", chunked == 0 ? 0.0 : (double) transcribedChunks.get() / chunked);
+        stats.put("dedupedOverlapWords", dedupedWords.get());
+        return stats;
+    }
+
+    private void runTranscriptionStage(Long jobId) {
+        AnswerWorkItem item = null;
+        boolean handedOff = false;
+        try {
+            item = answerJobService.startJob(jobId);
+            if (item == null) {
+                log.warn("Job {} was requeued or finished while waiting in the pipeline, skipping", jobId);
+                return;
+            }
+            log.info("Starting AI processing for test answer {} (job {})", item.getTestAnswerId(), jobId);
+            String transcribedText = item.getTranscribedText();
+            if (transcribedText != null) {
+                log.info("Test answer {} - Reusing existing transcription, skipping Whisper", item.getTestAnswerId());
+            } else {
+                // Bước 1: Chuyển đổi âm thanh thành văn bản với Whisper
+                log.info("Test answer {} - Status: TRANSCRIBING", item.getTestAnswerId());
+                transcribedText = transcribeAudio(item);
+                log.info("Test answer {} - Transcription completed: {}", item.getTestAnswerId(), transcribedText.substring(0, Math.min(50, transcribedText.length())));
+                if (!answerJobService.markTranscribed(item, transcribedText, provisionalScore(item, transcribedText))) {
+                    return;
+                }
+            }
+            // Chờ nếu công đoạn chấm điểm đang quá tải
+            scoringStage.put(new ScoringTask(item, transcribedText));
+            handedOff = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Job {} interrupted while waiting for the scoring stage, it will be recovered", jobId);
+        } catch (Exception e) {
+            handleFailure(jobId, item, e);
+        } finally {
+            if (!handedOff) {
+                inFlightJobs.remove(jobId);
+            }
+        }
+    }
+
+    private void runScoringStage(ScoringTask task) {
+        AnswerWorkItem item = task.item();
         try {
-            // Bước 1: Chuyển đổi âm thanh thành văn bản với Whisper
-            testAnswer.setProcessingStatus(ProcessingStatus.TRANSCRIBING);
-            log.info("Test answer {} - Status: TRANSCRIBING", testAnswer.getId());
-            String transcribedText = transcribeAudio(testAnswer);
-            testAnswer.setTranscribedText(transcribedText);
-            log.info("Test answer {} - Transcription completed: {}", testAnswer.getId(), transcribedText.substring(0, Math.min(50, transcribedText.length())));
             // Bước 2: Chấm điểm với Qwen
-            testAnswer.setProcessingStatus(ProcessingStatus.SCORING);
-            log.info("Test answer {} - Status: SCORING", testAnswer.getId());
-            Map<String, Object> scoringResult = scoreAnswer(testAnswer);
+            log.info("Test answer {} - Status: SCORING", item.getTestAnswerId());
+            Map<String, Object> scoringResult = scoreAnswer(item, task.transcribedText());
             BigDecimal score = new BigDecimal(scoringResult.get("score").toString());
             String feedback = scoringResult.get("feedback").toString();
-            testAnswer.setScore(score);
-            testAnswer.setFeedback(feedback);
-            testAnswer.setProcessingStatus(ProcessingStatus.COMPLETED);
-            log.info("Completed AI processing for test answer {} - Score: {}, Status: COMPLETED", testAnswer.getId(), score);
+            answerJobService.completeJob(item, score, feedback);
+            log.info("Completed AI processing for test answer {} - Score: {}, Status: COMPLETED", item.getTestAnswerId(), score);
         } catch (Exception e) {
-            log.error("Error processing test answer {}: {}", testAnswer.getId(), e.getMessage(), e);
-            testAnswer.setProcessingStatus(ProcessingStatus.FAILED);
-            testAnswer.setFeedback("Lỗi xử lý: " + e.getMessage());
-            log.warn("Test answer {} - Status: FAILED", testAnswer.getId());
+            handleFailure(item.getJobId(), item, e);
+        } finally {
+            inFlightJobs.remove(item.getJobId());
+        }
+    }
+
+    /**
+     * Điểm thuật toán tính ngay trong JVM (vài chục micro giây) để người dùng thấy kết quả tạm trong lúc chờ Qwen
+     */
+    private BigDecimal provisionalScore(AnswerWorkItem item, String transcribedText) {
+        if (!provisionalScoreEnabled || transcribedText.isBlank()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        SampleAnswerSnapshotService.SampleAnswerSnapshot snapshot = sampleAnswerSnapshotService.getSnapshot(item.getQuestionId());
+        AlgorithmicScorer.Result result = algorithmicScorer.score(transcribedText, snapshot.preparedSamples());
+        provisionalScoreNanos.addAndGet(System.nanoTime() - start);
+        provisionalScores.incrementAndGet();
+        log.info("Test answer {} - Provisional algorithmic score: {}", item.getTestAnswerId(), result.score());
+        return BigDecimal.valueOf(result.score());
+    }
+
+    private void handleFailure(Long jobId, AnswerWorkItem item, Exception e) {
+        Long testAnswerId = item != null ? item.getTestAnswerId() : null;
+        if (e instanceof AudioRejectedException rejected && testAnswerId != null) {
+            // Âm thanh im lặng/hỏng: không thử lại, không tính là lỗi dịch vụ AI
+            log.warn("Rejecting job {} (test answer {}) without calling Whisper: {} - {}", jobId, testAnswerId, rejected.getReason(), rejected.getMessage());
+            answerJobService.rejectJob(item, rejected.getReason(), rejected.getFeedback());
+            return;
+        }
+        AIBackendUnavailableException unavailable = findUnavailableCause(e);
+        if (unavailable != null) {
+            // Dịch vụ AI đang ngắt mạch: giữ PENDING và thử lại sau, không đánh dấu FAILED
+            log.warn("Deferring job {} (test answer {}) for {}ms: {}", jobId, testAnswerId, unavailable.getRetryAfterMs(), unavailable.getMessage());
+            answerJobService.deferJob(jobId, item, unavailable.getRetryAfterMs(), unavailable.getMessage());
+            return;
         }
+        log.error("Error processing job {} (test answer {}): {}", jobId, testAnswerId, e.getMessage(), e);
+        answerJobService.failJob(jobId, item, e.getMessage());
+        log.warn("Test answer {} - Status: FAILED", testAnswerId);
     }
 
-    private String transcribeAudio(TestAnswer testAnswer) throws Exception {
+    private static AIBackendUnavailableException findUnavailableCause(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof AIBackendUnavailableException unavailable) {
+                return unavailable;
+            }
+        }
+        return null;
+    }
+
+    private String transcribeAudio(AnswerWorkItem item) throws Exception {
         long startTime = System.currentTimeMillis();
-        log.info("Transcribing audio for test answer {}, file: {}", testAnswer.getId(), testAnswer.getAudioUrl());
-        File audioFile = new File(testAnswer.getAudioUrl());
+        log.info("Transcribing audio for test answer {}, file: {}", item.getTestAnswerId(), item.getAudioUrl());
+        File audioFile = new File(item.getAudioUrl());
         if (!audioFile.exists()) {
-            throw new RuntimeException("Audio file not found: " + testAnswer.getAudioUrl());
+            throw new RuntimeException("Audio file not found: " + item.getAudioUrl());
         }
-        byte[] audioBytes = Files.readAllBytes(audioFile.toPath());
-        log.info("Audio file size: {} bytes", audioBytes.length);
-        WebClient webClient = webClientBuilder.baseUrl(whisperUrl).build();
-        Map<String, Object> request = new HashMap<>();
-        request.put("audio_data", audioBytes);
+        long audioSize = audioFile.length();
+        log.info("Audio file size: {} bytes", audioSize);
+        // Loại file im lặng/hỏng trước khi gọi AI; xác định khoảng lặng đầu/cuối cần cắt
+        VoiceActivityGate.SpeechRange speech = voiceActivityGate.check(item.getExamId(), audioFile.toPath());
         // Tạo metadata cho việc ghi log (không có dữ liệu âm thanh để tránh tràn cơ sở dữ liệu)
         Map<String, Object> requestMetadata = new HashMap<>();
-        requestMetadata.put("audio_file", testAnswer.getAudioUrl());
-        requestMetadata.put("audio_size_bytes", audioBytes.length);
+        requestMetadata.put("audio_file", item.getAudioUrl());
+        requestMetadata.put("audio_size_bytes", audioSize);
+        // Tra cache theo nội dung file: cùng bản ghi âm (nộp lại, chấm lại) không cần gọi lại Whisper
+        String audioHash = null;
+        if (transcriptionCacheService.isEnabled()) {
+            audioHash = TranscriptionCacheService.sha256(audioFile);
+            requestMetadata.put("audio_sha256", audioHash);
+            Optional<String> cached = transcriptionCacheService.get(audioHash);
+            requestMetadata.put("cache", cached.isPresent() ? "HIT" : "MISS");
+            if (cached.isPresent()) {
+                long processingTime = System.currentTimeMillis() - startTime;
+                log.info("Transcription cache HIT for test answer {} (sha256 {}) in {}ms", item.getTestAnswerId(), audioHash, processingTime);
+                logAIRequest(item.getTestAnswerId(), AIServiceType.WHISPER, objectMapper.writeValueAsString(requestMetadata),
+                        objectMapper.writeValueAsString(Map.of("transcribedText", cached.get(), "cached", true)), (int) processingTime, null);
+                return cached.get();
+            }
+            log.info("Transcription cache MISS for test answer {} (sha256 {})", item.getTestAnswerId(), audioHash);
+        }
+        Path trimmedFile = null;
+        String transcribedText;
+        try {
+            if (speech != null) {
+                trimmedFile = voiceActivityGate.writeTrimmed(item.getExamId(), audioFile.toPath(), speech);
+                requestMetadata.put("vad_trimmed_ms", speech.trimmedMs());
+            }
+            transcribedText = transcribeFile(item, trimmedFile != null ? trimmedFile.toFile() : audioFile, requestMetadata, startTime);
+        } finally {
+            if (trimmedFile != null) {
+                Files.deleteIfExists(trimmedFile);
+            }
+        }
+        // Kiểm tra văn bản chuyển đổi không được rỗng
+        if (transcribedText == null || transcribedText.trim().isEmpty()) {
+            log.warn("Whisper returned empty text for test answer {}", item.getTestAnswerId());
+            throw new RuntimeException("Whisper returned empty transcription. The audio may be silent or corrupted.");
+        }
+        log.info("Transcribed text (length {} chars): {}", transcribedText.length(), transcribedText);
+        if (audioHash != null) {
+            transcriptionCacheService.put(audioHash, transcribedText, audioSize);
+        }
+        return transcribedText;
+    }
+
+    /**
+     * Gửi file tới Whisper: chia đoạn song song nếu đủ dài, nếu không thì một request
+     */
+    private String transcribeFile(AnswerWorkItem item, File audioFile, Map<String, Object> requestMetadata, long startTime) throws Exception {
+        List<WavChunker.Chunk> chunks = planChunks(audioFile);
+        if (chunks.size() > 1) {
+            String transcribedText = transcribeChunks(item, audioFile, chunks, requestMetadata);
+            log.info("Whisper transcribed {} chunks of test answer {} in {}ms", chunks.size(), item.getTestAnswerId(),
+                    System.currentTimeMillis() - startTime);
+            return transcribedText;
+        }
         String requestJson = objectMapper.writeValueAsString(requestMetadata);
-        log.info("Sending transcribe request to Whisper at {}/transcribe", whisperUrl);
+        log.info("Sending transcribe request to Whisper ({})", whisperClient.getBaseUrl());
         String response;
         try {
-            response = webClient.post()
-                    .uri("/transcribe")
-                    .header("Content-Type", "application/json")
-                    .bodyValue(request)
-                    .retrieve()
-                    .onStatus(
-                        status -> status.is4xxClientError(),
-                        clientResponse -> {
-                            return clientResponse.bodyToMono(String.class)
-                                .map(errorBody -> {
-                                    log.error("Whisper API returned 4xx error. Status: {}, Body: {}", clientResponse.statusCode(), errorBody);
-                                    return new RuntimeException("Whisper API error (4xx): " + errorBody);
-                                });
-                        }
-                    )
-                    .onStatus(
-                        status -> status.is5xxServerError(),
-                        clientResponse -> {
-                            return clientResponse.bodyToMono(String.class)
-                                .map(errorBody -> {
-                                    log.error("Whisper API returned 5xx error. Status: {}, Body: {}", clientResponse.statusCode(), errorBody);
-                                    return new RuntimeException("Whisper API error (5xx): " + errorBody);
-                                });
-                        }
-                    )
-                    .bodyToMono(String.class)
-                    .timeout(Duration.ofMillis(timeout))
-                    .block();
+            response = whisperClient.transcribe(audioFile);
         } catch (Exception e) {
             log.error("Error calling Whisper API: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to transcribe audio with Whisper: " + e.getMessage(), e);
@@ -145,27 +384,137 @@ public class AIProcessingService {
         log.info("Whisper response received in {}ms", processingTime);
         log.info("Whisper raw response: {}", response);
         // Ghi log request/response
-        logAIRequest(testAnswer, AIServiceType.WHISPER, requestJson, response, (int) processingTime, null);
+        logAIRequest(item.getTestAnswerId(), AIServiceType.WHISPER, requestJson, response, (int) processingTime, null);
+        return parseTranscription(response);
+    }
+
+    private String parseTranscription(String response) throws Exception {
         JsonNode jsonNode = objectMapper.readTree(response);
         // Kiểm tra xem trường transcribedText có tồn tại không
         if (!jsonNode.has("transcribedText")) {
             throw new RuntimeException("Whisper response missing 'transcribedText' field. Response: " + response);
         }
-        String transcribedText = jsonNode.get("transcribedText").asText();
-        // Kiểm tra văn bản chuyển đổi không được rỗng
-        if (transcribedText == null || transcribedText.trim().isEmpty()) {
-            log.warn("Whisper returned empty text! Full response: {}", response);
-            throw new RuntimeException("Whisper returned empty transcription. The audio may be silent or corrupted.");
+        return jsonNode.get("transcribedText").asText();
+    }
+
+    /**
+     * Các đoạn cần chuyển giọng nói song song; một phần tử (hoặc rỗng) khi không chia:
+     * tắt chia đoạn, không phải WAV PCM 16-bit hoặc ngắn hơn min-duration-ms
+     */
+    private List<WavChunker.Chunk> planChunks(File audioFile) {
+        if (!chunkingEnabled) {
+            return List.of();
         }
-        log.info("Transcribed text (length {} chars): {}", transcribedText.length(), transcribedText);
-        return transcribedText;
+        try {
+            WavHeader header = WavHeader.read(audioFile.toPath());
+            if (header == null || header.audioFormat() != WavHeader.FORMAT_PCM || header.bitsPerSample() != 16
+                    || header.durationMs() <= chunkingMinDurationMs) {
+                return List.of();
+            }
+            return WavChunker.plan(audioFile.toPath(), header, chunkMs, chunkOverlapMs, chunkSearchWindowMs);
+        } catch (Exception e) {
+            log.warn("Could not plan chunks for {}, transcribing as a whole: {}", audioFile, e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Chuyển giọng nói các đoạn song song (tối đa max-fan-out đoạn cùng lúc cho một câu trả lời; các request
+     * được AIEndpointPool phân bổ qua các instance Whisper) rồi ghép văn bản, bỏ phần lặp ở vùng chồng lấn
+     */
+    private String transcribeChunks(AnswerWorkItem item, File audioFile, List<WavChunker.Chunk> chunks,
+                                    Map<String, Object> requestMetadata) throws Exception {
+        WavHeader header = WavHeader.read(audioFile.toPath());
+        String[] texts = new String[chunks.size()];
+        AtomicInteger nextChunk = new AtomicInteger();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        List<CompletableFuture<Void>> lanes = new ArrayList<>();
+        for (int lane = 0; lane < Math.max(1, Math.min(chunkMaxFanOut, chunks.size())); lane++) {
+            lanes.add(CompletableFuture.runAsync(() -> {
+                int index;
+                while (failure.get() == null && (index = nextChunk.getAndIncrement()) < chunks.size()) {
+                    try {
+                        texts[index] = transcribeChunk(item, audioFile, header, chunks.get(index), requestMetadata);
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            }, chunkTranscribers));
+        }
+        CompletableFuture.allOf(lanes.toArray(CompletableFuture[]::new)).join();
+        if (failure.get() != null) {
+            throw new RuntimeException("Failed to transcribe audio with Whisper: " + failure.get().getMessage(), failure.get());
+        }
+        chunkedTranscriptions.incrementAndGet();
+        transcribedChunks.addAndGet(chunks.size());
+        return mergeOverlapping(texts);
     }
 
-    private Map<String, Object> scoreAnswer(TestAnswer testAnswer) throws Exception {
+    private String transcribeChunk(AnswerWorkItem item, File audioFile, WavHeader header, WavChunker.Chunk chunk,
+                                   Map<String, Object> requestMetadata) throws Exception {
         long startTime = System.currentTimeMillis();
-        log.info("Starting Qwen scoring for test answer {}", testAnswer.getId());
+        Map<String, Object> chunkMetadata = new HashMap<>(requestMetadata);
+        chunkMetadata.put("chunk", chunk.index());
+        chunkMetadata.put("chunk_start_ms", chunk.startMs());
+        chunkMetadata.put("chunk_end_ms", chunk.endMs());
+        String requestJson = objectMapper.writeValueAsString(chunkMetadata);
+        Path chunkFile = Files.createTempFile("chunk-" + item.getTestAnswerId() + "-" + chunk.index() + "-", ".wav");
+        try {
+            WavChunker.writeChunk(audioFile.toPath(), header, chunk, chunkFile);
+            String response = whisperClient.transcribe(chunkFile.toFile());
+            long processingTime = System.currentTimeMillis() - startTime;
+            log.info("Test answer {} - chunk {} ({}-{}ms) transcribed in {}ms", item.getTestAnswerId(), chunk.index(),
+                    chunk.startMs(), chunk.endMs(), processingTime);
+            logAIRequest(item.getTestAnswerId(), AIServiceType.WHISPER, requestJson, response, (int) processingTime, null);
+            return parseTranscription(response);
+        } finally {
+            Files.deleteIfExists(chunkFile);
+        }
+    }
+
+    /**
+     * Ghép văn bản các đoạn: phần đầu của đoạn sau trùng (không phân biệt hoa thường, dấu câu) với phần cuối
+     * văn bản đã ghép - do vùng chồng lấn được chuyển giọng nói hai lần - chỉ được giữ một lần
+     */
+    private String mergeOverlapping(String[] texts) {
+        List<String> words = new ArrayList<>();
+        for (String text : texts) {
+            String[] next = text == null ? new String[0] : text.trim().split("\\s+");
+            if (next.length == 1 && next[0].isEmpty()) {
+                continue;
+            }
+            int overlap = 0;
+            for (int k = Math.min(MAX_OVERLAP_WORDS, Math.min(words.size(), next.length)); k > 0; k--) {
+                if (sameWords(words.subList(words.size() - k, words.size()), next, k)) {
+                    overlap = k;
+                    break;
+                }
+            }
+            dedupedWords.addAndGet(overlap);
+            for (int i = overlap; i < next.length; i++) {
+                words.add(next[i]);
+            }
+        }
+        return String.join(" ", words);
+    }
+
+    private static boolean sameWords(List<String> tail, String[] head, int count) {
+        for (int i = 0; i < count; i++) {
+            if (!normalizeWord(tail.get(i)).equals(normalizeWord(head[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String normalizeWord(String word) {
+        return word.replaceAll("[^\\p{L}\\p{N}]", "").toLowerCase();
+    }
+
+    private Map<String, Object> scoreAnswer(AnswerWorkItem item, String transcribedText) throws Exception {
+        long startTime = System.currentTimeMillis();
+        log.info("Starting Qwen scoring for test answer {}", item.getTestAnswerId());
         // Kiểm tra văn bản đã chuyển đổi
-        String transcribedText = testAnswer.getTranscribedText();
         if (transcribedText == null || transcribedText.trim().isEmpty()) {
             String errorMsg = "Cannot score: transcribed text is empty. Whisper may have failed to transcribe the audio.";
             log.error(errorMsg);
@@ -174,26 +523,32 @@ public class AIProcessingService {
         log.info("Transcribed text to score (length: {} chars): {}", 
                 transcribedText.length(), 
                 transcribedText.substring(0, Math.min(100, transcribedText.length())));
-        // Lấy các câu trả lời mẫu cho câu hỏi
-        List<SampleAnswer> sampleAnswers = sampleAnswerRepository.findByQuestionId(testAnswer.getQuestion().getId());
-        log.info("Found {} sample answers for question {}", sampleAnswers.size(), testAnswer.getQuestion().getId());
-        WebClient webClient = webClientBuilder.baseUrl(qwenUrl).build();
+        // Snapshot câu trả lời mẫu (đã ở định dạng Qwen) kèm phiên bản dùng cho khóa cache chấm điểm
+        SampleAnswerSnapshotService.SampleAnswerSnapshot snapshot = sampleAnswerSnapshotService.getSnapshot(item.getQuestionId());
+        String cacheKey = null;
+        if (scoringCacheService.isEnabled()) {
+            cacheKey = ScoringCacheService.cacheKey(item.getQuestionId(), snapshot.version(), transcribedText);
+            Optional<String> cached = scoringCacheService.get(cacheKey);
+            if (cached.isPresent()) {
+                long processingTime = System.currentTimeMillis() - startTime;
+                log.info("Scoring cache HIT for test answer {} (key {}) in {}ms", item.getTestAnswerId(), cacheKey, processingTime);
+                Map<String, Object> cacheRequest = new HashMap<>();
+                cacheRequest.put("question_id", item.getQuestionId());
+                cacheRequest.put("sample_answers_version", snapshot.version());
+                cacheRequest.put("cache", "HIT");
+                logAIRequest(item.getTestAnswerId(), AIServiceType.QWEN, objectMapper.writeValueAsString(cacheRequest), cached.get(), (int) processingTime, null);
+                return parseScoringResponse(cached.get());
+            }
+        }
+        List<Map<String, Object>> sampleList = snapshot.sampleAnswers();
+        log.info("Found {} sample answers for question {}", sampleList.size(), item.getQuestionId());
         // Xây dựng request theo định dạng mà qwen_server mong đợi
         Map<String, Object> request = new HashMap<>();
-        request.put("question", testAnswer.getQuestion().getContent());
+        request.put("question", item.getQuestionContent());
         request.put("transcribedText", transcribedText);
-        // Thêm các câu trả lời mẫu theo định dạng mong đợi
-        List<Map<String, Object>> sampleList = sampleAnswers.stream()
-                .map(sample -> {
-                    Map<String, Object> sampleMap = new HashMap<>();
-                    sampleMap.put("content", sample.getContent());  // Qwen mong đợi "content" không phải "text"
-                    sampleMap.put("score", sample.getScore());
-                    return sampleMap;
-                })
-                .toList();
         request.put("sample_answers", sampleList);
         String requestJson = objectMapper.writeValueAsString(request);
-        log.info("Sending score request to Qwen at {}/score", qwenUrl);
+        log.info("Sending score request to Qwen ({})", qwenClient.getBaseUrl());
         log.info("Request JSON payload:");
         log.info("  - question: {}", request.get("question"));
         log.info("  - transcribedText length: {} chars", transcribedText.length());
@@ -205,58 +560,78 @@ public class AIProcessingService {
         }
         log.debug("Full request JSON: {}", requestJson);
         try {
-            String response = webClient.post()
-                    .uri("/score")
-                    .header("Content-Type", "application/json")
-                    .bodyValue(request)
-                    .retrieve()
-                    .onStatus(
-                        status -> status.is4xxClientError(),
-                        clientResponse -> {
-                            return clientResponse.bodyToMono(String.class)
-                                .map(errorBody -> {
-                                    log.error("Qwen API returned 4xx error. Status: {}, Body: {}", clientResponse.statusCode(), errorBody);
-                                    return new RuntimeException("Qwen API error (4xx): " + errorBody);
-                                });
-                        }
-                    )
-                    .onStatus(
-                        status -> status.is5xxServerError(),
-                        clientResponse -> {
-                            return clientResponse.bodyToMono(String.class)
-                                .map(errorBody -> {
-                                    log.error("Qwen API returned 5xx error. Status: {}, Body: {}", clientResponse.statusCode(), errorBody);
-                                    return new RuntimeException("Qwen API error (5xx): " + errorBody);
-                                });
-                        }
-                    )
-                    .bodyToMono(String.class)
-                    .timeout(Duration.ofMillis(timeout))
-                    .block();
+            String response = qwenScoringBatcher.score(request, qwenLatencyBudgetMs);
             long processingTime = System.currentTimeMillis() - startTime;
             log.info("Qwen response received in {}ms: {}", processingTime, response);
             // Ghi log request/response
-            logAIRequest(testAnswer, AIServiceType.QWEN, requestJson, response, (int) processingTime, null);
-            JsonNode jsonNode = objectMapper.readTree(response);
-            Map<String, Object> result = new HashMap<>();
-            result.put("score", jsonNode.get("score").asDouble());
-            result.put("feedback", jsonNode.get("feedback").asText());
+            logAIRequest(item.getTestAnswerId(), AIServiceType.QWEN, requestJson, response, (int) processingTime, null);
+            Map<String, Object> result = parseScoringResponse(response);
+            if (cacheKey != null) {
+                scoringCacheService.put(cacheKey, response);
+            }
             log.info("Qwen scoring completed: score={}, feedback={}", result.get("score"), result.get("feedback"));
             return result;
         } catch (Exception e) {
+            String fallbackReason = algorithmicFallbackEnabled ? fallbackReason(e) : null;
+            if (fallbackReason != null) {
+                return scoreAlgorithmically(item, transcribedText, snapshot, requestJson, fallbackReason, e, startTime);
+            }
             log.error("Error calling Qwen API: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to score answer with Qwen: " + e.getMessage(), e);
         }
     }
 
-    private void logAIRequest(TestAnswer testAnswer, AIServiceType serviceType, String request, String response, Integer processingTime, String error) {
-        AIProcessingLog log = new AIProcessingLog();
-        log.setTestAnswer(testAnswer);
-        log.setServiceType(serviceType);
-        log.setRequestData(request);
-        log.setResponseData(response);
-        log.setProcessingTimeMs(processingTime);
-        log.setErrorMessage(error);
-        logRepository.save(log);
+    /**
+     * Lỗi nào của Qwen cho phép chấm bằng thuật toán thay thế: quá ngân sách độ trễ, đang ngắt mạch,
+     * không kết nối được hoặc lỗi 5xx. Lỗi 4xx (request sai) vẫn làm công việc thất bại như trước
+     */
+    private static String fallbackReason(Exception error) {
+        if (error instanceof TimeoutException) {
+            return "LATENCY_BUDGET";
+        }
+        if (findUnavailableCause(error) != null) {
+            return "CIRCUIT_OPEN";
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof AIServiceException serviceError) {
+                int status = serviceError.getStatusCode();
+                return status == 0 || status >= 500 ? "QWEN_ERROR" : null;
+            }
+        }
+        return null;
+    }
+
+    private Map<String, Object> scoreAlgorithmically(AnswerWorkItem item, String transcribedText,
+                                                     SampleAnswerSnapshotService.SampleAnswerSnapshot snapshot, String requestJson,
+                                                     String reason, Exception error, long startTime) throws Exception {
+        AlgorithmicScorer.Result algorithmic = algorithmicScorer.score(transcribedText, snapshot.preparedSamples());
+        Map<String, Object> result = new HashMap<>();
+        result.put("score", algorithmic.score());
+        result.put("feedback", algorithmicScorer.feedback(algorithmic));
+        algorithmicFallbacks.computeIfAbsent(reason, key -> new AtomicLong()).incrementAndGet();
+        long processingTime = System.currentTimeMillis() - startTime;
+        log.warn("Qwen unavailable for test answer {} ({}: {}), using algorithmic score {}",
+                item.getTestAnswerId(), reason, error.getMessage(), algorithmic.score());
+        // Ghi log kèm lỗi của Qwen; kết quả thay thế không được đưa vào cache chấm điểm
+        Map<String, Object> response = new LinkedHashMap<>(result);
+        response.put("algo_score", algorithmic.score());
+        response.put("model_score", null);
+        response.put("fallback", reason);
+        logAIRequest(item.getTestAnswerId(), AIServiceType.QWEN, requestJson, objectMapper.writeValueAsString(response),
+                (int) processingTime, reason + ": " + error.getMessage());
+        return result;
+    }
+
+    private Map<String, Object> parseScoringResponse(String response) throws Exception {
+        JsonNode jsonNode = objectMapper.readTree(response);
+        Map<String, Object> result = new HashMap<>();
+        result.put("score", jsonNode.get("score").asDouble());
+        result.put("feedback", jsonNode.get("feedback").asText());
+        return result;
+    }
+
+    private void logAIRequest(Long testAnswerId, AIServiceType serviceType, String request, String response, Integer processingTime, String error) {
+        // Không chờ bảng log: bản ghi được ghi theo lô bởi luồng nền
+        aiProcessingLogWriter.append(testAnswerId, serviceType, request, response, processingTime, error);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,20 @@
+package com.aispeaking.service;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Bài nộp bị từ chối bởi kiểm soát tiếp nhận: 429 khi hàng đợi hoặc bộ đệm âm thanh vượt ngưỡng,
+ * 503 khi dịch vụ AI đang không khả dụng. Client nên thử lại sau retryAfterSeconds giây.
+ */
+@Getter
+public class AdmissionRejectedException extends RuntimeException {
+    private final HttpStatus status;
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(HttpStatus status, long retryAfterSeconds, String reason) {
+        super(reason + ", retry after " + retryAfterSeconds + "s");
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,405 @@
+package com.aispeaking.service;
+
+import org.springframework.stereotype.Service;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bản Java của compute_algorithmic_score / compute_text_similarity / generate_vietnamese_feedback trong qwen_server.py.
+ * Dùng để trả điểm tạm thời ngay sau khi có văn bản và làm bộ chấm duy nhất khi Qwen không dùng được.
+ * Phần tiền xử lý của câu trả lời mẫu (vector từ, bảng vị trí ký tự cho SequenceMatcher) được tính một lần
+ * trong {@link #prepare} và lưu cùng snapshot câu trả lời mẫu của câu hỏi.
+ */
+@Service
+public class AlgorithmicScorer {
+    private static final double BASE_SCORE = 3.0;
+    private static final double DEFAULT_REF_SCORE = 7.0;
+    private static final Set<String> STOP_WORDS = Set.of(
+            "the", "a", "an", "is", "are", "was", "were", "be", "been",
+            "being", "have", "has", "had", "do", "does", "did", "will",
+            "would", "could", "should", "may", "might", "can", "shall",
+            "to", "of", "in", "for", "on", "with", "at", "by", "from",
+            "it", "its", "this", "that", "these", "those", "i", "you",
+            "he", "she", "we", "they", "me", "him", "her", "us", "them",
+            "my", "your", "his", "our", "their", "and", "or", "but", "not",
+            "so", "if", "as", "than", "very", "just", "about", "also");
+
+    /**
+     * Câu trả lời mẫu đã tiền xử lý: chỉ đọc, dùng chung giữa các luồng
+     */
+    public record PreparedSample(String content, double refScore, String normalized, int[] codePoints,
+                                 Map<Integer, int[]> positions, Map<String, Integer> termCounts,
+                                 double magnitude, Set<String> keywords) {
+    }
+
+    /**
+     * Kết quả chấm: bestSimilarity là độ tương đồng (làm tròn 3 chữ số) với mẫu cho điểm cao nhất, null nếu không có mẫu
+     */
+    public record Result(double score, Double bestSimilarity, int wordCount, double effortBonus) {
+    }
+
+    public PreparedSample prepare(String content, Number score) {
+        String text = content != null ? content : "";
+        String normalized = normalize(text);
+        int[] codePoints = normalized.codePoints().toArray();
+        Map<String, Integer> termCounts = termCounts(normalized);
+        Set<String> keywords = new HashSet<>(termCounts.keySet());
+        keywords.removeAll(STOP_WORDS);
+        return new PreparedSample(text, score != null ? score.doubleValue() : DEFAULT_REF_SCORE, normalized, codePoints,
+                Collections.unmodifiableMap(buildPositions(codePoints)), Collections.unmodifiableMap(termCounts),
+                magnitude(termCounts), Collections.unmodifiableSet(keywords));
+    }
+
+    /**
+     * Tương đương compute_algorithmic_score(transcribed_text, sample_answers)
+     */
+    public Result score(String transcribedText, List<PreparedSample> samples) {
+        String normalized = normalize(transcribedText);
+        Map<String, Integer> answerCounts = termCounts(normalized);
+        int wordCount = answerCounts.values().stream().mapToInt(Integer::intValue).sum();
+        double effortBonus = 0.0;
+        if (wordCount >= 3) {
+            effortBonus += 0.5;
+        }
+        if (wordCount >= 8) {
+            effortBonus += 0.5;
+        }
+        if (wordCount >= 15) {
+            effortBonus += 0.5;
+        }
+        if (wordCount >= 25) {
+            effortBonus += 0.5;
+        }
+        if (samples.isEmpty()) {
+            // Không có mẫu → đánh giá dựa trên độ dài + nỗ lực
+            double score;
+            if (wordCount < 2) {
+                score = 2.0;
+            } else if (wordCount < 5) {
+                score = 4.0 + effortBonus;
+            } else if (wordCount < 12) {
+                score = 5.5 + effortBonus;
+            } else if (wordCount < 20) {
+                score = 6.5 + effortBonus;
+            } else {
+                score = Math.min(7.5 + effortBonus, 10.0);
+            }
+            return new Result(score, null, wordCount, effortBonus);
+        }
+        int[] answerCodePoints = normalized.codePoints().toArray();
+        double answerMagnitude = magnitude(answerCounts);
+        double bestScore = 0;
+        Double bestSimilarity = null;
+        for (PreparedSample sample : samples) {
+            double similarity = similarity(normalized, answerCodePoints, answerCounts, answerMagnitude, sample);
+            // Công thức thân thiện với người mới học: base + similarity * (ref_score - base)
+            double computed = BASE_SCORE + similarity * (sample.refScore() - BASE_SCORE);
+            if (computed > bestScore) {
+                bestScore = computed;
+                bestSimilarity = round(similarity, 3);
+            }
+        }
+        bestScore += effortBonus;
+        if (wordCount >= 20) {
+            bestScore = Math.min(bestScore + 0.3, 10.0);
+        }
+        if (wordCount < 2) {
+            bestScore = Math.min(bestScore, 3.0);
+        } else if (wordCount < 4) {
+            bestScore = Math.min(bestScore, 5.0);
+        }
+        bestScore = Math.max(0.0, Math.min(10.0, round(bestScore, 1)));
+        return new Result(bestScore, bestSimilarity, wordCount, effortBonus);
+    }
+
+    /**
+     * Tương đương generate_vietnamese_feedback: luôn khen trước, sau đó mới gợi ý cải thiện
+     */
+    public String feedback(Result result) {
+        double score = result.score();
+        int wordCount = result.wordCount();
+        Double similarity = result.bestSimilarity();
+        List<String> parts = new ArrayList<>();
+        if (score >= 9.0) {
+            parts.add("Xuất sắc! Câu trả lời rất tốt và đầy đủ!");
+        } else if (score >= 7.5) {
+            parts.add("Rất tốt! Bạn đã trả lời khá hoàn chỉnh.");
+        } else if (score >= 6.0) {
+            parts.add("Tốt lắm! Bạn đang đi đúng hướng.");
+        } else if (score >= 4.5) {
+            parts.add("Khá được! Bạn đã có nỗ lực tốt trong câu trả lời.");
+        } else if (score >= 3.0) {
+            parts.add("Bạn đã cố gắng trả lời, đó là điều tốt! Hãy tiếp tục luyện tập nhé.");
+        } else {
+            parts.add("Đừng nản nhé! Mỗi lần luyện tập đều giúp bạn tiến bộ.");
+        }
+        if (wordCount >= 15) {
+            parts.add("Bạn đã trả lời khá chi tiết, rất tốt!");
+        } else if (wordCount >= 8) {
+            parts.add("Độ dài câu trả lời ở mức chấp nhận được.");
+        }
+        if (similarity != null) {
+            if (similarity >= 0.6) {
+                parts.add("Nội dung trả lời rất sát với yêu cầu!");
+            } else if (similarity >= 0.4) {
+                parts.add("Nội dung có nhiều ý đúng, tốt lắm!");
+            } else if (similarity >= 0.2) {
+                parts.add("Bạn đã nắm được một phần ý chính của câu hỏi.");
+            }
+        }
+        List<String> suggestions = new ArrayList<>();
+        if (wordCount < 5) {
+            suggestions.add("Thử trả lời dài hơn một chút — khoảng 2-3 câu sẽ rất tốt.");
+        } else if (wordCount < 10) {
+            suggestions.add("Bạn có thể thêm 1-2 câu nữa để câu trả lời đầy đủ hơn.");
+        }
+        if (similarity != null) {
+            if (similarity < 0.2) {
+                suggestions.add("Hãy đọc kỹ câu hỏi và tập trung trả lời đúng trọng tâm nhé.");
+            } else if (similarity < 0.4) {
+                suggestions.add("Thử bổ sung thêm ý chính liên quan đến câu hỏi.");
+            }
+        }
+        if (score < 6.0) {
+            suggestions.add("Mẹo: Bắt đầu bằng 'I think...' hoặc 'In my opinion...' rồi nêu lý do sẽ giúp câu trả lời tốt hơn.");
+        }
+        if (!suggestions.isEmpty()) {
+            parts.add("Gợi ý cải thiện: " + String.join(" ", suggestions));
+        }
+        if (score < 7.0) {
+            parts.add("Hãy tiếp tục luyện tập, bạn sẽ tiến bộ nhanh thôi!");
+        }
+        return String.join(" ", parts);
+    }
+
+    /**
+     * Giống normalize_text: lowercase, strip, mọi ký tự không phải chữ/số/gạch dưới thành khoảng trắng, gộp khoảng trắng.
+     * Làm trong một lượt duyệt thay vì hai regex; như bản Python, không strip lại sau khi thay dấu câu
+     */
+    static String normalize(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = 0;
+        int end = lower.length();
+        while (start < end && isSpace(lower.codePointAt(start))) {
+            start += Character.charCount(lower.codePointAt(start));
+        }
+        while (end > start && isSpace(lower.codePointBefore(end))) {
+            end -= Character.charCount(lower.codePointBefore(end));
+        }
+        StringBuilder normalized = new StringBuilder(end - start);
+        boolean lastSpace = false;
+        for (int i = start; i < end; ) {
+            int cp = lower.codePointAt(i);
+            i += Character.charCount(cp);
+            if (isWordChar(cp)) {
+                normalized.appendCodePoint(cp);
+                lastSpace = false;
+            } else if (!lastSpace) {
+                normalized.append(' ');
+                lastSpace = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Tương đương compute_text_similarity với phía câu trả lời mẫu đã tiền xử lý
+     */
+    private static double similarity(String normalized, int[] answerCodePoints, Map<String, Integer> answerCounts,
+                                     double answerMagnitude, PreparedSample sample) {
+        if (normalized.isEmpty() || sample.normalized().isEmpty()) {
+            return 0.0;
+        }
+        // 1. SequenceMatcher ratio (chuỗi ký tự)
+        int lengthSum = answerCodePoints.length + sample.codePoints().length;
+        double seqRatio = lengthSum == 0 ? 1.0 : 2.0 * matchingCharacters(answerCodePoints, sample) / lengthSum;
+        // 2. Jaccard trên tập từ, 3. Cosine trên tần suất từ
+        Map<String, Integer> sampleCounts = sample.termCounts();
+        int intersection = 0;
+        double dotProduct = 0;
+        for (Map.Entry<String, Integer> entry : answerCounts.entrySet()) {
+            Integer sampleCount = sampleCounts.get(entry.getKey());
+            if (sampleCount != null) {
+                intersection++;
+                dotProduct += entry.getValue() * sampleCount;
+            }
+        }
+        double jaccard = 0;
+        if (!answerCounts.isEmpty() && !sampleCounts.isEmpty()) {
+            jaccard = (double) intersection / (answerCounts.size() + sampleCounts.size() - intersection);
+        }
+        double cosine = answerMagnitude != 0 && sample.magnitude() != 0 ? dotProduct / (answerMagnitude * sample.magnitude()) : 0;
+        // 4. Keyword coverage: bao nhiêu từ quan trọng (không phải stop word) của mẫu có trong câu trả lời
+        double keywordCoverage;
+        if (!sample.keywords().isEmpty()) {
+            int covered = 0;
+            for (String keyword : sample.keywords()) {
+                if (answerCounts.containsKey(keyword)) {
+                    covered++;
+                }
+            }
+            keywordCoverage = (double) covered / sample.keywords().size();
+        } else {
+            keywordCoverage = jaccard;
+        }
+        double similarity = seqRatio * 0.15 + jaccard * 0.25 + cosine * 0.30 + keywordCoverage * 0.30;
+        return Math.min(similarity, 1.0);
+    }
+
+    /**
+     * Tổng độ dài các khối khớp của difflib.SequenceMatcher(None, a, b) (autojunk bật), tức 2*M trong ratio() là 2 lần giá trị này
+     */
+    private static int matchingCharacters(int[] a, PreparedSample sample) {
+        int[] b = sample.codePoints();
+        Map<Integer, int[]> positions = sample.positions();
+        // Hai hàng j2len dùng lại giữa các lần find_longest_match, kèm danh sách ô đã ghi để xóa nhanh
+        int[][] rows = {new int[b.length + 1], new int[b.length + 1]};
+        int[][] touched = {new int[b.length], new int[b.length]};
+        int matched = 0;
+        Deque<int[]> queue = new ArrayDeque<>();
+        queue.push(new int[]{0, a.length, 0, b.length});
+        while (!queue.isEmpty()) {
+            int[] range = queue.pop();
+            int alo = range[0], ahi = range[1], blo = range[2], bhi = range[3];
+            int[] match = findLongestMatch(a, b, positions, alo, ahi, blo, bhi, rows, touched);
+            int i = match[0], j = match[1], k = match[2];
+            if (k > 0) {
+                matched += k;
+                if (alo < i && blo < j) {
+                    queue.push(new int[]{alo, i, blo, j});
+                }
+                if (i + k < ahi && j + k < bhi) {
+                    queue.push(new int[]{i + k, ahi, j + k, bhi});
+                }
+            }
+        }
+        return matched;
+    }
+
+    private static int[] findLongestMatch(int[] a, int[] b, Map<Integer, int[]> positions,
+                                          int alo, int ahi, int blo, int bhi, int[][] rows, int[][] touched) {
+        int besti = alo, bestj = blo, bestsize = 0;
+        // j2len[j + 1] = độ dài khớp kết thúc tại a[i - 1], b[j]
+        int[] j2len = rows[0], newj2len = rows[1];
+        int[] oldTouched = touched[0], newTouched = touched[1];
+        int oldCount = 0;
+        for (int i = alo; i < ahi; i++) {
+            int newCount = 0;
+            int[] js = positions.get(a[i]);
+            if (js != null) {
+                for (int j : js) {
+                    if (j < blo) {
+                        continue;
+                    }
+                    if (j >= bhi) {
+                        break;
+                    }
+                    int k = j2len[j] + 1;
+                    newj2len[j + 1] = k;
+                    newTouched[newCount++] = j + 1;
+                    if (k > bestsize) {
+                        besti = i - k + 1;
+                        bestj = j - k + 1;
+                        bestsize = k;
+                    }
+                }
+            }
+            for (int t = 0; t < oldCount; t++) {
+                j2len[oldTouched[t]] = 0;
+            }
+            int[] swapRow = j2len;
+            j2len = newj2len;
+            newj2len = swapRow;
+            int[] swapTouched = oldTouched;
+            oldTouched = newTouched;
+            newTouched = swapTouched;
+            oldCount = newCount;
+        }
+        for (int t = 0; t < oldCount; t++) {
+            j2len[oldTouched[t]] = 0;
+        }
+        // Không có isjunk nên chỉ mở rộng hai đầu bằng các phần tử bằng nhau (kể cả phần tử "popular" bị loại khỏi b2j)
+        while (besti > alo && bestj > blo && a[besti - 1] == b[bestj - 1]) {
+            besti--;
+            bestj--;
+            bestsize++;
+        }
+        while (besti + bestsize < ahi && bestj + bestsize < bhi && a[besti + bestsize] == b[bestj + bestsize]) {
+            bestsize++;
+        }
+        return new int[]{besti, bestj, bestsize};
+    }
+
+    /**
+     * b2j của SequenceMatcher: vị trí tăng dần của từng ký tự trong b; với b dài từ 200 ký tự,
+     * bỏ các ký tự xuất hiện nhiều hơn 1% + 1 lần (autojunk)
+     */
+    private static Map<Integer, int[]> buildPositions(int[] b) {
+        Map<Integer, List<Integer>> lists = new HashMap<>();
+        for (int j = 0; j < b.length; j++) {
+            lists.computeIfAbsent(b[j], key -> new ArrayList<>()).add(j);
+        }
+        int popularThreshold = b.length >= 200 ? b.length / 100 + 1 : Integer.MAX_VALUE;
+        Map<Integer, int[]> positions = new HashMap<>();
+        for (Map.Entry<Integer, List<Integer>> entry : lists.entrySet()) {
+            if (entry.getValue().size() <= popularThreshold) {
+                positions.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+        return positions;
+    }
+
+    private static Map<String, Integer> termCounts(String normalized) {
+        Map<String, Integer> counts = new HashMap<>();
+        int length = normalized.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && normalized.charAt(i) == ' ') {
+                i++;
+            }
+            int start = i;
+            while (i < length && normalized.charAt(i) != ' ') {
+                i++;
+            }
+            if (i > start) {
+                counts.merge(normalized.substring(start, i), 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    private static double magnitude(Map<String, Integer> counts) {
+        double sumOfSquares = 0;
+        for (int count : counts.values()) {
+            sumOfSquares += (double) count * count;
+        }
+        return Math.sqrt(sumOfSquares);
+    }
+
+    private static boolean isWordChar(int cp) {
+        if (cp == '_' || Character.isLetter(cp)) {
+            return true;
+        }
+        int type = Character.getType(cp);
+        return type == Character.DECIMAL_DIGIT_NUMBER || type == Character.LETTER_NUMBER || type == Character.OTHER_NUMBER;
+    }
+
+    private static boolean isSpace(int cp) {
+        return Character.isWhitespace(cp) || Character.isSpaceChar(cp);
+    }
+
+    private static double round(double value, int digits) {
+        // Giống round() của Python: làm tròn giá trị nhị phân chính xác, nửa về số chẵn
+        return new BigDecimal(value).setScale(digits, RoundingMode.HALF_EVEN).doubleValue();
+    }
+}
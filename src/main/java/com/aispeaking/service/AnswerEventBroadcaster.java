@@ -0,0 +1,299 @@
+package com.aispeaking.service;
+
+import com.aispeaking.dto.TestAnswerResponse;
+import com.aispeaking.entity.TestAnswer;
+import com.aispeaking.repository.TestAnswerRepository;
+import com.aispeaking.repository.TestSessionRepository;
+import com.aispeaking.util.TransactionCallbacks;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Đẩy thay đổi trạng thái câu trả lời (PENDING → TRANSCRIBING → SCORING → COMPLETED/FAILED) tới học sinh
+ * qua Server-Sent Events thay cho việc hỏi lại GET /test-sessions/{id}/answers mỗi 3 giây.
+ * - Sự kiện "answer" được gửi sau khi giao dịch chuyển trạng thái commit, mang toàn bộ TestAnswerResponse.
+ * - Mỗi phiên giữ replay-buffer-size sự kiện gần nhất; client kết nối lại kèm Last-Event-ID chỉ nhận phần bị lỡ.
+ *   Không nối tiếp được (id của node khác/tiến trình trước, hoặc đã trôi khỏi bộ đệm) thì gửi "snapshot" toàn phiên.
+ * - Công việc có thể do node khác xử lý: định kỳ so (trạng thái, updatedAt) của các phiên đang được theo dõi
+ *   trên node này với lần gửi gần nhất bằng một truy vấn nhẹ, có thay đổi mới nạp lại câu trả lời.
+ * - Số kết nối mỗi node bị giới hạn bởi max-connections; vượt giới hạn trả 503 và client quay lại polling.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AnswerEventBroadcaster {
+    private static final long REJECT_RETRY_AFTER_SECONDS = 30;
+    private static final long IDLE_CHANNEL_EVICT_MS = TimeUnit.MINUTES.toMillis(2);
+
+    private final TestAnswerRepository testAnswerRepository;
+    private final TestSessionRepository testSessionRepository;
+
+    @Value("${ai.events.max-connections}")
+    private int maxConnections;
+
+    @Value("${ai.events.emitter-timeout-ms}")
+    private long emitterTimeoutMs;
+
+    @Value("${ai.events.replay-buffer-size}")
+    private int replayBufferSize;
+
+    // Id sự kiện có dạng "{epoch}-{seq}": epoch khác nhau giữa các node/lần khởi động nên không nối tiếp nhầm
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Long, SessionChannel> channels = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicLong eventsPublished = new AtomicLong();
+    private final AtomicLong eventsReplayed = new AtomicLong();
+    private final AtomicLong snapshotsSent = new AtomicLong();
+    private final AtomicLong reconciledChanges = new AtomicLong();
+    private final AtomicLong rejectedConnections = new AtomicLong();
+
+    private record AnswerEvent(long seq, TestAnswerResponse answer) {
+    }
+
+    private static class SessionChannel {
+        final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+        final ReentrantLock lock = new ReentrantLock();
+        final Deque<AnswerEvent> recent = new ArrayDeque<>();
+        // seq lớn nhất đã bị đẩy khỏi bộ đệm
+        long evictedSeq;
+        // answerId -> (trạng thái, updatedAt) của lần gửi gần nhất, dùng khi đối chiếu với DB
+        final Map<Long, String> lastSent = new HashMap<>();
+        volatile long lastActiveAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Mở luồng sự kiện cho phiên thi; lastEventId là header Last-Event-ID khi trình duyệt tự kết nối lại
+     */
+    public SseEmitter subscribe(Long testSessionId, String lastEventId) {
+        if (!testSessionRepository.existsById(testSessionId)) {
+            throw new RuntimeException("Test session not found");
+        }
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            rejectedConnections.incrementAndGet();
+            throw new AdmissionRejectedException(HttpStatus.SERVICE_UNAVAILABLE, REJECT_RETRY_AFTER_SECONDS, "Too many event streams");
+        }
+        SessionChannel channel = channels.computeIfAbsent(testSessionId, id -> new SessionChannel());
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Runnable remove = () -> {
+            if (channel.emitters.remove(emitter)) {
+                connections.decrementAndGet();
+                channel.lastActiveAt = System.currentTimeMillis();
+            }
+        };
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(error -> remove.run());
+        channel.emitters.add(emitter);
+
+        List<AnswerEvent> missed = missedEvents(channel, lastEventId);
+        try {
+            if (missed != null) {
+                for (AnswerEvent event : missed) {
+                    send(emitter, event);
+                }
+                eventsReplayed.addAndGet(missed.size());
+            } else {
+                sendSnapshot(testSessionId, channel, emitter);
+            }
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    /**
+     * Gọi trong giao dịch vừa đổi trạng thái câu trả lời: sự kiện được gửi sau khi commit
+     * (bỏ qua nếu không có ai trên node này đang theo dõi phiên)
+     */
+    public void publish(TestAnswer answer) {
+        Long testSessionId = answer.getTestSession() != null ? answer.getTestSession().getId() : null;
+        if (testSessionId == null || !channels.containsKey(testSessionId)) {
+            return;
+        }
+        TestAnswerResponse response = TestAnswerResponse.from(answer);
+        // updatedAt (@LastModifiedDate) chỉ được gán khi flush lúc commit nên đọc sau commit
+        TransactionCallbacks.afterCommit(() -> dispatch(testSessionId, response, answer.getUpdatedAt()));
+    }
+
+    /**
+     * Giữ kết nối sống qua proxy và phát hiện client đã rời đi; dọn kênh không còn kết nối
+     */
+    @Scheduled(fixedDelayString = "${ai.events.heartbeat-interval-ms}")
+    public void sendHeartbeats() {
+        long now = System.currentTimeMillis();
+        channels.entrySet().removeIf(entry -> entry.getValue().emitters.isEmpty()
+                && now - entry.getValue().lastActiveAt > IDLE_CHANNEL_EVICT_MS);
+        for (SessionChannel channel : channels.values()) {
+            for (SseEmitter emitter : channel.emitters) {
+                try {
+                    emitter.send(SseEmitter.event().comment("keepalive"));
+                } catch (IOException | IllegalStateException e) {
+                    emitter.completeWithError(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Đối chiếu các phiên đang được theo dõi trên node này với DB để bắt thay đổi do node khác xử lý
+     */
+    @Scheduled(fixedDelayString = "${ai.events.reconcile-interval-ms}")
+    public void reconcile() {
+        List<Long> watched = channels.entrySet().stream()
+                .filter(entry -> !entry.getValue().emitters.isEmpty())
+                .map(Map.Entry::getKey)
+                .toList();
+        if (watched.isEmpty()) {
+            return;
+        }
+        for (Object[] row : testAnswerRepository.findStatusByTestSessionIds(watched)) {
+            Long answerId = (Long) row[0];
+            Long testSessionId = (Long) row[1];
+            String version = versionOf(row[2], row[3]);
+            SessionChannel channel = channels.get(testSessionId);
+            if (channel == null) {
+                continue;
+            }
+            String sent;
+            channel.lock.lock();
+            try {
+                sent = channel.lastSent.get(answerId);
+            } finally {
+                channel.lock.unlock();
+            }
+            if (!version.equals(sent)) {
+                testAnswerRepository.findWithQuestionById(answerId).ifPresent(answer -> {
+                    reconciledChanges.incrementAndGet();
+                    dispatch(testSessionId, TestAnswerResponse.from(answer), answer.getUpdatedAt());
+                });
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("connections", connections.get());
+        stats.put("maxConnections", maxConnections);
+        stats.put("sessions", channels.size());
+        stats.put("eventsPublished", eventsPublished.get());
+        stats.put("eventsReplayed", eventsReplayed.get());
+        stats.put("snapshotsSent", snapshotsSent.get());
+        stats.put("reconciledChanges", reconciledChanges.get());
+        stats.put("rejectedConnections", rejectedConnections.get());
+        return stats;
+    }
+
+    private void dispatch(Long testSessionId, TestAnswerResponse response, LocalDateTime updatedAt) {
+        SessionChannel channel = channels.get(testSessionId);
+        if (channel == null) {
+            return;
+        }
+        AnswerEvent event = new AnswerEvent(sequence.incrementAndGet(), response);
+        channel.lock.lock();
+        try {
+            channel.recent.addLast(event);
+            while (channel.recent.size() > replayBufferSize) {
+                channel.evictedSeq = channel.recent.removeFirst().seq();
+            }
+            channel.lastSent.put(response.getId(), versionOf(response.getProcessingStatus(), updatedAt));
+        } finally {
+            channel.lock.unlock();
+        }
+        eventsPublished.incrementAndGet();
+        // Gửi ngoài khóa: một client chậm không chặn các phiên khác
+        for (SseEmitter emitter : channel.emitters) {
+            try {
+                send(emitter, event);
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    /**
+     * Các sự kiện sau lastEventId còn trong bộ đệm; null nếu không nối tiếp được và cần gửi snapshot
+     */
+    private List<AnswerEvent> missedEvents(SessionChannel channel, String lastEventId) {
+        if (lastEventId == null || !lastEventId.startsWith(epoch + "-")) {
+            return null;
+        }
+        long lastSeq;
+        try {
+            lastSeq = Long.parseLong(lastEventId.substring(epoch.length() + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        channel.lock.lock();
+        try {
+            // Có sự kiện sau lastSeq đã bị đẩy khỏi bộ đệm: client không còn đủ dữ liệu
+            if (channel.evictedSeq > lastSeq) {
+                return null;
+            }
+            List<AnswerEvent> missed = new ArrayList<>();
+            for (AnswerEvent event : channel.recent) {
+                if (event.seq() > lastSeq) {
+                    missed.add(event);
+                }
+            }
+            return missed;
+        } finally {
+            channel.lock.unlock();
+        }
+    }
+
+    private void sendSnapshot(Long testSessionId, SessionChannel channel, SseEmitter emitter) throws IOException {
+        // Lấy id trước khi đọc DB: sự kiện phát sinh trong lúc đọc vẫn được gửi (trùng lặp cũng vô hại)
+        long seq = sequence.get();
+        List<TestAnswer> answers = testAnswerRepository.findByTestSessionId(testSessionId);
+        channel.lock.lock();
+        try {
+            for (TestAnswer answer : answers) {
+                channel.lastSent.put(answer.getId(), versionOf(answer.getProcessingStatus(), answer.getUpdatedAt()));
+            }
+        } finally {
+            channel.lock.unlock();
+        }
+        emitter.send(SseEmitter.event()
+                .id(epoch + "-" + seq)
+                .name("snapshot")
+                .data(answers.stream().map(TestAnswerResponse::from).toList()));
+        snapshotsSent.incrementAndGet();
+    }
+
+    private void send(SseEmitter emitter, AnswerEvent event) throws IOException {
+        emitter.send(SseEmitter.event()
+                .id(epoch + "-" + event.seq())
+                .name("answer")
+                .data(event.answer()));
+    }
+
+    private static String versionOf(Object status, Object updatedAt) {
+        // Cột updated_at có thể chỉ lưu tới giây: so sánh ở độ chính xác giây
+        Object normalized = updatedAt instanceof LocalDateTime time ? time.truncatedTo(ChronoUnit.SECONDS) : updatedAt;
+        return status + "@" + Objects.toString(normalized, "");
+    }
+}
@@ -0,0 +1,94 @@
+package com.aispeaking.service;
+
+import com.aispeaking.entity.AnswerProcessingJob;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lấy công việc từ hàng đợi bền vững và giao cho pipeline xử lý AI.
+ * Chỉ nhận thêm công việc khi hàng đợi công đoạn chuyển giọng nói còn chỗ, nên phần còn lại vẫn nằm an toàn trong DB.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AnswerJobDispatcher {
+    private final AnswerJobService answerJobService;
+    private final AIProcessingService aiProcessingService;
+    private final ReprocessingService reprocessingService;
+
+    @Value("${ai.reprocess.reserved-live-capacity}")
+    private int reservedLiveCapacity;
+
+    @Value("${ai.scheduler.bulk-max-wait-ms}")
+    private long bulkMaxWaitMs;
+
+    /**
+     * Khi khởi động: khôi phục các công việc đang chạy dở lúc tiến trình trước dừng
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverOnStartup() {
+        int requeued = answerJobService.requeueInterruptedJobs(true);
+        if (requeued > 0) {
+            log.warn("Recovered {} interrupted scoring jobs on startup", requeued);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ai.job.poll-interval-ms}")
+    public void dispatch() {
+        int free = aiProcessingService.availableCapacity();
+        if (free <= 0) {
+            return;
+        }
+        // Công việc hàng loạt đã chờ quá bulk-max-wait-ms được nhận một chỗ trước, để không bị bỏ đói khi bài nộp liên tục
+        List<Long> jobIds = new ArrayList<>(answerJobService.claimAgedJobs(1, AnswerProcessingJob.PRIORITY_BULK, Integer.MAX_VALUE, bulkMaxWaitMs));
+        // Bài nộp trực tiếp và chấm lại tương tác trước; xử lý lại hàng loạt chỉ dùng phần sức chứa còn dư sau khi chừa lại cho bài nộp mới
+        jobIds.addAll(answerJobService.claimQueuedJobs(free - jobIds.size(), Integer.MIN_VALUE, AnswerProcessingJob.PRIORITY_BULK - 1));
+        int bulkSlots = free - jobIds.size() - reservedLiveCapacity;
+        if (bulkSlots > 0) {
+            jobIds.addAll(answerJobService.claimQueuedJobs(bulkSlots, AnswerProcessingJob.PRIORITY_BULK, Integer.MAX_VALUE));
+        }
+        for (Long jobId : jobIds) {
+            if (!aiProcessingService.submit(jobId)) {
+                log.warn("Pipeline queue full, releasing job {}", jobId);
+                answerJobService.releaseJob(jobId);
+            }
+        }
+    }
+
+    /**
+     * Đưa đợt câu trả lời kế tiếp của các lượt xử lý lại đang chạy vào hàng đợi (có điều tiết)
+     */
+    @Scheduled(fixedDelayString = "${ai.reprocess.interval-ms}")
+    public void advanceReprocessingRuns() {
+        for (Long runId : reprocessingService.findRunningRunIds()) {
+            try {
+                reprocessingService.advanceRun(runId);
+            } catch (Exception e) {
+                log.error("Failed to advance reprocessing run {}: {}", runId, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Cập nhật heartbeat cho công việc đang nằm trong pipeline, kể cả công việc còn chờ trong hàng đợi công đoạn
+     */
+    @Scheduled(fixedDelayString = "${ai.job.heartbeat-interval-ms}")
+    public void heartbeat() {
+        answerJobService.heartbeat(aiProcessingService.inFlightJobIds());
+    }
+
+    @Scheduled(fixedDelayString = "${ai.job.stale-check-interval-ms}")
+    public void requeueStaleJobs() {
+        int requeued = answerJobService.requeueInterruptedJobs(false);
+        if (requeued > 0) {
+            log.warn("Requeued {} stale scoring jobs", requeued);
+        }
+    }
+}
@@ -0,0 +1,623 @@
+package com.aispeaking.service;
+
+import com.aispeaking.dto.TestAnswerResponse;
+import com.aispeaking.entity.AnswerProcessingJob;
+import com.aispeaking.entity.TestAnswer;
+import com.aispeaking.entity.enums.AnswerJobStatus;
+import com.aispeaking.entity.enums.JobPriorityClass;
+import com.aispeaking.entity.enums.ProcessingStatus;
+import com.aispeaking.repository.AnswerProcessingJobRepository;
+import com.aispeaking.repository.TestAnswerRepository;
+import com.aispeaking.util.WavHeader;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Quản lý hàng đợi công việc chấm điểm bền vững (bảng answer_processing_jobs).
+ * Mỗi phương thức là một giao dịch ngắn; không phương thức nào gọi dịch vụ AI.
+ * Pipeline chấm điểm gồm: startJob (nhận/đánh dấu) → gọi AI không giữ kết nối → markTranscribed/completeJob (lưu kết quả).
+ * Thứ tự nhận việc theo schedule_key = thời điểm vào hàng đợi + độ lệch của nhóm ưu tiên + chi phí theo độ dài âm thanh:
+ * câu trả lời ngắn được xử lý trước câu trả lời dài, còn công việc chờ lâu dần đứng lên đầu nên không bị bỏ đói.
+ * Khi bật ai.fair-queue.enabled, công việc được nhận xen kẽ giữa các tenant (kỳ thi/tổ chức) theo TenantFairQueue.
+ * Riêng claimAgedJobs (chống bỏ đói công việc hàng loạt) nhận theo schedule_key, bỏ qua thứ tự công bằng,
+ * nhưng phần đã nhận vẫn được tính vào thời gian ảo của tenant.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AnswerJobService {
+    private static final String SOURCE_UPLOAD = "UPLOAD";
+    private static final String SOURCE_STREAM = "STREAM";
+    private static final String SUPERSEDED = "Superseded by a new submission";
+    // Số bài nộp tối đa được theo dõi thời gian tới khi có điểm
+    private static final int MAX_TRACKED_SUBMISSIONS = 10_000;
+
+    private final AnswerProcessingJobRepository jobRepository;
+    private final TestAnswerRepository testAnswerRepository;
+    private final TenantFairQueue tenantFairQueue;
+    private final SubmissionAdmissionService submissionAdmissionService;
+    private final AnswerEventBroadcaster answerEventBroadcaster;
+    private final TestSessionSnapshotService testSessionSnapshotService;
+
+    @Value("${ai.job.node-id}")
+    private String nodeId;
+
+    @Value("${ai.job.stale-after-ms}")
+    private long staleAfterMs;
+
+    @Value("${ai.job.max-attempts}")
+    private int maxAttempts;
+
+    @Value("${ai.scheduler.ms-per-audio-second}")
+    private long msPerAudioSecond;
+
+    @Value("${ai.scheduler.default-audio-ms}")
+    private long defaultAudioMs;
+
+    @Value("${ai.scheduler.interactive-retry-offset-ms}")
+    private long interactiveRetryOffsetMs;
+
+    private final Map<JobPriorityClass, WaitStats> waitStats = new EnumMap<>(Map.of(
+            JobPriorityClass.LIVE, new WaitStats(),
+            JobPriorityClass.INTERACTIVE_RETRY, new WaitStats(),
+            JobPriorityClass.BULK, new WaitStats()));
+
+    // Thời gian từ lúc nhận bài nộp (UPLOAD: nhận xong file, STREAM: nhận lệnh nộp) tới khi có điểm, theo nguồn bài nộp.
+    // Chỉ tính bài nộp được chấm xong trên chính node đã nhận nó
+    private final Map<String, WaitStats> timeToScore = Map.of(SOURCE_UPLOAD, new WaitStats(), SOURCE_STREAM, new WaitStats());
+    private final Map<Long, SubmissionMark> submissions = new ConcurrentHashMap<>();
+
+    private record SubmissionMark(String source, long submittedAt) {
+    }
+
+    /**
+     * Thời gian chờ trong hàng đợi (từ lúc vào hàng đợi tới lúc được nhận) của một nhóm ưu tiên
+     */
+    private static class WaitStats {
+        final AtomicLong claimed = new AtomicLong();
+        final AtomicLong totalWaitMs = new AtomicLong();
+        final AtomicLong maxWaitMs = new AtomicLong();
+        volatile long lastWaitMs;
+
+        void record(long waitMs) {
+            claimed.incrementAndGet();
+            totalWaitMs.addAndGet(waitMs);
+            maxWaitMs.accumulateAndGet(waitMs, Math::max);
+            lastWaitMs = waitMs;
+        }
+    }
+
+    /**
+     * Ghi nhận bài nộp: gắn file âm thanh, đặt lại kết quả cũ về PENDING và thêm công việc chấm điểm.
+     * Công việc đang chạy của bài nộp trước bị hủy (CANCELLED), nên kết quả của nó không ghi đè bài nộp mới
+     */
+    @Transactional
+    public TestAnswerResponse acceptSubmission(Long testAnswerId, String audioUrl) {
+        return accept(testAnswerId, audioUrl, null, LocalDateTime.now(), SOURCE_UPLOAD);
+    }
+
+    /**
+     * Ghi nhận bài nộp qua luồng ghi âm trực tiếp (WebSocket, file đã nằm trên đĩa).
+     * Nếu transcribedText khác null (đã ghép từ các đoạn chuyển giọng nói trong lúc ghi) thì pipeline bỏ qua Whisper
+     */
+    @Transactional
+    public TestAnswerResponse acceptStreamedSubmission(Long testAnswerId, String audioUrl, String transcribedText) {
+        return accept(testAnswerId, audioUrl, transcribedText, LocalDateTime.now(), SOURCE_STREAM);
+    }
+
+    private TestAnswerResponse accept(Long testAnswerId, String audioUrl, String transcribedText, LocalDateTime answeredAt, String source) {
+        // Khóa dòng công việc trước dòng câu trả lời, cùng thứ tự với các bước lưu kết quả của worker
+        int superseded = jobRepository.cancelRunning(testAnswerId, answeredAt, SUPERSEDED);
+        if (superseded > 0) {
+            log.info("Cancelled {} running job(s) of test answer {} superseded by a new submission", superseded, testAnswerId);
+        }
+        TestAnswer testAnswer = testAnswerRepository.findWithQuestionById(testAnswerId)
+                .orElseThrow(() -> new RuntimeException("Test answer not found"));
+        testAnswer.setAudioUrl(audioUrl);
+        testAnswer.setAnsweredAt(answeredAt);
+        testAnswer.setTranscribedText(transcribedText);
+        testAnswer.setTranscribedAudioUrl(transcribedText != null ? audioUrl : null);
+        testAnswer.setScore(BigDecimal.ZERO);
+        testAnswer.setFeedback(null);
+        testAnswer.setProvisionalScore(null);
+        testAnswer.setProcessingStatus(ProcessingStatus.PENDING);
+        TestAnswer savedAnswer = testAnswerRepository.save(testAnswer);
+        enqueue(savedAnswer);
+        answerChanged(savedAnswer);
+        markSubmitted(testAnswerId, source);
+        return TestAnswerResponse.from(savedAnswer);
+    }
+
+    /**
+     * Thêm câu trả lời vào hàng đợi chấm điểm.
+     * Nếu câu trả lời đã có công việc QUEUED thì dùng lại (worker luôn đọc audioUrl mới nhất).
+     */
+    @Transactional
+    public AnswerProcessingJob enqueue(TestAnswer testAnswer) {
+        return enqueue(testAnswer, AnswerProcessingJob.PRIORITY_LIVE, null);
+    }
+
+    /**
+     * Như {@link #enqueue(TestAnswer)} với độ ưu tiên và lượt xử lý lại hàng loạt (nếu có) cho công việc mới
+     */
+    @Transactional
+    public AnswerProcessingJob enqueue(TestAnswer testAnswer, int priority, Long reprocessingRunId) {
+        List<AnswerProcessingJob> queued = jobRepository.findByTestAnswerIdAndStatus(testAnswer.getId(), AnswerJobStatus.QUEUED);
+        if (!queued.isEmpty()) {
+            AnswerProcessingJob existing = queued.get(0);
+            if (priority < existing.getPriority()) {
+                // Ví dụ: chấm lại tương tác một câu trả lời đang nằm trong lượt xử lý lại hàng loạt
+                existing.setPriority(priority);
+                existing.setScheduleKey(scheduleKey(priority, existing.getAudioDurationMs()));
+                jobRepository.save(existing);
+                log.info("Raised queued job {} for test answer {} to priority {}", existing.getId(), testAnswer.getId(), priority);
+            } else {
+                log.info("Test answer {} already has queued job {}", testAnswer.getId(), existing.getId());
+            }
+            return existing;
+        }
+        AnswerProcessingJob job = new AnswerProcessingJob();
+        job.setTestAnswer(testAnswer);
+        job.setStatus(AnswerJobStatus.QUEUED);
+        job.setPriority(priority);
+        job.setReprocessingRunId(reprocessingRunId);
+        job.setAudioDurationMs(readAudioDurationMs(testAnswer.getAudioUrl()));
+        job.setScheduleKey(scheduleKey(priority, job.getAudioDurationMs()));
+        job.setTenantKey(tenantFairQueue.tenantKeyOf(testAnswer));
+        AnswerProcessingJob saved = jobRepository.save(job);
+        log.info("Enqueued job {} for test answer {} (priority {}, audio {}ms)", saved.getId(), testAnswer.getId(), priority, saved.getAudioDurationMs());
+        return saved;
+    }
+
+    /**
+     * Nhận tối đa {@code limit} công việc QUEUED có độ ưu tiên trong [minPriority, maxPriority], theo schedule_key.
+     * Trả về danh sách ID công việc mà node này đã nhận thành công.
+     */
+    @Transactional
+    public List<Long> claimQueuedJobs(int limit, int minPriority, int maxPriority) {
+        return claim(limit, minPriority, maxPriority, Long.MAX_VALUE);
+    }
+
+    /**
+     * Như {@link #claimQueuedJobs} nhưng chỉ nhận công việc đã chờ quá {@code maxWaitMs} (tính theo schedule_key).
+     * Không đi qua TenantFairQueue: công việc chờ lâu nhất được nhận trước bất kể tenant
+     */
+    @Transactional
+    public List<Long> claimAgedJobs(int limit, int minPriority, int maxPriority, long maxWaitMs) {
+        return claim(limit, minPriority, maxPriority, System.currentTimeMillis() - maxWaitMs);
+    }
+
+    private List<Long> claim(int limit, int minPriority, int maxPriority, long scheduledBefore) {
+        List<Long> claimed = new ArrayList<>();
+        if (limit <= 0) {
+            return claimed;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (tenantFairQueue.isEnabled() && scheduledBefore == Long.MAX_VALUE) {
+            return claimFairly(limit, minPriority, maxPriority, now);
+        }
+        for (Object[] row : jobRepository.findReady(now, minPriority, maxPriority, scheduledBefore, Pageable.ofSize(limit))) {
+            if (tryClaim(row, now)) {
+                claimed.add((Long) row[0]);
+                if (tenantFairQueue.isEnabled()) {
+                    tenantFairQueue.onClaimed(row[4] == null ? "" : (String) row[4], (Long) row[3]);
+                }
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Nhận công việc xen kẽ giữa các tenant theo TenantFairQueue; trong một tenant vẫn theo schedule_key
+     */
+    private List<Long> claimFairly(int limit, int minPriority, int maxPriority, LocalDateTime now) {
+        List<Long> claimed = new ArrayList<>();
+        Map<String, Long> running = countByTenant(jobRepository.countByTenantForStatus(AnswerJobStatus.RUNNING));
+        Map<String, Deque<Object[]>> candidates = new HashMap<>();
+        for (String tenant : countByTenant(jobRepository.countReadyByTenant(now, minPriority, maxPriority)).keySet()) {
+            candidates.put(tenant, null);
+        }
+        while (claimed.size() < limit && !candidates.isEmpty()) {
+            String tenant = tenantFairQueue.next(candidates.keySet(), running);
+            if (tenant == null) {
+                // Mọi tenant còn lại đều đã đạt giới hạn đồng thời
+                break;
+            }
+            Deque<Object[]> rows = candidates.get(tenant);
+            if (rows == null) {
+                // Chỉ đọc tối đa limit công việc đầu của tenant khi tenant thực sự được chọn
+                rows = new ArrayDeque<>(jobRepository.findReadyForTenant(now, minPriority, maxPriority, tenant, Pageable.ofSize(limit)));
+                candidates.put(tenant, rows);
+            }
+            Object[] row = rows.pollFirst();
+            if (row == null) {
+                candidates.remove(tenant);
+                continue;
+            }
+            if (tryClaim(row, now)) {
+                claimed.add((Long) row[0]);
+                tenantFairQueue.onClaimed(tenant, (Long) row[3]);
+                running.merge(tenant, 1L, Long::sum);
+            }
+        }
+        return claimed;
+    }
+
+    private boolean tryClaim(Object[] row, LocalDateTime now) {
+        if (jobRepository.claim((Long) row[0], nodeId, now) != 1) {
+            return false;
+        }
+        LocalDateTime createdAt = (LocalDateTime) row[2];
+        waitStats.get(AnswerProcessingJob.priorityClassOf((Integer) row[1]))
+                .record(createdAt == null ? 0 : Math.max(0, Duration.between(createdAt, now).toMillis()));
+        return true;
+    }
+
+    /**
+     * Số công việc đang chờ/chạy, tốc độ được phục vụ, trọng số và giới hạn đồng thời của từng tenant
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getTenantStats() {
+        return tenantFairQueue.getStats(countByTenant(jobRepository.countByTenantForStatus(AnswerJobStatus.QUEUED)),
+                countByTenant(jobRepository.countByTenantForStatus(AnswerJobStatus.RUNNING)));
+    }
+
+    private static Map<String, Long> countByTenant(List<Object[]> rows) {
+        Map<String, Long> counts = new HashMap<>();
+        for (Object[] row : rows) {
+            counts.merge(row[0] == null ? "" : (String) row[0], (Long) row[1], Long::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Số công việc đang chờ và thời gian chờ trong hàng đợi theo từng nhóm ưu tiên
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getSchedulerStats() {
+        Map<JobPriorityClass, Long> queued = new EnumMap<>(JobPriorityClass.class);
+        for (Object[] row : jobRepository.countByPriorityForStatus(AnswerJobStatus.QUEUED)) {
+            queued.merge(AnswerProcessingJob.priorityClassOf((Integer) row[0]), (Long) row[1], Long::sum);
+        }
+        Map<String, Object> classes = new LinkedHashMap<>();
+        for (JobPriorityClass priorityClass : JobPriorityClass.values()) {
+            WaitStats stats = waitStats.get(priorityClass);
+            long claimedCount = stats.claimed.get();
+            Map<String, Object> classStats = new LinkedHashMap<>();
+            classStats.put("queued", queued.getOrDefault(priorityClass, 0L));
+            classStats.put("claimed", claimedCount);
+            classStats.put("avgWaitMs", claimedCount == 0 ? 0 : stats.totalWaitMs.get() / claimedCount);
+            classStats.put("maxWaitMs", stats.maxWaitMs.get());
+            classStats.put("lastWaitMs", stats.lastWaitMs);
+            classes.put(priorityClass.name(), classStats);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("msPerAudioSecond", msPerAudioSecond);
+        result.put("defaultAudioMs", defaultAudioMs);
+        result.put("interactiveRetryOffsetMs", interactiveRetryOffsetMs);
+        result.put("classes", classes);
+        return result;
+    }
+
+    /**
+     * Giai đoạn 1 (giao dịch ngắn): đánh dấu câu trả lời TRANSCRIBING và
+     * trả về ảnh chụp dữ liệu cần thiết để gọi dịch vụ AI bên ngoài giao dịch.
+     * Nếu câu trả lời đã có văn bản của chính file âm thanh hiện tại (transcribedAudioUrl = audioUrl, ví dụ công việc
+     * bị hoãn sau khi chuyển đổi xong) thì đi thẳng tới SCORING; văn bản của bản ghi âm khác không bao giờ được dùng lại.
+     * Trả về null nếu công việc không còn RUNNING dưới node này (đã bị coi là gián đoạn và đưa lại hàng đợi trong lúc chờ).
+     */
+    @Transactional
+    public AnswerWorkItem startJob(Long jobId) {
+        if (jobRepository.start(jobId, nodeId, LocalDateTime.now()) != 1) {
+            return null;
+        }
+        AnswerProcessingJob job = jobRepository.findById(jobId).orElseThrow(() -> new RuntimeException("Job not found: " + jobId));
+        TestAnswer answer = testAnswerRepository.findWithQuestionById(job.getTestAnswer().getId())
+                .orElseThrow(() -> new RuntimeException("Test answer not found for job " + jobId));
+        String transcribedText = answer.getTranscribedText();
+        boolean transcribed = transcribedText != null && !transcribedText.isBlank()
+                && answer.getAudioUrl() != null && answer.getAudioUrl().equals(answer.getTranscribedAudioUrl());
+        answer.setProcessingStatus(transcribed ? ProcessingStatus.SCORING : ProcessingStatus.TRANSCRIBING);
+        testAnswerRepository.save(answer);
+        answerChanged(answer);
+        return new AnswerWorkItem(jobId, job.getAttempts(), answer.getId(), answer.getQuestion().getId(), answer.getTestSession().getExam().getId(),
+                answer.getQuestion().getContent(), answer.getAudioUrl(), transcribed ? transcribedText : null);
+    }
+
+    /**
+     * Giai đoạn 2 (giao dịch ngắn): lưu văn bản đã chuyển đổi và chuyển sang SCORING.
+     * Trả về false (không lưu gì) nếu công việc đã bị nhận lại/hủy hoặc câu trả lời đã được nộp lại
+     */
+    @Transactional
+    public boolean markTranscribed(AnswerWorkItem item, String transcribedText, BigDecimal provisionalScore) {
+        if (jobRepository.touch(item.getJobId(), nodeId, item.getAttempt(), LocalDateTime.now()) != 1) {
+            logDropped(item.getJobId(), "transcription");
+            return false;
+        }
+        TestAnswer answer = submittedAnswer(item).orElse(null);
+        if (answer == null) {
+            return false;
+        }
+        answer.setTranscribedText(transcribedText);
+        answer.setTranscribedAudioUrl(item.getAudioUrl());
+        answer.setProvisionalScore(provisionalScore);
+        answer.setProcessingStatus(ProcessingStatus.SCORING);
+        testAnswerRepository.save(answer);
+        answerChanged(answer);
+        return true;
+    }
+
+    /**
+     * Giai đoạn 3 (giao dịch ngắn): đóng công việc và lưu điểm, nhận xét.
+     * Bỏ kết quả nếu công việc đã bị nhận lại hoặc đã kết thúc (lần xử lý khác sẽ ghi kết quả)
+     */
+    @Transactional
+    public void completeJob(AnswerWorkItem item, BigDecimal score, String feedback) {
+        TestAnswer answer = submittedAnswer(item).orElse(null);
+        if (answer == null) {
+            return;
+        }
+        if (!closeJob(item.getJobId(), item.getAttempt(), AnswerJobStatus.COMPLETED, null)) {
+            logDropped(item.getJobId(), "score");
+            return;
+        }
+        answer.setScore(score);
+        answer.setFeedback(feedback);
+        answer.setProcessingStatus(ProcessingStatus.COMPLETED);
+        testAnswerRepository.save(answer);
+        answerChanged(answer);
+        recordTimeToScore(answer);
+    }
+
+    /**
+     * Đóng công việc và đánh dấu câu trả lời FAILED (item null nếu lỗi xảy ra trước khi bắt đầu xử lý)
+     */
+    @Transactional
+    public void failJob(Long jobId, AnswerWorkItem item, String error) {
+        if (item == null) {
+            if (!closeJob(jobId, null, AnswerJobStatus.FAILED, error)) {
+                logDropped(jobId, "failure");
+            }
+            return;
+        }
+        TestAnswer answer = submittedAnswer(item).orElse(null);
+        if (answer == null) {
+            return;
+        }
+        if (!closeJob(jobId, item.getAttempt(), AnswerJobStatus.FAILED, error)) {
+            logDropped(jobId, "failure");
+            return;
+        }
+        answer.setProcessingStatus(ProcessingStatus.FAILED);
+        answer.setFeedback("Lỗi xử lý: " + error);
+        testAnswerRepository.save(answer);
+        answerChanged(answer);
+        submissions.remove(item.getTestAnswerId());
+    }
+
+    /**
+     * Âm thanh bị loại trước khi gọi AI (im lặng, hỏng): câu trả lời FAILED với nhận xét dành cho học sinh,
+     * công việc đóng với mã lý do (NO_SPEECH, CORRUPT_AUDIO) để phân biệt với lỗi dịch vụ AI
+     */
+    @Transactional
+    public void rejectJob(AnswerWorkItem item, String reason, String feedback) {
+        TestAnswer answer = submittedAnswer(item).orElse(null);
+        if (answer == null) {
+            return;
+        }
+        if (!closeJob(item.getJobId(), item.getAttempt(), AnswerJobStatus.FAILED, reason + ": " + feedback)) {
+            logDropped(item.getJobId(), "rejection");
+            return;
+        }
+        answer.setProcessingStatus(ProcessingStatus.FAILED);
+        answer.setFeedback(feedback);
+        testAnswerRepository.save(answer);
+        answerChanged(answer);
+        submissions.remove(item.getTestAnswerId());
+    }
+
+    /**
+     * Hoãn công việc khi dịch vụ AI tạm thời không khả dụng (circuit breaker mở):
+     * công việc trở lại QUEUED sau {@code delayMs}, câu trả lời giữ PENDING (văn bản đã chuyển đổi được giữ lại)
+     */
+    @Transactional
+    public void deferJob(Long jobId, AnswerWorkItem item, long delayMs, String reason) {
+        LocalDateTime availableAt = LocalDateTime.now().plusNanos(delayMs * 1_000_000L);
+        if (jobRepository.requeue(jobId, nodeId, item != null ? item.getAttempt() : null, availableAt, reason) != 1) {
+            logDropped(jobId, "deferral");
+            return;
+        }
+        if (item != null) {
+            testAnswerRepository.findById(item.getTestAnswerId())
+                    .filter(answer -> Objects.equals(answer.getAudioUrl(), item.getAudioUrl()))
+                    .ifPresent(answer -> {
+                        answer.setProcessingStatus(ProcessingStatus.PENDING);
+                        testAnswerRepository.save(answer);
+                        answerChanged(answer);
+                    });
+        }
+    }
+
+    /**
+     * Trả công việc đã nhận về hàng đợi (ví dụ khi worker pool từ chối nhận việc)
+     */
+    @Transactional
+    public void releaseJob(Long jobId) {
+        jobRepository.requeue(jobId, nodeId, null, null, null);
+    }
+
+    /**
+     * Cập nhật heartbeat của các công việc node này đang giữ trong pipeline (đang chờ hoặc đang gọi AI),
+     * để công việc chờ lâu trong hàng đợi của pipeline không bị coi là gián đoạn
+     */
+    @Transactional
+    public int heartbeat(Collection<Long> jobIds) {
+        if (jobIds.isEmpty()) {
+            return 0;
+        }
+        return jobRepository.heartbeat(jobIds, nodeId, LocalDateTime.now());
+    }
+
+    /**
+     * Đưa lại vào hàng đợi các công việc đang RUNNING nhưng không còn worker xử lý:
+     * - khi khởi động: mọi công việc do chính node này nhận (tiến trình trước đã dừng giữa chừng)
+     * - định kỳ: công việc của bất kỳ node nào không cập nhật heartbeat quá {@code ai.job.stale-after-ms}
+     * Mỗi công việc chỉ được đưa lại nếu vẫn ở đúng lần nhận đã đọc (node cũ có thể vừa kết thúc nó).
+     * Công việc đã được nhận {@code ai.job.max-attempts} lần thì bị đánh dấu FAILED thay vì đưa lại,
+     * để một câu trả lời luôn làm worker dừng (ví dụ hết bộ nhớ) không bị nhận lại mãi.
+     */
+    @Transactional
+    public int requeueInterruptedJobs(boolean includeOwnJobs) {
+        LocalDateTime staleBefore = LocalDateTime.now().minusNanos(staleAfterMs * 1_000_000L);
+        int requeued = 0;
+        for (AnswerProcessingJob job : jobRepository.findInterrupted(includeOwnJobs ? nodeId : null, staleBefore)) {
+            if (maxAttempts > 0 && job.getAttempts() >= maxAttempts) {
+                failInterruptedJob(job);
+                continue;
+            }
+            if (jobRepository.requeue(job.getId(), job.getLockedBy(), job.getAttempts(), null, null) != 1) {
+                continue;
+            }
+            TestAnswer answer = job.getTestAnswer();
+            answer.setProcessingStatus(ProcessingStatus.PENDING);
+            testAnswerRepository.save(answer);
+            answerChanged(answer);
+            requeued++;
+            log.warn("Requeued interrupted job {} (attempt {}, node {}) for test answer {}", job.getId(), job.getAttempts(),
+                    job.getLockedBy(), answer.getId());
+        }
+        return requeued;
+    }
+
+    private void failInterruptedJob(AnswerProcessingJob job) {
+        String error = "Interrupted after " + job.getAttempts() + " attempts";
+        if (jobRepository.finish(job.getId(), job.getLockedBy(), job.getAttempts(), AnswerJobStatus.FAILED, LocalDateTime.now(), error) != 1) {
+            return;
+        }
+        submissionAdmissionService.onJobFinished();
+        TestAnswer answer = job.getTestAnswer();
+        answer.setProcessingStatus(ProcessingStatus.FAILED);
+        answer.setFeedback("Lỗi xử lý: " + error);
+        testAnswerRepository.save(answer);
+        answerChanged(answer);
+        submissions.remove(answer.getId());
+        log.error("Failed interrupted job {} for test answer {}: {} (node {})", job.getId(), answer.getId(), error, job.getLockedBy());
+    }
+
+    /**
+     * Công việc LIVE xếp theo thời điểm vào hàng đợi; INTERACTIVE_RETRY nhường các bài nộp trực tiếp
+     * trong interactive-retry-offset-ms đầu. Mỗi giây âm thanh đẩy lùi thứ tự msPerAudioSecond ms,
+     * nên một câu trả lời dài chờ thêm tối đa (độ dài × msPerAudioSecond) trước khi tới lượt.
+     */
+    private long scheduleKey(int priority, Long audioDurationMs) {
+        long offset = AnswerProcessingJob.priorityClassOf(priority) == JobPriorityClass.INTERACTIVE_RETRY ? interactiveRetryOffsetMs : 0;
+        long durationMs = audioDurationMs != null ? audioDurationMs : defaultAudioMs;
+        return System.currentTimeMillis() + offset + durationMs * msPerAudioSecond / 1000;
+    }
+
+    private Long readAudioDurationMs(String audioUrl) {
+        if (audioUrl == null) {
+            return null;
+        }
+        try {
+            WavHeader header = WavHeader.read(Path.of(audioUrl));
+            return header != null ? header.durationMs() : null;
+        } catch (Exception e) {
+            log.debug("Could not read WAV header of {}: {}", audioUrl, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Câu trả lời vừa đổi trạng thái/kết quả trong giao dịch hiện tại: tăng phiên bản của phiên thi (ETag)
+     * và phát sự kiện SSE sau khi commit
+     */
+    public void answerChanged(TestAnswer answer) {
+        testSessionSnapshotService.bumpVersion(answer.getTestSession().getId());
+        answerEventBroadcaster.publish(answer);
+    }
+
+    /**
+     * Thời gian từ lúc nộp tới khi có điểm của bài nộp trực tiếp, theo nguồn (UPLOAD/STREAM)
+     */
+    public Map<String, Object> getTimeToScoreStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String source : List.of(SOURCE_UPLOAD, SOURCE_STREAM)) {
+            WaitStats stats = timeToScore.get(source);
+            long scored = stats.claimed.get();
+            Map<String, Object> sourceStats = new LinkedHashMap<>();
+            sourceStats.put("scored", scored);
+            sourceStats.put("avgMs", scored == 0 ? 0 : stats.totalWaitMs.get() / scored);
+            sourceStats.put("maxMs", stats.maxWaitMs.get());
+            sourceStats.put("lastMs", stats.lastWaitMs);
+            result.put(source, sourceStats);
+        }
+        return result;
+    }
+
+    private void markSubmitted(Long testAnswerId, String source) {
+        long now = System.currentTimeMillis();
+        if (submissions.size() >= MAX_TRACKED_SUBMISSIONS) {
+            // Bài nộp được chấm trên node khác không bao giờ được xóa khỏi đây
+            submissions.values().removeIf(mark -> now - mark.submittedAt() > staleAfterMs);
+        }
+        submissions.put(testAnswerId, new SubmissionMark(source, now));
+    }
+
+    private void recordTimeToScore(TestAnswer answer) {
+        SubmissionMark mark = submissions.remove(answer.getId());
+        if (mark != null && answer.getAnsweredAt() != null) {
+            timeToScore.get(mark.source()).record(Math.max(0, Duration.between(answer.getAnsweredAt(), LocalDateTime.now()).toMillis()));
+        }
+    }
+
+    /**
+     * Đóng công việc nếu nó vẫn RUNNING dưới node này ở lần nhận attempt; trả về false nếu công việc đã bị nhận lại/kết thúc
+     */
+    private boolean closeJob(Long jobId, Integer attempt, AnswerJobStatus status, String error) {
+        if (jobRepository.finish(jobId, nodeId, attempt, status, LocalDateTime.now(), error) != 1) {
+            return false;
+        }
+        submissionAdmissionService.onJobFinished();
+        return true;
+    }
+
+    /**
+     * Câu trả lời của item nếu nó vẫn là bài nộp mà công việc đang xử lý (cùng audioUrl).
+     * Nếu câu trả lời đã được nộp lại thì hủy công việc và trả về rỗng
+     */
+    private Optional<TestAnswer> submittedAnswer(AnswerWorkItem item) {
+        TestAnswer answer = testAnswerRepository.findById(item.getTestAnswerId()).orElse(null);
+        if (answer != null && Objects.equals(answer.getAudioUrl(), item.getAudioUrl())) {
+            return Optional.of(answer);
+        }
+        log.warn("Test answer {} was resubmitted while job {} was running, dropping its result", item.getTestAnswerId(), item.getJobId());
+        jobRepository.finish(item.getJobId(), nodeId, item.getAttempt(), AnswerJobStatus.CANCELLED, LocalDateTime.now(), SUPERSEDED);
+        return Optional.empty();
+    }
+
+    private void logDropped(Long jobId, String result) {
+        log.warn("Job {} is no longer running under this node/attempt, dropping its {}", jobId, result);
+    }
+}
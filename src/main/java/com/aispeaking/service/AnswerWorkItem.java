@@ -0,0 +1,22 @@
+package com.aispeaking.service;
+
+import lombok.Value;
+
+/**
+ * Ảnh chụp bất biến của một câu trả lời đang được xử lý.
+ * Worker chỉ làm việc với đối tượng này khi gọi Whisper/Qwen, nên không cần
+ * phiên Hibernate hay kết nối DB nào trong suốt thời gian chờ dịch vụ AI.
+ */
+@Value
+public class AnswerWorkItem {
+    Long jobId;
+    // Lần nhận công việc (attempts lúc claim): kết quả chỉ được lưu nếu công việc chưa bị nhận lại
+    Integer attempt;
+    Long testAnswerId;
+    Long questionId;
+    Long examId;
+    String questionContent;
+    String audioUrl;
+    // Văn bản đã chuyển đổi từ lần xử lý trước (công việc bị hoãn/khôi phục), null nếu chưa có
+    String transcribedText;
+}
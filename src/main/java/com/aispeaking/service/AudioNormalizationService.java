@@ -0,0 +1,122 @@
+package com.aispeaking.service;
+
+import com.aispeaking.util.WavHeader;
+import com.aispeaking.util.WavNormalizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lưu file âm thanh tải lên dưới dạng WAV PCM 16-bit mono ở file.upload.normalize.sample-rate Hz
+ * (định dạng Whisper dùng): trình duyệt thường ghi 44,1/48 kHz, có khi stereo, nên file gốc lớn hơn 3-6 lần.
+ * File không phải WAV hoặc định dạng không hỗ trợ (kể cả header có tần số lấy mẫu/số kênh bất thường) được lưu nguyên như cũ.
+ */
+@Service
+@Slf4j
+public class AudioNormalizationService {
+    private static final int HEADER_BYTES = 64 * 1024;
+    private static final int MAX_TRACKED_FORMATS = 50;
+
+    @Value("${file.upload.normalize.enabled}")
+    private boolean enabled;
+
+    @Value("${file.upload.normalize.sample-rate}")
+    private int targetRate;
+
+    private final AtomicLong uploads = new AtomicLong();
+    private final AtomicLong normalized = new AtomicLong();
+    private final AtomicLong alreadyNormalized = new AtomicLong();
+    private final AtomicLong storedAsIs = new AtomicLong();
+    private final AtomicLong originalBytes = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+    private final AtomicLong normalizeNanos = new AtomicLong();
+    private final Map<String, AtomicLong> sourceFormats = new ConcurrentHashMap<>();
+
+    /**
+     * Ghi file tải lên vào target (chuẩn hóa nếu có thể); trả về số byte đã lưu
+     */
+    public long store(MultipartFile file, Path target) throws IOException {
+        long originalSize = file.getSize();
+        long storedSize;
+        try (InputStream in = new BufferedInputStream(file.getInputStream(), HEADER_BYTES)) {
+            WavHeader header = null;
+            if (enabled) {
+                in.mark(HEADER_BYTES);
+                header = WavHeader.parse(in.readNBytes(HEADER_BYTES), originalSize);
+                in.reset();
+            }
+            if (header != null) {
+                countFormat(header);
+            }
+            if (header != null && WavNormalizer.isNormalized(header, targetRate)) {
+                Files.copy(in, target);
+                storedSize = Files.size(target);
+                alreadyNormalized.incrementAndGet();
+            } else if (header == null || !WavNormalizer.isSupported(header)) {
+                Files.copy(in, target);
+                storedSize = Files.size(target);
+                storedAsIs.incrementAndGet();
+            } else {
+                long start = System.nanoTime();
+                in.skipNBytes(header.dataOffset());
+                storedSize = WavNormalizer.normalize(in, header, target, targetRate);
+                normalizeNanos.addAndGet(System.nanoTime() - start);
+                normalized.incrementAndGet();
+                log.info("Normalized {} ({} Hz, {} ch, {}-bit) from {} to {} bytes", target, header.sampleRate(),
+                        header.channels(), header.bitsPerSample(), originalSize, storedSize);
+            }
+        }
+        uploads.incrementAndGet();
+        originalBytes.addAndGet(originalSize);
+        storedBytes.addAndGet(storedSize);
+        return storedSize;
+    }
+
+    public Map<String, Object> getStats() {
+        long original = originalBytes.get();
+        long stored = storedBytes.get();
+        long normalizedCount = normalized.get();
+        Map<String, Object> formats = new LinkedHashMap<>();
+        sourceFormats.forEach((format, counter) -> formats.put(format, counter.get()));
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("targetSampleRate", targetRate);
+        stats.put("uploads", uploads.get());
+        stats.put("normalized", normalizedCount);
+        stats.put("alreadyNormalized", alreadyNormalized.get());
+        stats.put("storedAsIs", storedAsIs.get());
+        stats.put("originalBytes", original);
+        stats.put("storedBytes", stored);
+        stats.put("savedBytes", original - stored);
+        stats.put("savedPercent", original == 0 ? 0.0 : Math.round((original - stored) * 1000.0 / original) / 10.0);
+        stats.put("avgNormalizeMs", normalizedCount == 0 ? 0.0 : normalizeNanos.get() / 1_000_000.0 / normalizedCount);
+        stats.put("sourceFormats", formats);
+        return stats;
+    }
+
+    private void countFormat(WavHeader header) {
+        String encoding = switch (header.audioFormat()) {
+            case WavHeader.FORMAT_PCM -> "pcm";
+            case WavNormalizer.FORMAT_IEEE_FLOAT -> "float";
+            default -> "format" + header.audioFormat() + "-";
+        };
+        String format = encoding + header.bitsPerSample() + "/" + header.channels() + "ch/" + header.sampleRate() + "Hz";
+        AtomicLong counter = sourceFormats.get(format);
+        if (counter == null && sourceFormats.size() < MAX_TRACKED_FORMATS) {
+            counter = sourceFormats.computeIfAbsent(format, key -> new AtomicLong());
+        }
+        if (counter != null) {
+            counter.incrementAndGet();
+        }
+    }
+}
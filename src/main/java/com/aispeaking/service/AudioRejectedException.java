@@ -0,0 +1,22 @@
+package com.aispeaking.service;
+
+import lombok.Getter;
+
+/**
+ * Âm thanh bị loại trước khi gửi tới Whisper: không có giọng nói (NO_SPEECH) hoặc file WAV hỏng/không có dữ liệu (CORRUPT_AUDIO).
+ * feedback là thông báo cho học sinh, được lưu vào câu trả lời.
+ */
+@Getter
+public class AudioRejectedException extends RuntimeException {
+    public static final String NO_SPEECH = "NO_SPEECH";
+    public static final String CORRUPT_AUDIO = "CORRUPT_AUDIO";
+
+    private final String reason;
+    private final String feedback;
+
+    public AudioRejectedException(String reason, String message, String feedback) {
+        super(message);
+        this.reason = reason;
+        this.feedback = feedback;
+    }
+}
@@ -29,6 +29,7 @@ public class ExamService {
     private final ExamQuestionRepository examQuestionRepository;
     private final QuestionService questionService;
     private final UserService userService;
+    private final SampleAnswerSnapshotService sampleAnswerSnapshotService;
 
     @Transactional(readOnly = true)
     public Page<ExamResponse> getAllExams(Pageable pageable) {
@@ -91,6 +92,12 @@ public class ExamService {
             exam.setTotalQuestions(request.getTotalQuestions());
         }
         if (request.getStatus() != null) {
+            // Đề thi bắt đầu mở: nạp sẵn câu trả lời mẫu để lượt chấm đầu tiên không phải chờ DB
+            if (request.getStatus() == ExamStatus.ACTIVE && exam.getStatus() != ExamStatus.ACTIVE) {
+                sampleAnswerSnapshotService.warmAfterCommit(examQuestionRepository.findByExamIdOrderByQuestionOrder(id).stream()
+                        .map(examQuestion -> examQuestion.getQuestion().getId())
+                        .toList());
+            }
             exam.setStatus(request.getStatus());
         }
         Exam savedExam = examRepository.save(exam);
@@ -0,0 +1,446 @@
+package com.aispeaking.service;
+
+import com.aispeaking.client.WhisperClient;
+import com.aispeaking.dto.TestAnswerResponse;
+import com.aispeaking.entity.enums.AIServiceType;
+import com.aispeaking.repository.TestAnswerRepository;
+import com.aispeaking.util.VoiceActivitySegmenter;
+import com.aispeaking.util.WavHeader;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Chuyển giọng nói tăng dần cho câu trả lời được ghi âm trực tiếp qua WebSocket (LiveAnswerEndpoint).
+ * - Âm thanh PCM 16-bit mono được ghi thẳng vào file WAV của câu trả lời trong lúc học sinh đang nói.
+ * - VoiceActivitySegmenter cắt luồng ở các khoảng lặng; mỗi đoạn có tiếng nói được gửi tới Whisper ngay
+ *   (tối đa transcription-concurrency đoạn cùng lúc trên node), nên khi dừng ghi âm thường chỉ còn đoạn cuối phải chờ.
+ * - Khi nộp: văn bản các đoạn được ghép theo thứ tự và lưu cùng bài nộp, pipeline bỏ qua Whisper và chấm điểm ngay.
+ *   Nếu một đoạn lỗi hoặc quá finalize-timeout-ms, bài vẫn được nộp bình thường và pipeline chuyển giọng nói cả file.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LiveTranscriptionService {
+    private static final int BYTES_PER_SAMPLE = 2;
+    private static final int MIN_SAMPLE_RATE = 8000;
+    private static final int MAX_SAMPLE_RATE = 48000;
+
+    private final TestAnswerRepository testAnswerRepository;
+    private final AnswerJobService answerJobService;
+    private final SubmissionAdmissionService submissionAdmissionService;
+    private final WhisperClient whisperClient;
+    private final AIProcessingLogWriter aiProcessingLogWriter;
+    private final ObjectMapper objectMapper;
+
+    @Value("${ai.live.enabled}")
+    private boolean enabled;
+
+    @Value("${ai.live.max-streams}")
+    private int maxStreams;
+
+    @Value("${ai.live.max-duration-ms}")
+    private long maxDurationMs;
+
+    @Value("${ai.live.transcription-concurrency}")
+    private int transcriptionConcurrency;
+
+    @Value("${ai.live.finalize-timeout-ms}")
+    private long finalizeTimeoutMs;
+
+    @Value("${ai.live.vad.frame-ms}")
+    private int frameMs;
+
+    @Value("${ai.live.vad.threshold-dbfs}")
+    private double thresholdDbfs;
+
+    @Value("${ai.live.vad.min-silence-ms}")
+    private long minSilenceMs;
+
+    @Value("${ai.live.vad.min-segment-ms}")
+    private long minSegmentMs;
+
+    @Value("${ai.live.vad.max-segment-ms}")
+    private long maxSegmentMs;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${file.upload.dir}")
+    private String uploadDir;
+
+    private ExecutorService transcribers;
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final AtomicLong streamsOpened = new AtomicLong();
+    private final AtomicLong streamsRejected = new AtomicLong();
+    private final AtomicLong streamsSubmitted = new AtomicLong();
+    private final AtomicLong streamsDiscarded = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong segmentsTranscribed = new AtomicLong();
+    private final AtomicLong silentSegments = new AtomicLong();
+    private final AtomicLong segmentFailures = new AtomicLong();
+    private final AtomicLong audioMsStreamed = new AtomicLong();
+    private final AtomicLong pendingSegmentsAtStop = new AtomicLong();
+    private final AtomicLong stops = new AtomicLong();
+    private final AtomicLong totalStopToTranscriptMs = new AtomicLong();
+    private final AtomicLong maxStopToTranscriptMs = new AtomicLong();
+
+    /**
+     * Nhận văn bản của từng đoạn ngay khi Whisper trả về (để hiển thị tạm cho học sinh)
+     */
+    public interface SegmentListener {
+        void onSegmentTranscribed(int index, long startMs, long endMs, String text);
+    }
+
+    @PostConstruct
+    void start() {
+        ThreadFactory factory = virtualThreads
+                ? Thread.ofVirtual().name("live-transcriber-", 1).factory()
+                : Thread.ofPlatform().name("live-transcriber-", 1).daemon(true).factory();
+        transcribers = Executors.newFixedThreadPool(Math.max(1, transcriptionConcurrency), factory);
+    }
+
+    @PreDestroy
+    void stop() {
+        transcribers.shutdownNow();
+    }
+
+    /**
+     * Mở luồng ghi âm cho câu hỏi questionId của phiên thi; âm thanh là PCM 16-bit mono little-endian ở sampleRate Hz.
+     * Ném AdmissionRejectedException khi node đã có max-streams luồng (client nộp file như bình thường)
+     */
+    public LiveAnswerStream open(Long testSessionId, Long questionId, int sampleRate, SegmentListener listener) throws IOException {
+        if (!enabled) {
+            throw new AdmissionRejectedException(HttpStatus.SERVICE_UNAVAILABLE, 1, "Live transcription is disabled");
+        }
+        if (sampleRate < MIN_SAMPLE_RATE || sampleRate > MAX_SAMPLE_RATE) {
+            throw new RuntimeException("Unsupported sample rate: " + sampleRate);
+        }
+        Long testAnswerId = testAnswerRepository.findIdByTestSessionIdAndQuestionId(testSessionId, questionId)
+                .orElseThrow(() -> new RuntimeException("Test answer not found"));
+        if (activeStreams.incrementAndGet() > maxStreams) {
+            activeStreams.decrementAndGet();
+            streamsRejected.incrementAndGet();
+            throw new AdmissionRejectedException(HttpStatus.SERVICE_UNAVAILABLE, 1, "Too many live streams");
+        }
+        try {
+            LiveAnswerStream stream = new LiveAnswerStream(testSessionId, questionId, testAnswerId, sampleRate, listener);
+            streamsOpened.incrementAndGet();
+            log.info("Opened live stream for test answer {} ({} Hz)", testAnswerId, sampleRate);
+            return stream;
+        } catch (IOException | RuntimeException e) {
+            activeStreams.decrementAndGet();
+            throw e;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long stopCount = stops.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("activeStreams", activeStreams.get());
+        stats.put("maxStreams", maxStreams);
+        stats.put("streamsOpened", streamsOpened.get());
+        stats.put("streamsRejected", streamsRejected.get());
+        stats.put("streamsSubmitted", streamsSubmitted.get());
+        stats.put("streamsDiscarded", streamsDiscarded.get());
+        stats.put("fallbacks", fallbacks.get());
+        stats.put("segmentsTranscribed", segmentsTranscribed.get());
+        stats.put("silentSegments", silentSegments.get());
+        stats.put("segmentFailures", segmentFailures.get());
+        stats.put("audioSecondsStreamed", audioMsStreamed.get() / 1000);
+        stats.put("avgPendingSegmentsAtStop", stopCount == 0 ? 0.0 : Math.round(pendingSegmentsAtStop.get() * 100.0 / stopCount) / 100.0);
+        stats.put("avgStopToTranscriptMs", stopCount == 0 ? 0 : totalStopToTranscriptMs.get() / stopCount);
+        stats.put("maxStopToTranscriptMs", maxStopToTranscriptMs.get());
+        stats.put("timeToScore", answerJobService.getTimeToScoreStats());
+        return stats;
+    }
+
+    private String transcribeSegment(Long testAnswerId, int sampleRate, VoiceActivitySegmenter.Segment segment) {
+        long startTime = System.currentTimeMillis();
+        Map<String, Object> requestMetadata = new LinkedHashMap<>();
+        requestMetadata.put("live_segment", segment.index());
+        requestMetadata.put("start_ms", segment.startMs());
+        requestMetadata.put("end_ms", segment.endMs());
+        requestMetadata.put("audio_size_bytes", segment.pcm().length);
+        Path segmentFile = null;
+        String requestJson = null;
+        try {
+            requestJson = objectMapper.writeValueAsString(requestMetadata);
+            segmentFile = Files.createTempFile("live-" + testAnswerId + "-" + segment.index() + "-", ".wav");
+            try (OutputStream out = Files.newOutputStream(segmentFile)) {
+                out.write(WavHeader.pcmHeader(1, sampleRate, 16, segment.pcm().length));
+                out.write(segment.pcm());
+            }
+            String response = whisperClient.transcribe(segmentFile.toFile());
+            int processingTime = (int) (System.currentTimeMillis() - startTime);
+            aiProcessingLogWriter.append(testAnswerId, AIServiceType.WHISPER, requestJson, response, processingTime, null);
+            JsonNode jsonNode = objectMapper.readTree(response);
+            if (!jsonNode.has("transcribedText")) {
+                throw new RuntimeException("Whisper response missing 'transcribedText' field. Response: " + response);
+            }
+            segmentsTranscribed.incrementAndGet();
+            String text = jsonNode.get("transcribedText").asText("").trim();
+            log.debug("Test answer {} - live segment {} ({}-{}ms) transcribed in {}ms", testAnswerId, segment.index(),
+                    segment.startMs(), segment.endMs(), processingTime);
+            return text;
+        } catch (Exception e) {
+            segmentFailures.incrementAndGet();
+            int processingTime = (int) (System.currentTimeMillis() - startTime);
+            aiProcessingLogWriter.append(testAnswerId, AIServiceType.WHISPER, requestJson, null, processingTime, e.getMessage());
+            log.warn("Test answer {} - live segment {} failed: {}", testAnswerId, segment.index(), e.getMessage());
+            throw new RuntimeException("Failed to transcribe live segment " + segment.index() + ": " + e.getMessage(), e);
+        } finally {
+            if (segmentFile != null) {
+                try {
+                    Files.deleteIfExists(segmentFile);
+                } catch (IOException e) {
+                    log.debug("Could not delete {}: {}", segmentFile, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Một lần ghi âm trực tiếp: write() trong lúc nói, stop() khi dừng ghi âm, submit() khi học sinh nộp,
+     * discard() khi ghi âm lại hoặc đóng kết nối mà không nộp. write/stop/submit/discard được gọi tuần tự
+     * từ luồng của kết nối; các đoạn được chuyển giọng nói song song trên transcribers.
+     */
+    public class LiveAnswerStream {
+        private final Long testAnswerId;
+        private final int sampleRate;
+        private final SegmentListener listener;
+        private final VoiceActivitySegmenter segmenter;
+        private final List<CompletableFuture<String>> segments = new ArrayList<>();
+        private final String audioUrl;
+        private final Path audioPath;
+        private final FileChannel audioChannel;
+        private final long maxBytes;
+        private final ReentrantLock lock = new ReentrantLock();
+        private long bytesWritten;
+        private CompletableFuture<String> transcript;
+        // closed: đã nộp hoặc đã bỏ; discard() trong lúc đang nộp chỉ có tác dụng nếu việc nộp thất bại
+        private boolean closed;
+        private boolean submitting;
+        private boolean discardRequested;
+
+        private LiveAnswerStream(Long testSessionId, Long questionId, Long testAnswerId, int sampleRate, SegmentListener listener) throws IOException {
+            this.testAnswerId = testAnswerId;
+            this.sampleRate = sampleRate;
+            this.listener = listener;
+            this.segmenter = new VoiceActivitySegmenter(sampleRate, frameMs, VoiceActivitySegmenter.rmsForDbfs(thresholdDbfs),
+                    minSilenceMs, minSegmentMs, maxSegmentMs);
+            this.maxBytes = maxDurationMs * sampleRate / 1000 * BYTES_PER_SAMPLE;
+            // Cùng vị trí và cách đặt tên với file nộp qua POST /test-sessions/{id}/submit-answer
+            String sessionDir = uploadDir + "/" + testSessionId;
+            Files.createDirectories(Paths.get(sessionDir));
+            String filename = questionId + "_" + UUID.randomUUID() + ".wav";
+            this.audioUrl = sessionDir + "/" + filename;
+            this.audioPath = Paths.get(sessionDir).resolve(filename);
+            this.audioChannel = FileChannel.open(audioPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            // Header tạm, ghi lại với kích thước thật khi dừng ghi âm
+            writeFully(ByteBuffer.wrap(WavHeader.pcmHeader(1, sampleRate, 16, 0)));
+        }
+
+        public Long getTestAnswerId() {
+            return testAnswerId;
+        }
+
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        /**
+         * Thêm âm thanh; các đoạn vừa hoàn chỉnh được đưa đi chuyển giọng nói ngay
+         */
+        public void write(ByteBuffer pcm) throws IOException {
+            if (transcript != null || closed) {
+                throw new RuntimeException("Recording already stopped");
+            }
+            if (bytesWritten + pcm.remaining() > maxBytes) {
+                throw new RuntimeException("Recording exceeds maximum duration of " + maxDurationMs / 1000 + "s");
+            }
+            byte[] data = new byte[pcm.remaining()];
+            pcm.get(data);
+            writeFully(ByteBuffer.wrap(data));
+            bytesWritten += data.length;
+            for (VoiceActivitySegmenter.Segment segment : segmenter.append(data, 0, data.length)) {
+                dispatch(segment);
+            }
+        }
+
+        /**
+         * Dừng ghi âm: hoàn tất file WAV và trả về văn bản đã ghép (null nếu phải chuyển giọng nói cả file)
+         */
+        public CompletableFuture<String> stop() throws IOException {
+            if (transcript != null) {
+                return transcript;
+            }
+            long stoppedAt = System.currentTimeMillis();
+            VoiceActivitySegmenter.Segment last = segmenter.flush();
+            if (last != null) {
+                dispatch(last);
+            }
+            audioChannel.write(ByteBuffer.wrap(WavHeader.pcmHeader(1, sampleRate, 16, bytesWritten)), 0);
+            audioChannel.close();
+            audioMsStreamed.addAndGet(bytesWritten * 1000 / ((long) sampleRate * BYTES_PER_SAMPLE));
+            pendingSegmentsAtStop.addAndGet(segments.stream().filter(segment -> !segment.isDone()).count());
+            stops.incrementAndGet();
+            transcript = CompletableFuture.allOf(segments.toArray(CompletableFuture[]::new))
+                    .orTimeout(finalizeTimeoutMs, TimeUnit.MILLISECONDS)
+                    .handle((ignored, error) -> {
+                        long waitedMs = System.currentTimeMillis() - stoppedAt;
+                        totalStopToTranscriptMs.addAndGet(waitedMs);
+                        maxStopToTranscriptMs.accumulateAndGet(waitedMs, Math::max);
+                        if (error != null) {
+                            log.warn("Test answer {} - live transcription incomplete after stop ({}), falling back to full transcription",
+                                    testAnswerId, error.getMessage());
+                            return null;
+                        }
+                        String text = stitch();
+                        log.info("Test answer {} - live transcript ready {}ms after stop ({} segments)", testAnswerId, waitedMs, segments.size());
+                        return text.isEmpty() ? null : text;
+                    });
+            return transcript;
+        }
+
+        /**
+         * Nộp câu trả lời với văn bản đã ghép (dừng ghi âm trước nếu chưa dừng).
+         * Chịu cùng kiểm soát tiếp nhận với bài nộp qua HTTP: AdmissionRejectedException khi hệ thống quá tải
+         */
+        public CompletableFuture<TestAnswerResponse> submit() throws IOException {
+            CompletableFuture<String> text = stop();
+            lock.lock();
+            try {
+                if (closed || submitting) {
+                    throw new RuntimeException("Recording already submitted or discarded");
+                }
+                submitting = true;
+            } finally {
+                lock.unlock();
+            }
+            return text.thenApply(transcribedText -> {
+                lock.lock();
+                try {
+                    try (SubmissionAdmissionService.Permit ignored = submissionAdmissionService.admit(0)) {
+                        TestAnswerResponse response = answerJobService.acceptStreamedSubmission(testAnswerId, audioUrl, transcribedText);
+                        closed = true;
+                        activeStreams.decrementAndGet();
+                        streamsSubmitted.incrementAndGet();
+                        if (transcribedText == null) {
+                            fallbacks.incrementAndGet();
+                        }
+                        log.info("Accepted live answer for test answer {} ({})", testAnswerId,
+                                transcribedText != null ? "transcribed while recording" : "full transcription");
+                        return response;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }).whenComplete((response, error) -> {
+                if (error == null) {
+                    return;
+                }
+                boolean discard;
+                lock.lock();
+                try {
+                    submitting = false;
+                    discard = discardRequested;
+                } finally {
+                    lock.unlock();
+                }
+                // Kết nối đã đóng trong lúc nộp: không còn ai nộp lại bản ghi này
+                if (discard) {
+                    discard();
+                }
+            });
+        }
+
+        /**
+         * Bỏ bản ghi chưa nộp (ghi âm lại, rời câu hỏi, mất kết nối): xóa file âm thanh.
+         * Bản ghi đang được nộp vẫn được nộp tiếp
+         */
+        public void discard() {
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                if (submitting) {
+                    discardRequested = true;
+                    return;
+                }
+                closed = true;
+                activeStreams.decrementAndGet();
+                streamsDiscarded.incrementAndGet();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                audioChannel.close();
+                Files.deleteIfExists(audioPath);
+            } catch (IOException e) {
+                log.warn("Could not delete discarded live recording {}: {}", audioUrl, e.getMessage());
+            }
+            log.info("Discarded live stream for test answer {}", testAnswerId);
+        }
+
+        private void dispatch(VoiceActivitySegmenter.Segment segment) {
+            if (!segment.hasSpeech()) {
+                silentSegments.incrementAndGet();
+                segments.add(CompletableFuture.completedFuture(""));
+                return;
+            }
+            CompletableFuture<String> text = CompletableFuture.supplyAsync(() -> transcribeSegment(testAnswerId, sampleRate, segment), transcribers);
+            text.thenAccept(value -> listener.onSegmentTranscribed(segment.index(), segment.startMs(), segment.endMs(), value));
+            segments.add(text);
+        }
+
+        private String stitch() {
+            StringBuilder text = new StringBuilder();
+            for (CompletableFuture<String> segment : segments) {
+                String value = segment.join();
+                if (!value.isEmpty()) {
+                    if (!text.isEmpty()) {
+                        text.append(' ');
+                    }
+                    text.append(value);
+                }
+            }
+            return text.toString();
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                audioChannel.write(buffer);
+            }
+        }
+    }
+}
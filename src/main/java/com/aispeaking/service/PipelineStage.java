@@ -0,0 +1,159 @@
+package com.aispeaking.service;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Một công đoạn của pipeline xử lý AI: hàng đợi có giới hạn + số worker cố định.
+ * Mỗi công đoạn (Whisper, Qwen) chạy độc lập nên câu trả lời N+1 có thể được chuyển giọng nói
+ * trong khi câu trả lời N đang được chấm điểm.
+ * Handler tự xử lý lỗi của từng phần tử; lỗi lọt ra ngoài chỉ được ghi log và đếm.
+ * Worker là virtual thread khi bật spring.threads.virtual.enabled: chúng chủ yếu chờ Whisper/Qwen và DB.
+ */
+@Slf4j
+public class PipelineStage<T> {
+    private static final long THROUGHPUT_WINDOW_MS = 60_000;
+
+    @Getter
+    private final String name;
+    private final int concurrency;
+    private final int capacity;
+    private final BlockingQueue<T> queue;
+    private final Consumer<T> handler;
+    private final boolean virtualThreads;
+    private final ReentrantLock lifecycleLock = new ReentrantLock();
+    private final List<Thread> workers = new ArrayList<>();
+    private final AtomicInteger busyWorkers = new AtomicInteger();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalProcessingMs = new AtomicLong();
+    // Thời điểm hoàn thành trong cửa sổ 60 giây gần nhất (để tính throughput)
+    private final Deque<Long> recentCompletions = new ConcurrentLinkedDeque<>();
+    private volatile boolean running;
+
+    public PipelineStage(String name, int concurrency, int capacity, boolean virtualThreads, Consumer<T> handler) {
+        this.name = name;
+        this.concurrency = concurrency;
+        this.capacity = capacity;
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.handler = handler;
+        this.virtualThreads = virtualThreads;
+    }
+
+    public void start() {
+        lifecycleLock.lock();
+        try {
+            if (running) {
+                return;
+            }
+            running = true;
+            for (int i = 1; i <= concurrency; i++) {
+                String workerName = name + "-worker-" + i;
+                Thread worker = virtualThreads
+                        ? Thread.ofVirtual().name(workerName).unstarted(this::runWorker)
+                        : Thread.ofPlatform().name(workerName).daemon(true).unstarted(this::runWorker);
+                worker.start();
+                workers.add(worker);
+            }
+        } finally {
+            lifecycleLock.unlock();
+        }
+        log.info("Pipeline stage '{}' started with {} {} workers, queue capacity {}",
+                name, concurrency, virtualThreads ? "virtual" : "platform", capacity);
+    }
+
+    public void stop() {
+        lifecycleLock.lock();
+        try {
+            running = false;
+            workers.forEach(Thread::interrupt);
+            workers.clear();
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    /**
+     * Thêm phần tử nếu hàng đợi còn chỗ, trả về false nếu đầy
+     */
+    public boolean offer(T item) {
+        return queue.offer(item);
+    }
+
+    /**
+     * Thêm phần tử, chờ nếu hàng đợi đầy (áp lực ngược từ công đoạn sau lên công đoạn trước)
+     */
+    public void put(T item) throws InterruptedException {
+        queue.put(item);
+    }
+
+    public int remainingCapacity() {
+        return queue.remainingCapacity();
+    }
+
+    private void runWorker() {
+        while (running) {
+            T item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long start = System.currentTimeMillis();
+            busyWorkers.incrementAndGet();
+            try {
+                handler.accept(item);
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                log.error("Unhandled error in pipeline stage '{}': {}", name, e.getMessage(), e);
+            } finally {
+                busyWorkers.decrementAndGet();
+                long end = System.currentTimeMillis();
+                processed.incrementAndGet();
+                totalProcessingMs.addAndGet(end - start);
+                recordCompletion(end);
+            }
+        }
+    }
+
+    private void recordCompletion(long now) {
+        recentCompletions.addLast(now);
+        Long oldest;
+        while ((oldest = recentCompletions.peekFirst()) != null && oldest < now - THROUGHPUT_WINDOW_MS) {
+            recentCompletions.pollFirst();
+        }
+    }
+
+    /**
+     * Chỉ số của công đoạn: độ sâu hàng đợi, số worker bận, throughput trong 60 giây gần nhất
+     */
+    public Map<String, Object> getStats() {
+        long now = System.currentTimeMillis();
+        long completedLastMinute = recentCompletions.stream().filter(t -> t >= now - THROUGHPUT_WINDOW_MS).count();
+        long total = processed.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("stage", name);
+        stats.put("concurrency", concurrency);
+        stats.put("busyWorkers", busyWorkers.get());
+        stats.put("queueDepth", queue.size());
+        stats.put("queueCapacity", capacity);
+        stats.put("processed", total);
+        stats.put("failed", failed.get());
+        stats.put("avgProcessingMs", total == 0 ? 0 : totalProcessingMs.get() / total);
+        stats.put("throughputPerMinute", completedLastMinute);
+        return stats;
+    }
+}
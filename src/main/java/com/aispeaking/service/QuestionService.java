@@ -26,6 +26,7 @@ public class QuestionService {
     private final QuestionRepository questionRepository;
     private final SampleAnswerRepository sampleAnswerRepository;
     private final UserService userService;
+    private final SampleAnswerSnapshotService sampleAnswerSnapshotService;
 
     @Transactional(readOnly = true)
     public Page<QuestionResponse> getAllQuestions(Pageable pageable) {
@@ -93,6 +94,9 @@ public class QuestionService {
         Question question = getQuestionEntityById(id);
         if (request.getContent() != null) {
             question.setContent(request.getContent());
+            // Nội dung câu hỏi nằm trong prompt chấm điểm nên kết quả cũ không còn dùng được
+            question.setSampleAnswersVersion(question.getSampleAnswersVersion() + 1);
+            sampleAnswerSnapshotService.invalidateAfterCommit(id);
         }
         if (request.getLevel() != null) {
             question.setLevel(request.getLevel());
@@ -105,6 +109,7 @@ public class QuestionService {
     @Transactional
     public void deleteQuestion(Long id) {
         questionRepository.deleteById(id);
+        sampleAnswerSnapshotService.invalidateAfterCommit(id);
         log.info("Hard deleted question with id: {}", id);
     }
     
@@ -135,6 +140,8 @@ public class QuestionService {
         sampleAnswer.setContent(request.getContent());
         sampleAnswer.setScore(request.getScore());
         SampleAnswer saved = sampleAnswerRepository.save(sampleAnswer);
+        questionRepository.incrementSampleAnswersVersion(questionId);
+        sampleAnswerSnapshotService.invalidateAfterCommit(questionId);
         log.info("Created sample answer for question {}", questionId);
         return SampleAnswerResponse.from(saved);
     }
@@ -153,6 +160,8 @@ public class QuestionService {
             sampleAnswer.setScore(request.getScore());
         }
         SampleAnswer saved = sampleAnswerRepository.save(sampleAnswer);
+        questionRepository.incrementSampleAnswersVersion(questionId);
+        sampleAnswerSnapshotService.invalidateAfterCommit(questionId);
         log.info("Updated sample answer {} for question {}", sampleAnswerId, questionId);
         return SampleAnswerResponse.from(saved);
     }
@@ -165,6 +174,8 @@ public class QuestionService {
             throw new RuntimeException("Sample answer does not belong to question " + questionId);
         }
         sampleAnswerRepository.deleteById(sampleAnswerId);
+        questionRepository.incrementSampleAnswersVersion(questionId);
+        sampleAnswerSnapshotService.invalidateAfterCommit(questionId);
         log.info("Deleted sample answer {} from question {}", sampleAnswerId, questionId);
     }
 }
\ No newline at end of file
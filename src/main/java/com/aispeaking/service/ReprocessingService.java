@@ -0,0 +1,251 @@
+package com.aispeaking.service;
+
+import com.aispeaking.dto.ReprocessRequest;
+import com.aispeaking.dto.TestAnswerResponse;
+import com.aispeaking.entity.AnswerProcessingJob;
+import com.aispeaking.entity.ReprocessingRun;
+import com.aispeaking.entity.TestAnswer;
+import com.aispeaking.entity.enums.AnswerJobStatus;
+import com.aispeaking.entity.enums.ProcessingStatus;
+import com.aispeaking.entity.enums.ReprocessingRunStatus;
+import com.aispeaking.repository.AnswerProcessingJobRepository;
+import com.aispeaking.repository.ReprocessingRunRepository;
+import com.aispeaking.repository.TestAnswerRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Xử lý lại hàng loạt câu trả lời: FAILED, bị kẹt ở TRANSCRIBING/SCORING, hoặc chấm lại cả đề sau khi sửa câu trả lời mẫu.
+ * Câu trả lời được đưa vào hàng đợi bền vững theo từng đợt với độ ưu tiên BULK; số công việc BULK đang chờ/chạy
+ * bị giới hạn bởi ai.reprocess.max-outstanding nên hàng đợi không bao giờ bị lấp đầy bởi một lượt chấm lại lớn.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReprocessingService {
+    private static final List<AnswerJobStatus> OUTSTANDING = List.of(AnswerJobStatus.QUEUED, AnswerJobStatus.RUNNING);
+
+    private final ReprocessingRunRepository runRepository;
+    private final TestAnswerRepository testAnswerRepository;
+    private final AnswerProcessingJobRepository jobRepository;
+    private final AnswerJobService answerJobService;
+
+    @Value("${ai.reprocess.default-chunk-size}")
+    private int defaultChunkSize;
+
+    @Value("${ai.reprocess.max-outstanding}")
+    private int maxOutstanding;
+
+    /**
+     * Tạo lượt xử lý lại; các đợt được đưa vào hàng đợi dần bởi AnswerJobDispatcher
+     */
+    @Transactional
+    public Map<String, Object> startRun(ReprocessRequest request) {
+        if (request.getFromDate() != null && request.getToDate() != null && request.getFromDate().isAfter(request.getToDate())) {
+            throw new RuntimeException("fromDate must not be after toDate");
+        }
+        ReprocessingRun run = new ReprocessingRun();
+        run.setExamId(request.getExamId());
+        run.setQuestionId(request.getQuestionId());
+        run.setStatuses(request.getStatuses() == null ? "" : request.getStatuses().stream().map(Enum::name).collect(Collectors.joining(",")));
+        run.setFromDate(request.getFromDate());
+        run.setToDate(request.getToDate());
+        run.setScoringOnly(Boolean.TRUE.equals(request.getScoringOnly()));
+        run.setChunkSize(request.getChunkSize() != null && request.getChunkSize() > 0 ? request.getChunkSize() : defaultChunkSize);
+        run.setTotalAnswers((int) testAnswerRepository.countReprocessCandidates(statusesOf(run), run.getExamId(),
+                run.getQuestionId(), run.getFromDate(), run.getToDate()));
+        run.setStartedAt(LocalDateTime.now());
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()) {
+            run.setRequestedBy(authentication.getName());
+        }
+        ReprocessingRun saved = runRepository.save(run);
+        log.info("Started reprocessing run {} for {} answers (exam {}, question {}, statuses [{}], scoring only {})",
+                saved.getId(), saved.getTotalAnswers(), saved.getExamId(), saved.getQuestionId(), saved.getStatuses(), saved.getScoringOnly());
+        return toProgress(saved);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Long> findRunningRunIds() {
+        return runRepository.findIdsByStatus(ReprocessingRunStatus.RUNNING);
+    }
+
+    /**
+     * Đưa đợt kế tiếp vào hàng đợi nếu số công việc BULK đang chờ/chạy còn dưới ngưỡng.
+     * Con trỏ và các công việc mới được ghi trong cùng giao dịch nên dừng giữa chừng không làm mất hay lặp đợt.
+     */
+    @Transactional
+    public void advanceRun(Long runId) {
+        ReprocessingRun run = runRepository.findById(runId).orElse(null);
+        if (run == null || run.getStatus() != ReprocessingRunStatus.RUNNING) {
+            return;
+        }
+        long outstanding = jobRepository.countByPriorityAndStatusIn(AnswerProcessingJob.PRIORITY_BULK, OUTSTANDING);
+        int budget = (int) Math.min(run.getChunkSize(), maxOutstanding - outstanding);
+        if (budget <= 0) {
+            return;
+        }
+        List<Long> answerIds = testAnswerRepository.findReprocessCandidateIds(run.getLastAnswerId(), statusesOf(run),
+                run.getExamId(), run.getQuestionId(), run.getFromDate(), run.getToDate(), Pageable.ofSize(budget));
+        if (answerIds.isEmpty()) {
+            Map<AnswerJobStatus, Long> counts = countJobs(runId);
+            if (counts.get(AnswerJobStatus.QUEUED) + counts.get(AnswerJobStatus.RUNNING) == 0) {
+                run.setStatus(ReprocessingRunStatus.COMPLETED);
+                run.setFinishedAt(LocalDateTime.now());
+                runRepository.save(run);
+                log.info("Reprocessing run {} completed: {} answers re-queued", runId, run.getEnqueuedAnswers());
+            }
+            return;
+        }
+        Long newCursor = answerIds.get(answerIds.size() - 1);
+        if (runRepository.advanceCursor(runId, run.getLastAnswerId(), newCursor, answerIds.size()) != 1) {
+            // Node khác đã đưa đợt này vào hàng đợi (hoặc lượt vừa bị tạm dừng/hủy)
+            return;
+        }
+        for (TestAnswer answer : testAnswerRepository.findAllById(answerIds)) {
+            // Giữ điểm cũ cho tới khi có kết quả mới; chỉ xóa văn bản khi cần chuyển giọng nói lại
+            resetTranscription(answer, run.getScoringOnly());
+            answer.setProvisionalScore(null);
+            answer.setProcessingStatus(ProcessingStatus.PENDING);
+            testAnswerRepository.save(answer);
+            answerJobService.enqueue(answer, AnswerProcessingJob.PRIORITY_BULK, runId);
+            answerJobService.answerChanged(answer);
+        }
+        log.info("Reprocessing run {} queued {} answers (up to answer {})", runId, answerIds.size(), newCursor);
+    }
+
+    /**
+     * Chấm lại ngay một câu trả lời (nhóm INTERACTIVE_RETRY: đứng trước công việc hàng loạt,
+     * nhường bài nộp mới trong ai.scheduler.interactive-retry-offset-ms đầu)
+     */
+    @Transactional
+    public TestAnswerResponse reprocessAnswer(Long testAnswerId, boolean scoringOnly) {
+        TestAnswer answer = testAnswerRepository.findWithQuestionById(testAnswerId)
+                .orElseThrow(() -> new RuntimeException("Test answer not found with id: " + testAnswerId));
+        if (answer.getAudioUrl() == null) {
+            throw new RuntimeException("Test answer " + testAnswerId + " has no audio to process");
+        }
+        if (!jobRepository.findByTestAnswerIdAndStatus(testAnswerId, AnswerJobStatus.RUNNING).isEmpty()) {
+            throw new RuntimeException("Test answer " + testAnswerId + " is already being processed");
+        }
+        resetTranscription(answer, scoringOnly);
+        answer.setProvisionalScore(null);
+        answer.setProcessingStatus(ProcessingStatus.PENDING);
+        TestAnswer saved = testAnswerRepository.save(answer);
+        answerJobService.enqueue(saved, AnswerProcessingJob.PRIORITY_INTERACTIVE_RETRY, null);
+        answerJobService.answerChanged(saved);
+        log.info("Queued interactive reprocessing of test answer {} (scoring only {})", testAnswerId, scoringOnly);
+        return TestAnswerResponse.from(saved);
+    }
+
+    /**
+     * Xóa văn bản để chuyển giọng nói lại, hoặc (chỉ chấm lại) gắn văn bản hiện có với file âm thanh hiện tại.
+     * Dữ liệu cũ chưa có transcribedAudioUrl được coi là văn bản của audioUrl hiện tại, vì quản trị viên yêu cầu chấm lại chính văn bản đó
+     */
+    private static void resetTranscription(TestAnswer answer, boolean scoringOnly) {
+        if (!scoringOnly) {
+            answer.setTranscribedText(null);
+            answer.setTranscribedAudioUrl(null);
+        } else if (answer.getTranscribedAudioUrl() == null && answer.getTranscribedText() != null) {
+            answer.setTranscribedAudioUrl(answer.getAudioUrl());
+        }
+    }
+
+    @Transactional
+    public Map<String, Object> changeStatus(Long runId, ReprocessingRunStatus status) {
+        ReprocessingRun run = runRepository.findById(runId).orElseThrow(() -> new RuntimeException("Reprocessing run not found with id: " + runId));
+        if (run.getStatus() == ReprocessingRunStatus.COMPLETED || run.getStatus() == ReprocessingRunStatus.CANCELLED) {
+            throw new RuntimeException("Reprocessing run " + runId + " is already " + run.getStatus());
+        }
+        run.setStatus(status);
+        if (status == ReprocessingRunStatus.CANCELLED) {
+            run.setFinishedAt(LocalDateTime.now());
+        }
+        log.info("Reprocessing run {} is now {}", runId, status);
+        return toProgress(runRepository.save(run));
+    }
+
+    @Transactional(readOnly = true)
+    public Map<String, Object> getProgress(Long runId) {
+        return toProgress(runRepository.findById(runId).orElseThrow(() -> new RuntimeException("Reprocessing run not found with id: " + runId)));
+    }
+
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getAllProgress() {
+        return runRepository.findAllByOrderByIdDesc().stream().map(this::toProgress).toList();
+    }
+
+    /**
+     * Tiến độ và thời gian dự kiến còn lại, tính theo tốc độ hoàn thành trung bình từ khi bắt đầu
+     */
+    private Map<String, Object> toProgress(ReprocessingRun run) {
+        Map<AnswerJobStatus, Long> counts = countJobs(run.getId());
+        long completed = counts.get(AnswerJobStatus.COMPLETED);
+        long failed = counts.get(AnswerJobStatus.FAILED);
+        long finished = completed + failed;
+        long total = Math.max(run.getTotalAnswers(), run.getEnqueuedAnswers());
+        LocalDateTime end = run.getFinishedAt() != null ? run.getFinishedAt() : LocalDateTime.now();
+        double elapsedSeconds = Math.max(1, Duration.between(run.getStartedAt(), end).toSeconds());
+        double perMinute = finished * 60.0 / elapsedSeconds;
+        Long etaSeconds = null;
+        if (run.getStatus() == ReprocessingRunStatus.RUNNING && finished > 0) {
+            etaSeconds = Math.round(Math.max(0, total - finished) * 60.0 / perMinute);
+        }
+        Map<String, Object> filters = new LinkedHashMap<>();
+        filters.put("examId", run.getExamId());
+        filters.put("questionId", run.getQuestionId());
+        filters.put("statuses", run.getStatuses().isEmpty() ? List.of() : Arrays.asList(run.getStatuses().split(",")));
+        filters.put("fromDate", run.getFromDate());
+        filters.put("toDate", run.getToDate());
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("id", run.getId());
+        progress.put("status", run.getStatus());
+        progress.put("filters", filters);
+        progress.put("scoringOnly", run.getScoringOnly());
+        progress.put("chunkSize", run.getChunkSize());
+        progress.put("totalAnswers", total);
+        progress.put("enqueued", run.getEnqueuedAnswers());
+        progress.put("inFlight", counts.get(AnswerJobStatus.QUEUED) + counts.get(AnswerJobStatus.RUNNING));
+        progress.put("completed", completed);
+        progress.put("failed", failed);
+        progress.put("percent", total == 0 ? 100.0 : Math.round(finished * 1000.0 / total) / 10.0);
+        progress.put("throughputPerMinute", Math.round(perMinute * 10) / 10.0);
+        progress.put("etaSeconds", etaSeconds);
+        progress.put("requestedBy", run.getRequestedBy());
+        progress.put("startedAt", run.getStartedAt());
+        progress.put("finishedAt", run.getFinishedAt());
+        return progress;
+    }
+
+    private Map<AnswerJobStatus, Long> countJobs(Long runId) {
+        Map<AnswerJobStatus, Long> counts = new EnumMap<>(AnswerJobStatus.class);
+        for (AnswerJobStatus status : AnswerJobStatus.values()) {
+            counts.put(status, 0L);
+        }
+        for (Object[] row : jobRepository.countByStatusForRun(runId)) {
+            counts.put((AnswerJobStatus) row[0], (Long) row[1]);
+        }
+        return counts;
+    }
+
+    private static List<ProcessingStatus> statusesOf(ReprocessingRun run) {
+        if (run.getStatuses() == null || run.getStatuses().isEmpty()) {
+            return List.of(ProcessingStatus.values());
+        }
+        return Arrays.stream(run.getStatuses().split(",")).map(ProcessingStatus::valueOf).toList();
+    }
+}
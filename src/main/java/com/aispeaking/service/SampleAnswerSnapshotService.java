@@ -0,0 +1,171 @@
+package com.aispeaking.service;
+
+import com.aispeaking.entity.SampleAnswer;
+import com.aispeaking.repository.QuestionRepository;
+import com.aispeaking.repository.SampleAnswerRepository;
+import com.aispeaking.util.TransactionCallbacks;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snapshot bất biến các câu trả lời mẫu của từng câu hỏi, đã ở đúng định dạng "sample_answers" mà Qwen mong đợi.
+ * Nạp lười khi chấm điểm (hoặc nạp sẵn khi đề thi chuyển sang ACTIVE) và bị xóa sau khi transaction
+ * thay đổi câu trả lời mẫu/câu hỏi commit thành công.
+ * Việc xóa chỉ xảy ra trên node đã thực hiện thay đổi, nên sau max-staleness-ms kể từ lần nạp/kiểm tra,
+ * snapshot được đối chiếu lại với questions.sample_answers_version (node khác sửa thì phiên bản đã tăng).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SampleAnswerSnapshotService {
+    private final QuestionRepository questionRepository;
+    private final SampleAnswerRepository sampleAnswerRepository;
+    private final AlgorithmicScorer algorithmicScorer;
+
+    @Value("${ai.sample-answer-cache.max-staleness-ms}")
+    private long maxStalenessMs;
+
+    private final Map<Long, CachedSnapshot> snapshots = new ConcurrentHashMap<>();
+    // Tăng mỗi lần xóa snapshot; lần nạp bắt đầu trước đó sẽ không ghi kết quả (có thể đã cũ) vào cache
+    private final AtomicLong invalidationGeneration = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong staleSnapshots = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong totalLoadNanos = new AtomicLong();
+    private final AtomicLong maxLoadNanos = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Phiên bản tập câu trả lời mẫu kèm danh sách {content, score} không thể sửa đổi
+     * và bản tiền xử lý tương ứng cho AlgorithmicScorer
+     */
+    public record SampleAnswerSnapshot(Long questionId, int version, List<Map<String, Object>> sampleAnswers,
+                                       List<AlgorithmicScorer.PreparedSample> preparedSamples) {
+    }
+
+    private static class CachedSnapshot {
+        final SampleAnswerSnapshot snapshot;
+        // Lần gần nhất xác nhận phiên bản còn khớp DB
+        volatile long validatedAt;
+
+        CachedSnapshot(SampleAnswerSnapshot snapshot) {
+            this.snapshot = snapshot;
+            this.validatedAt = System.currentTimeMillis();
+        }
+    }
+
+    public SampleAnswerSnapshot getSnapshot(Long questionId) {
+        CachedSnapshot cached = snapshots.get(questionId);
+        long now = System.currentTimeMillis();
+        if (cached != null && now - cached.validatedAt < maxStalenessMs) {
+            hits.incrementAndGet();
+            return cached.snapshot;
+        }
+        if (cached != null) {
+            revalidations.incrementAndGet();
+            Integer version = questionRepository.findSampleAnswersVersionById(questionId).orElse(null);
+            if (version != null && version == cached.snapshot.version()) {
+                cached.validatedAt = now;
+                hits.incrementAndGet();
+                return cached.snapshot;
+            }
+            staleSnapshots.incrementAndGet();
+            snapshots.remove(questionId, cached);
+            log.debug("Sample answer snapshot for question {} is stale (version {} -> {})", questionId, cached.snapshot.version(), version);
+        }
+        misses.incrementAndGet();
+        return load(questionId);
+    }
+
+    /**
+     * Nạp sẵn snapshot cho các câu hỏi của một đề thi, chạy sau khi transaction hiện tại commit
+     */
+    public void warmAfterCommit(Collection<Long> questionIds) {
+        List<Long> ids = List.copyOf(questionIds);
+        TransactionCallbacks.afterCommit(() -> {
+            ids.stream().filter(id -> !snapshots.containsKey(id)).forEach(this::load);
+            log.info("Warmed sample answer snapshots for {} questions", ids.size());
+        });
+    }
+
+    /**
+     * Xóa snapshot sau khi transaction hiện tại commit, để lần nạp kế tiếp đọc được dữ liệu mới
+     */
+    public void invalidateAfterCommit(Long questionId) {
+        TransactionCallbacks.afterCommit(() -> invalidate(questionId));
+    }
+
+    public void invalidate(Long questionId) {
+        invalidationGeneration.incrementAndGet();
+        if (snapshots.remove(questionId) != null) {
+            invalidations.incrementAndGet();
+            log.debug("Invalidated sample answer snapshot for question {}", questionId);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long loadCount = loads.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cache", "sample-answers");
+        stats.put("entries", snapshots.size());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("maxStalenessMs", maxStalenessMs);
+        stats.put("revalidations", revalidations.get());
+        stats.put("staleSnapshots", staleSnapshots.get());
+        stats.put("loads", loadCount);
+        stats.put("avgLoadMs", loadCount == 0 ? 0.0 : totalLoadNanos.get() / 1_000_000.0 / loadCount);
+        stats.put("maxLoadMs", maxLoadNanos.get() / 1_000_000.0);
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private SampleAnswerSnapshot load(Long questionId) {
+        long generation = invalidationGeneration.get();
+        long start = System.nanoTime();
+        // Đọc phiên bản trước danh sách mẫu: nếu có ghi xen giữa, snapshot mang phiên bản cũ hơn dữ liệu chứ không ngược lại
+        int version = questionRepository.findSampleAnswersVersionById(questionId).orElse(0);
+        List<SampleAnswer> samples = sampleAnswerRepository.findByQuestionId(questionId);
+        List<Map<String, Object>> sampleAnswers = samples.stream()
+                .map(sample -> {
+                    Map<String, Object> sampleMap = new LinkedHashMap<>();
+                    sampleMap.put("content", sample.getContent());  // Qwen mong đợi "content" không phải "text"
+                    sampleMap.put("score", sample.getScore());
+                    return Collections.unmodifiableMap(sampleMap);
+                })
+                .toList();
+        List<AlgorithmicScorer.PreparedSample> preparedSamples = samples.stream()
+                .map(sample -> algorithmicScorer.prepare(sample.getContent(), sample.getScore()))
+                .toList();
+        SampleAnswerSnapshot snapshot = new SampleAnswerSnapshot(questionId, version, sampleAnswers, preparedSamples);
+        long elapsed = System.nanoTime() - start;
+        loads.incrementAndGet();
+        totalLoadNanos.addAndGet(elapsed);
+        maxLoadNanos.accumulateAndGet(elapsed, Math::max);
+        if (invalidationGeneration.get() == generation) {
+            CachedSnapshot cached = new CachedSnapshot(snapshot);
+            snapshots.put(questionId, cached);
+            // Có lần xóa chen vào giữa lúc kiểm tra và lúc ghi thì bỏ snapshot vừa ghi
+            if (invalidationGeneration.get() != generation) {
+                snapshots.remove(questionId, cached);
+            }
+        }
+        log.debug("Loaded {} sample answers (version {}) for question {} in {}ms",
+                sampleAnswers.size(), version, questionId, elapsed / 1_000_000);
+        return snapshot;
+    }
+}
@@ -0,0 +1,87 @@
+package com.aispeaking.service;
+
+import com.aispeaking.util.LruCache;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Cache kết quả chấm điểm của Qwen trong backend (giữ được khi Qwen khởi động lại, dùng chung cho mọi replica Qwen).
+ * Khóa = questionId + phiên bản tập câu trả lời mẫu + SHA-256 của văn bản đã chuẩn hóa.
+ * Khi câu trả lời mẫu thay đổi, phiên bản tăng nên các kết quả cũ không bao giờ được tra lại và dần bị loại khỏi LRU.
+ */
+@Service
+public class ScoringCacheService {
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}_\\s]");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    @Value("${ai.scoring-cache.enabled}")
+    private boolean enabled;
+
+    @Value("${ai.scoring-cache.eviction-policy}")
+    private LruCache.EvictionPolicy evictionPolicy;
+
+    @Value("${ai.scoring-cache.max-entries}")
+    private int maxEntries;
+
+    @Value("${ai.scoring-cache.max-bytes}")
+    private long maxBytes;
+
+    private LruCache<String, String> cache;
+
+    @PostConstruct
+    void init() {
+        cache = new LruCache<>("scoring", evictionPolicy, maxEntries, maxBytes, response -> 2L * response.length() + 200);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Chuẩn hóa giống normalize_text của qwen_server: chữ thường, bỏ dấu câu, gộp khoảng trắng
+     */
+    public static String normalizeTranscript(String text) {
+        String normalized = NON_WORD.matcher(text.toLowerCase(Locale.ROOT).strip()).replaceAll(" ");
+        return WHITESPACE.matcher(normalized).replaceAll(" ").strip();
+    }
+
+    public static String cacheKey(Long questionId, int sampleAnswersVersion, String transcribedText) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(normalizeTranscript(transcribedText).getBytes(StandardCharsets.UTF_8));
+            return questionId + ":" + sampleAnswersVersion + ":" + HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Trả về JSON phản hồi của Qwen đã lưu cho khóa này (nếu có)
+     */
+    public Optional<String> get(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cache.get(key));
+    }
+
+    public void put(String key, String qwenResponse) {
+        if (enabled) {
+            cache.put(key, qwenResponse);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = cache.getStats();
+        stats.put("enabled", enabled);
+        return stats;
+    }
+}
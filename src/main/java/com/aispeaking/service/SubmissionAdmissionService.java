@@ -0,0 +1,194 @@
+package com.aispeaking.service;
+
+import com.aispeaking.client.WhisperClient;
+import com.aispeaking.entity.AnswerProcessingJob;
+import com.aispeaking.entity.enums.AnswerJobStatus;
+import com.aispeaking.repository.AnswerProcessingJobRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Kiểm soát tiếp nhận cho POST /test-sessions/{id}/submit-answer: giới hạn số công việc chấm điểm đang chờ/chạy
+ * (chỉ bài nộp trực tiếp và chấm lại tương tác; công việc xử lý lại hàng loạt luôn nhường chỗ nên không tính)
+ * và tổng số byte âm thanh đang được ghi xuống đĩa. Khi vượt ngưỡng, bài nộp bị từ chối ngay (429) kèm Retry-After
+ * tính từ tốc độ hoàn thành công việc trong một phút gần nhất; khi Whisper mở circuit breaker thì trả 503
+ * với thời gian còn lại của breaker. Như vậy hàng đợi không phình vô hạn khi AI chậm hơn tốc độ nộp bài.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SubmissionAdmissionService {
+    private static final long COUNT_TTL_MS = 1000;
+    private static final long RATE_WINDOW_MS = TimeUnit.MINUTES.toMillis(1);
+    // Chưa có công việc nào kết thúc trong phút gần nhất (vừa khởi động): chưa ước tính được tốc độ
+    private static final long NO_HISTORY_RETRY_AFTER_SECONDS = 10;
+    private static final List<AnswerJobStatus> OUTSTANDING = List.of(AnswerJobStatus.QUEUED, AnswerJobStatus.RUNNING);
+
+    private final AnswerProcessingJobRepository jobRepository;
+    private final WhisperClient whisperClient;
+
+    @Value("${ai.admission.enabled}")
+    private boolean enabled;
+
+    @Value("${ai.admission.max-outstanding-jobs}")
+    private long maxOutstandingJobs;
+
+    @Value("${ai.admission.max-buffered-bytes}")
+    private long maxBufferedBytes;
+
+    @Value("${ai.admission.min-retry-after-seconds}")
+    private long minRetryAfterSeconds;
+
+    @Value("${ai.admission.max-retry-after-seconds}")
+    private long maxRetryAfterSeconds;
+
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejectedOverloaded = new AtomicLong();
+    private final AtomicLong rejectedBuffer = new AtomicLong();
+    private final AtomicLong rejectedUnavailable = new AtomicLong();
+
+    // Số công việc QUEUED + RUNNING có priority < PRIORITY_BULK đọc từ DB, làm mới tối đa mỗi COUNT_TTL_MS; cộng thêm bài nộp nhận từ lần đếm đó
+    private volatile long countedOutstanding;
+    private final AtomicLong countedAt = new AtomicLong();
+    private final AtomicLong admittedSinceCount = new AtomicLong();
+
+    private final ReentrantLock rateLock = new ReentrantLock();
+    private final Deque<Long> recentFinishes = new ArrayDeque<>();
+
+    /**
+     * Giữ chỗ cho một bài nộp có kích thước bytes; ném AdmissionRejectedException nếu không được nhận.
+     * Chỗ giữ phải được trả lại bằng Permit.close() sau khi bài nộp đã vào hàng đợi (hoặc thất bại).
+     */
+    public Permit admit(long bytes) {
+        if (!enabled) {
+            return new Permit(0);
+        }
+        long openMs = whisperClient.remainingOpenMs();
+        if (openMs > 0) {
+            rejectedUnavailable.incrementAndGet();
+            throw new AdmissionRejectedException(HttpStatus.SERVICE_UNAVAILABLE,
+                    clamp((openMs + 999) / 1000), "Transcription service unavailable");
+        }
+        long outstanding = outstandingJobs();
+        if (outstanding >= maxOutstandingJobs) {
+            rejectedOverloaded.incrementAndGet();
+            long retryAfter = retryAfterSeconds(outstanding - maxOutstandingJobs + 1);
+            log.warn("Rejecting submission: {} outstanding jobs (limit {}), retry after {}s", outstanding, maxOutstandingJobs, retryAfter);
+            throw new AdmissionRejectedException(HttpStatus.TOO_MANY_REQUESTS, retryAfter, "Too many outstanding jobs");
+        }
+        long size = Math.max(0, bytes);
+        long buffered = bufferedBytes.addAndGet(size);
+        // Luôn nhận bài nộp đầu tiên để một file lớn hơn giới hạn không bị từ chối mãi mãi
+        if (buffered > maxBufferedBytes && buffered != size) {
+            bufferedBytes.addAndGet(-size);
+            rejectedBuffer.incrementAndGet();
+            log.warn("Rejecting submission: {} bytes buffered (limit {})", buffered - size, maxBufferedBytes);
+            throw new AdmissionRejectedException(HttpStatus.TOO_MANY_REQUESTS, minRetryAfterSeconds, "Too many uploads in progress");
+        }
+        admitted.incrementAndGet();
+        admittedSinceCount.incrementAndGet();
+        return new Permit(size);
+    }
+
+    /**
+     * Ghi nhận một công việc chấm điểm đã kết thúc (hoàn thành hoặc thất bại) để ước tính tốc độ tiêu thụ hàng đợi
+     */
+    public void onJobFinished() {
+        long now = System.currentTimeMillis();
+        rateLock.lock();
+        try {
+            recentFinishes.addLast(now);
+            trim(now);
+        } finally {
+            rateLock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("outstandingJobs", countedOutstanding + admittedSinceCount.get());
+        stats.put("maxOutstandingJobs", maxOutstandingJobs);
+        stats.put("bufferedBytes", bufferedBytes.get());
+        stats.put("maxBufferedBytes", maxBufferedBytes);
+        stats.put("drainRatePerSecond", Math.round(drainRatePerSecond() * 100) / 100.0);
+        stats.put("admitted", admitted.get());
+        stats.put("rejectedOverloaded", rejectedOverloaded.get());
+        stats.put("rejectedBuffer", rejectedBuffer.get());
+        stats.put("rejectedUnavailable", rejectedUnavailable.get());
+        return stats;
+    }
+
+    private long outstandingJobs() {
+        long now = System.currentTimeMillis();
+        long last = countedAt.get();
+        // Chỉ một luồng đếm lại, các luồng khác dùng giá trị cũ (không giữ khóa khi truy vấn DB)
+        if (now - last >= COUNT_TTL_MS && countedAt.compareAndSet(last, now)) {
+            long sinceBefore = admittedSinceCount.get();
+            countedOutstanding = jobRepository.countByStatusInAndPriorityLessThan(OUTSTANDING, AnswerProcessingJob.PRIORITY_BULK);
+            admittedSinceCount.addAndGet(-sinceBefore);
+        }
+        return countedOutstanding + admittedSinceCount.get();
+    }
+
+    private long retryAfterSeconds(long excessJobs) {
+        double rate = drainRatePerSecond();
+        if (rate <= 0) {
+            return clamp(NO_HISTORY_RETRY_AFTER_SECONDS);
+        }
+        return clamp((long) Math.ceil(excessJobs / rate));
+    }
+
+    private double drainRatePerSecond() {
+        long now = System.currentTimeMillis();
+        rateLock.lock();
+        try {
+            trim(now);
+            return recentFinishes.size() * 1000.0 / RATE_WINDOW_MS;
+        } finally {
+            rateLock.unlock();
+        }
+    }
+
+    private long clamp(long seconds) {
+        return Math.max(minRetryAfterSeconds, Math.min(maxRetryAfterSeconds, seconds));
+    }
+
+    private void trim(long now) {
+        while (!recentFinishes.isEmpty() && now - recentFinishes.peekFirst() > RATE_WINDOW_MS) {
+            recentFinishes.removeFirst();
+        }
+    }
+
+    /**
+     * Chỗ đã giữ cho một bài nộp; trả lại phần byte đệm khi đóng
+     */
+    public class Permit implements AutoCloseable {
+        private final long bytes;
+        private boolean closed;
+
+        private Permit(long bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                bufferedBytes.addAndGet(-bytes);
+            }
+        }
+    }
+}
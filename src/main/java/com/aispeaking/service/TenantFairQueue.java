@@ -0,0 +1,220 @@
+package com.aispeaking.service;
+
+import com.aispeaking.entity.TestAnswer;
+import com.aispeaking.entity.TestSession;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Chia sức chứa AI công bằng giữa các tenant (kỳ thi hoặc studentOrganization, theo ai.fair-queue.tenant-key)
+ * bằng start-time fair queuing: mỗi tenant có thời gian ảo tăng thêm (độ dài âm thanh / trọng số) mỗi khi được
+ * nhận một công việc; lượt kế tiếp thuộc về tenant có thời gian ảo nhỏ nhất. Tenant mới hoặc vừa quay lại bắt đầu
+ * từ thời gian ảo hiện tại của hệ thống nên không được "để dành" lượt khi nhàn rỗi.
+ * Một kỳ thi 400 thí sinh vì vậy chỉ chiếm phần của nó, các tenant khác vẫn được phục vụ xen kẽ.
+ * Trạng thái nằm trong bộ nhớ của từng node; thứ tự trong một tenant vẫn theo schedule_key.
+ */
+@Component
+@Slf4j
+public class TenantFairQueue {
+    private static final long IDLE_EVICT_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long RATE_WINDOW_MS = TimeUnit.MINUTES.toMillis(1);
+
+    public enum TenantKey {
+        EXAM,
+        ORGANIZATION
+    }
+
+    @Getter
+    @Value("${ai.fair-queue.enabled}")
+    private boolean enabled;
+
+    @Value("${ai.fair-queue.tenant-key}")
+    private TenantKey tenantKey;
+
+    @Value("${ai.fair-queue.default-weight}")
+    private double defaultWeight;
+
+    @Value("${ai.fair-queue.default-max-concurrency}")
+    private int defaultMaxConcurrency;
+
+    // Dạng "tenant=giá trị" phân cách bởi dấu phẩy, ví dụ "exam:12=3,org:THPT Chu Văn An=2"
+    @Value("${ai.fair-queue.weights:}")
+    private String weightsProperty;
+
+    @Value("${ai.fair-queue.max-concurrency:}")
+    private String maxConcurrencyProperty;
+
+    @Value("${ai.scheduler.default-audio-ms}")
+    private long defaultAudioMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, TenantState> tenants = new HashMap<>();
+    private Map<String, Double> weights;
+    private Map<String, Integer> maxConcurrency;
+    // Thời gian ảo bắt đầu của công việc được nhận gần nhất
+    private double systemVirtualTime;
+
+    private static class TenantState {
+        double virtualTime;
+        long claimed;
+        long servedAudioMs;
+        long lastClaimAt;
+        final Deque<Long> recentClaims = new ArrayDeque<>();
+    }
+
+    @PostConstruct
+    void init() {
+        weights = parse(weightsProperty, Double::valueOf);
+        maxConcurrency = parse(maxConcurrencyProperty, Integer::valueOf);
+        log.info("Tenant fair queue {} (tenant key {}, {} weight overrides, {} concurrency caps)",
+                enabled ? "enabled" : "disabled", tenantKey, weights.size(), maxConcurrency.size());
+    }
+
+    /**
+     * Khóa tenant của câu trả lời: "exam:{id}" hoặc "org:{studentOrganization}"
+     */
+    public String tenantKeyOf(TestAnswer answer) {
+        TestSession session = answer.getTestSession();
+        if (session == null) {
+            return null;
+        }
+        if (tenantKey == TenantKey.EXAM) {
+            return "exam:" + session.getExam().getId();
+        }
+        String organization = session.getStudentOrganization();
+        return "org:" + (organization == null ? "" : organization.strip());
+    }
+
+    /**
+     * Chọn tenant được nhận công việc kế tiếp trong số các tenant còn công việc sẵn sàng;
+     * bỏ qua tenant đã đạt giới hạn đồng thời. Trả về null nếu không còn tenant nào hợp lệ.
+     */
+    public String next(Collection<String> candidates, Map<String, Long> running) {
+        lock.lock();
+        try {
+            String best = null;
+            double bestStart = Double.MAX_VALUE;
+            for (String tenant : candidates) {
+                int cap = maxConcurrencyOf(tenant);
+                if (cap > 0 && running.getOrDefault(tenant, 0L) >= cap) {
+                    continue;
+                }
+                TenantState state = tenants.get(tenant);
+                double start = Math.max(state == null ? 0 : state.virtualTime, systemVirtualTime);
+                if (start < bestStart) {
+                    bestStart = start;
+                    best = tenant;
+                }
+            }
+            return best;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ghi nhận tenant vừa được nhận một công việc có độ dài âm thanh audioDurationMs (null: dùng giá trị mặc định)
+     */
+    public void onClaimed(String tenant, Long audioDurationMs) {
+        long cost = Math.max(1, audioDurationMs != null ? audioDurationMs : defaultAudioMs);
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            TenantState state = tenants.computeIfAbsent(tenant, key -> new TenantState());
+            double start = Math.max(state.virtualTime, systemVirtualTime);
+            systemVirtualTime = start;
+            state.virtualTime = start + cost / weightOf(tenant);
+            state.claimed++;
+            state.servedAudioMs += cost;
+            state.lastClaimAt = now;
+            state.recentClaims.addLast(now);
+            trim(state, now);
+            tenants.values().removeIf(other -> other != state && now - other.lastClaimAt > IDLE_EVICT_MS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Thống kê theo tenant: trọng số, giới hạn, số công việc đang chờ/chạy (từ DB) và tốc độ được phục vụ
+     */
+    public Map<String, Object> getStats(Map<String, Long> queued, Map<String, Long> running) {
+        long now = System.currentTimeMillis();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("tenantKey", tenantKey.name());
+        result.put("defaultWeight", defaultWeight);
+        result.put("defaultMaxConcurrency", defaultMaxConcurrency);
+        Map<String, Map<String, Object>> perTenant = new TreeMap<>();
+        lock.lock();
+        try {
+            Set<String> keys = new TreeSet<>(tenants.keySet());
+            keys.addAll(queued.keySet());
+            keys.addAll(running.keySet());
+            for (String tenant : keys) {
+                TenantState state = tenants.get(tenant);
+                if (state != null) {
+                    trim(state, now);
+                }
+                Map<String, Object> stats = new LinkedHashMap<>();
+                stats.put("weight", weightOf(tenant));
+                stats.put("maxConcurrency", maxConcurrencyOf(tenant));
+                stats.put("queued", queued.getOrDefault(tenant, 0L));
+                stats.put("running", running.getOrDefault(tenant, 0L));
+                stats.put("claimed", state == null ? 0 : state.claimed);
+                stats.put("claimsLastMinute", state == null ? 0 : state.recentClaims.size());
+                stats.put("servedAudioSeconds", state == null ? 0 : state.servedAudioMs / 1000);
+                perTenant.put(tenant, stats);
+            }
+        } finally {
+            lock.unlock();
+        }
+        result.put("tenants", perTenant);
+        return result;
+    }
+
+    private double weightOf(String tenant) {
+        double weight = weights.getOrDefault(tenant, defaultWeight);
+        return weight > 0 ? weight : 1.0;
+    }
+
+    private int maxConcurrencyOf(String tenant) {
+        return maxConcurrency.getOrDefault(tenant, defaultMaxConcurrency);
+    }
+
+    private static void trim(TenantState state, long now) {
+        while (!state.recentClaims.isEmpty() && now - state.recentClaims.peekFirst() > RATE_WINDOW_MS) {
+            state.recentClaims.removeFirst();
+        }
+    }
+
+    private static <T> Map<String, T> parse(String property, Function<String, T> parser) {
+        Map<String, T> values = new HashMap<>();
+        if (property == null || property.isBlank()) {
+            return values;
+        }
+        for (String entry : property.split(",")) {
+            int separator = entry.lastIndexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid fair queue entry (expected tenant=value): " + entry);
+            }
+            values.put(entry.substring(0, separator).strip(), parser.apply(entry.substring(separator + 1).strip()));
+        }
+        return values;
+    }
+}
@@ -8,6 +8,7 @@ import com.aispeaking.repository.TestAnswerRepository;
 import com.aispeaking.repository.TestSessionRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -22,7 +23,6 @@ import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -32,7 +32,13 @@ public class TestSessionService {
     private final TestAnswerRepository testAnswerRepository;
     private final ExamService examService;
     private final QuestionService questionService;
-    private final AIProcessingService aiProcessingService;
+    private final AnswerJobService answerJobService;
+    private final SubmissionAdmissionService submissionAdmissionService;
+    private final TestSessionSnapshotService testSessionSnapshotService;
+    private final AudioNormalizationService audioNormalizationService;
+
+    @Value("${file.upload.dir}")
+    private String uploadDir;
 
     @Transactional(readOnly = true)
     public Page<TestSessionResponse> getAllTestSessions(Pageable pageable) {
@@ -77,25 +83,26 @@ public class TestSessionService {
         return TestSessionResponse.from(savedSession);
     }
 
-    @Transactional
+    /**
+     * Nộp câu trả lời - cố ý KHÔNG chạy trong một giao dịch bao trùm:
+     * việc ghi file âm thanh (tới 50MB) diễn ra khi không giữ kết nối DB nào,
+     * chỉ bước cập nhật câu trả lời và thêm công việc chấm điểm là một giao dịch ngắn.
+     */
     public TestAnswerResponse submitAnswer(Long testSessionId, Long questionId, MultipartFile audioFile) throws IOException {
         log.info("Starting submit answer for test session {} question {}", testSessionId, questionId);
         // Tìm câu trả lời kiểm tra
-        TestAnswer testAnswer = testAnswerRepository.findByTestSessionId(testSessionId).stream()
-                .filter(ta -> ta.getQuestion().getId().equals(questionId))
-                .findFirst()
+        Long testAnswerId = testAnswerRepository.findIdByTestSessionIdAndQuestionId(testSessionId, questionId)
                 .orElseThrow(() -> new RuntimeException("Test answer not found"));
-        // Lưu file âm thanh trước
-        String audioUrl = saveAudioFile(audioFile, testSessionId, questionId);
-        testAnswer.setAudioUrl(audioUrl);
-        testAnswer.setAnsweredAt(LocalDateTime.now());
-        // Xử lý với AI đồng bộ (chặn cho đến khi Whisper và Qwen hoàn thành)
-        // Điều này sẽ cập nhật tất cả các trường: transcribedText, score, feedback, processingStatus
-        aiProcessingService.processTestAnswerSync(testAnswer);
-        // Lưu vào DB chỉ MỘT LẦN sau khi tất cả quá trình xử lý hoàn tất
-        TestAnswer savedAnswer = testAnswerRepository.save(testAnswer);
-        log.info("Completed submit answer for test session {} question {}, status: {}, score: {}", testSessionId, questionId, savedAnswer.getProcessingStatus(), savedAnswer.getScore());
-        return TestAnswerResponse.from(savedAnswer);
+        // Kiểm soát tiếp nhận: từ chối sớm (429/503) trước khi ghi file nếu hàng đợi hoặc bộ đệm đã đầy
+        TestAnswerResponse response;
+        try (SubmissionAdmissionService.Permit ignored = submissionAdmissionService.admit(audioFile.getSize())) {
+            // Lưu file âm thanh trước
+            String audioUrl = saveAudioFile(audioFile, testSessionId, questionId);
+            // Đặt lại kết quả cũ (nếu nộp lại) và thêm công việc chấm điểm vào hàng đợi bền vững
+            response = answerJobService.acceptSubmission(testAnswerId, audioUrl);
+        }
+        log.info("Accepted answer for test session {} question {}, queued for AI processing", testSessionId, questionId);
+        return response;
     }
 
     @Transactional
@@ -106,6 +113,7 @@ public class TestSessionService {
         testSession.setTotalScore(averageScore);
         testSession.setCompletedAt(LocalDateTime.now());
         testSession.setStatus(TestSessionStatus.COMPLETED);
+        testSessionSnapshotService.bumpVersion(testSession);
         testSessionRepository.save(testSession);
         log.info("Completed test session {} with average score {}", testSessionId, averageScore);
     }
@@ -136,10 +144,11 @@ public class TestSessionService {
         return averageScore;
     }
 
-    @Transactional(readOnly = true)
-    public TestSessionResponse getTestSession(Long id) {
-        TestSession testSession = testSessionRepository.findById(id).orElseThrow(() -> new RuntimeException("Test session not found"));
-        return TestSessionResponse.from(testSession);
+    /**
+     * Phiên thi và các câu trả lời cho API đọc công khai, lấy từ snapshot trong bộ nhớ (kèm ETag)
+     */
+    public TestSessionSnapshotService.SessionSnapshot getSessionSnapshot(Long id) {
+        return testSessionSnapshotService.getSnapshot(id);
     }
     
     // Chỉ sử dụng nội bộ - cho các service khác cần thực thể TestSession
@@ -148,22 +157,16 @@ public class TestSessionService {
         return testSessionRepository.findById(id).orElseThrow(() -> new RuntimeException("Test session not found"));
     }
 
-    @Transactional(readOnly = true)
-    public List<TestAnswerResponse> getTestAnswers(Long testSessionId) {
-        return testAnswerRepository.findByTestSessionId(testSessionId).stream()
-                .map(TestAnswerResponse::from)
-                .collect(Collectors.toList());
-    }
-
     private String saveAudioFile(MultipartFile file, Long testSessionId, Long questionId) throws IOException {
-        String uploadDir = "uploads/audio/" + testSessionId;
-        Path uploadPath = Paths.get(uploadDir);
+        String sessionDir = uploadDir + "/" + testSessionId;
+        Path uploadPath = Paths.get(sessionDir);
         if (!Files.exists(uploadPath)) {
             Files.createDirectories(uploadPath);
         }
         String filename = questionId + "_" + UUID.randomUUID() + ".wav";
         Path filePath = uploadPath.resolve(filename);
-        Files.copy(file.getInputStream(), filePath);
-        return uploadDir + "/" + filename;
+        // Chuyển sang WAV 16 kHz mono 16-bit trong lúc ghi (file gốc không được lưu)
+        audioNormalizationService.store(file, filePath);
+        return sessionDir + "/" + filename;
     }
 }
\ No newline at end of file
@@ -0,0 +1,185 @@
+package com.aispeaking.service;
+
+import com.aispeaking.dto.TestAnswerResponse;
+import com.aispeaking.dto.TestSessionResponse;
+import com.aispeaking.entity.TestSession;
+import com.aispeaking.repository.TestAnswerRepository;
+import com.aispeaking.repository.TestSessionRepository;
+import com.aispeaking.util.LruCache;
+import com.aispeaking.util.TransactionCallbacks;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snapshot bất biến của phiên thi và các câu trả lời cho GET /test-sessions/{id} và /answers mà học sinh gọi liên tục.
+ * Mỗi thay đổi câu trả lời (pipeline chấm điểm, nộp lại, xử lý lại) hoặc của phiên (hoàn thành, hủy) tăng
+ * test_sessions.state_version trong cùng giao dịch; ETag được tạo từ phiên bản này nên giống nhau trên mọi node.
+ * - Trong max-staleness-ms sau lần nạp/kiểm tra gần nhất, snapshot được trả thẳng từ bộ nhớ (304 không cần DB).
+ * - Sau đó chỉ đọc lại cột state_version; phiên bản không đổi thì dùng tiếp, đổi thì mới nạp lại câu trả lời.
+ * - Thay đổi trên chính node này xóa snapshot ngay sau commit; thay đổi từ node khác thấy được sau tối đa max-staleness-ms.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TestSessionSnapshotService {
+    private final TestSessionRepository testSessionRepository;
+    private final TestAnswerRepository testAnswerRepository;
+
+    @Value("${ai.session-cache.enabled}")
+    private boolean enabled;
+
+    @Value("${ai.session-cache.max-entries}")
+    private int maxEntries;
+
+    @Value("${ai.session-cache.max-bytes}")
+    private long maxBytes;
+
+    @Value("${ai.session-cache.max-staleness-ms}")
+    private long maxStalenessMs;
+
+    private LruCache<Long, SessionSnapshot> cache;
+    private final AtomicLong invalidationGeneration = new AtomicLong();
+    private final AtomicLong freshHits = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Trạng thái phiên thi ở một phiên bản; session và answers không được sửa sau khi tạo
+     */
+    @Getter
+    public static class SessionSnapshot {
+        private final Long testSessionId;
+        private final long version;
+        private final TestSessionResponse session;
+        private final List<TestAnswerResponse> answers;
+        private final long weight;
+        private volatile long validatedAt;
+
+        SessionSnapshot(Long testSessionId, long version, TestSessionResponse session, List<TestAnswerResponse> answers) {
+            this.testSessionId = testSessionId;
+            this.version = version;
+            this.session = session;
+            this.answers = answers;
+            this.weight = estimateBytes(answers);
+            this.validatedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * ETag mạnh của GET /test-sessions/{id}
+         */
+        public String getSessionEtag() {
+            return "\"s" + testSessionId + "-" + version + "\"";
+        }
+
+        /**
+         * ETag mạnh của GET /test-sessions/{id}/answers
+         */
+        public String getAnswersEtag() {
+            return "\"a" + testSessionId + "-" + version + "\"";
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        cache = new LruCache<>("test-session", LruCache.EvictionPolicy.LRU, maxEntries, maxBytes, SessionSnapshot::getWeight);
+    }
+
+    public SessionSnapshot getSnapshot(Long testSessionId) {
+        if (!enabled) {
+            return load(testSessionId);
+        }
+        SessionSnapshot snapshot = cache.get(testSessionId);
+        long now = System.currentTimeMillis();
+        if (snapshot != null && now - snapshot.validatedAt < maxStalenessMs) {
+            freshHits.incrementAndGet();
+            return snapshot;
+        }
+        if (snapshot != null) {
+            revalidations.incrementAndGet();
+            Long version = testSessionRepository.findStateVersionById(testSessionId).orElse(null);
+            if (version != null && version == snapshot.version) {
+                snapshot.validatedAt = now;
+                return snapshot;
+            }
+            cache.remove(testSessionId);
+        }
+        long generation = invalidationGeneration.get();
+        SessionSnapshot loaded = load(testSessionId);
+        if (invalidationGeneration.get() == generation) {
+            cache.put(testSessionId, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Câu trả lời của phiên vừa thay đổi trong giao dịch hiện tại: tăng phiên bản trong DB,
+     * xóa snapshot trên node này sau commit
+     */
+    public void bumpVersion(Long testSessionId) {
+        testSessionRepository.incrementStateVersion(testSessionId);
+        invalidateAfterCommit(testSessionId);
+    }
+
+    /**
+     * Như bumpVersion nhưng cho phiên đang được sửa qua entity (tránh lệnh UPDATE riêng bị entity ghi đè khi flush)
+     */
+    public void bumpVersion(TestSession testSession) {
+        testSession.setStateVersion(testSession.getStateVersion() + 1);
+        invalidateAfterCommit(testSession.getId());
+    }
+
+    public void invalidateAfterCommit(Long testSessionId) {
+        TransactionCallbacks.afterCommit(() -> {
+            invalidationGeneration.incrementAndGet();
+            cache.remove(testSessionId);
+            invalidations.incrementAndGet();
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(cache.getStats());
+        stats.put("enabled", enabled);
+        stats.put("maxStalenessMs", maxStalenessMs);
+        stats.put("freshHits", freshHits.get());
+        stats.put("revalidations", revalidations.get());
+        stats.put("loads", loads.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private SessionSnapshot load(Long testSessionId) {
+        // Đọc phiên bản trước dữ liệu: nếu có ghi xen giữa, snapshot mang phiên bản cũ hơn dữ liệu và sẽ được nạp lại
+        long version = testSessionRepository.findStateVersionById(testSessionId)
+                .orElseThrow(() -> new RuntimeException("Test session not found"));
+        TestSession testSession = testSessionRepository.findWithExamById(testSessionId)
+                .orElseThrow(() -> new RuntimeException("Test session not found"));
+        List<TestAnswerResponse> answers = testAnswerRepository.findByTestSessionId(testSessionId).stream()
+                .map(TestAnswerResponse::from)
+                .toList();
+        loads.incrementAndGet();
+        log.debug("Loaded snapshot of test session {} (version {}, {} answers)", testSessionId, version, answers.size());
+        return new SessionSnapshot(testSessionId, version, TestSessionResponse.from(testSession), answers);
+    }
+
+    private static long estimateBytes(List<TestAnswerResponse> answers) {
+        long bytes = 500;
+        for (TestAnswerResponse answer : answers) {
+            bytes += 300 + 2L * (length(answer.getQuestionContent()) + length(answer.getTranscribedText())
+                    + length(answer.getFeedback()) + length(answer.getAudioUrl()));
+        }
+        return bytes;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
@@ -0,0 +1,146 @@
+package com.aispeaking.service;
+
+import com.aispeaking.entity.TranscriptionCacheEntry;
+import com.aispeaking.repository.TranscriptionCacheRepository;
+import com.aispeaking.util.LruCache;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache kết quả chuyển giọng nói thành văn bản theo SHA-256 của file âm thanh.
+ * Hai tầng: LRU trong bộ nhớ (giới hạn số phần tử và dung lượng) và bảng transcription_cache trong DB
+ * (giữ được qua các lần khởi động lại và dùng chung giữa các node).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TranscriptionCacheService {
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    private final TranscriptionCacheRepository cacheRepository;
+    private final AtomicLong persistentHits = new AtomicLong();
+
+    @Value("${ai.transcription-cache.enabled}")
+    private boolean enabled;
+
+    @Value("${ai.transcription-cache.eviction-policy}")
+    private LruCache.EvictionPolicy evictionPolicy;
+
+    @Value("${ai.transcription-cache.max-entries}")
+    private int maxEntries;
+
+    @Value("${ai.transcription-cache.max-bytes}")
+    private long maxBytes;
+
+    @Value("${ai.transcription-cache.retention-days}")
+    private int retentionDays;
+
+    private LruCache<String, String> memoryCache;
+
+    @PostConstruct
+    void init() {
+        // Ước tính dung lượng: 2 byte mỗi ký tự (UTF-16) + khóa SHA-256 và phần overhead của entry
+        memoryCache = new LruCache<>("transcription", evictionPolicy, maxEntries, maxBytes, text -> 2L * text.length() + 200);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * SHA-256 của file, đọc theo từng khối để không nạp cả file lên heap
+     */
+    public static String sha256(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Tìm văn bản đã chuyển đổi: bộ nhớ trước, sau đó tới DB (và nạp lại vào bộ nhớ)
+     */
+    public Optional<String> get(String audioHash) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        String cached = memoryCache.get(audioHash);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<String> persisted = cacheRepository.findByAudioHash(audioHash).map(TranscriptionCacheEntry::getTranscribedText);
+        persisted.ifPresent(text -> {
+            persistentHits.incrementAndGet();
+            cacheRepository.recordHit(audioHash, LocalDateTime.now());
+            memoryCache.put(audioHash, text);
+        });
+        return persisted;
+    }
+
+    public void put(String audioHash, String transcribedText, long audioSizeBytes) {
+        if (!enabled) {
+            return;
+        }
+        memoryCache.put(audioHash, transcribedText);
+        if (cacheRepository.findByAudioHash(audioHash).isPresent()) {
+            return;
+        }
+        TranscriptionCacheEntry entry = new TranscriptionCacheEntry();
+        entry.setAudioHash(audioHash);
+        entry.setTranscribedText(transcribedText);
+        entry.setAudioSizeBytes(audioSizeBytes);
+        try {
+            cacheRepository.save(entry);
+        } catch (DataIntegrityViolationException e) {
+            // Node/worker khác vừa lưu cùng file âm thanh
+            log.debug("Transcription for {} already persisted", audioHash);
+        }
+    }
+
+    /**
+     * Xóa các bản ghi không được dùng lại trong ai.transcription-cache.retention-days ngày
+     */
+    @Scheduled(fixedDelayString = "${ai.transcription-cache.cleanup-interval-ms}")
+    @Transactional
+    public void deleteExpiredEntries() {
+        int deleted = cacheRepository.deleteUnusedSince(LocalDateTime.now().minusDays(retentionDays));
+        if (deleted > 0) {
+            log.info("Deleted {} expired transcription cache entries", deleted);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = memoryCache.getStats();
+        stats.put("enabled", enabled);
+        stats.put("persistentHits", persistentHits.get());
+        stats.put("persistentEntries", cacheRepository.count());
+        return stats;
+    }
+}
@@ -0,0 +1,194 @@
+package com.aispeaking.service;
+
+import com.aispeaking.util.VoiceActivitySegmenter;
+import com.aispeaking.util.WavChunker;
+import com.aispeaking.util.WavHeader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Kiểm tra năng lượng (VAD) file WAV đã lưu trước khi gửi tới Whisper:
+ * - File bắt đầu bằng "RIFF" nhưng header hỏng hoặc không có dữ liệu: loại (CORRUPT_AUDIO), không gọi AI.
+ * - Tổng thời lượng khung có tiếng nói (RMS đạt ngưỡng) dưới min-speech-ms: loại (NO_SPEECH), không gọi AI.
+ * - Khoảng lặng đầu/cuối (trừ trim-padding-ms giữ lại) từ min-trim-ms trở lên được cắt bỏ trước khi gửi.
+ * Chỉ áp dụng cho WAV PCM 16-bit; định dạng khác được gửi nguyên như trước.
+ * Số liệu theo kỳ thi nằm trong bộ nhớ của từng node.
+ */
+@Service
+@Slf4j
+public class VoiceActivityGate {
+    private static final int FRAME_MS = 20;
+    private static final int RIFF_MAGIC = 0x46464952;
+
+    @Value("${ai.vad.enabled}")
+    private boolean enabled;
+
+    @Value("${ai.vad.threshold-dbfs}")
+    private double thresholdDbfs;
+
+    @Value("${ai.vad.min-speech-ms}")
+    private long minSpeechMs;
+
+    @Value("${ai.vad.trim-padding-ms}")
+    private long trimPaddingMs;
+
+    @Value("${ai.vad.min-trim-ms}")
+    private long minTrimMs;
+
+    @Value("${ai.vad.max-tracked-exams}")
+    private int maxTrackedExams;
+
+    private final GateStats total = new GateStats();
+    private final Map<Long, GateStats> exams = new ConcurrentHashMap<>();
+
+    /**
+     * Phần có tiếng nói cần gửi đi (đã tính padding) của file header
+     */
+    public record SpeechRange(WavHeader header, WavChunker.Chunk chunk, long trimmedMs) {
+    }
+
+    private static class GateStats {
+        final AtomicLong checked = new AtomicLong();
+        final AtomicLong rejectedNoSpeech = new AtomicLong();
+        final AtomicLong rejectedCorrupt = new AtomicLong();
+        final AtomicLong rejectedAudioMs = new AtomicLong();
+        final AtomicLong trimmed = new AtomicLong();
+        final AtomicLong trimmedMs = new AtomicLong();
+
+        Map<String, Object> toMap() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("checked", checked.get());
+            stats.put("rejectedNoSpeech", rejectedNoSpeech.get());
+            stats.put("rejectedCorrupt", rejectedCorrupt.get());
+            stats.put("trimmed", trimmed.get());
+            stats.put("trimmedSeconds", trimmedMs.get() / 1000.0);
+            // Giây âm thanh không phải gửi tới Whisper: phần đã cắt cộng toàn bộ file bị loại
+            stats.put("secondsSaved", (trimmedMs.get() + rejectedAudioMs.get()) / 1000.0);
+            return stats;
+        }
+    }
+
+    /**
+     * Kiểm tra file; ném AudioRejectedException nếu phải loại, trả về null nếu gửi nguyên file
+     */
+    public SpeechRange check(Long examId, Path file) throws IOException {
+        if (!enabled) {
+            return null;
+        }
+        WavHeader header = WavHeader.read(file);
+        if (header == null) {
+            if (isRiff(file)) {
+                throw rejection(examId, AudioRejectedException.CORRUPT_AUDIO, 0, "WAV header of " + file + " is corrupted");
+            }
+            return null;
+        }
+        if (header.audioFormat() != WavHeader.FORMAT_PCM || header.bitsPerSample() != 16) {
+            return null;
+        }
+        int[] rms = WavChunker.frameRms(file, header, FRAME_MS);
+        if (rms.length == 0) {
+            throw rejection(examId, AudioRejectedException.CORRUPT_AUDIO, 0, "WAV file " + file + " has no audio data");
+        }
+        int threshold = VoiceActivitySegmenter.rmsForDbfs(thresholdDbfs);
+        int first = -1;
+        int last = -1;
+        int speechFrames = 0;
+        for (int i = 0; i < rms.length; i++) {
+            if (rms[i] >= threshold) {
+                speechFrames++;
+                last = i;
+                if (first < 0) {
+                    first = i;
+                }
+            }
+        }
+        if ((long) speechFrames * FRAME_MS < minSpeechMs) {
+            throw rejection(examId, AudioRejectedException.NO_SPEECH, header.durationMs(),
+                    "No speech detected in " + file + " (" + speechFrames * FRAME_MS + "ms above " + thresholdDbfs + " dBFS)");
+        }
+        statsFor(examId).forEach(stats -> stats.checked.incrementAndGet());
+        int paddingFrames = (int) (trimPaddingMs / FRAME_MS);
+        int startFrame = Math.max(0, first - paddingFrames);
+        int endFrame = Math.min(rms.length, last + 1 + paddingFrames);
+        long frameBytes = (long) header.sampleRate() * FRAME_MS / 1000 * header.channels() * 2;
+        long dataStart = startFrame * frameBytes;
+        long dataEnd = endFrame == rms.length ? header.dataSize() : endFrame * frameBytes;
+        long trimmedMs = header.durationMs() - (long) (endFrame - startFrame) * FRAME_MS;
+        if (trimmedMs < minTrimMs) {
+            return null;
+        }
+        WavChunker.Chunk chunk = new WavChunker.Chunk(0, (long) startFrame * FRAME_MS, (long) endFrame * FRAME_MS, dataStart, dataEnd - dataStart);
+        return new SpeechRange(header, chunk, trimmedMs);
+    }
+
+    /**
+     * Ghi phần có tiếng nói ra file tạm để gửi tới Whisper (người gọi xóa file sau khi dùng)
+     */
+    public Path writeTrimmed(Long examId, Path file, SpeechRange range) throws IOException {
+        Path trimmed = Files.createTempFile("trimmed-", ".wav");
+        WavChunker.writeChunk(file, range.header(), range.chunk(), trimmed);
+        statsFor(examId).forEach(stats -> {
+            stats.trimmed.incrementAndGet();
+            stats.trimmedMs.addAndGet(range.trimmedMs());
+        });
+        log.info("Trimmed {}ms of leading/trailing silence from {} (kept {}-{}ms)", range.trimmedMs(), file,
+                range.chunk().startMs(), range.chunk().endMs());
+        return trimmed;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> perExam = new LinkedHashMap<>();
+        exams.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> perExam.put(String.valueOf(entry.getKey()), entry.getValue().toMap()));
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("thresholdDbfs", thresholdDbfs);
+        stats.put("minSpeechMs", minSpeechMs);
+        stats.put("trimPaddingMs", trimPaddingMs);
+        stats.put("minTrimMs", minTrimMs);
+        stats.put("total", total.toMap());
+        stats.put("exams", perExam);
+        return stats;
+    }
+
+    private AudioRejectedException rejection(Long examId, String reason, long audioMs, String message) {
+        statsFor(examId).forEach(stats -> {
+            stats.checked.incrementAndGet();
+            (AudioRejectedException.NO_SPEECH.equals(reason) ? stats.rejectedNoSpeech : stats.rejectedCorrupt).incrementAndGet();
+            stats.rejectedAudioMs.addAndGet(audioMs);
+        });
+        String feedback = AudioRejectedException.NO_SPEECH.equals(reason)
+                ? "Không phát hiện giọng nói trong bản ghi âm. Vui lòng kiểm tra micro và ghi âm lại."
+                : "File ghi âm bị hỏng hoặc không có dữ liệu âm thanh. Vui lòng ghi âm lại.";
+        return new AudioRejectedException(reason, message, feedback);
+    }
+
+    /**
+     * Số liệu tổng và của kỳ thi (kỳ thi mới vượt quá max-tracked-exams chỉ được tính vào tổng)
+     */
+    private List<GateStats> statsFor(Long examId) {
+        GateStats exam = examId == null ? null : exams.get(examId);
+        if (exam == null && examId != null && exams.size() < maxTrackedExams) {
+            exam = exams.computeIfAbsent(examId, id -> new GateStats());
+        }
+        return exam == null ? List.of(total) : List.of(total, exam);
+    }
+
+    private static boolean isRiff(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] magic = in.readNBytes(4);
+            return magic.length == 4 && ((magic[0] & 0xFF) | (magic[1] & 0xFF) << 8 | (magic[2] & 0xFF) << 16 | (magic[3] & 0xFF) << 24) == RIFF_MAGIC;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.aispeaking.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * Cache trong bộ nhớ có giới hạn theo số phần tử và tổng dung lượng ước tính (byte).
+ * Chính sách loại bỏ: LRU (ít được dùng gần đây nhất) hoặc FIFO (vào trước ra trước).
+ * An toàn đa luồng; mọi thao tác chỉ làm việc trong bộ nhớ.
+ */
+public class LruCache<K, V> {
+    public enum EvictionPolicy {
+        LRU, FIFO
+    }
+
+    private final String name;
+    private final EvictionPolicy policy;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final ToLongFunction<V> weigher;
+    private final LinkedHashMap<K, V> entries;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long currentBytes;
+
+    public LruCache(String name, EvictionPolicy policy, int maxEntries, long maxBytes, ToLongFunction<V> weigher) {
+        this.name = name;
+        this.policy = policy;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.weigher = weigher;
+        // accessOrder = true: get() đưa phần tử lên cuối danh sách (LRU)
+        this.entries = new LinkedHashMap<>(16, 0.75f, policy == EvictionPolicy.LRU);
+    }
+
+    public V get(K key) {
+        lock.lock();
+        try {
+            V value = entries.get(key);
+            if (value == null) {
+                misses.incrementAndGet();
+            } else {
+                hits.incrementAndGet();
+            }
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(K key, V value) {
+        long weight = weigher.applyAsLong(value);
+        if (weight > maxBytes) {
+            // Phần tử lớn hơn toàn bộ cache: không lưu để tránh đẩy hết phần tử khác ra
+            return;
+        }
+        lock.lock();
+        try {
+            V previous = entries.put(key, value);
+            if (previous != null) {
+                currentBytes -= weigher.applyAsLong(previous);
+            }
+            currentBytes += weight;
+            evictIfNeeded();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void remove(K key) {
+        lock.lock();
+        try {
+            V previous = entries.remove(key);
+            if (previous != null) {
+                currentBytes -= weigher.applyAsLong(previous);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            currentBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<K, V>> iterator = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || currentBytes > maxBytes) && iterator.hasNext()) {
+            Map.Entry<K, V> eldest = iterator.next();
+            currentBytes -= weigher.applyAsLong(eldest.getValue());
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cache", name);
+        stats.put("evictionPolicy", policy.name());
+        lock.lock();
+        try {
+            stats.put("entries", entries.size());
+            stats.put("bytes", currentBytes);
+        } finally {
+            lock.unlock();
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.get());
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+}
@@ -0,0 +1,30 @@
+package com.aispeaking.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Chạy thao tác trên bộ nhớ (xóa cache, phát sự kiện) chỉ khi giao dịch hiện tại commit thành công,
+ * để node này không để lộ dữ liệu mà giao dịch có thể còn rollback
+ */
+public final class TransactionCallbacks {
+
+    private TransactionCallbacks() {
+    }
+
+    /**
+     * Chạy action sau khi giao dịch hiện tại commit; chạy ngay nếu không có giao dịch
+     */
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
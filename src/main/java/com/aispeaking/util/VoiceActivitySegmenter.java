@@ -0,0 +1,187 @@
+package com.aispeaking.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tách luồng âm thanh PCM 16-bit mono (little-endian) thành các đoạn theo năng lượng của từng khung (VAD đơn giản).
+ * - Mỗi khung frameMs được coi là có tiếng nói khi RMS đạt ngưỡng speechRms.
+ * - Đoạn đã dài ít nhất minSegmentMs, có tiếng nói và đang im lặng liên tục minSilenceMs thì được cắt ở giữa khoảng lặng.
+ * - Đoạn dài tới maxSegmentMs mà chưa gặp khoảng lặng thì cắt ở khung nhỏ năng lượng nhất trong nửa sau.
+ * Chỉ giữ trong bộ nhớ đoạn hiện tại (tối đa maxSegmentMs âm thanh). Không an toàn luồng: mỗi luồng âm thanh dùng một đối tượng.
+ */
+public class VoiceActivitySegmenter {
+    private static final int BYTES_PER_SAMPLE = 2;
+
+    /**
+     * Một đoạn âm thanh liên tiếp; hasSpeech = false khi mọi khung đều dưới ngưỡng (không cần gửi đi chuyển giọng nói)
+     */
+    public record Segment(int index, long startMs, long endMs, byte[] pcm, boolean hasSpeech) {
+    }
+
+    private final int frameMs;
+    private final int frameBytes;
+    private final int speechRms;
+    private final int minSilenceFrames;
+    private final int minSegmentFrames;
+    private final int maxSegmentFrames;
+
+    // Đoạn hiện tại: dữ liệu và RMS của từng khung đầy đủ
+    private byte[] buffer;
+    private int bufferLength;
+    private int[] frameRms;
+    private int frameCount;
+    private int speechFrames;
+    private int silenceRun;
+    private long segmentStartFrame;
+    private int nextIndex;
+
+    public VoiceActivitySegmenter(int sampleRate, int frameMs, int speechRms, long minSilenceMs, long minSegmentMs, long maxSegmentMs) {
+        this.frameMs = frameMs;
+        this.frameBytes = Math.max(BYTES_PER_SAMPLE, sampleRate * frameMs / 1000 * BYTES_PER_SAMPLE);
+        this.speechRms = speechRms;
+        this.minSilenceFrames = (int) Math.max(1, minSilenceMs / frameMs);
+        this.minSegmentFrames = (int) Math.max(1, minSegmentMs / frameMs);
+        this.maxSegmentFrames = (int) Math.max(minSegmentFrames + 1, maxSegmentMs / frameMs);
+        this.buffer = new byte[frameBytes * 64];
+        this.frameRms = new int[64];
+    }
+
+    /**
+     * RMS (biên độ 16-bit) tương ứng với mức dBFS, ví dụ -40 dBFS ≈ 328
+     */
+    public static int rmsForDbfs(double dbfs) {
+        return (int) Math.round(32768 * Math.pow(10, dbfs / 20));
+    }
+
+    /**
+     * RMS của các mẫu 16-bit little-endian trong pcm[offset, offset + length)
+     */
+    public static int rms(byte[] pcm, int offset, int length) {
+        int samples = length / BYTES_PER_SAMPLE;
+        if (samples == 0) {
+            return 0;
+        }
+        long sumSquares = 0;
+        for (int i = 0; i < samples; i++) {
+            int position = offset + i * BYTES_PER_SAMPLE;
+            int sample = (short) ((pcm[position] & 0xFF) | (pcm[position + 1] << 8));
+            sumSquares += (long) sample * sample;
+        }
+        return (int) Math.sqrt((double) sumSquares / samples);
+    }
+
+    /**
+     * Thêm dữ liệu PCM mới; trả về các đoạn đã hoàn chỉnh (có thể rỗng)
+     */
+    public List<Segment> append(byte[] data, int offset, int length) {
+        List<Segment> completed = new ArrayList<>();
+        int position = offset;
+        int end = offset + length;
+        while (position < end) {
+            // Phần lẻ chưa đủ một khung nằm sau frameCount khung đầy đủ
+            int pending = bufferLength - frameCount * frameBytes;
+            int copy = Math.min(frameBytes - pending, end - position);
+            ensureCapacity(bufferLength + copy);
+            System.arraycopy(data, position, buffer, bufferLength, copy);
+            bufferLength += copy;
+            position += copy;
+            if (pending + copy == frameBytes) {
+                onFrame(rms(buffer, frameCount * frameBytes, frameBytes), completed);
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Kết thúc luồng: trả về phần còn lại làm đoạn cuối (null nếu không còn dữ liệu)
+     */
+    public Segment flush() {
+        if (bufferLength == 0) {
+            return null;
+        }
+        // Phần lẻ cuối cùng được tính như một khung (ngắn hơn)
+        if (bufferLength > frameCount * frameBytes) {
+            int pending = bufferLength - frameCount * frameBytes;
+            if (rms(buffer, frameCount * frameBytes, pending) >= speechRms) {
+                speechFrames++;
+            }
+        }
+        return cut(frameCount, bufferLength);
+    }
+
+    private void onFrame(int rms, List<Segment> completed) {
+        ensureFrameCapacity(frameCount + 1);
+        frameRms[frameCount++] = rms;
+        if (rms >= speechRms) {
+            speechFrames++;
+            silenceRun = 0;
+        } else {
+            silenceRun++;
+        }
+        if (frameCount >= minSegmentFrames && speechFrames > 0 && silenceRun >= minSilenceFrames) {
+            completed.add(cut(frameCount - silenceRun / 2));
+        } else if (frameCount >= maxSegmentFrames) {
+            int quietest = frameCount / 2;
+            for (int i = quietest + 1; i < frameCount; i++) {
+                if (frameRms[i] < frameRms[quietest]) {
+                    quietest = i;
+                }
+            }
+            completed.add(cut(quietest + 1));
+        }
+    }
+
+    private Segment cut(int frames) {
+        return cut(frames, frames * frameBytes);
+    }
+
+    /**
+     * Tách frames khung đầu (bytes byte) thành một đoạn, phần còn lại làm đầu đoạn tiếp theo
+     */
+    private Segment cut(int frames, int bytes) {
+        int segmentSpeech = 0;
+        for (int i = 0; i < frames; i++) {
+            if (frameRms[i] >= speechRms) {
+                segmentSpeech++;
+            }
+        }
+        // Khung lẻ cuối (khi flush) đã được cộng vào speechFrames nhưng không có trong frameRms
+        if (frames == frameCount && speechFrames > segmentSpeech) {
+            segmentSpeech = speechFrames;
+        }
+        long startMs = segmentStartFrame * frameMs;
+        long endMs = startMs + (long) bytes * frameMs / frameBytes;
+        Segment segment = new Segment(nextIndex++, startMs, endMs, Arrays.copyOf(buffer, bytes), segmentSpeech > 0);
+        // Dồn phần còn lại lên đầu bộ đệm
+        System.arraycopy(buffer, bytes, buffer, 0, bufferLength - bytes);
+        bufferLength -= bytes;
+        System.arraycopy(frameRms, frames, frameRms, 0, frameCount - frames);
+        frameCount -= frames;
+        segmentStartFrame += frames;
+        speechFrames = 0;
+        silenceRun = 0;
+        for (int i = 0; i < frameCount; i++) {
+            if (frameRms[i] >= speechRms) {
+                speechFrames++;
+                silenceRun = 0;
+            } else {
+                silenceRun++;
+            }
+        }
+        return segment;
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(bytes, buffer.length * 2));
+        }
+    }
+
+    private void ensureFrameCapacity(int frames) {
+        if (frames > frameRms.length) {
+            frameRms = Arrays.copyOf(frameRms, Math.max(frames, frameRms.length * 2));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.aispeaking.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Chia một file WAV PCM 16-bit dài thành các đoạn chồng lấn nhau để chuyển giọng nói song song.
+ * Điểm cắt được chọn ở khung năng lượng thấp nhất quanh mỗi mốc chunkMs (trong ±searchWindowMs),
+ * để hạn chế cắt giữa một từ; mỗi đoạn mở rộng thêm overlapMs về hai phía của điểm cắt.
+ */
+public final class WavChunker {
+    private static final int FRAME_MS = 20;
+
+    /**
+     * Một đoạn: [dataStart, dataStart + dataLength) tính từ đầu chunk "data" của file gốc
+     */
+    public record Chunk(int index, long startMs, long endMs, long dataStart, long dataLength) {
+    }
+
+    private WavChunker() {
+    }
+
+    /**
+     * RMS của từng khung frameMs (mọi kênh gộp chung), đọc tuần tự phần dữ liệu với bộ đệm một khung
+     */
+    public static int[] frameRms(Path file, WavHeader header, int frameMs) throws IOException {
+        int frameBytes = frameBytes(header, frameMs);
+        int frames = (int) (header.dataSize() / frameBytes);
+        int[] rms = new int[frames];
+        byte[] frame = new byte[frameBytes];
+        try (InputStream in = Files.newInputStream(file)) {
+            in.skipNBytes(header.dataOffset());
+            for (int i = 0; i < frames; i++) {
+                if (in.readNBytes(frame, 0, frameBytes) < frameBytes) {
+                    return Arrays.copyOf(rms, i);
+                }
+                rms[i] = VoiceActivitySegmenter.rms(frame, 0, frameBytes);
+            }
+        }
+        return rms;
+    }
+
+    /**
+     * Lập kế hoạch chia file; trả về một đoạn duy nhất nếu file không dài quá 1,5 lần chunkMs
+     */
+    public static List<Chunk> plan(Path file, WavHeader header, long chunkMs, long overlapMs, long searchWindowMs) throws IOException {
+        int frameBytes = frameBytes(header, FRAME_MS);
+        int[] rms = frameRms(file, header, FRAME_MS);
+        int totalFrames = rms.length;
+        int chunkFrames = (int) Math.max(1, chunkMs / FRAME_MS);
+        int windowFrames = (int) Math.min(chunkFrames / 2, searchWindowMs / FRAME_MS);
+        int overlapFrames = (int) (overlapMs / FRAME_MS);
+        List<Integer> cuts = new ArrayList<>();
+        int previous = 0;
+        // Phần còn lại ngắn hơn nửa đoạn được gộp vào đoạn cuối
+        while (totalFrames - previous > chunkFrames + chunkFrames / 2) {
+            int target = previous + chunkFrames;
+            int from = Math.max(previous + chunkFrames / 2, target - windowFrames);
+            int to = Math.min(totalFrames - 1, target + windowFrames);
+            int cut = target;
+            for (int i = from; i <= to; i++) {
+                if (rms[i] < rms[cut]) {
+                    cut = i;
+                }
+            }
+            cuts.add(cut);
+            previous = cut;
+        }
+        List<Chunk> chunks = new ArrayList<>();
+        for (int i = 0; i <= cuts.size(); i++) {
+            int startFrame = i == 0 ? 0 : Math.max(0, cuts.get(i - 1) - overlapFrames);
+            long dataStart = (long) startFrame * frameBytes;
+            long dataEnd = i == cuts.size() ? header.dataSize() : Math.min(header.dataSize(), (long) (cuts.get(i) + overlapFrames) * frameBytes);
+            chunks.add(new Chunk(i, (long) startFrame * FRAME_MS, durationMs(header, dataEnd), dataStart, dataEnd - dataStart));
+        }
+        return chunks;
+    }
+
+    /**
+     * Ghi một đoạn thành file WAV độc lập (cùng định dạng với file gốc)
+     */
+    public static void writeChunk(Path source, WavHeader header, Chunk chunk, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             OutputStream out = Files.newOutputStream(target)) {
+            out.write(WavHeader.pcmHeader(header.channels(), header.sampleRate(), header.bitsPerSample(), chunk.dataLength()));
+            long position = header.dataOffset() + chunk.dataStart();
+            long remaining = chunk.dataLength();
+            WritableByteChannel sink = Channels.newChannel(out);
+            while (remaining > 0) {
+                long transferred = in.transferTo(position, remaining, sink);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+
+    private static int frameBytes(WavHeader header, int frameMs) {
+        int blockAlign = header.channels() * (header.bitsPerSample() / 8);
+        return Math.max(blockAlign, header.sampleRate() * frameMs / 1000 * blockAlign);
+    }
+
+    private static long durationMs(WavHeader header, long bytes) {
+        long bytesPerSecond = (long) header.sampleRate() * header.channels() * (header.bitsPerSample() / 8);
+        return bytesPerSecond == 0 ? 0 : bytes * 1000 / bytesPerSecond;
+    }
+}
@@ -0,0 +1,96 @@
+package com.aispeaking.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Thông tin định dạng của file WAV (RIFF/WAVE) đọc từ phần header: không đọc dữ liệu âm thanh.
+ * dataOffset là vị trí byte đầu tiên của chunk "data", dataSize là số byte âm thanh.
+ */
+public record WavHeader(int audioFormat, int channels, int sampleRate, int bitsPerSample, long dataOffset, long dataSize) {
+    public static final int FORMAT_PCM = 1;
+    private static final int MAX_HEADER_BYTES = 64 * 1024;
+
+    /**
+     * Độ dài âm thanh (ms) theo kích thước dữ liệu và tốc độ byte
+     */
+    public long durationMs() {
+        long bytesPerSecond = (long) sampleRate * channels * (bitsPerSample / 8);
+        return bytesPerSecond == 0 ? 0 : dataSize * 1000 / bytesPerSecond;
+    }
+
+    /**
+     * Header chuẩn 44 byte (RIFF + "fmt " + "data") cho âm thanh PCM có dataSize byte dữ liệu
+     */
+    public static byte[] pcmHeader(int channels, int sampleRate, int bitsPerSample, long dataSize) {
+        int blockAlign = channels * (bitsPerSample / 8);
+        ByteBuffer buffer = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0x46464952).putInt((int) Math.min(0xFFFFFFFFL, 36 + dataSize)).putInt(0x45564157); // "RIFF", "WAVE"
+        buffer.putInt(0x20746d66).putInt(16) // "fmt "
+                .putShort((short) FORMAT_PCM).putShort((short) channels)
+                .putInt(sampleRate).putInt(sampleRate * blockAlign)
+                .putShort((short) blockAlign).putShort((short) bitsPerSample);
+        buffer.putInt(0x61746164).putInt((int) Math.min(0xFFFFFFFFL, dataSize)); // "data"
+        return buffer.array();
+    }
+
+    /**
+     * Đọc header của file WAV; trả về null nếu file không phải WAV hoặc header hỏng
+     */
+    public static WavHeader read(Path file) throws IOException {
+        long fileSize = Files.size(file);
+        try (InputStream in = Files.newInputStream(file)) {
+            return parse(in.readNBytes((int) Math.min(fileSize, MAX_HEADER_BYTES)), fileSize);
+        }
+    }
+
+    /**
+     * Phân tích header từ các byte đầu của file; fileSize dùng khi chunk "data" không ghi kích thước
+     * (một số trình ghi âm dạng luồng ghi 0 hoặc 0xFFFFFFFF)
+     */
+    public static WavHeader parse(byte[] head, long fileSize) {
+        if (head.length < 12) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(head).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != 0x46464952 || buffer.getInt(8) != 0x45564157) { // "RIFF", "WAVE"
+            return null;
+        }
+        int audioFormat = 0;
+        int channels = 0;
+        int sampleRate = 0;
+        int bitsPerSample = 0;
+        boolean hasFormat = false;
+        int position = 12;
+        while (position + 8 <= head.length) {
+            int chunkId = buffer.getInt(position);
+            long chunkSize = Integer.toUnsignedLong(buffer.getInt(position + 4));
+            int body = position + 8;
+            if (chunkId == 0x20746d66 && body + 16 <= head.length) { // "fmt "
+                audioFormat = Short.toUnsignedInt(buffer.getShort(body));
+                channels = Short.toUnsignedInt(buffer.getShort(body + 2));
+                sampleRate = buffer.getInt(body + 4);
+                bitsPerSample = Short.toUnsignedInt(buffer.getShort(body + 14));
+                // WAVE_FORMAT_EXTENSIBLE: định dạng thật nằm ở đầu SubFormat GUID
+                if (audioFormat == 0xFFFE && chunkSize >= 26 && body + 26 <= head.length) {
+                    audioFormat = Short.toUnsignedInt(buffer.getShort(body + 24));
+                }
+                hasFormat = true;
+            } else if (chunkId == 0x61746164) { // "data"
+                if (!hasFormat || channels == 0 || sampleRate <= 0 || bitsPerSample == 0) {
+                    return null;
+                }
+                long available = Math.max(0, fileSize - body);
+                long dataSize = chunkSize == 0 || chunkSize == 0xFFFFFFFFL ? available : Math.min(chunkSize, available);
+                return new WavHeader(audioFormat, channels, sampleRate, bitsPerSample, body, dataSize);
+            }
+            // Chunk có kích thước lẻ được đệm thêm một byte
+            position = (int) Math.min(Integer.MAX_VALUE, body + chunkSize + (chunkSize & 1));
+        }
+        return null;
+    }
+}
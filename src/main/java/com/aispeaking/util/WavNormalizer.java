@@ -0,0 +1,168 @@
+package com.aispeaking.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Chuyển dữ liệu WAV (PCM 8/16/24/32-bit hoặc IEEE float 32-bit, số kênh bất kỳ) sang PCM 16-bit mono ở targetRate Hz.
+ * - Trộn kênh: trung bình cộng các kênh của mỗi khung.
+ * - Giảm tần số: trung bình các mẫu vào rơi vào cùng một mẫu ra (lọc hộp). Đây không phải bộ lọc thông thấp đúng nghĩa:
+ *   thành phần trên targetRate/2 chỉ bị suy giảm một phần (48 kHz → 16 kHz: âm 10 kHz còn khoảng -6 dB) và vẫn bị gập
+ *   xuống dải nghe được. Chấp nhận được với giọng nói vì năng lượng chủ yếu nằm dưới 4 kHz.
+ * - Tăng tần số: nội suy tuyến tính giữa hai mẫu vào liên tiếp.
+ * Đọc và ghi theo luồng với bộ đệm cố định, không giữ cả file trong bộ nhớ.
+ * Header có tần số lấy mẫu ngoài [MIN_SAMPLE_RATE, MAX_SAMPLE_RATE] hoặc số kênh ngoài [1, MAX_CHANNELS] bị coi là không hỗ trợ.
+ */
+public final class WavNormalizer {
+    public static final int FORMAT_IEEE_FLOAT = 3;
+    public static final int MIN_SAMPLE_RATE = 8000;
+    public static final int MAX_SAMPLE_RATE = 192_000;
+    public static final int MAX_CHANNELS = 8;
+    private static final int BUFFER_FRAMES = 4096;
+
+    private WavNormalizer() {
+    }
+
+    /**
+     * File đã đúng định dạng đích, không cần chuyển
+     */
+    public static boolean isNormalized(WavHeader header, int targetRate) {
+        return header.audioFormat() == WavHeader.FORMAT_PCM && header.channels() == 1
+                && header.bitsPerSample() == 16 && header.sampleRate() == targetRate;
+    }
+
+    /**
+     * Định dạng vào có chuyển được không (header hợp lý và kiểu mẫu hỗ trợ)
+     */
+    public static boolean isSupported(WavHeader header) {
+        if (header.sampleRate() < MIN_SAMPLE_RATE || header.sampleRate() > MAX_SAMPLE_RATE
+                || header.channels() < 1 || header.channels() > MAX_CHANNELS) {
+            return false;
+        }
+        return switch (header.audioFormat()) {
+            case WavHeader.FORMAT_PCM -> header.bitsPerSample() == 8 || header.bitsPerSample() == 16
+                    || header.bitsPerSample() == 24 || header.bitsPerSample() == 32;
+            case FORMAT_IEEE_FLOAT -> header.bitsPerSample() == 32;
+            default -> false;
+        };
+    }
+
+    /**
+     * Đọc header.dataSize() byte dữ liệu từ in (đã ở đầu chunk "data") và ghi file WAV chuẩn hóa vào target.
+     * Trả về số byte của file đã ghi.
+     */
+    public static long normalize(InputStream in, WavHeader header, Path target, int targetRate) throws IOException {
+        if (!isSupported(header)) {
+            throw new IllegalArgumentException("Unsupported WAV format: " + header.audioFormat() + "/" + header.bitsPerSample()
+                    + "-bit, " + header.channels() + " ch, " + header.sampleRate() + " Hz");
+        }
+        int channels = header.channels();
+        int bytesPerSample = header.bitsPerSample() / 8;
+        int blockAlign = channels * bytesPerSample;
+        boolean isFloat = header.audioFormat() == FORMAT_IEEE_FLOAT;
+        long sourceRate = header.sampleRate();
+        byte[] input = new byte[BUFFER_FRAMES * blockAlign];
+        // Mỗi khung vào sinh tối đa ceil(targetRate / sourceRate) mẫu ra
+        int maxOutPerFrame = (int) ((targetRate + sourceRate - 1) / sourceRate);
+        ByteBuffer output = ByteBuffer.allocate(BUFFER_FRAMES * Math.max(1, maxOutPerFrame) * 2).order(ByteOrder.LITTLE_ENDIAN);
+        long remaining = header.dataSize() - header.dataSize() % blockAlign;
+        long frameIndex = 0;
+        long outIndex = 0;
+        // Giảm tần số: tổng và số mẫu vào của mẫu ra hiện tại
+        long bucketSum = 0;
+        int bucketCount = 0;
+        // Tăng tần số: mẫu vào trước đó
+        int previous = 0;
+        long dataBytes = 0;
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(ByteBuffer.wrap(WavHeader.pcmHeader(1, targetRate, 16, 0)));
+            while (remaining > 0) {
+                int read = in.readNBytes(input, 0, (int) Math.min(input.length, remaining));
+                int frames = read / blockAlign;
+                if (frames == 0) {
+                    break;
+                }
+                remaining -= read;
+                for (int f = 0; f < frames; f++, frameIndex++) {
+                    int sample = mixFrame(input, f * blockAlign, channels, bytesPerSample, isFloat);
+                    if (sourceRate >= targetRate) {
+                        // Mẫu ra của khung này: floor(frameIndex * targetRate / sourceRate)
+                        long bucket = frameIndex * targetRate / sourceRate;
+                        if (bucket != outIndex && bucketCount > 0) {
+                            output.putShort((short) (bucketSum / bucketCount));
+                            outIndex = bucket;
+                            bucketSum = 0;
+                            bucketCount = 0;
+                        }
+                        bucketSum += sample;
+                        bucketCount++;
+                    } else {
+                        // Mẫu ra k nằm ở vị trí k * sourceRate / targetRate của luồng vào; phát các mẫu nằm trong (frameIndex - 1, frameIndex]
+                        if (frameIndex == 0) {
+                            previous = sample;
+                        }
+                        while (outIndex * sourceRate <= frameIndex * targetRate) {
+                            long fraction = outIndex * sourceRate - (frameIndex - 1) * targetRate;
+                            int value = frameIndex == 0 ? sample
+                                    : (int) (previous + (sample - previous) * fraction / targetRate);
+                            output.putShort((short) value);
+                            outIndex++;
+                        }
+                        previous = sample;
+                    }
+                }
+                dataBytes += flush(output, out);
+            }
+            if (bucketCount > 0) {
+                output.putShort((short) (bucketSum / bucketCount));
+            }
+            dataBytes += flush(output, out);
+            out.write(ByteBuffer.wrap(WavHeader.pcmHeader(1, targetRate, 16, dataBytes)), 0);
+            return out.size();
+        }
+    }
+
+    private static int flush(ByteBuffer output, FileChannel out) throws IOException {
+        output.flip();
+        int bytes = output.remaining();
+        while (output.hasRemaining()) {
+            out.write(output);
+        }
+        output.clear();
+        return bytes;
+    }
+
+    /**
+     * Trung bình các kênh của một khung, quy về biên độ 16-bit
+     */
+    private static int mixFrame(byte[] data, int offset, int channels, int bytesPerSample, boolean isFloat) {
+        long sum = 0;
+        for (int c = 0; c < channels; c++) {
+            sum += sample16(data, offset + c * bytesPerSample, bytesPerSample, isFloat);
+        }
+        return (int) (sum / channels);
+    }
+
+    private static int sample16(byte[] data, int position, int bytesPerSample, boolean isFloat) {
+        if (isFloat) {
+            int bits = (data[position] & 0xFF) | (data[position + 1] & 0xFF) << 8
+                    | (data[position + 2] & 0xFF) << 16 | data[position + 3] << 24;
+            float value = Float.intBitsToFloat(bits);
+            return (int) Math.max(-32768, Math.min(32767, value * 32767));
+        }
+        return switch (bytesPerSample) {
+            // PCM 8-bit là số không dấu, 128 là mức 0
+            case 1 -> ((data[position] & 0xFF) - 128) << 8;
+            case 2 -> (short) ((data[position] & 0xFF) | data[position + 1] << 8);
+            // 24/32-bit: lấy 16 bit cao
+            case 3 -> (short) ((data[position + 1] & 0xFF) | data[position + 2] << 8);
+            default -> (short) ((data[position + 2] & 0xFF) | data[position + 3] << 8);
+        };
+    }
+}
@@ -0,0 +1,95 @@
+package com.aispeaking.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hedge với hai instance giả trên cùng một HTTP server: /slow giữ request, /fast trả lời ngay
+ */
+class AIServiceClientTest {
+    private static final String RESULT = "{\"score\":7.5,\"feedback\":\"ok\"}";
+
+    private HttpServer server;
+    private final CountDownLatch slowStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseSlow = new CountDownLatch(1);
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/slow/score", exchange -> {
+            slowStarted.countDown();
+            try {
+                releaseSlow.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange);
+        });
+        server.createContext("/fast/score", AIServiceClientTest::respond);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        releaseSlow.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void hedgeWinsAndLosingPrimaryIsCancelled() throws InterruptedException {
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        // Instance đầu tiên được chọn làm request chính khi cả hai chưa có tải
+        AIEndpointPool pool = new AIEndpointPool("Qwen", List.of(baseUrl + "/slow", baseUrl + "/fast"),
+                AIEndpointPool.Strategy.LEAST_OUTSTANDING, 3);
+        HedgingPolicy hedging = new HedgingPolicy(true, 0.95, 50, 100);
+        for (int i = 0; i < 20; i++) {
+            hedging.recordLatency(HedgingPolicy.sizeClassOf(1), 50);
+        }
+        QwenClient client = new QwenClient(pool, WebClient.create(), new AdaptiveConcurrencyLimiter(4, 1, 16, 30000, 0.7),
+                new CircuitBreaker("Qwen", 5, 30000), new RetryPolicy(1, 10, 10), hedging);
+
+        long start = System.nanoTime();
+        String response = client.score(Map.of("question", "q"));
+
+        assertThat(response).isEqualTo(RESULT);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5000);
+        assertThat(slowStarted.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(hedging.getStats()).containsEntry("hedgesSent", 1L).containsEntry("hedgesWon", 1L);
+        // Request chính bị hủy (không chờ tới khi /slow trả lời): không còn đang chạy và không tính là lỗi
+        Map<String, Object> slow = endpoint(pool, 0);
+        assertThat(slow).containsEntry("inFlight", 0).containsEntry("failures", 0L).containsEntry("ewmaLatencyMs", 0.0);
+        assertThat(endpoint(pool, 1)).containsEntry("requests", 1L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> endpoint(AIEndpointPool pool, int index) {
+        return ((List<Map<String, Object>>) pool.getStats().get("endpoints")).get(index);
+    }
+
+    private static void respond(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        byte[] body = RESULT.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        try {
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        } finally {
+            exchange.close();
+        }
+    }
+}
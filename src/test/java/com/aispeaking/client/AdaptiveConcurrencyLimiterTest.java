@@ -0,0 +1,96 @@
+package com.aispeaking.client;
+
+import org.junit.jupiter.api.Test;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void fastSuccessesIncreaseLimitByAboutOnePerRound() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 16, 1000, 0.5);
+
+        // Mỗi lần thành công tăng 1/limit: 4 lần ở limit 4 chưa tới 5 (1/limit giảm dần), lần thứ 5 thì qua
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire();
+            limiter.release(10, false);
+        }
+        assertThat(limiter.getStats()).containsEntry("limit", 4);
+        limiter.acquire();
+        limiter.release(10, false);
+
+        assertThat(limiter.getStats()).containsEntry("limit", 5).containsEntry("increases", 5L).containsEntry("decreases", 0L);
+    }
+
+    @Test
+    void overloadAndSlowResponsesMultiplyLimitDown() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(16, 2, 16, 1000, 0.5);
+
+        limiter.acquire();
+        limiter.release(10, true);
+        assertThat(limiter.getStats()).containsEntry("limit", 8);
+
+        // Thành công nhưng chậm hơn ngưỡng cũng tính là quá tải
+        limiter.acquire();
+        limiter.release(1500, false);
+        assertThat(limiter.getStats()).containsEntry("limit", 4).containsEntry("lastLatencyMs", 1500L);
+
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire();
+            limiter.release(10, true);
+        }
+        // Không xuống dưới minLimit
+        assertThat(limiter.getStats()).containsEntry("limit", 2).containsEntry("decreases", 7L);
+    }
+
+    @Test
+    void limitNeverExceedsMax() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 3, 1000, 0.5);
+
+        for (int i = 0; i < 50; i++) {
+            limiter.acquire();
+            limiter.release(10, false);
+        }
+
+        assertThat(limiter.getStats()).containsEntry("limit", 3);
+    }
+
+    @Test
+    void tryAcquireRespectsLimitAndPlainReleaseKeepsIt() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 16, 1000, 0.5);
+
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+
+        limiter.release();
+        assertThat(limiter.getStats()).containsEntry("inFlight", 1).containsEntry("limit", 2)
+                .containsEntry("increases", 0L).containsEntry("decreases", 0L);
+        assertThat(limiter.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void acquireWaitsUntilPermitIsReleased() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 16, 1000, 0.5);
+        limiter.acquire();
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = Thread.ofPlatform().start(() -> {
+            try {
+                limiter.acquire();
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        assertThat(acquired.await(100, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(limiter.getStats()).containsEntry("waiting", 1);
+
+        limiter.release(10, false);
+        assertThat(acquired.await(5, TimeUnit.SECONDS)).isTrue();
+        waiter.join();
+        assertThat(limiter.getStats()).containsEntry("inFlight", 1).containsEntry("waiting", 0);
+    }
+}
@@ -0,0 +1,104 @@
+package com.aispeaking.client;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CircuitBreakerTest {
+    private static final long OPEN_MS = 50;
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 3, 30000);
+
+        breaker.acquirePermission();
+        assertThat(breaker.onFailure()).isFalse();
+        breaker.acquirePermission();
+        assertThat(breaker.onFailure()).isFalse();
+        // Thành công giữa chừng đặt lại bộ đếm lỗi liên tiếp
+        breaker.onSuccess();
+        assertThat(breaker.onFailure()).isFalse();
+        assertThat(breaker.onFailure()).isFalse();
+        assertThat(breaker.onFailure()).isTrue();
+
+        assertThat(state(breaker)).isEqualTo("OPEN");
+        assertThat(breaker.remainingOpenMs()).isPositive();
+        assertThatThrownBy(breaker::acquirePermission).isInstanceOf(AIBackendUnavailableException.class);
+        assertThat(breaker.getStats()).containsEntry("rejected", 1L);
+    }
+
+    @Test
+    void halfOpenTrialSuccessCloses() throws InterruptedException {
+        CircuitBreaker breaker = openBreaker();
+        Thread.sleep(OPEN_MS + 20);
+
+        breaker.acquirePermission();
+        assertThat(state(breaker)).isEqualTo("HALF_OPEN");
+        breaker.onSuccess();
+
+        assertThat(state(breaker)).isEqualTo("CLOSED");
+        assertThat(breaker.remainingOpenMs()).isZero();
+        assertThat(transitions(breaker)).containsExactly("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED");
+        breaker.acquirePermission();
+        breaker.acquirePermission();
+    }
+
+    @Test
+    void halfOpenTrialFailureReopens() throws InterruptedException {
+        CircuitBreaker breaker = openBreaker();
+        Thread.sleep(OPEN_MS + 20);
+
+        breaker.acquirePermission();
+        // Ở HALF_OPEN một lỗi là đủ để mở lại, không cần đủ ngưỡng
+        assertThat(breaker.onFailure()).isTrue();
+
+        assertThat(state(breaker)).isEqualTo("OPEN");
+        assertThat(transitions(breaker)).containsExactly("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->OPEN");
+        assertThatThrownBy(breaker::acquirePermission).isInstanceOf(AIBackendUnavailableException.class);
+    }
+
+    @Test
+    void halfOpenAllowsOnlyOneTrial() throws InterruptedException {
+        CircuitBreaker breaker = openBreaker();
+        Thread.sleep(OPEN_MS + 20);
+
+        breaker.acquirePermission();
+        assertThatThrownBy(breaker::acquirePermission).isInstanceOf(AIBackendUnavailableException.class);
+        assertThat(state(breaker)).isEqualTo("HALF_OPEN");
+    }
+
+    @Test
+    void releasedTrialPermitCanBeTakenAgain() throws InterruptedException {
+        CircuitBreaker breaker = openBreaker();
+        Thread.sleep(OPEN_MS + 20);
+
+        breaker.acquirePermission();
+        // Request thử không được gửi đi: trả permit, không tính thành công hay lỗi
+        breaker.releasePermission();
+
+        assertThat(state(breaker)).isEqualTo("HALF_OPEN");
+        breaker.acquirePermission();
+        assertThatThrownBy(breaker::acquirePermission).isInstanceOf(AIBackendUnavailableException.class);
+    }
+
+    private static CircuitBreaker openBreaker() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 2, OPEN_MS);
+        breaker.onFailure();
+        assertThat(breaker.onFailure()).isTrue();
+        return breaker;
+    }
+
+    private static String state(CircuitBreaker breaker) {
+        return (String) breaker.getStats().get("state");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> transitions(CircuitBreaker breaker) {
+        return ((List<Map<String, Object>>) breaker.getStats().get("recentTransitions")).stream()
+                .map(transition -> transition.get("from") + "->" + transition.get("to"))
+                .toList();
+    }
+}
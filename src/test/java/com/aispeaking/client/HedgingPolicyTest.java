@@ -0,0 +1,139 @@
+package com.aispeaking.client;
+
+import org.junit.jupiter.api.Test;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HedgingPolicyTest {
+
+    @Test
+    void sizeClassIsFloorOfLog4() {
+        assertThat(HedgingPolicy.sizeClassOf(0)).isZero();
+        assertThat(HedgingPolicy.sizeClassOf(1)).isZero();
+        assertThat(HedgingPolicy.sizeClassOf(3)).isZero();
+        assertThat(HedgingPolicy.sizeClassOf(4)).isEqualTo(1);
+        assertThat(HedgingPolicy.sizeClassOf(15)).isEqualTo(1);
+        assertThat(HedgingPolicy.sizeClassOf(16)).isEqualTo(2);
+        assertThat(HedgingPolicy.sizeClassOf(1L << 20)).isEqualTo(10);
+        assertThat(HedgingPolicy.sizeClassOf((1L << 22) - 1)).isEqualTo(10);
+        assertThat(HedgingPolicy.sizeClassOf(Long.MAX_VALUE)).isEqualTo(15);
+    }
+
+    @Test
+    void noHedgeUntilSizeClassHasEnoughSamples() {
+        HedgingPolicy policy = new HedgingPolicy(true, 0.95, 0, 5);
+
+        for (int i = 1; i < 20; i++) {
+            policy.recordLatency(3, i);
+        }
+        assertThat(policy.onRequest(3)).isEqualTo(-1);
+
+        policy.recordLatency(3, 20);
+        // p95 của 1..20: phần tử thứ ceil(0.95 * 20) = 19
+        assertThat(policy.onRequest(3)).isEqualTo(19);
+        // Nhóm kích thước khác có cửa sổ độ trễ riêng
+        assertThat(policy.onRequest(2)).isEqualTo(-1);
+    }
+
+    @Test
+    void hedgeDelayIsConfiguredPercentileOfWindow() {
+        HedgingPolicy policy = new HedgingPolicy(true, 0.95, 0, 5);
+
+        // Thứ tự ghi không ảnh hưởng; tính lại ở mẫu thứ 96 (bội của 16)
+        for (int i = 96; i >= 1; i--) {
+            policy.recordLatency(0, i);
+        }
+
+        assertThat(policy.onRequest(0)).isEqualTo(92);
+    }
+
+    @Test
+    void percentileIsConfigurable() {
+        HedgingPolicy median = new HedgingPolicy(true, 0.5, 0, 5);
+
+        for (int i = 1; i <= 32; i++) {
+            median.recordLatency(0, i);
+        }
+
+        assertThat(median.onRequest(0)).isEqualTo(16);
+    }
+
+    @Test
+    void hedgeDelayNeverBelowMinDelay() {
+        HedgingPolicy policy = new HedgingPolicy(true, 0.95, 500, 5);
+
+        for (int i = 0; i < 20; i++) {
+            policy.recordLatency(0, 10);
+        }
+
+        assertThat(policy.onRequest(0)).isEqualTo(500);
+    }
+
+    @Test
+    void oldSamplesLeaveTheWindow() {
+        HedgingPolicy policy = new HedgingPolicy(true, 0.95, 0, 5);
+
+        for (int i = 0; i < 256; i++) {
+            policy.recordLatency(0, 1000);
+        }
+        assertThat(policy.onRequest(0)).isEqualTo(1000);
+        for (int i = 0; i < 256; i++) {
+            policy.recordLatency(0, 10);
+        }
+
+        assertThat(policy.onRequest(0)).isEqualTo(10);
+    }
+
+    @Test
+    void disabledPolicyNeverHedges() {
+        HedgingPolicy policy = new HedgingPolicy(false, 0.95, 0, 5);
+
+        for (int i = 0; i < 20; i++) {
+            policy.recordLatency(0, 10);
+        }
+
+        assertThat(policy.onRequest(0)).isEqualTo(-1);
+    }
+
+    @Test
+    void hedgesAreLimitedToBudgetPercentOfRequests() {
+        HedgingPolicy policy = new HedgingPolicy(true, 0.95, 0, 5);
+
+        // Mọi request đều muốn hedge: chỉ 5% được gửi
+        for (int i = 0; i < 1000; i++) {
+            policy.onRequest(0);
+            policy.tryAcquire();
+        }
+
+        assertThat(policy.getStats()).containsEntry("requests", 1000L).containsEntry("hedgesSent", 50L)
+                .containsEntry("budgetRejected", 950L).containsEntry("hedgeRatio", 0.05);
+    }
+
+    @Test
+    void unusedBudgetAccumulatesOnlyUpToBurst() {
+        HedgingPolicy policy = new HedgingPolicy(true, 0.95, 0, 5);
+
+        for (int i = 0; i < 10_000; i++) {
+            policy.onRequest(0);
+        }
+        int hedges = 0;
+        while (policy.tryAcquire()) {
+            hedges++;
+        }
+
+        assertThat(hedges).isEqualTo(10);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void statsKeyDelaysBySmallestSizeOfClass() {
+        HedgingPolicy policy = new HedgingPolicy(true, 0.95, 0, 5);
+        policy.recordLatency(0, 10);
+        policy.recordLatency(2, 10);
+
+        Map<String, Object> delays = (Map<String, Object>) policy.getStats().get("hedgeDelayMsBySize");
+
+        assertThat(delays).containsOnlyKeys("1", "16").containsEntry("1", -1L);
+    }
+}
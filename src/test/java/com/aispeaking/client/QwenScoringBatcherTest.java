@@ -0,0 +1,209 @@
+package com.aispeaking.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class QwenScoringBatcherTest {
+    private final QwenClient qwenClient = mock(QwenClient.class);
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private QwenScoringBatcher batcher;
+
+    @AfterEach
+    void stop() {
+        if (batcher != null) {
+            batcher.stop();
+        }
+    }
+
+    @Test
+    void concurrentRequestsShareOneBatchAndGetTheirOwnResults() throws Exception {
+        when(qwenClient.scoreBatch(anyList())).thenAnswer(invocation -> results(invocation.getArgument(0)));
+        batcher = batcher(true, 4, 1000, 1);
+
+        List<CompletableFuture<String>> futures = submit(0, 4);
+
+        for (int i = 0; i < futures.size(); i++) {
+            assertThat(futures.get(i).get(5, TimeUnit.SECONDS)).isEqualTo(result(i));
+        }
+        assertThat(batchSizes).containsExactly(4);
+        assertThat(batcher.getStats()).containsEntry("batchesSent", 1L).containsEntry("itemsScored", 4L);
+    }
+
+    @Test
+    void singleRequestAfterLingerIsSentThroughScore() throws Exception {
+        when(qwenClient.score(anyMap())).thenAnswer(invocation -> result((Integer) invocation.<Map<String, Object>>getArgument(0).get("id")));
+        batcher = batcher(true, 4, 20, 1);
+
+        assertThat(submit(7, 1).get(0).get(5, TimeUnit.SECONDS)).isEqualTo(result(7));
+        verify(qwenClient, never()).scoreBatch(anyList());
+    }
+
+    @Test
+    void batchesInFlightAreBoundedAndBacklogFormsFullBatches() throws Exception {
+        CountDownLatch firstBatchSent = new CountDownLatch(1);
+        CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(qwenClient.scoreBatch(anyList())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                firstBatchSent.countDown();
+                releaseFirstBatch.await(5, TimeUnit.SECONDS);
+                return results(invocation.getArgument(0));
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        batcher = batcher(true, 4, 50, 1);
+
+        List<CompletableFuture<String>> futures = new ArrayList<>(submit(0, 2));
+        assertThat(firstBatchSent.await(5, TimeUnit.SECONDS)).isTrue();
+        // Lô đầu còn đang gửi: 8 yêu cầu mới phải chờ trong hàng đợi thay vì bị cắt thành lô lẻ
+        futures.addAll(submit(2, 8));
+        Thread.sleep(200);
+        assertThat(batcher.getStats()).containsEntry("sendingBatches", 1).containsEntry("queued", 7);
+        releaseFirstBatch.countDown();
+
+        for (int i = 0; i < futures.size(); i++) {
+            assertThat(futures.get(i).get(5, TimeUnit.SECONDS)).isEqualTo(result(i));
+        }
+        assertThat(maxInFlight.get()).isEqualTo(1);
+        assertThat(batchSizes).containsExactly(2, 4, 4);
+        assertThat(batcher.getStats()).containsEntry("sendingBatches", 0);
+    }
+
+    @Test
+    void failedBatchFallsBackToPerItemScoring() throws Exception {
+        when(qwenClient.scoreBatch(anyList())).thenAnswer(invocation -> {
+            batchSizes.add(invocation.<List<?>>getArgument(0).size());
+            throw new IllegalStateException("batch broken");
+        });
+        when(qwenClient.score(anyMap())).thenAnswer(invocation -> result((Integer) invocation.<Map<String, Object>>getArgument(0).get("id")));
+        batcher = batcher(true, 3, 1000, 1);
+
+        List<CompletableFuture<String>> futures = submit(0, 3);
+
+        for (int i = 0; i < futures.size(); i++) {
+            assertThat(futures.get(i).get(5, TimeUnit.SECONDS)).isEqualTo(result(i));
+        }
+        assertThat(batcher.getStats()).containsEntry("batchFallbacks", 1L);
+    }
+
+    @Test
+    void erroredElementIsRetriedIndividually() throws Exception {
+        when(qwenClient.scoreBatch(anyList())).thenReturn("{\"results\":[" + result(0) + ",{\"error\":\"oom\"}]}");
+        when(qwenClient.score(anyMap())).thenReturn(result(1));
+        batcher = batcher(true, 2, 1000, 1);
+
+        List<CompletableFuture<String>> futures = submit(0, 2);
+
+        assertThat(futures.get(0).get(5, TimeUnit.SECONDS)).isEqualTo(result(0));
+        assertThat(futures.get(1).get(5, TimeUnit.SECONDS)).isEqualTo(result(1));
+        verify(qwenClient).score(Map.of("id", 1));
+    }
+
+    @Test
+    void disabledBatcherCallsScoreDirectly() {
+        when(qwenClient.score(anyMap())).thenReturn(result(3));
+        batcher = batcher(false, 4, 20, 1);
+
+        assertThat(batcher.score(Map.of("id", 3))).isEqualTo(result(3));
+        verify(qwenClient, never()).scoreBatch(anyList());
+    }
+
+    @Test
+    void disabledBatcherEnforcesTimeoutAndInterruptsCall() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(qwenClient.score(anyMap())).thenAnswer(invocation -> {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return result(0);
+        });
+        batcher = batcher(false, 4, 20, 1);
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> batcher.score(Map.of("id", 0), 100)).isInstanceOf(TimeoutException.class);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(2000);
+        // Lời gọi trực tiếp bị ngắt thay vì chạy tiếp tới hết response-timeout
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void sendersRunOnVirtualThreadsWhenEnabled() throws Exception {
+        AtomicReference<Thread> sender = new AtomicReference<>();
+        when(qwenClient.score(anyMap())).thenAnswer(invocation -> {
+            sender.set(Thread.currentThread());
+            return result(0);
+        });
+        batcher = batcher(true, 4, 20, 1, true);
+
+        submit(0, 1).get(0).get(5, TimeUnit.SECONDS);
+
+        assertThat(sender.get().isVirtual()).isTrue();
+        assertThat(sender.get().getName()).startsWith("qwen-batch-sender-");
+    }
+
+    private QwenScoringBatcher batcher(boolean enabled, int maxSize, long lingerMs, int maxInFlight) {
+        return batcher(enabled, maxSize, lingerMs, maxInFlight, false);
+    }
+
+    private QwenScoringBatcher batcher(boolean enabled, int maxSize, long lingerMs, int maxInFlight, boolean virtualThreads) {
+        QwenScoringBatcher created = new QwenScoringBatcher(qwenClient, new ObjectMapper());
+        ReflectionTestUtils.setField(created, "virtualThreads", virtualThreads);
+        ReflectionTestUtils.setField(created, "enabled", enabled);
+        ReflectionTestUtils.setField(created, "maxBatchSize", maxSize);
+        ReflectionTestUtils.setField(created, "lingerMs", lingerMs);
+        ReflectionTestUtils.setField(created, "maxInFlight", maxInFlight);
+        created.start();
+        return created;
+    }
+
+    /**
+     * Gửi count yêu cầu (id từ firstId) từ các luồng riêng, theo thứ tự id
+     */
+    private List<CompletableFuture<String>> submit(int firstId, int count) throws InterruptedException {
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int id = firstId; id < firstId + count; id++) {
+            Map<String, Object> request = Map.of("id", id);
+            futures.add(CompletableFuture.supplyAsync(() -> batcher.score(request)));
+            // Giữ thứ tự vào hàng đợi
+            Thread.sleep(5);
+        }
+        return futures;
+    }
+
+    private String results(List<Map<String, Object>> items) {
+        batchSizes.add(items.size());
+        return items.stream().map(item -> result((Integer) item.get("id"))).collect(Collectors.joining(",", "{\"results\":[", "]}"));
+    }
+
+    private static String result(int id) {
+        return "{\"score\":" + id + ",\"feedback\":\"item " + id + "\"}";
+    }
+}
@@ -0,0 +1,65 @@
+package com.aispeaking.client;
+
+import org.junit.jupiter.api.Test;
+import java.util.LongSummaryStatistics;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryPolicyTest {
+    private static final int SAMPLES = 2000;
+
+    @Test
+    void backoffCeilingDoublesUpToMax() {
+        RetryPolicy policy = new RetryPolicy(5, 100, 1000);
+
+        assertThat(backoffs(policy, 1).getMax()).isLessThanOrEqualTo(100);
+        assertThat(backoffs(policy, 2).getMax()).isLessThanOrEqualTo(200);
+        assertThat(backoffs(policy, 3).getMax()).isLessThanOrEqualTo(400);
+        assertThat(backoffs(policy, 5).getMax()).isLessThanOrEqualTo(1000);
+        // Số mũ bị chặn: không tràn số với lần thử lại rất lớn
+        assertThat(backoffs(policy, 70).getMin()).isNotNegative();
+        assertThat(backoffs(policy, 70).getMax()).isLessThanOrEqualTo(1000);
+    }
+
+    @Test
+    void fullJitterSpreadsOverWholeRange() {
+        RetryPolicy policy = new RetryPolicy(5, 100, 1000);
+
+        // Jitter đầy đủ: phân bố đều trên [0, ceiling], không dồn về ceiling
+        LongSummaryStatistics third = backoffs(policy, 3);
+        assertThat(third.getMin()).isNotNegative().isLessThan(40);
+        assertThat(third.getMax()).isGreaterThan(360);
+        assertThat(third.getAverage()).isBetween(150.0, 250.0);
+        LongSummaryStatistics capped = backoffs(policy, 10);
+        assertThat(capped.getMin()).isLessThan(100);
+        assertThat(capped.getMax()).isGreaterThan(900);
+    }
+
+    @Test
+    void zeroInitialBackoffMeansNoWait() {
+        RetryPolicy policy = new RetryPolicy(3, 0, 1000);
+
+        assertThat(backoffs(policy, 4).getMax()).isZero();
+    }
+
+    @Test
+    void onlyConnectionErrorsAndServerErrorsAreRetryable() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 1000);
+
+        assertThat(policy.isRetryable(new AIServiceException("Qwen", "Connection refused", new RuntimeException()))).isTrue();
+        assertThat(policy.isRetryable(new AIServiceException("Qwen", 500, "error"))).isTrue();
+        assertThat(policy.isRetryable(new AIServiceException("Qwen", 503, "error"))).isTrue();
+        assertThat(policy.isRetryable(new AIServiceException("Qwen", 400, "error"))).isFalse();
+        assertThat(policy.isRetryable(new AIServiceException("Qwen", 429, "error"))).isFalse();
+    }
+
+    @Test
+    void maxAttemptsIsAtLeastOne() {
+        assertThat(new RetryPolicy(0, 100, 1000).getMaxAttempts()).isEqualTo(1);
+    }
+
+    private static LongSummaryStatistics backoffs(RetryPolicy policy, int retry) {
+        return IntStream.range(0, SAMPLES).mapToLong(i -> policy.backoffMs(retry)).summaryStatistics();
+    }
+}
@@ -0,0 +1,84 @@
+package com.aispeaking.client;
+
+import com.aispeaking.util.TestWavs;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.reactive.function.client.WebClient;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WhisperClientTest {
+    private static final String TRANSCRIPT = "{\"transcribedText\":\"hello\",\"language\":\"en\"}";
+
+    @TempDir
+    Path dir;
+
+    private HttpServer server;
+    private final AtomicReference<String> contentType = new AtomicReference<>();
+    private final AtomicReference<byte[]> body = new AtomicReference<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/transcribe", exchange -> {
+            contentType.set(exchange.getRequestHeaders().getFirst("Content-Type"));
+            body.set(exchange.getRequestBody().readAllBytes());
+            byte[] response = TRANSCRIPT.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void sendsAudioAsBinaryMultipartPart() throws IOException {
+        byte[] wav = TestWavs.wav(1, 16000, 16, TestWavs.pcm16(TestWavs.tone(16000, 500, 440, 8000), 1));
+        Path file = Files.write(dir.resolve("answer.wav"), wav);
+
+        String response = client().transcribe(file.toFile());
+
+        assertThat(response).isEqualTo(TRANSCRIPT);
+        assertThat(contentType.get()).startsWith("multipart/form-data;").contains("boundary=");
+        String boundary = contentType.get().substring(contentType.get().indexOf("boundary=") + "boundary=".length());
+        byte[] part = audioPart(body.get(), boundary);
+        // Nội dung part là byte gốc của file, không phải base64
+        assertThat(part).isEqualTo(wav);
+    }
+
+    private WhisperClient client() {
+        AIEndpointPool pool = new AIEndpointPool("Whisper", List.of("http://127.0.0.1:" + server.getAddress().getPort()),
+                AIEndpointPool.Strategy.LEAST_OUTSTANDING, 3);
+        return new WhisperClient(pool, WebClient.create(), new AdaptiveConcurrencyLimiter(4, 1, 16, 30000, 0.7),
+                new CircuitBreaker("Whisper", 5, 30000), new RetryPolicy(1, 10, 10), new HedgingPolicy(false, 0.95, 1000, 5));
+    }
+
+    /**
+     * Dữ liệu của part "audio": sau header của part (kết thúc bằng dòng trống) tới "\r\n--boundary" kế tiếp
+     */
+    private static byte[] audioPart(byte[] multipart, String boundary) {
+        String text = new String(multipart, StandardCharsets.ISO_8859_1);
+        int disposition = text.indexOf("Content-Disposition: form-data; name=\"audio\"; filename=\"answer.wav\"");
+        assertThat(disposition).isNotNegative();
+        int start = text.indexOf("\r\n\r\n", disposition) + 4;
+        int end = text.indexOf("\r\n--" + boundary, start);
+        return Arrays.copyOfRange(multipart, start, end);
+    }
+}
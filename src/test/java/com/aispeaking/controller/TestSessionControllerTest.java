@@ -0,0 +1,100 @@
+package com.aispeaking.controller;
+
+import com.aispeaking.entity.Exam;
+import com.aispeaking.entity.TestSession;
+import com.aispeaking.repository.ExamRepository;
+import com.aispeaking.repository.TestSessionRepository;
+import com.aispeaking.service.TestSessionSnapshotService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * ETag của các API đọc công khai trên H2. max-staleness-ms để rất lớn: snapshot chỉ đổi được nhờ
+ * bumpVersion xóa cache sau commit, không phải nhờ kiểm tra lại DB.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:session-etag;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.show-sql=false",
+        "ai.health-check.interval-ms=600000",
+        "ai.session-cache.max-staleness-ms=3600000"
+})
+@AutoConfigureMockMvc
+class TestSessionControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ExamRepository examRepository;
+
+    @Autowired
+    private TestSessionRepository testSessionRepository;
+
+    @Autowired
+    private TestSessionSnapshotService testSessionSnapshotService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void matchingIfNoneMatchReturnsNotModified() throws Exception {
+        Long id = session();
+        String etag = etagOf("/test-sessions/" + id);
+
+        mockMvc.perform(get("/test-sessions/" + id).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void versionBumpInvalidatesEtag() throws Exception {
+        Long id = session();
+        String sessionEtag = etagOf("/test-sessions/" + id);
+        String answersEtag = etagOf("/test-sessions/" + id + "/answers");
+
+        transactionTemplate.executeWithoutResult(tx -> testSessionSnapshotService.bumpVersion(id));
+
+        String newSessionEtag = mockMvc.perform(get("/test-sessions/" + id).header(HttpHeaders.IF_NONE_MATCH, sessionEtag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(newSessionEtag).isNotNull().isNotEqualTo(sessionEtag);
+        mockMvc.perform(get("/test-sessions/" + id + "/answers").header(HttpHeaders.IF_NONE_MATCH, answersEtag))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/test-sessions/" + id).header(HttpHeaders.IF_NONE_MATCH, newSessionEtag))
+                .andExpect(status().isNotModified());
+    }
+
+    private String etagOf(String path) throws Exception {
+        String etag = mockMvc.perform(get(path))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotNull();
+        return etag;
+    }
+
+    private Long session() {
+        Exam exam = new Exam();
+        exam.setName("Exam");
+        exam.setTotalQuestions(1);
+        examRepository.save(exam);
+        TestSession session = new TestSession();
+        session.setExam(exam);
+        session.setStudentName("Student");
+        return testSessionRepository.save(session).getId();
+    }
+}
@@ -0,0 +1,229 @@
+package com.aispeaking.repository;
+
+import com.aispeaking.entity.AnswerProcessingJob;
+import com.aispeaking.entity.Exam;
+import com.aispeaking.entity.Question;
+import com.aispeaking.entity.TestAnswer;
+import com.aispeaking.entity.TestSession;
+import com.aispeaking.entity.enums.AnswerJobStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Pageable;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Các truy vấn nhận/kết thúc/trả lại công việc trên H2: mọi cập nhật trạng thái đều có điều kiện
+ * (status, lockedBy, attempts) để node chậm hoặc lần nhận cũ không ghi đè lên lần nhận mới.
+ */
+@DataJpaTest
+class AnswerProcessingJobRepositoryTest {
+    private static final String NODE = "node-a";
+    private static final String OTHER_NODE = "node-b";
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private AnswerProcessingJobRepository jobRepository;
+
+    private final LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+    private TestAnswer answer;
+
+    @BeforeEach
+    void setUp() {
+        Exam exam = new Exam();
+        exam.setName("Exam");
+        exam.setTotalQuestions(1);
+        entityManager.persist(exam);
+        Question question = new Question();
+        question.setContent("Describe your hometown.");
+        entityManager.persist(question);
+        TestSession session = new TestSession();
+        session.setExam(exam);
+        session.setStudentName("Student");
+        entityManager.persist(session);
+        answer = new TestAnswer();
+        answer.setTestSession(session);
+        answer.setQuestion(question);
+        entityManager.persist(answer);
+    }
+
+    @Test
+    void findReadySkipsDeferredJobsAndOrdersByScheduleKey() {
+        Long late = queued(AnswerProcessingJob.PRIORITY_LIVE, 300L, null).getId();
+        Long early = queued(AnswerProcessingJob.PRIORITY_LIVE, 100L, null).getId();
+        queued(AnswerProcessingJob.PRIORITY_LIVE, 50L, now.plusMinutes(1));
+        Long due = queued(AnswerProcessingJob.PRIORITY_LIVE, 200L, now.minusSeconds(1)).getId();
+        queued(AnswerProcessingJob.PRIORITY_BULK, 10L, null);
+
+        List<Object[]> ready = jobRepository.findReady(now, AnswerProcessingJob.PRIORITY_LIVE,
+                AnswerProcessingJob.PRIORITY_INTERACTIVE_RETRY, Long.MAX_VALUE, Pageable.ofSize(10));
+
+        assertThat(ready).extracting(row -> row[0]).containsExactly(early, due, late);
+        assertThat(jobRepository.findReady(now, AnswerProcessingJob.PRIORITY_LIVE,
+                AnswerProcessingJob.PRIORITY_INTERACTIVE_RETRY, 250L, Pageable.ofSize(10)))
+                .extracting(row -> row[0]).containsExactly(early, due);
+    }
+
+    @Test
+    void claimSucceedsOnlyOnce() {
+        AnswerProcessingJob job = queued(AnswerProcessingJob.PRIORITY_LIVE, 1L, null);
+
+        assertThat(jobRepository.claim(job.getId(), NODE, now)).isEqualTo(1);
+        assertThat(jobRepository.claim(job.getId(), OTHER_NODE, now)).isZero();
+
+        AnswerProcessingJob claimed = reload(job);
+        assertThat(claimed.getStatus()).isEqualTo(AnswerJobStatus.RUNNING);
+        assertThat(claimed.getLockedBy()).isEqualTo(NODE);
+        assertThat(claimed.getAttempts()).isEqualTo(1);
+    }
+
+    @Test
+    void startRequiresOwnership() {
+        AnswerProcessingJob job = running(NODE, 1, now.minusMinutes(5), null);
+
+        assertThat(jobRepository.start(job.getId(), OTHER_NODE, now)).isZero();
+        assertThat(jobRepository.start(job.getId(), NODE, now)).isEqualTo(1);
+
+        AnswerProcessingJob started = reload(job);
+        assertThat(started.getStartedAt()).isEqualTo(now);
+        assertThat(started.getHeartbeatAt()).isEqualTo(now);
+    }
+
+    @Test
+    void finishIgnoresStaleOwnerAndStaleAttempt() {
+        AnswerProcessingJob job = running(NODE, 2, now, now);
+
+        assertThat(jobRepository.finish(job.getId(), OTHER_NODE, 2, AnswerJobStatus.COMPLETED, now, null)).isZero();
+        assertThat(jobRepository.finish(job.getId(), NODE, 1, AnswerJobStatus.COMPLETED, now, null)).isZero();
+        assertThat(reload(job).getStatus()).isEqualTo(AnswerJobStatus.RUNNING);
+
+        assertThat(jobRepository.finish(job.getId(), NODE, 2, AnswerJobStatus.FAILED, now, "boom")).isEqualTo(1);
+        AnswerProcessingJob finished = reload(job);
+        assertThat(finished.getStatus()).isEqualTo(AnswerJobStatus.FAILED);
+        assertThat(finished.getFinishedAt()).isEqualTo(now);
+        assertThat(finished.getLastError()).isEqualTo("boom");
+        // Đã kết thúc thì không kết thúc/trả lại lần nữa
+        assertThat(jobRepository.finish(job.getId(), NODE, null, AnswerJobStatus.COMPLETED, now, null)).isZero();
+        assertThat(jobRepository.requeue(job.getId(), NODE, null, null, null)).isZero();
+    }
+
+    @Test
+    void requeueKeepsDeferralAndErrorWhenNotGiven() {
+        AnswerProcessingJob job = running(NODE, 1, now, now);
+        job.setAvailableAt(now.minusMinutes(1));
+        job.setLastError("previous");
+        entityManager.persistAndFlush(job);
+
+        assertThat(jobRepository.requeue(job.getId(), OTHER_NODE, null, null, null)).isZero();
+        assertThat(jobRepository.requeue(job.getId(), NODE, null, null, null)).isEqualTo(1);
+
+        AnswerProcessingJob released = reload(job);
+        assertThat(released.getStatus()).isEqualTo(AnswerJobStatus.QUEUED);
+        assertThat(released.getLockedBy()).isNull();
+        assertThat(released.getAvailableAt()).isEqualTo(now.minusMinutes(1));
+        assertThat(released.getLastError()).isEqualTo("previous");
+
+        jobRepository.claim(job.getId(), NODE, now);
+        assertThat(jobRepository.requeue(job.getId(), NODE, 1, now.plusSeconds(30), "deferred")).isZero();
+        assertThat(jobRepository.requeue(job.getId(), NODE, 2, now.plusSeconds(30), "deferred")).isEqualTo(1);
+        AnswerProcessingJob deferred = reload(job);
+        assertThat(deferred.getAvailableAt()).isEqualTo(now.plusSeconds(30));
+        assertThat(deferred.getLastError()).isEqualTo("deferred");
+    }
+
+    @Test
+    void touchRequiresCurrentAttempt() {
+        AnswerProcessingJob job = running(NODE, 3, now.minusMinutes(5), now.minusMinutes(5));
+
+        assertThat(jobRepository.touch(job.getId(), NODE, 2, now)).isZero();
+        assertThat(jobRepository.touch(job.getId(), NODE, 3, now)).isEqualTo(1);
+        assertThat(reload(job).getHeartbeatAt()).isEqualTo(now);
+    }
+
+    @Test
+    void heartbeatUpdatesOnlyOwnRunningJobs() {
+        LocalDateTime old = now.minusMinutes(5);
+        AnswerProcessingJob own = running(NODE, 1, old, old);
+        AnswerProcessingJob foreign = running(OTHER_NODE, 1, old, old);
+        AnswerProcessingJob queued = queued(AnswerProcessingJob.PRIORITY_LIVE, 1L, null);
+
+        assertThat(jobRepository.heartbeat(List.of(own.getId(), foreign.getId(), queued.getId()), NODE, now)).isEqualTo(1);
+
+        assertThat(reload(own).getHeartbeatAt()).isEqualTo(now);
+        assertThat(reload(foreign).getHeartbeatAt()).isEqualTo(old);
+        assertThat(reload(queued).getHeartbeatAt()).isNull();
+    }
+
+    @Test
+    void findInterruptedUsesHeartbeatBeforeStartTime() {
+        LocalDateTime staleBefore = now.minusMinutes(10);
+        Long own = running(NODE, 1, now, now).getId();
+        Long staleHeartbeat = running(OTHER_NODE, 1, now.minusHours(1), now.minusMinutes(11)).getId();
+        running(OTHER_NODE, 1, now.minusHours(1), now.minusMinutes(1));
+        Long neverStarted = running(OTHER_NODE, 1, now.minusMinutes(11), null).getId();
+        running(OTHER_NODE, 1, now.minusMinutes(1), null);
+        queued(AnswerProcessingJob.PRIORITY_LIVE, 1L, null);
+
+        assertThat(jobRepository.findInterrupted(NODE, staleBefore))
+                .extracting(AnswerProcessingJob::getId).containsExactlyInAnyOrder(own, staleHeartbeat, neverStarted);
+    }
+
+    @Test
+    void cancelRunningCancelsOnlyRunningJobsOfAnswer() {
+        AnswerProcessingJob runningJob = running(NODE, 1, now, now);
+        AnswerProcessingJob queuedJob = queued(AnswerProcessingJob.PRIORITY_LIVE, 1L, null);
+
+        assertThat(jobRepository.cancelRunning(answer.getId(), now, "superseded")).isEqualTo(1);
+
+        AnswerProcessingJob cancelled = reload(runningJob);
+        assertThat(cancelled.getStatus()).isEqualTo(AnswerJobStatus.CANCELLED);
+        assertThat(cancelled.getLastError()).isEqualTo("superseded");
+        assertThat(reload(queuedJob).getStatus()).isEqualTo(AnswerJobStatus.QUEUED);
+        // Lần nhận đã bị hủy không kết thúc được nữa
+        assertThat(jobRepository.finish(runningJob.getId(), NODE, 1, AnswerJobStatus.COMPLETED, now, null)).isZero();
+    }
+
+    @Test
+    void countsOutstandingJobsBelowBulkPriority() {
+        queued(AnswerProcessingJob.PRIORITY_LIVE, 1L, null);
+        queued(AnswerProcessingJob.PRIORITY_INTERACTIVE_RETRY, 1L, null);
+        queued(AnswerProcessingJob.PRIORITY_BULK, 1L, null);
+        running(NODE, 1, now, now);
+
+        assertThat(jobRepository.countByStatusInAndPriorityLessThan(List.of(AnswerJobStatus.QUEUED, AnswerJobStatus.RUNNING),
+                AnswerProcessingJob.PRIORITY_BULK)).isEqualTo(3);
+    }
+
+    private AnswerProcessingJob queued(int priority, Long scheduleKey, LocalDateTime availableAt) {
+        AnswerProcessingJob job = new AnswerProcessingJob();
+        job.setTestAnswer(answer);
+        job.setPriority(priority);
+        job.setScheduleKey(scheduleKey);
+        job.setAvailableAt(availableAt);
+        return entityManager.persistAndFlush(job);
+    }
+
+    private AnswerProcessingJob running(String nodeId, int attempts, LocalDateTime startedAt, LocalDateTime heartbeatAt) {
+        AnswerProcessingJob job = new AnswerProcessingJob();
+        job.setTestAnswer(answer);
+        job.setStatus(AnswerJobStatus.RUNNING);
+        job.setLockedBy(nodeId);
+        job.setAttempts(attempts);
+        job.setStartedAt(startedAt);
+        job.setHeartbeatAt(heartbeatAt);
+        return entityManager.persistAndFlush(job);
+    }
+
+    private AnswerProcessingJob reload(AnswerProcessingJob job) {
+        entityManager.clear();
+        return entityManager.find(AnswerProcessingJob.class, job.getId());
+    }
+}
@@ -0,0 +1,205 @@
+package com.aispeaking.service;
+
+import com.aispeaking.entity.Exam;
+import com.aispeaking.entity.ExamQuestion;
+import com.aispeaking.entity.Question;
+import com.aispeaking.entity.TestAnswer;
+import com.aispeaking.entity.enums.ExamStatus;
+import com.aispeaking.entity.enums.ProcessingStatus;
+import com.aispeaking.repository.ExamQuestionRepository;
+import com.aispeaking.repository.ExamRepository;
+import com.aispeaking.repository.QuestionRepository;
+import com.aispeaking.repository.TestAnswerRepository;
+import com.aispeaking.util.TestWavs;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Chạy pipeline chấm điểm thật trên H2 với Whisper/Qwen giả lập bằng một HTTP server cục bộ.
+ * Trong lúc mỗi lời gọi AI đang chờ, server giả đo số kết nối Hikari đang mượn nhiều lần:
+ * nếu pipeline giữ giao dịch/kết nối qua lời gọi AI thì số này không bao giờ về 0.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ai-processing;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.hikari.maximum-pool-size=4",
+        "spring.jpa.show-sql=false",
+        "ai.health-check.interval-ms=600000",
+        "ai.whisper.hedge.enabled=false",
+        "ai.qwen.hedge.enabled=false"
+})
+class AIProcessingConnectionTest {
+    private static final long HOLD_MS = 300;
+    private static final long SAMPLE_EVERY_MS = 5;
+
+    private static final HttpServer BACKEND = startBackend();
+    private static final Path UPLOAD_DIR = createUploadDir();
+    // Đường dẫn → số kết nối đang mượn nhỏ nhất quan sát được trong từng lời gọi
+    private static final Map<String, List<Integer>> MIN_ACTIVE = new ConcurrentHashMap<>();
+    private static volatile HikariDataSource pool;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ExamRepository examRepository;
+
+    @Autowired
+    private QuestionRepository questionRepository;
+
+    @Autowired
+    private ExamQuestionRepository examQuestionRepository;
+
+    @Autowired
+    private TestAnswerRepository testAnswerRepository;
+
+    @Autowired
+    private TestSessionService testSessionService;
+
+    @DynamicPropertySource
+    static void backendProperties(DynamicPropertyRegistry registry) {
+        String url = "http://127.0.0.1:" + BACKEND.getAddress().getPort();
+        registry.add("ai.whisper.url", () -> url);
+        registry.add("ai.qwen.url", () -> url);
+        registry.add("file.upload.dir", UPLOAD_DIR::toString);
+    }
+
+    @AfterAll
+    static void stopBackend() {
+        BACKEND.stop(0);
+    }
+
+    @Test
+    void aiCallsDoNotHoldDatabaseConnections() throws Exception {
+        pool = dataSource.unwrap(HikariDataSource.class);
+        Long questionId = createExamQuestion();
+        Long examId = examQuestionRepository.findAll().get(0).getExam().getId();
+        Long sessionId = testSessionService.createTestSession(examId, "Student", "Org").getId();
+        byte[] wav = TestWavs.wav(1, 16000, 16, TestWavs.pcm16(TestWavs.tone(16000, 2000, 300, 8000), 1));
+
+        Long answerId = testSessionService.submitAnswer(sessionId, questionId,
+                new MockMultipartFile("audio", "answer.wav", "audio/wav", wav)).getId();
+
+        TestAnswer answer = awaitCompleted(answerId);
+        // File được ghi vào file.upload.dir của test, không phải thư mục uploads/ của repo
+        assertThat(Path.of(answer.getAudioUrl())).startsWith(UPLOAD_DIR).exists();
+        assertThat(answer.getTranscribedText()).isEqualTo("My hometown is Ha Noi.");
+        assertThat(answer.getScore()).isEqualByComparingTo("7.5");
+        assertThat(MIN_ACTIVE.get("/transcribe")).isNotEmpty().containsOnly(0);
+        assertThat(scoringCalls()).isNotEmpty().containsOnly(0);
+    }
+
+    private Long createExamQuestion() {
+        Exam exam = new Exam();
+        exam.setName("Exam");
+        exam.setTotalQuestions(1);
+        exam.setStatus(ExamStatus.ACTIVE);
+        examRepository.save(exam);
+        Question question = new Question();
+        question.setContent("Describe your hometown.");
+        questionRepository.save(question);
+        ExamQuestion examQuestion = new ExamQuestion();
+        examQuestion.setExam(exam);
+        examQuestion.setQuestion(question);
+        examQuestion.setQuestionOrder(1);
+        examQuestionRepository.save(examQuestion);
+        return question.getId();
+    }
+
+    private TestAnswer awaitCompleted(Long answerId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        TestAnswer answer = testAnswerRepository.findById(answerId).orElseThrow();
+        while (answer.getProcessingStatus() != ProcessingStatus.COMPLETED && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            answer = testAnswerRepository.findById(answerId).orElseThrow();
+        }
+        assertThat(answer.getProcessingStatus()).isEqualTo(ProcessingStatus.COMPLETED);
+        return answer;
+    }
+
+    private static List<Integer> scoringCalls() {
+        List<Integer> calls = new CopyOnWriteArrayList<>(MIN_ACTIVE.getOrDefault("/score", List.of()));
+        calls.addAll(MIN_ACTIVE.getOrDefault("/score-batch", List.of()));
+        return calls;
+    }
+
+    private static HttpServer startBackend() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.createContext("/health", exchange -> respond(exchange, "{\"status\":\"healthy\"}"));
+            server.createContext("/transcribe", exchange -> {
+                holdAndSample(exchange);
+                respond(exchange, "{\"transcribedText\":\"My hometown is Ha Noi.\",\"language\":\"en\"}");
+            });
+            server.createContext("/score", exchange -> {
+                holdAndSample(exchange);
+                String result = "{\"score\":7.5,\"feedback\":\"Tốt lắm!\"}";
+                respond(exchange, exchange.getRequestURI().getPath().equals("/score-batch")
+                        ? "{\"results\":[" + result + "]}" : result);
+            });
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Giữ request HOLD_MS ms, lấy mẫu số kết nối đang mượn mỗi SAMPLE_EVERY_MS ms và ghi lại giá trị nhỏ nhất
+     */
+    private static void holdAndSample(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        int min = Integer.MAX_VALUE;
+        long end = System.currentTimeMillis() + HOLD_MS;
+        try {
+            while (System.currentTimeMillis() < end) {
+                min = Math.min(min, pool.getHikariPoolMXBean().getActiveConnections());
+                Thread.sleep(SAMPLE_EVERY_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        MIN_ACTIVE.computeIfAbsent(exchange.getRequestURI().getPath(), path -> new CopyOnWriteArrayList<>()).add(min);
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    private static Path createUploadDir() {
+        try {
+            return Files.createTempDirectory("ai-processing-test");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.aispeaking.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * So khớp AlgorithmicScorer với compute_algorithmic_score / generate_vietnamese_feedback của qwen_server.py.
+ * fixtures/algorithmic-scorer.json được sinh bằng cách chạy chính các hàm đó (phần "THUẬT TOÁN TÍNH ĐIỂM"
+ * của qwen_server.py, không cần model) trên từng ca; khi sửa thuật toán ở một phía thì phải sinh lại fixture.
+ */
+class AlgorithmicScorerTest {
+    private static final String FIXTURES = "/fixtures/algorithmic-scorer.json";
+
+    private final AlgorithmicScorer scorer = new AlgorithmicScorer();
+
+    static Stream<Arguments> fixtures() throws IOException {
+        try (InputStream in = AlgorithmicScorerTest.class.getResourceAsStream(FIXTURES)) {
+            JsonNode root = new ObjectMapper().readTree(in);
+            List<Arguments> cases = new ArrayList<>();
+            root.forEach(node -> cases.add(Arguments.of(node.get("name").asText(), node)));
+            return cases.stream();
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("fixtures")
+    void matchesPythonScorer(String name, JsonNode fixture) {
+        List<AlgorithmicScorer.PreparedSample> samples = new ArrayList<>();
+        fixture.get("samples").forEach(sample -> samples.add(scorer.prepare(sample.get("content").asText(),
+                sample.has("score") ? sample.get("score").numberValue() : null)));
+
+        AlgorithmicScorer.Result result = scorer.score(fixture.get("text").asText(), samples);
+
+        assertThat(result.score()).isEqualTo(fixture.get("score").asDouble());
+        assertThat(result.wordCount()).isEqualTo(fixture.get("wordCount").asInt());
+        if (fixture.get("bestSimilarity").isNull()) {
+            assertThat(result.bestSimilarity()).isNull();
+        } else {
+            assertThat(result.bestSimilarity()).isEqualTo(fixture.get("bestSimilarity").asDouble());
+        }
+        assertThat(scorer.feedback(result)).isEqualTo(fixture.get("feedback").asText());
+    }
+
+    @Test
+    void normalizeMatchesPythonRegexes() {
+        // re.sub(r'[^\w\s]', ' ', ...) rồi re.sub(r'\s+', ' ', ...): không strip lại sau khi thay dấu câu
+        assertThat(AlgorithmicScorer.normalize("  Hello, World!  ")).isEqualTo("hello world ");
+        assertThat(AlgorithmicScorer.normalize("Tôi\tTHÍCH  phở_bò")).isEqualTo("tôi thích phở_bò");
+        assertThat(AlgorithmicScorer.normalize("...")).isEqualTo(" ");
+        assertThat(AlgorithmicScorer.normalize("")).isEmpty();
+    }
+}
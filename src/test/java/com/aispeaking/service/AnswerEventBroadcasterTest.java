@@ -0,0 +1,132 @@
+package com.aispeaking.service;
+
+import com.aispeaking.entity.TestAnswer;
+import com.aispeaking.entity.TestSession;
+import com.aispeaking.entity.enums.ProcessingStatus;
+import com.aispeaking.repository.TestAnswerRepository;
+import com.aispeaking.repository.TestSessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Nối tiếp luồng sự kiện theo Last-Event-ID: phần bị lỡ được gửi lại ("answer"),
+ * không nối tiếp được thì gửi "snapshot" toàn phiên. Ngoài giao dịch, publish gửi ngay.
+ */
+class AnswerEventBroadcasterTest {
+    private static final Long SESSION_ID = 1L;
+
+    private final TestAnswerRepository testAnswerRepository = mock(TestAnswerRepository.class);
+    private final TestSessionRepository testSessionRepository = mock(TestSessionRepository.class);
+    private AnswerEventBroadcaster broadcaster;
+    private String epoch;
+
+    @BeforeEach
+    void setUp() {
+        broadcaster = new AnswerEventBroadcaster(testAnswerRepository, testSessionRepository);
+        ReflectionTestUtils.setField(broadcaster, "maxConnections", 10);
+        ReflectionTestUtils.setField(broadcaster, "emitterTimeoutMs", 60_000L);
+        ReflectionTestUtils.setField(broadcaster, "replayBufferSize", 3);
+        epoch = (String) ReflectionTestUtils.getField(broadcaster, "epoch");
+        when(testSessionRepository.existsById(anyLong())).thenReturn(true);
+        when(testAnswerRepository.findByTestSessionId(anyLong())).thenReturn(List.of());
+    }
+
+    @Test
+    void resumeReplaysOnlyMissedEvents() {
+        broadcaster.subscribe(SESSION_ID, null);
+        publish(3);
+
+        broadcaster.subscribe(SESSION_ID, epoch + "-1");
+
+        assertThat(broadcaster.getStats())
+                .containsEntry("eventsPublished", 3L)
+                .containsEntry("eventsReplayed", 2L)
+                .containsEntry("snapshotsSent", 1L);
+    }
+
+    @Test
+    void foreignEpochGetsSnapshot() {
+        broadcaster.subscribe(SESSION_ID, null);
+        publish(2);
+
+        // Id do node khác hoặc tiến trình trước cấp: số thứ tự không so được với node này
+        broadcaster.subscribe(SESSION_ID, "x" + epoch + "-1");
+
+        assertThat(broadcaster.getStats()).containsEntry("eventsReplayed", 0L).containsEntry("snapshotsSent", 2L);
+    }
+
+    @Test
+    void evictedSequenceGetsSnapshot() {
+        broadcaster.subscribe(SESSION_ID, null);
+        // Bộ đệm giữ 3 sự kiện: seq 1 và 2 bị đẩy ra
+        publish(5);
+
+        broadcaster.subscribe(SESSION_ID, epoch + "-1");
+        assertThat(broadcaster.getStats()).containsEntry("eventsReplayed", 0L).containsEntry("snapshotsSent", 2L);
+
+        // Lỡ từ seq 3 trở đi: vẫn còn đủ trong bộ đệm
+        broadcaster.subscribe(SESSION_ID, epoch + "-2");
+        assertThat(broadcaster.getStats()).containsEntry("eventsReplayed", 3L).containsEntry("snapshotsSent", 2L);
+    }
+
+    @Test
+    void malformedLastEventIdGetsSnapshot() {
+        broadcaster.subscribe(SESSION_ID, null);
+        publish(1);
+
+        broadcaster.subscribe(SESSION_ID, epoch + "-abc");
+        broadcaster.subscribe(SESSION_ID, epoch + "-");
+        broadcaster.subscribe(SESSION_ID, "garbage");
+
+        assertThat(broadcaster.getStats()).containsEntry("eventsReplayed", 0L).containsEntry("snapshotsSent", 4L);
+    }
+
+    @Test
+    void upToDateClientGetsNothing() {
+        broadcaster.subscribe(SESSION_ID, null);
+        publish(2);
+
+        broadcaster.subscribe(SESSION_ID, epoch + "-2");
+
+        assertThat(broadcaster.getStats()).containsEntry("eventsReplayed", 0L).containsEntry("snapshotsSent", 1L);
+    }
+
+    @Test
+    void connectionsOverLimitAreRejectedWith503() {
+        ReflectionTestUtils.setField(broadcaster, "maxConnections", 2);
+        broadcaster.subscribe(SESSION_ID, null);
+        broadcaster.subscribe(2L, null);
+
+        assertThatThrownBy(() -> broadcaster.subscribe(SESSION_ID, null))
+                .isInstanceOfSatisfying(AdmissionRejectedException.class, e -> {
+                    assertThat(e.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+                    assertThat(e.getRetryAfterSeconds()).isPositive();
+                });
+        // Kết nối bị từ chối không chiếm chỗ
+        assertThat(broadcaster.getStats())
+                .containsEntry("connections", 2)
+                .containsEntry("rejectedConnections", 1L)
+                .containsEntry("snapshotsSent", 2L);
+    }
+
+    private void publish(int count) {
+        TestSession session = new TestSession();
+        session.setId(SESSION_ID);
+        for (long id = 1; id <= count; id++) {
+            TestAnswer answer = new TestAnswer();
+            answer.setId(id);
+            answer.setTestSession(session);
+            answer.setProcessingStatus(ProcessingStatus.COMPLETED);
+            broadcaster.publish(answer);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.aispeaking.service;
+
+import com.aispeaking.entity.AnswerProcessingJob;
+import com.aispeaking.entity.Exam;
+import com.aispeaking.entity.Question;
+import com.aispeaking.entity.TestAnswer;
+import com.aispeaking.entity.TestSession;
+import com.aispeaking.entity.enums.AnswerJobStatus;
+import com.aispeaking.entity.enums.ProcessingStatus;
+import com.aispeaking.repository.AnswerProcessingJobRepository;
+import com.aispeaking.repository.ExamRepository;
+import com.aispeaking.repository.QuestionRepository;
+import com.aispeaking.repository.TestAnswerRepository;
+import com.aispeaking.repository.TestSessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * AnswerJobService trên H2. Dispatcher chỉ chạy một lần lúc khởi động (hàng đợi còn rỗng),
+ * nên công việc tạo trong test không bị worker nhận mất.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:answer-jobs;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.show-sql=false",
+        "ai.health-check.interval-ms=600000",
+        "ai.job.poll-interval-ms=3600000",
+        "ai.job.stale-check-interval-ms=3600000",
+        "ai.job.stale-after-ms=600000",
+        "ai.job.max-attempts=3"
+})
+class AnswerJobServiceTest {
+    private static final String OTHER_NODE = "crashed-node";
+
+    @Autowired
+    private AnswerJobService answerJobService;
+
+    @Autowired
+    private AnswerProcessingJobRepository jobRepository;
+
+    @Autowired
+    private ExamRepository examRepository;
+
+    @Autowired
+    private QuestionRepository questionRepository;
+
+    @Autowired
+    private TestSessionRepository testSessionRepository;
+
+    @Autowired
+    private TestAnswerRepository testAnswerRepository;
+
+    @BeforeEach
+    void clearJobs() {
+        jobRepository.deleteAll();
+    }
+
+    @Test
+    void claimInterleavesTenants() {
+        TestAnswer answer = answer(ProcessingStatus.PENDING);
+        // Mọi công việc của tenant A vào hàng đợi trước tenant B
+        Long a1 = queued(answer, "exam:fair-a", 1).getId();
+        Long a2 = queued(answer, "exam:fair-a", 2).getId();
+        queued(answer, "exam:fair-a", 3);
+        queued(answer, "exam:fair-a", 4);
+        Long b1 = queued(answer, "exam:fair-b", 5).getId();
+        Long b2 = queued(answer, "exam:fair-b", 6).getId();
+
+        List<Long> claimed = answerJobService.claimQueuedJobs(4, AnswerProcessingJob.PRIORITY_LIVE, AnswerProcessingJob.PRIORITY_LIVE);
+
+        assertThat(claimed).containsExactlyInAnyOrder(a1, a2, b1, b2);
+        List<String> tenants = claimed.stream().map(id -> jobRepository.findById(id).orElseThrow().getTenantKey()).toList();
+        assertThat(tenants.get(0)).isNotEqualTo(tenants.get(1));
+        assertThat(tenants.subList(2, 4)).isEqualTo(tenants.subList(0, 2));
+        // Trong một tenant vẫn theo schedule_key
+        assertThat(claimed.indexOf(a1)).isLessThan(claimed.indexOf(a2));
+        assertThat(claimed.indexOf(b1)).isLessThan(claimed.indexOf(b2));
+    }
+
+    @Test
+    void agedClaimFollowsScheduleKeyAcrossTenants() {
+        TestAnswer answer = answer(ProcessingStatus.PENDING);
+        Long a1 = queued(answer, "exam:aged-a", 1).getId();
+        Long a2 = queued(answer, "exam:aged-a", 2).getId();
+        queued(answer, "exam:aged-b", 3);
+
+        assertThat(answerJobService.claimAgedJobs(2, AnswerProcessingJob.PRIORITY_LIVE, AnswerProcessingJob.PRIORITY_LIVE, 0))
+                .containsExactly(a1, a2);
+    }
+
+    @Test
+    void interruptedJobIsRequeuedUntilMaxAttempts() {
+        LocalDateTime stale = LocalDateTime.now().minusHours(1);
+        TestAnswer retried = answer(ProcessingStatus.SCORING);
+        TestAnswer exhausted = answer(ProcessingStatus.TRANSCRIBING);
+        Long retriedJob = running(retried, 2, stale).getId();
+        Long exhaustedJob = running(exhausted, 3, stale).getId();
+
+        assertThat(answerJobService.requeueInterruptedJobs(false)).isEqualTo(1);
+
+        assertThat(jobRepository.findById(retriedJob).orElseThrow().getStatus()).isEqualTo(AnswerJobStatus.QUEUED);
+        assertThat(testAnswerRepository.findById(retried.getId()).orElseThrow().getProcessingStatus()).isEqualTo(ProcessingStatus.PENDING);
+        AnswerProcessingJob failed = jobRepository.findById(exhaustedJob).orElseThrow();
+        assertThat(failed.getStatus()).isEqualTo(AnswerJobStatus.FAILED);
+        assertThat(failed.getLastError()).isEqualTo("Interrupted after 3 attempts");
+        TestAnswer failedAnswer = testAnswerRepository.findById(exhausted.getId()).orElseThrow();
+        assertThat(failedAnswer.getProcessingStatus()).isEqualTo(ProcessingStatus.FAILED);
+        assertThat(failedAnswer.getFeedback()).contains("Interrupted after 3 attempts");
+    }
+
+    private TestAnswer answer(ProcessingStatus status) {
+        Exam exam = new Exam();
+        exam.setName("Exam");
+        exam.setTotalQuestions(1);
+        examRepository.save(exam);
+        Question question = new Question();
+        question.setContent("Describe your hometown.");
+        questionRepository.save(question);
+        TestSession session = new TestSession();
+        session.setExam(exam);
+        session.setStudentName("Student");
+        testSessionRepository.save(session);
+        TestAnswer answer = new TestAnswer();
+        answer.setTestSession(session);
+        answer.setQuestion(question);
+        answer.setAudioUrl("uploads/audio/answer.wav");
+        answer.setProcessingStatus(status);
+        return testAnswerRepository.save(answer);
+    }
+
+    private AnswerProcessingJob queued(TestAnswer answer, String tenantKey, long scheduleKey) {
+        AnswerProcessingJob job = new AnswerProcessingJob();
+        job.setTestAnswer(answer);
+        job.setTenantKey(tenantKey);
+        job.setScheduleKey(scheduleKey);
+        job.setAudioDurationMs(10_000L);
+        return jobRepository.save(job);
+    }
+
+    private AnswerProcessingJob running(TestAnswer answer, int attempts, LocalDateTime heartbeatAt) {
+        AnswerProcessingJob job = new AnswerProcessingJob();
+        job.setTestAnswer(answer);
+        job.setStatus(AnswerJobStatus.RUNNING);
+        job.setLockedBy(OTHER_NODE);
+        job.setAttempts(attempts);
+        job.setStartedAt(heartbeatAt);
+        job.setHeartbeatAt(heartbeatAt);
+        return jobRepository.save(job);
+    }
+}
@@ -0,0 +1,68 @@
+package com.aispeaking.service;
+
+import com.aispeaking.util.TestWavs;
+import com.aispeaking.util.WavHeader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AudioNormalizationServiceTest {
+    private static final int TARGET_RATE = 16000;
+
+    @TempDir
+    Path dir;
+
+    private final AudioNormalizationService service = new AudioNormalizationService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "targetRate", TARGET_RATE);
+    }
+
+    @Test
+    void normalizesStereo48kUpload() throws IOException {
+        byte[] wav = TestWavs.wav(2, 48000, 16, TestWavs.pcm16(TestWavs.tone(48000, 1000, 440, 8000), 2));
+        Path target = dir.resolve("stereo.wav");
+
+        long stored = service.store(new MockMultipartFile("audio", "stereo.wav", "audio/wav", wav), target);
+
+        assertThat(stored).isEqualTo(44 + TARGET_RATE * 2);
+        assertThat(WavHeader.read(target)).isEqualTo(new WavHeader(WavHeader.FORMAT_PCM, 1, TARGET_RATE, 16, 44, TARGET_RATE * 2));
+        assertThat(service.getStats()).containsEntry("normalized", 1L);
+    }
+
+    @Test
+    void storesHeaderWithOutOfRangeSampleRateAsIs() throws IOException {
+        byte[] wav = TestWavs.wav(1, 16000, 16, new byte[3200]);
+        // Header giả mạo: 1 Hz sẽ làm bộ chuyển ghi ra hàng chục nghìn mẫu cho mỗi khung vào
+        ByteBuffer.wrap(wav).order(ByteOrder.LITTLE_ENDIAN).putInt(24, 1);
+        Path target = dir.resolve("bogus.wav");
+
+        service.store(new MockMultipartFile("audio", "bogus.wav", "audio/wav", wav), target);
+
+        assertThat(Files.readAllBytes(target)).isEqualTo(wav);
+        assertThat(service.getStats()).containsEntry("storedAsIs", 1L).containsEntry("normalized", 0L);
+    }
+
+    @Test
+    void storesHeaderWithTooManyChannelsAsIs() throws IOException {
+        byte[] wav = TestWavs.wav(1, 48000, 16, new byte[3200]);
+        ByteBuffer.wrap(wav).order(ByteOrder.LITTLE_ENDIAN).putShort(22, (short) 65535);
+        Path target = dir.resolve("channels.wav");
+
+        service.store(new MockMultipartFile("audio", "channels.wav", "audio/wav", wav), target);
+
+        assertThat(Files.readAllBytes(target)).isEqualTo(wav);
+        assertThat(service.getStats()).containsEntry("storedAsIs", 1L);
+    }
+}
@@ -0,0 +1,207 @@
+package com.aispeaking.service;
+
+import com.aispeaking.client.WhisperClient;
+import com.aispeaking.repository.TestAnswerRepository;
+import com.aispeaking.util.TestWavs;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LiveTranscriptionServiceTest {
+    private static final int RATE = 16000;
+    private static final Long TEST_ANSWER_ID = 10L;
+
+    @TempDir
+    Path uploadDir;
+
+    private final TestAnswerRepository testAnswerRepository = mock(TestAnswerRepository.class);
+    private final AnswerJobService answerJobService = mock(AnswerJobService.class);
+    private final WhisperClient whisperClient = mock(WhisperClient.class);
+    private final List<String> segmentTexts = new CopyOnWriteArrayList<>();
+    private LiveTranscriptionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new LiveTranscriptionService(testAnswerRepository, answerJobService, mock(SubmissionAdmissionService.class),
+                whisperClient, mock(AIProcessingLogWriter.class), new ObjectMapper());
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "maxStreams", 4);
+        ReflectionTestUtils.setField(service, "maxDurationMs", 2000L);
+        // Một luồng chuyển giọng nói: các đoạn được gửi tới Whisper theo thứ tự
+        ReflectionTestUtils.setField(service, "transcriptionConcurrency", 1);
+        ReflectionTestUtils.setField(service, "finalizeTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(service, "frameMs", 20);
+        ReflectionTestUtils.setField(service, "thresholdDbfs", -40.0);
+        ReflectionTestUtils.setField(service, "minSilenceMs", 200L);
+        ReflectionTestUtils.setField(service, "minSegmentMs", 500L);
+        ReflectionTestUtils.setField(service, "maxSegmentMs", 5000L);
+        ReflectionTestUtils.setField(service, "uploadDir", uploadDir.toString());
+        service.start();
+        when(testAnswerRepository.findIdByTestSessionIdAndQuestionId(1L, 2L)).thenReturn(Optional.of(TEST_ANSWER_ID));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    void stopThenSubmitAcceptsStitchedTranscript() throws Exception {
+        when(whisperClient.transcribe(any())).thenReturn(transcript("first"), transcript("second"));
+        LiveTranscriptionService.LiveAnswerStream stream = open();
+        byte[] pcm = pcm(TestWavs.concat(speech(1000), TestWavs.silence(RATE, 400), speech(500)));
+        stream.write(ByteBuffer.wrap(pcm));
+
+        assertThat(stream.stop().get(5, TimeUnit.SECONDS)).isEqualTo("first second");
+        stream.submit().get(5, TimeUnit.SECONDS);
+
+        ArgumentCaptor<String> audioUrl = ArgumentCaptor.forClass(String.class);
+        verify(answerJobService).acceptStreamedSubmission(eq(TEST_ANSWER_ID), audioUrl.capture(), eq("first second"));
+        Path recording = Path.of(audioUrl.getValue());
+        assertThat(recording).startsWith(uploadDir.resolve("1"));
+        // Header WAV được ghi lại với kích thước thật khi dừng
+        assertThat(TestWavs.readSamples(recording)).hasSize(pcm.length / 2);
+        assertThat(segmentTexts).containsExactly("first", "second");
+        assertThat(service.getStats()).containsEntry("activeStreams", 0).containsEntry("streamsSubmitted", 1L)
+                .containsEntry("segmentsTranscribed", 2L).containsEntry("fallbacks", 0L);
+    }
+
+    @Test
+    void failedSegmentFallsBackToFullTranscription() throws Exception {
+        when(whisperClient.transcribe(any())).thenThrow(new RuntimeException("whisper down"));
+        LiveTranscriptionService.LiveAnswerStream stream = open();
+        stream.write(ByteBuffer.wrap(pcm(speech(600))));
+
+        stream.submit().get(5, TimeUnit.SECONDS);
+
+        verify(answerJobService).acceptStreamedSubmission(eq(TEST_ANSWER_ID), anyString(), isNull());
+        assertThat(service.getStats()).containsEntry("fallbacks", 1L).containsEntry("segmentFailures", 1L);
+    }
+
+    @Test
+    void discardWhileSubmittingStillSubmits() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(whisperClient.transcribe(any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return transcript("hello");
+        });
+        LiveTranscriptionService.LiveAnswerStream stream = open();
+        stream.write(ByteBuffer.wrap(pcm(speech(600))));
+
+        CompletableFuture<?> submitted = stream.submit();
+        // Mất kết nối trong lúc đang chờ đoạn cuối: bài vẫn được nộp
+        stream.discard();
+        assertThat(submitted).isNotDone();
+        release.countDown();
+        submitted.get(5, TimeUnit.SECONDS);
+
+        verify(answerJobService).acceptStreamedSubmission(eq(TEST_ANSWER_ID), anyString(), eq("hello"));
+        assertThat(recordings()).hasSize(1);
+        assertThat(service.getStats()).containsEntry("activeStreams", 0).containsEntry("streamsSubmitted", 1L)
+                .containsEntry("streamsDiscarded", 0L);
+    }
+
+    @Test
+    void discardAfterFailedSubmitDeletesRecording() throws Exception {
+        when(whisperClient.transcribe(any())).thenReturn(transcript("hello"));
+        when(answerJobService.acceptStreamedSubmission(any(), any(), any())).thenThrow(new RuntimeException("database down"));
+        LiveTranscriptionService.LiveAnswerStream stream = open();
+        stream.write(ByteBuffer.wrap(pcm(speech(600))));
+
+        assertThatThrownBy(() -> stream.submit().get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+                .hasRootCauseMessage("database down");
+        // Nộp thất bại: bản ghi vẫn giữ để client nộp lại hoặc bỏ
+        assertThat(recordings()).hasSize(1);
+        assertThat(service.getStats()).containsEntry("activeStreams", 1);
+
+        stream.discard();
+
+        assertThat(recordings()).isEmpty();
+        assertThat(service.getStats()).containsEntry("activeStreams", 0).containsEntry("streamsDiscarded", 1L);
+    }
+
+    @Test
+    void discardRequestedDuringFailedSubmitDeletesRecording() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(whisperClient.transcribe(any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return transcript("hello");
+        });
+        when(answerJobService.acceptStreamedSubmission(any(), any(), any())).thenThrow(new RuntimeException("database down"));
+        LiveTranscriptionService.LiveAnswerStream stream = open();
+        stream.write(ByteBuffer.wrap(pcm(speech(600))));
+
+        CompletableFuture<?> submitted = stream.submit();
+        stream.discard();
+        release.countDown();
+
+        assertThatThrownBy(() -> submitted.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+        // Không còn kết nối để nộp lại: bản ghi bị bỏ ngay khi nộp thất bại
+        assertThat(recordings()).isEmpty();
+        assertThat(service.getStats()).containsEntry("activeStreams", 0).containsEntry("streamsDiscarded", 1L);
+    }
+
+    @Test
+    void writeBeyondMaxDurationIsRejected() throws Exception {
+        LiveTranscriptionService.LiveAnswerStream stream = open();
+        // max-duration 2 s ở 16 kHz = 64000 byte; ghi vừa đủ thì được
+        stream.write(ByteBuffer.wrap(new byte[64000]));
+
+        assertThatThrownBy(() -> stream.write(ByteBuffer.wrap(new byte[2])))
+                .hasMessageContaining("exceeds maximum duration of 2s");
+
+        stream.stop().get(5, TimeUnit.SECONDS);
+        assertThat(TestWavs.readSamples(recordings().get(0))).hasSize(32000);
+        assertThatThrownBy(() -> stream.write(ByteBuffer.wrap(new byte[2]))).hasMessage("Recording already stopped");
+        stream.discard();
+        assertThat(recordings()).isEmpty();
+    }
+
+    private LiveTranscriptionService.LiveAnswerStream open() throws IOException {
+        return service.open(1L, 2L, RATE, (index, startMs, endMs, text) -> segmentTexts.add(text));
+    }
+
+    private List<Path> recordings() throws IOException {
+        try (Stream<Path> files = Files.walk(uploadDir)) {
+            return files.filter(file -> file.toString().endsWith(".wav")).toList();
+        }
+    }
+
+    private static String transcript(String text) {
+        return "{\"transcribedText\":\"" + text + "\",\"language\":\"en\"}";
+    }
+
+    private static short[] speech(long durationMs) {
+        return TestWavs.tone(RATE, durationMs, 440, 8000);
+    }
+
+    private static byte[] pcm(short[] samples) {
+        return TestWavs.pcm16(samples, 1);
+    }
+}
@@ -0,0 +1,170 @@
+package com.aispeaking.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PipelineStageTest {
+    private final List<PipelineStage<?>> stages = new ArrayList<>();
+
+    @AfterEach
+    void stopStages() {
+        stages.forEach(PipelineStage::stop);
+    }
+
+    @Test
+    void offerFailsWhenQueueIsFull() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PipelineStage<Integer> stage = stage("whisper", 1, 2, item -> {
+            started.countDown();
+            await(release);
+        });
+
+        assertThat(stage.offer(1)).isTrue();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(stage.offer(2)).isTrue();
+        assertThat(stage.offer(3)).isTrue();
+        assertThat(stage.offer(4)).isFalse();
+        assertThat(stage.remainingCapacity()).isZero();
+        assertThat(stage.getStats()).containsEntry("busyWorkers", 1).containsEntry("queueDepth", 2);
+        release.countDown();
+    }
+
+    @Test
+    void runsAtMostConcurrencyHandlersAtOnce() throws InterruptedException {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(12);
+        PipelineStage<Integer> stage = stage("qwen", 3, 20, item -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep(20);
+            running.decrementAndGet();
+            done.countDown();
+        });
+
+        for (int i = 0; i < 12; i++) {
+            assertThat(stage.offer(i)).isTrue();
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxRunning.get()).isEqualTo(3);
+    }
+
+    @Test
+    void workerSurvivesHandlerFailure() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        PipelineStage<Integer> stage = stage("qwen", 1, 5, item -> {
+            if (item == 1) {
+                throw new IllegalStateException("boom");
+            }
+            done.countDown();
+        });
+
+        stage.offer(1);
+        stage.offer(2);
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        awaitProcessed(stage, 2);
+        assertThat(stage.getStats()).containsEntry("failed", 1L).containsEntry("processed", 2L);
+    }
+
+    @Test
+    void nextAnswerIsTranscribedWhileCurrentOneIsScored() throws InterruptedException {
+        List<String> events = new CopyOnWriteArrayList<>();
+        CountDownLatch secondTranscribed = new CountDownLatch(1);
+        CountDownLatch scored = new CountDownLatch(2);
+        PipelineStage<Integer> scoring = stage("qwen", 1, 5, item -> {
+            events.add("score-start-" + item);
+            if (item == 1) {
+                // Chấm câu 1 chỉ xong sau khi câu 2 đã chuyển giọng nói xong
+                await(secondTranscribed);
+            }
+            events.add("score-end-" + item);
+            scored.countDown();
+        });
+        PipelineStage<Integer> transcription = stage("whisper", 1, 5, item -> {
+            events.add("transcribed-" + item);
+            try {
+                scoring.put(item);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (item == 2) {
+                secondTranscribed.countDown();
+            }
+        });
+
+        transcription.offer(1);
+        transcription.offer(2);
+
+        assertThat(scored.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(events.indexOf("transcribed-2")).isLessThan(events.indexOf("score-end-1"));
+        assertThat(events.indexOf("score-start-1")).isLessThan(events.indexOf("score-end-1"));
+    }
+
+    @Test
+    void workersFollowVirtualThreadSetting() throws InterruptedException {
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        Consumer<Integer> recordThread = item -> {
+            threads.add(Thread.currentThread());
+            done.countDown();
+        };
+        stage("whisper", 1, 5, true, recordThread).offer(1);
+        stage("qwen", 1, 5, false, recordThread).offer(2);
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(threads).anySatisfy(thread -> {
+            assertThat(thread.isVirtual()).isTrue();
+            assertThat(thread.getName()).isEqualTo("whisper-worker-1");
+        });
+        assertThat(threads).anySatisfy(thread -> {
+            assertThat(thread.isVirtual()).isFalse();
+            assertThat(thread.isDaemon()).isTrue();
+            assertThat(thread.getName()).isEqualTo("qwen-worker-1");
+        });
+    }
+
+    private <T> PipelineStage<T> stage(String name, int concurrency, int capacity, Consumer<T> handler) {
+        return stage(name, concurrency, capacity, false, handler);
+    }
+
+    private <T> PipelineStage<T> stage(String name, int concurrency, int capacity, boolean virtualThreads, Consumer<T> handler) {
+        PipelineStage<T> stage = new PipelineStage<>(name, concurrency, capacity, virtualThreads, handler);
+        stage.start();
+        stages.add(stage);
+        return stage;
+    }
+
+    private static void awaitProcessed(PipelineStage<?> stage, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((Long) stage.getStats().get("processed") < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
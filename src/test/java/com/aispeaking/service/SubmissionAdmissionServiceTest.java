@@ -0,0 +1,128 @@
+package com.aispeaking.service;
+
+import com.aispeaking.client.WhisperClient;
+import com.aispeaking.repository.AnswerProcessingJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SubmissionAdmissionServiceTest {
+    private final AnswerProcessingJobRepository jobRepository = mock(AnswerProcessingJobRepository.class);
+    private final WhisperClient whisperClient = mock(WhisperClient.class);
+    private SubmissionAdmissionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new SubmissionAdmissionService(jobRepository, whisperClient);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "maxOutstandingJobs", 10L);
+        ReflectionTestUtils.setField(service, "maxBufferedBytes", 1000L);
+        ReflectionTestUtils.setField(service, "minRetryAfterSeconds", 1L);
+        ReflectionTestUtils.setField(service, "maxRetryAfterSeconds", 120L);
+    }
+
+    @Test
+    void retryAfterIsComputedFromDrainRate() {
+        outstanding(12);
+        // 30 công việc kết thúc trong phút gần nhất: 0,5 công việc/giây
+        for (int i = 0; i < 30; i++) {
+            service.onJobFinished();
+        }
+
+        // Vượt 3 công việc (12 - 10 + 1) ở 0,5 công việc/giây: thử lại sau 6 giây
+        assertRejected(100, HttpStatus.TOO_MANY_REQUESTS, 6);
+        assertThat(service.getStats()).containsEntry("drainRatePerSecond", 0.5).containsEntry("rejectedOverloaded", 1L);
+    }
+
+    @Test
+    void retryAfterHasDefaultWithoutHistory() {
+        outstanding(12);
+
+        // Chưa có công việc nào kết thúc: chưa ước tính được tốc độ
+        assertRejected(100, HttpStatus.TOO_MANY_REQUESTS, 10);
+    }
+
+    @Test
+    void retryAfterIsClampedToMax() {
+        outstanding(10_000);
+        service.onJobFinished();
+
+        assertRejected(100, HttpStatus.TOO_MANY_REQUESTS, 120);
+    }
+
+    @Test
+    void admittedSubmissionsCountBeforeNextDatabaseCount() {
+        outstanding(9);
+
+        service.admit(100).close();
+
+        // Bài vừa nhận được cộng vào số đếm cũ cho tới lần đếm lại
+        assertRejected(100, HttpStatus.TOO_MANY_REQUESTS, 10);
+    }
+
+    @Test
+    void bufferedBytesLimitRejectsUntilPermitIsClosed() {
+        outstanding(0);
+        SubmissionAdmissionService.Permit first = service.admit(600);
+
+        assertRejected(600, HttpStatus.TOO_MANY_REQUESTS, 1);
+        assertThat(service.getStats()).containsEntry("bufferedBytes", 600L).containsEntry("rejectedBuffer", 1L);
+
+        first.close();
+        first.close();
+        service.admit(600).close();
+        assertThat(service.getStats()).containsEntry("bufferedBytes", 0L).containsEntry("admitted", 2L);
+    }
+
+    @Test
+    void firstOversizedUploadIsAlwaysAdmitted() {
+        outstanding(0);
+
+        SubmissionAdmissionService.Permit oversized = service.admit(5000);
+
+        // Đang có một file lớn hơn giới hạn: file tiếp theo phải chờ
+        assertRejected(1, HttpStatus.TOO_MANY_REQUESTS, 1);
+        oversized.close();
+        assertThat(service.getStats()).containsEntry("bufferedBytes", 0L);
+    }
+
+    @Test
+    void openBreakerReturns503WithRemainingTime() {
+        when(whisperClient.remainingOpenMs()).thenReturn(4500L);
+
+        assertRejected(100, HttpStatus.SERVICE_UNAVAILABLE, 5);
+        assertThat(service.getStats()).containsEntry("rejectedUnavailable", 1L);
+        verify(jobRepository, never()).countByStatusInAndPriorityLessThan(anyList(), anyInt());
+    }
+
+    @Test
+    void disabledAdmissionAcceptsEverything() {
+        ReflectionTestUtils.setField(service, "enabled", false);
+        when(whisperClient.remainingOpenMs()).thenReturn(4500L);
+
+        service.admit(1_000_000).close();
+
+        assertThat(service.getStats()).containsEntry("bufferedBytes", 0L);
+    }
+
+    private void outstanding(long count) {
+        when(jobRepository.countByStatusInAndPriorityLessThan(anyList(), anyInt())).thenReturn(count);
+    }
+
+    private void assertRejected(long bytes, HttpStatus status, long retryAfterSeconds) {
+        assertThatThrownBy(() -> service.admit(bytes)).isInstanceOfSatisfying(AdmissionRejectedException.class, e -> {
+            assertThat(e.getStatus()).isEqualTo(status);
+            assertThat(e.getRetryAfterSeconds()).isEqualTo(retryAfterSeconds);
+        });
+    }
+}
@@ -0,0 +1,119 @@
+package com.aispeaking.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TenantFairQueueTest {
+    private static final List<String> TENANTS = List.of("exam:1", "exam:2");
+
+    @Test
+    void claimsAreSharedInProportionToWeight() {
+        TenantFairQueue queue = queue("exam:1=2", "");
+
+        List<String> order = claim(queue, TENANTS, 30, 1000);
+
+        assertThat(Collections.frequency(order, "exam:1")).isEqualTo(20);
+        assertThat(Collections.frequency(order, "exam:2")).isEqualTo(10);
+        // Xen kẽ đều: không tenant nào được nhận quá 2 lượt liên tiếp
+        assertThat(String.join(",", order)).doesNotContain("exam:1,exam:1,exam:1").doesNotContain("exam:2,exam:2");
+    }
+
+    @Test
+    void longerAudioCostsMoreVirtualTime() {
+        TenantFairQueue queue = queue("", "");
+        List<String> order = new ArrayList<>();
+
+        for (int i = 0; i < 14; i++) {
+            String tenant = queue.next(TENANTS, Map.of());
+            order.add(tenant);
+            // exam:1 nộp câu trả lời 60 s, exam:2 câu trả lời 10 s
+            queue.onClaimed(tenant, tenant.equals("exam:1") ? 60_000L : 10_000L);
+        }
+
+        assertThat(Collections.frequency(order, "exam:1")).isEqualTo(2);
+        assertThat(Collections.frequency(order, "exam:2")).isEqualTo(12);
+    }
+
+    @Test
+    void tenantAtConcurrencyCapIsSkipped() {
+        TenantFairQueue queue = queue("", "exam:1=1");
+
+        // exam:1 có thời gian ảo nhỏ hơn nhưng đã chạy đủ 1 công việc
+        assertThat(queue.next(TENANTS, Map.of("exam:1", 1L))).isEqualTo("exam:2");
+        assertThat(queue.next(List.of("exam:1"), Map.of("exam:1", 1L))).isNull();
+        assertThat(queue.next(TENANTS, Map.of("exam:2", 5L))).isEqualTo("exam:1");
+    }
+
+    @Test
+    void defaultConcurrencyCapAppliesToEveryTenant() {
+        TenantFairQueue queue = queue("", "");
+        ReflectionTestUtils.setField(queue, "defaultMaxConcurrency", 2);
+
+        assertThat(queue.next(TENANTS, Map.of("exam:1", 2L, "exam:2", 2L))).isNull();
+        assertThat(queue.next(TENANTS, Map.of("exam:1", 2L, "exam:2", 1L))).isEqualTo("exam:2");
+    }
+
+    @Test
+    void idleTenantRestartsAtSystemVirtualTime() {
+        TenantFairQueue queue = queue("", "");
+        claim(queue, List.of("exam:1"), 10, 1000);
+
+        // exam:2 bắt đầu từ thời gian ảo hiện tại, không được bù 10 lượt đã bỏ lỡ
+        List<String> order = claim(queue, TENANTS, 4, 1000);
+
+        assertThat(order).containsExactly("exam:2", "exam:1", "exam:2", "exam:1");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void statsCombineDatabaseCountsWithServedAudio() {
+        TenantFairQueue queue = queue("exam:1=3", "");
+        claim(queue, List.of("exam:1"), 2, 1500);
+
+        Map<String, Object> stats = queue.getStats(Map.of("exam:2", 4L), Map.of("exam:1", 1L));
+
+        Map<String, Map<String, Object>> tenants = (Map<String, Map<String, Object>>) stats.get("tenants");
+        assertThat(tenants).containsOnlyKeys("exam:1", "exam:2");
+        assertThat(tenants.get("exam:1")).containsEntry("weight", 3.0).containsEntry("running", 1L)
+                .containsEntry("claimed", 2L).containsEntry("claimsLastMinute", 2).containsEntry("servedAudioSeconds", 3L);
+        assertThat(tenants.get("exam:2")).containsEntry("queued", 4L).containsEntry("claimed", 0L);
+    }
+
+    @Test
+    void malformedOverrideIsRejected() {
+        assertThatThrownBy(() -> queue("exam:1", "")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static TenantFairQueue queue(String weights, String maxConcurrency) {
+        TenantFairQueue queue = new TenantFairQueue();
+        ReflectionTestUtils.setField(queue, "enabled", true);
+        ReflectionTestUtils.setField(queue, "tenantKey", TenantFairQueue.TenantKey.EXAM);
+        ReflectionTestUtils.setField(queue, "defaultWeight", 1.0);
+        ReflectionTestUtils.setField(queue, "defaultMaxConcurrency", 0);
+        ReflectionTestUtils.setField(queue, "weightsProperty", weights);
+        ReflectionTestUtils.setField(queue, "maxConcurrencyProperty", maxConcurrency);
+        ReflectionTestUtils.setField(queue, "defaultAudioMs", 30000L);
+        queue.init();
+        return queue;
+    }
+
+    /**
+     * Nhận count công việc có cùng độ dài audioMs, luôn còn việc ở mọi tenant; trả về thứ tự tenant được chọn
+     */
+    private static List<String> claim(TenantFairQueue queue, List<String> tenants, int count, long audioMs) {
+        List<String> order = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String tenant = queue.next(tenants, Map.of());
+            order.add(tenant);
+            queue.onClaimed(tenant, audioMs);
+        }
+        return order;
+    }
+}
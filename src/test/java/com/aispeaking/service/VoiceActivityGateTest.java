@@ -0,0 +1,138 @@
+package com.aispeaking.service;
+
+import com.aispeaking.util.TestWavs;
+import com.aispeaking.util.WavHeader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+class VoiceActivityGateTest {
+    private static final int RATE = 16000;
+    private static final long EXAM_ID = 7L;
+
+    @TempDir
+    Path dir;
+
+    private final VoiceActivityGate gate = new VoiceActivityGate();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(gate, "enabled", true);
+        ReflectionTestUtils.setField(gate, "thresholdDbfs", -40.0);
+        ReflectionTestUtils.setField(gate, "minSpeechMs", 300L);
+        ReflectionTestUtils.setField(gate, "trimPaddingMs", 300L);
+        ReflectionTestUtils.setField(gate, "minTrimMs", 1000L);
+        ReflectionTestUtils.setField(gate, "maxTrackedExams", 1);
+    }
+
+    @Test
+    void rejectsQuietNoiseAsNoSpeech() throws IOException {
+        // Biên độ 100 ≈ -50 dBFS RMS, dưới ngưỡng -40 dBFS
+        Path file = TestWavs.writeMono16(dir.resolve("noise.wav"), RATE, TestWavs.tone(RATE, 3000, 200, 100));
+
+        AudioRejectedException rejected = catchThrowableOfType(AudioRejectedException.class, () -> gate.check(EXAM_ID, file));
+
+        assertThat(rejected.getReason()).isEqualTo(AudioRejectedException.NO_SPEECH);
+        assertThat(rejected.getFeedback()).isNotBlank();
+        assertThat(total()).containsEntry("checked", 1L).containsEntry("rejectedNoSpeech", 1L).containsEntry("secondsSaved", 3.0);
+    }
+
+    @Test
+    void rejectsSpeechShorterThanMinimum() throws IOException {
+        Path file = TestWavs.writeMono16(dir.resolve("blip.wav"), RATE, TestWavs.concat(
+                TestWavs.silence(RATE, 1000), TestWavs.tone(RATE, 200, 300, 8000), TestWavs.silence(RATE, 1000)));
+
+        AudioRejectedException rejected = catchThrowableOfType(AudioRejectedException.class, () -> gate.check(EXAM_ID, file));
+
+        assertThat(rejected.getReason()).isEqualTo(AudioRejectedException.NO_SPEECH);
+    }
+
+    @Test
+    void rejectsRiffFileWithoutAudioAsCorrupt() throws IOException {
+        Path noDataChunk = Files.write(dir.resolve("broken.wav"), Arrays.copyOf(WavHeader.pcmHeader(1, RATE, 16, 0), 36));
+        Path emptyData = TestWavs.writeMono16(dir.resolve("empty.wav"), RATE, new short[0]);
+
+        assertThat(catchThrowableOfType(AudioRejectedException.class, () -> gate.check(EXAM_ID, noDataChunk)).getReason())
+                .isEqualTo(AudioRejectedException.CORRUPT_AUDIO);
+        assertThat(catchThrowableOfType(AudioRejectedException.class, () -> gate.check(EXAM_ID, emptyData)).getReason())
+                .isEqualTo(AudioRejectedException.CORRUPT_AUDIO);
+        assertThat(total()).containsEntry("rejectedCorrupt", 2L);
+    }
+
+    @Test
+    void passesThroughUnsupportedFormats() throws IOException {
+        Path ogg = Files.write(dir.resolve("a.ogg"), "OggS not a wav file".getBytes());
+        Path pcm8 = TestWavs.write(dir.resolve("pcm8.wav"), 1, RATE, 8, new byte[RATE]);
+
+        assertThat(gate.check(EXAM_ID, ogg)).isNull();
+        assertThat(gate.check(EXAM_ID, pcm8)).isNull();
+    }
+
+    @Test
+    void trimsLeadingAndTrailingSilenceKeepingPadding() throws IOException {
+        short[] speech = TestWavs.tone(RATE, 2000, 300, 8000);
+        short[] samples = TestWavs.concat(TestWavs.silence(RATE, 1000), speech, TestWavs.silence(RATE, 2000));
+        Path file = TestWavs.writeMono16(dir.resolve("speech.wav"), RATE, samples);
+
+        VoiceActivityGate.SpeechRange range = gate.check(EXAM_ID, file);
+
+        // Tiếng nói ở 1000-3000ms, giữ thêm 300ms mỗi phía
+        assertThat(range.chunk().startMs()).isEqualTo(700);
+        assertThat(range.chunk().endMs()).isEqualTo(3300);
+        assertThat(range.trimmedMs()).isEqualTo(2400);
+        assertThat(range.chunk().dataStart()).isEqualTo(700 * RATE / 1000 * 2);
+        assertThat(range.chunk().dataLength()).isEqualTo(2600 * RATE / 1000 * 2);
+
+        Path trimmed = gate.writeTrimmed(EXAM_ID, file, range);
+        try {
+            assertThat(TestWavs.readSamples(trimmed)).containsExactly(Arrays.copyOfRange(samples, 700 * RATE / 1000, 3300 * RATE / 1000));
+        } finally {
+            Files.delete(trimmed);
+        }
+        assertThat(total()).containsEntry("checked", 1L).containsEntry("trimmed", 1L).containsEntry("secondsSaved", 2.4);
+    }
+
+    @Test
+    void keepsWholeFileWhenTrimIsBelowMinimum() throws IOException {
+        Path file = TestWavs.writeMono16(dir.resolve("full.wav"), RATE, TestWavs.concat(
+                TestWavs.silence(RATE, 200), TestWavs.tone(RATE, 4600, 300, 8000), TestWavs.silence(RATE, 200)));
+
+        assertThat(gate.check(EXAM_ID, file)).isNull();
+        assertThat(total()).containsEntry("checked", 1L).containsEntry("trimmed", 0L);
+    }
+
+    @Test
+    void disabledGateChecksNothing() throws IOException {
+        ReflectionTestUtils.setField(gate, "enabled", false);
+        Path file = TestWavs.writeMono16(dir.resolve("silent.wav"), RATE, TestWavs.silence(RATE, 3000));
+
+        assertThat(gate.check(EXAM_ID, file)).isNull();
+        assertThat(total()).containsEntry("checked", 0L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void tracksOnlyUpToMaxExams() throws IOException {
+        Path file = TestWavs.writeMono16(dir.resolve("silent.wav"), RATE, TestWavs.silence(RATE, 1000));
+
+        catchThrowableOfType(AudioRejectedException.class, () -> gate.check(EXAM_ID, file));
+        catchThrowableOfType(AudioRejectedException.class, () -> gate.check(EXAM_ID + 1, file));
+
+        assertThat(total()).containsEntry("rejectedNoSpeech", 2L);
+        assertThat((Map<String, Object>) gate.getStats().get("exams")).containsOnlyKeys(String.valueOf(EXAM_ID));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> total() {
+        return (Map<String, Object>) gate.getStats().get("total");
+    }
+}
@@ -0,0 +1,92 @@
+package com.aispeaking.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Sinh dữ liệu PCM 16-bit và file WAV cho test: sóng sin (tiếng nói giả) xen với khoảng lặng
+ */
+public final class TestWavs {
+
+    private TestWavs() {
+    }
+
+    /**
+     * Mẫu 16-bit mono dạng sin: durationMs ms, tần số frequency Hz, biên độ amplitude (0 = im lặng)
+     */
+    public static short[] tone(int sampleRate, long durationMs, double frequency, int amplitude) {
+        short[] samples = new short[(int) (sampleRate * durationMs / 1000)];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) Math.round(amplitude * Math.sin(2 * Math.PI * frequency * i / sampleRate));
+        }
+        return samples;
+    }
+
+    public static short[] silence(int sampleRate, long durationMs) {
+        return new short[(int) (sampleRate * durationMs / 1000)];
+    }
+
+    public static short[] concat(short[]... parts) {
+        int length = 0;
+        for (short[] part : parts) {
+            length += part.length;
+        }
+        short[] samples = new short[length];
+        int position = 0;
+        for (short[] part : parts) {
+            System.arraycopy(part, 0, samples, position, part.length);
+            position += part.length;
+        }
+        return samples;
+    }
+
+    /**
+     * PCM 16-bit little-endian, mỗi mẫu lặp lại cho đủ channels kênh
+     */
+    public static byte[] pcm16(short[] samples, int channels) {
+        ByteBuffer buffer = ByteBuffer.allocate(samples.length * channels * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (short sample : samples) {
+            for (int c = 0; c < channels; c++) {
+                buffer.putShort(sample);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Nội dung file WAV với header chuẩn 44 byte
+     */
+    public static byte[] wav(int channels, int sampleRate, int bitsPerSample, byte[] data) {
+        byte[] header = WavHeader.pcmHeader(channels, sampleRate, bitsPerSample, data.length);
+        byte[] bytes = new byte[header.length + data.length];
+        System.arraycopy(header, 0, bytes, 0, header.length);
+        System.arraycopy(data, 0, bytes, header.length, data.length);
+        return bytes;
+    }
+
+    public static Path write(Path file, int channels, int sampleRate, int bitsPerSample, byte[] data) throws IOException {
+        return Files.write(file, wav(channels, sampleRate, bitsPerSample, data));
+    }
+
+    public static Path writeMono16(Path file, int sampleRate, short[] samples) throws IOException {
+        return write(file, 1, sampleRate, 16, pcm16(samples, 1));
+    }
+
+    /**
+     * Đọc các mẫu 16-bit của kênh đầu tiên trong file WAV
+     */
+    public static short[] readSamples(Path file) throws IOException {
+        WavHeader header = WavHeader.read(file);
+        byte[] bytes = Files.readAllBytes(file);
+        int blockAlign = header.channels() * header.bitsPerSample() / 8;
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        short[] samples = new short[(int) (header.dataSize() / blockAlign)];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = buffer.getShort((int) header.dataOffset() + i * blockAlign);
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,142 @@
+package com.aispeaking.util;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VoiceActivitySegmenterTest {
+    private static final int RATE = 16000;
+    private static final int SPEECH_RMS = VoiceActivitySegmenter.rmsForDbfs(-40);
+
+    @Test
+    void rmsForDbfsMatchesAmplitude() {
+        assertThat(SPEECH_RMS).isEqualTo(328);
+        assertThat(VoiceActivitySegmenter.rmsForDbfs(0)).isEqualTo(32768);
+    }
+
+    @Test
+    void cutsInTheMiddleOfSilenceAfterMinSegment() {
+        byte[] pcm = pcm(TestWavs.concat(speech(1000), TestWavs.silence(RATE, 400), speech(600)));
+
+        List<VoiceActivitySegmenter.Segment> segments = segmentAll(segmenter(), pcm, pcm.length);
+
+        // Cắt khi đủ 200 ms im lặng (khung 60), ở giữa khoảng lặng đó (khung 55)
+        assertThat(segments).extracting(VoiceActivitySegmenter.Segment::startMs).containsExactly(0L, 1100L);
+        assertThat(segments).extracting(VoiceActivitySegmenter.Segment::endMs).containsExactly(1100L, 2000L);
+        assertThat(segments).allMatch(VoiceActivitySegmenter.Segment::hasSpeech);
+        assertThat(concat(segments)).isEqualTo(pcm);
+    }
+
+    @Test
+    void shortPauseBeforeMinSegmentDoesNotCut() {
+        // Khoảng lặng đủ dài nhưng kết thúc (khung 20) trước khi đoạn đạt min-segment (khung 25)
+        byte[] pcm = pcm(TestWavs.concat(speech(100), TestWavs.silence(RATE, 300), speech(400)));
+
+        List<VoiceActivitySegmenter.Segment> segments = segmentAll(segmenter(), pcm, pcm.length);
+
+        assertThat(segments).singleElement().satisfies(segment -> {
+            assertThat(segment.startMs()).isZero();
+            assertThat(segment.endMs()).isEqualTo(800);
+        });
+    }
+
+    @Test
+    void longSpeechIsCutAtQuietestFrameOfSecondHalf() {
+        // Khung 75 nhỏ hơn nhưng vẫn là tiếng nói; không có khoảng lặng nên cắt khi đủ max-segment (100 khung)
+        byte[] pcm = pcm(TestWavs.concat(speech(1500), TestWavs.tone(RATE, 20, 440, 2000), speech(1480)));
+
+        List<VoiceActivitySegmenter.Segment> segments = segmentAll(segmenter(), pcm, pcm.length);
+
+        assertThat(segments.get(0).endMs()).isEqualTo(1520);
+        assertThat(segments).allSatisfy(segment -> assertThat(segment.endMs() - segment.startMs()).isLessThanOrEqualTo(2000));
+        for (int i = 1; i < segments.size(); i++) {
+            assertThat(segments.get(i).startMs()).isEqualTo(segments.get(i - 1).endMs());
+            assertThat(segments.get(i).index()).isEqualTo(i);
+        }
+        assertThat(concat(segments)).isEqualTo(pcm);
+    }
+
+    @Test
+    void chunkedInputGivesSameSegmentsAsSingleAppend() {
+        byte[] pcm = pcm(TestWavs.concat(speech(800), TestWavs.silence(RATE, 500), speech(900), TestWavs.silence(RATE, 300)));
+
+        List<VoiceActivitySegmenter.Segment> whole = segmentAll(segmenter(), pcm, pcm.length);
+        // Kích thước lẻ: khung và mẫu bị cắt ngang giữa các lần append
+        List<VoiceActivitySegmenter.Segment> chunked = segmentAll(segmenter(), pcm, 333);
+
+        assertThat(chunked).extracting(VoiceActivitySegmenter.Segment::endMs)
+                .containsExactlyElementsOf(whole.stream().map(VoiceActivitySegmenter.Segment::endMs).toList());
+        assertThat(concat(chunked)).isEqualTo(pcm);
+    }
+
+    @Test
+    void silenceOnlyIsOneSilentSegment() {
+        VoiceActivitySegmenter segmenter = segmenter();
+        byte[] pcm = pcm(TestWavs.silence(RATE, 1000));
+
+        assertThat(segmenter.append(pcm, 0, pcm.length)).isEmpty();
+        VoiceActivitySegmenter.Segment last = segmenter.flush();
+
+        assertThat(last.hasSpeech()).isFalse();
+        assertThat(last.endMs()).isEqualTo(1000);
+        assertThat(segmenter.flush()).isNull();
+    }
+
+    @Test
+    void flushCountsTrailingPartialFrame() {
+        VoiceActivitySegmenter segmenter = segmenter();
+        byte[] pcm = pcm(speech(30));
+
+        assertThat(segmenter.append(pcm, 0, pcm.length)).isEmpty();
+        VoiceActivitySegmenter.Segment last = segmenter.flush();
+
+        assertThat(last.endMs()).isEqualTo(30);
+        assertThat(last.hasSpeech()).isTrue();
+        assertThat(last.pcm()).isEqualTo(pcm);
+    }
+
+    @Test
+    void flushOnEmptyStreamReturnsNull() {
+        assertThat(segmenter().flush()).isNull();
+    }
+
+    private static VoiceActivitySegmenter segmenter() {
+        return new VoiceActivitySegmenter(RATE, 20, SPEECH_RMS, 200, 500, 2000);
+    }
+
+    private static short[] speech(long durationMs) {
+        return TestWavs.tone(RATE, durationMs, 440, 8000);
+    }
+
+    private static byte[] pcm(short[] samples) {
+        return TestWavs.pcm16(samples, 1);
+    }
+
+    /**
+     * Đưa pcm vào theo từng phần chunk byte rồi flush
+     */
+    private static List<VoiceActivitySegmenter.Segment> segmentAll(VoiceActivitySegmenter segmenter, byte[] pcm, int chunk) {
+        List<VoiceActivitySegmenter.Segment> segments = new ArrayList<>();
+        for (int offset = 0; offset < pcm.length; offset += chunk) {
+            segments.addAll(segmenter.append(pcm, offset, Math.min(chunk, pcm.length - offset)));
+        }
+        VoiceActivitySegmenter.Segment last = segmenter.flush();
+        if (last != null) {
+            segments.add(last);
+        }
+        return segments;
+    }
+
+    private static byte[] concat(List<VoiceActivitySegmenter.Segment> segments) {
+        int length = segments.stream().mapToInt(segment -> segment.pcm().length).sum();
+        byte[] pcm = new byte[length];
+        int position = 0;
+        for (VoiceActivitySegmenter.Segment segment : segments) {
+            System.arraycopy(segment.pcm(), 0, pcm, position, segment.pcm().length);
+            position += segment.pcm().length;
+        }
+        return pcm;
+    }
+}
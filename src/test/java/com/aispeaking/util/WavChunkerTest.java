@@ -0,0 +1,91 @@
+package com.aispeaking.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WavChunkerTest {
+    private static final int RATE = 16000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void frameRmsSeparatesToneFromSilence() throws IOException {
+        Path file = TestWavs.writeMono16(dir.resolve("a.wav"), RATE,
+                TestWavs.concat(TestWavs.tone(RATE, 100, 440, 10000), TestWavs.silence(RATE, 100)));
+        int[] rms = WavChunker.frameRms(file, WavHeader.read(file), 20);
+
+        assertThat(rms).hasSize(10);
+        // RMS của sin biên độ A là A / sqrt(2)
+        assertThat(Arrays.stream(rms, 0, 5)).allSatisfy(value -> assertThat(value).isBetween(7000, 7150));
+        assertThat(Arrays.copyOfRange(rms, 5, 10)).containsOnly(0);
+    }
+
+    @Test
+    void shortFileIsASingleChunk() throws IOException {
+        Path file = TestWavs.writeMono16(dir.resolve("short.wav"), RATE, TestWavs.tone(RATE, 40_000, 300, 8000));
+        WavHeader header = WavHeader.read(file);
+
+        List<WavChunker.Chunk> chunks = WavChunker.plan(file, header, 30_000, 1000, 3000);
+
+        assertThat(chunks).containsExactly(new WavChunker.Chunk(0, 0, 40_000, 0, header.dataSize()));
+    }
+
+    @Test
+    void cutsAtQuietestFrameNearTargetWithOverlap() throws IOException {
+        // Khoảng lặng 200ms bắt đầu ở 31s, trong cửa sổ ±3s quanh mốc 30s
+        short[] samples = TestWavs.concat(TestWavs.tone(RATE, 31_000, 300, 8000), TestWavs.silence(RATE, 200),
+                TestWavs.tone(RATE, 28_800, 300, 8000));
+        Path file = TestWavs.writeMono16(dir.resolve("long.wav"), RATE, samples);
+        WavHeader header = WavHeader.read(file);
+
+        List<WavChunker.Chunk> chunks = WavChunker.plan(file, header, 30_000, 1000, 3000);
+
+        assertThat(chunks).hasSize(2);
+        long frameBytes = RATE / 50 * 2;
+        int cutFrame = 31_000 / 20;
+        int overlapFrames = 1000 / 20;
+        WavChunker.Chunk first = chunks.get(0);
+        WavChunker.Chunk second = chunks.get(1);
+        assertThat(first.dataStart()).isZero();
+        assertThat(first.dataLength()).isEqualTo((cutFrame + overlapFrames) * frameBytes);
+        assertThat(first.endMs()).isEqualTo(32_000);
+        assertThat(second.startMs()).isEqualTo(30_000);
+        assertThat(second.dataStart()).isEqualTo((cutFrame - overlapFrames) * frameBytes);
+        assertThat(second.dataStart() + second.dataLength()).isEqualTo(header.dataSize());
+        assertThat(second.endMs()).isEqualTo(60_000);
+    }
+
+    @Test
+    void remainderShorterThanHalfChunkIsMergedIntoLastChunk() throws IOException {
+        Path file = TestWavs.writeMono16(dir.resolve("merge.wav"), RATE, TestWavs.tone(RATE, 70_000, 300, 8000));
+
+        List<WavChunker.Chunk> chunks = WavChunker.plan(file, WavHeader.read(file), 30_000, 0, 0);
+
+        assertThat(chunks).extracting(WavChunker.Chunk::startMs).containsExactly(0L, 30_000L);
+        assertThat(chunks.get(1).endMs()).isEqualTo(70_000);
+    }
+
+    @Test
+    void writeChunkProducesStandaloneWav() throws IOException {
+        short[] samples = TestWavs.concat(TestWavs.tone(RATE, 500, 440, 5000), TestWavs.tone(RATE, 500, 880, 9000));
+        Path file = TestWavs.writeMono16(dir.resolve("src.wav"), RATE, samples);
+        WavHeader header = WavHeader.read(file);
+        WavChunker.Chunk chunk = new WavChunker.Chunk(1, 500, 1000, 500 * 32, 500 * 32);
+        Path target = dir.resolve("chunk.wav");
+
+        WavChunker.writeChunk(file, header, chunk, target);
+
+        WavHeader written = WavHeader.read(target);
+        assertThat(written).isEqualTo(new WavHeader(WavHeader.FORMAT_PCM, 1, RATE, 16, 44, 500 * 32));
+        assertThat(Files.size(target)).isEqualTo(44 + 500 * 32);
+        assertThat(TestWavs.readSamples(target)).containsExactly(Arrays.copyOfRange(samples, RATE / 2, samples.length));
+    }
+}
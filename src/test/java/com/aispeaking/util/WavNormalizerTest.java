@@ -0,0 +1,132 @@
+package com.aispeaking.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WavNormalizerTest {
+    private static final int TARGET_RATE = 16000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void detectsAlreadyNormalizedFormat() {
+        assertThat(WavNormalizer.isNormalized(header(WavHeader.FORMAT_PCM, 1, 16000, 16), TARGET_RATE)).isTrue();
+        assertThat(WavNormalizer.isNormalized(header(WavHeader.FORMAT_PCM, 2, 16000, 16), TARGET_RATE)).isFalse();
+        assertThat(WavNormalizer.isNormalized(header(WavHeader.FORMAT_PCM, 1, 48000, 16), TARGET_RATE)).isFalse();
+        assertThat(WavNormalizer.isNormalized(header(WavNormalizer.FORMAT_IEEE_FLOAT, 1, 16000, 32), TARGET_RATE)).isFalse();
+    }
+
+    @Test
+    void supportsOnlyKnownSampleTypesWithinHeaderBounds() {
+        assertThat(WavNormalizer.isSupported(header(WavHeader.FORMAT_PCM, 2, 44100, 24))).isTrue();
+        assertThat(WavNormalizer.isSupported(header(WavNormalizer.FORMAT_IEEE_FLOAT, 1, 48000, 32))).isTrue();
+        assertThat(WavNormalizer.isSupported(header(WavNormalizer.FORMAT_IEEE_FLOAT, 1, 48000, 64))).isFalse();
+        assertThat(WavNormalizer.isSupported(header(WavHeader.FORMAT_PCM, 1, 48000, 12))).isFalse();
+        assertThat(WavNormalizer.isSupported(header(2, 1, 48000, 4))).isFalse();
+
+        assertThat(WavNormalizer.isSupported(header(WavHeader.FORMAT_PCM, 1, WavNormalizer.MIN_SAMPLE_RATE, 16))).isTrue();
+        assertThat(WavNormalizer.isSupported(header(WavHeader.FORMAT_PCM, 1, WavNormalizer.MIN_SAMPLE_RATE - 1, 16))).isFalse();
+        assertThat(WavNormalizer.isSupported(header(WavHeader.FORMAT_PCM, 1, WavNormalizer.MAX_SAMPLE_RATE, 16))).isTrue();
+        assertThat(WavNormalizer.isSupported(header(WavHeader.FORMAT_PCM, 1, WavNormalizer.MAX_SAMPLE_RATE + 1, 16))).isFalse();
+        assertThat(WavNormalizer.isSupported(header(WavHeader.FORMAT_PCM, 1, Integer.MAX_VALUE, 16))).isFalse();
+        assertThat(WavNormalizer.isSupported(header(WavHeader.FORMAT_PCM, WavNormalizer.MAX_CHANNELS, 48000, 16))).isTrue();
+        assertThat(WavNormalizer.isSupported(header(WavHeader.FORMAT_PCM, WavNormalizer.MAX_CHANNELS + 1, 48000, 16))).isFalse();
+        assertThat(WavNormalizer.isSupported(header(WavHeader.FORMAT_PCM, 65535, 48000, 16))).isFalse();
+    }
+
+    @Test
+    void rejectsUnsupportedHeader() {
+        WavHeader header = header(WavHeader.FORMAT_PCM, 1, 1, 16);
+
+        assertThatThrownBy(() -> WavNormalizer.normalize(new ByteArrayInputStream(new byte[0]), header, dir.resolve("out.wav"), TARGET_RATE))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(dir.resolve("out.wav")).doesNotExist();
+    }
+
+    @Test
+    void downsamplesByAveragingEachOutputBucket() throws IOException {
+        // 48 kHz stereo, kênh phải lệch kênh trái 2 đơn vị: trộn kênh cho x + 1, mỗi mẫu ra là trung bình 3 khung vào
+        int frames = 48000;
+        ByteBuffer data = ByteBuffer.allocate(frames * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < frames; i++) {
+            short left = (short) (i % 30000);
+            data.putShort(left).putShort((short) (left + 2));
+        }
+        WavHeader header = header(WavHeader.FORMAT_PCM, 2, 48000, 16, data.capacity());
+        Path target = dir.resolve("down.wav");
+
+        long size = WavNormalizer.normalize(new ByteArrayInputStream(data.array()), header, target, TARGET_RATE);
+
+        short[] samples = TestWavs.readSamples(target);
+        assertThat(size).isEqualTo(Files.size(target)).isEqualTo(44 + 16000 * 2);
+        assertThat(WavHeader.read(target)).isEqualTo(header(WavHeader.FORMAT_PCM, 1, TARGET_RATE, 16, 16000 * 2));
+        for (int k = 0; k < samples.length; k++) {
+            // Nhóm 3 khung không vắt qua điểm quay vòng 30000 vì 30000 chia hết cho 3
+            assertThat(samples[k]).as("sample %d", k).isEqualTo((short) ((3 * k) % 30000 + 2));
+        }
+    }
+
+    @Test
+    void upsamplesByLinearInterpolation() throws IOException {
+        int frames = 800;
+        short[] ramp = new short[frames];
+        for (int i = 0; i < frames; i++) {
+            ramp[i] = (short) (10 * i);
+        }
+        byte[] data = TestWavs.pcm16(ramp, 1);
+        Path target = dir.resolve("up.wav");
+
+        WavNormalizer.normalize(new ByteArrayInputStream(data), header(WavHeader.FORMAT_PCM, 1, 8000, 16, data.length), target, TARGET_RATE);
+
+        short[] samples = TestWavs.readSamples(target);
+        // Mẫu ra cuối cùng trùng khung vào cuối cùng
+        assertThat(samples).hasSize(2 * frames - 1);
+        for (int k = 0; k < samples.length; k++) {
+            assertThat(samples[k]).as("sample %d", k).isEqualTo((short) (5 * k));
+        }
+    }
+
+    @Test
+    void convertsUnsigned8BitAndFloatSamples() throws IOException {
+        byte[] unsigned = {(byte) 128, (byte) 255, 0, (byte) 192};
+        Path pcm8 = dir.resolve("pcm8.wav");
+        WavNormalizer.normalize(new ByteArrayInputStream(unsigned), header(WavHeader.FORMAT_PCM, 1, TARGET_RATE, 8, unsigned.length), pcm8, TARGET_RATE);
+        assertThat(TestWavs.readSamples(pcm8)).containsExactly((short) 0, (short) (127 << 8), (short) (-128 << 8), (short) (64 << 8));
+
+        ByteBuffer floats = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN).putFloat(0f).putFloat(0.5f).putFloat(-1f).putFloat(2f);
+        Path float32 = dir.resolve("float.wav");
+        WavNormalizer.normalize(new ByteArrayInputStream(floats.array()), header(WavNormalizer.FORMAT_IEEE_FLOAT, 1, TARGET_RATE, 32, 16), float32, TARGET_RATE);
+        // Giá trị ngoài [-1, 1] bị kẹp
+        assertThat(TestWavs.readSamples(float32)).containsExactly((short) 0, (short) 16383, (short) -32767, (short) 32767);
+    }
+
+    @Test
+    void ignoresTrailingPartialFrame() throws IOException {
+        byte[] data = TestWavs.pcm16(TestWavs.tone(TARGET_RATE, 10, 440, 1000), 2);
+        byte[] truncated = new byte[data.length + 3];
+        System.arraycopy(data, 0, truncated, 0, data.length);
+        Path target = dir.resolve("partial.wav");
+
+        WavNormalizer.normalize(new ByteArrayInputStream(truncated), header(WavHeader.FORMAT_PCM, 2, TARGET_RATE, 16, truncated.length), target, TARGET_RATE);
+
+        assertThat(TestWavs.readSamples(target)).containsExactly(TestWavs.tone(TARGET_RATE, 10, 440, 1000));
+    }
+
+    private static WavHeader header(int format, int channels, int sampleRate, int bitsPerSample) {
+        return header(format, channels, sampleRate, bitsPerSample, 0);
+    }
+
+    private static WavHeader header(int format, int channels, int sampleRate, int bitsPerSample, long dataSize) {
+        return new WavHeader(format, channels, sampleRate, bitsPerSample, 44, dataSize);
+    }
+}
@@ -82,7 +82,7 @@ Request:
             "audio_data": "<base64_encoded_audio>"  // Audio đã encode base64
         }
     
-    Hoặc
+    Hoặc (cách backend Java sử dụng - stream file, không base64)
     
     POST /transcribe
     Content-Type: multipart/form-data